@@ -0,0 +1,79 @@
+#!/usr/bin/env python3
+# 比较JMH JSON结果和基线, 性能下降时返回1
+#
+# 只有两次结果的置信区间(score±scoreError)不重叠, 并且下降超过阈值时才算退化,
+# 避免单次运行的噪声导致失败. 基线和当前结果都需要多个fork才有可信的scoreError.
+#
+# 用法: jmh-compare.py [--threshold 10] jmh-baseline.json build/jmh/results.json
+
+import argparse
+import json
+import math
+import sys
+
+# thrpt 越大越好, 其它模式(avgt/sample/ss)越小越好
+HIGHER_IS_BETTER = {'thrpt'}
+
+
+def load(path):
+    with open(path, encoding='utf-8') as f:
+        results = json.load(f)
+    scores = {}
+    for r in results:
+        key = r['benchmark']
+        params = r.get('params')
+        if params:
+            key += '(' + ','.join(k + '=' + str(params[k]) for k in sorted(params)) + ')'
+        key += ' [' + r['mode'] + ']'
+        metric = r['primaryMetric']
+        error = metric.get('scoreError')
+        # 只有一次测量时JMH输出NaN
+        if not isinstance(error, (int, float)) or math.isnan(error):
+            error = 0.0
+        scores[key] = (r['mode'], metric['score'], error, metric['scoreUnit'])
+    return scores
+
+
+def main():
+    parser = argparse.ArgumentParser(description='Compare JMH results with baseline')
+    parser.add_argument('--threshold', type=float, default=10.0, help='minimum regression in percent, checked after confidence intervals')
+    parser.add_argument('baseline')
+    parser.add_argument('current')
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+    regressions = 0
+    for key in sorted(current):
+        mode, score, error, unit = current[key]
+        if key not in baseline:
+            print('%-90s %14.3f ± %-10.3f %-8s NEW' % (key, score, error, unit))
+            continue
+        _, base_score, base_error, base_unit = baseline[key]
+        if base_unit != unit or base_score == 0:
+            print('%-90s %14.3f ± %-10.3f %-8s SKIP (baseline %s %s)' % (key, score, error, unit, base_score, base_unit))
+            continue
+        if mode in HIGHER_IS_BETTER:
+            change = (base_score - score) * 100.0 / base_score
+            separated = score + error < base_score - base_error
+        else:
+            change = (score - base_score) * 100.0 / base_score
+            separated = score - error > base_score + base_error
+        status = 'OK'
+        if separated and change > args.threshold:
+            status = 'REGRESSION'
+            regressions += 1
+        elif change > args.threshold:
+            status = 'OK (within error)'
+        print('%-90s %14.3f ± %-10.3f %-8s baseline %14.3f ± %-10.3f %+7.1f%% %s' % (key, score, error, unit, base_score, base_error, change, status))
+    for key in sorted(set(baseline) - set(current)):
+        print('%-90s MISSING' % key)
+
+    if regressions > 0:
+        print('%d benchmark(s) regressed more than %.1f%% outside the confidence interval' % (regressions, args.threshold))
+        return 1
+    return 0
+
+
+if __name__ == '__main__':
+    sys.exit(main())
@@ -0,0 +1,43 @@
+package trader.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.common.util.IOUtil;
+import trader.common.util.StringUtil;
+
+/**
+ * 从classpath加载FixtureGenerator生成的固定数据
+ */
+public class BenchmarkFixtures {
+
+    public static final String TICKS_CSV = "ctp-ticks-au1906.csv";
+    public static final String COMMISSIONS_JSON = "commissions.json";
+
+    /**
+     * CTP TICK CSV, 第一行是列名
+     */
+    public static List<String> loadTickLines() {
+        return StringUtil.text2lines(load(TICKS_CSV), true, true);
+    }
+
+    public static JsonObject loadCommissions() {
+        return (JsonObject)(new JsonParser()).parse(load(COMMISSIONS_JSON));
+    }
+
+    private static String load(String name) {
+        try(InputStream is = BenchmarkFixtures.class.getResourceAsStream("/fixtures/"+name);){
+            if ( is==null ) {
+                throw new RuntimeException("Fixture "+name+" not found, run gradle :trader-benchmarks:generateFixtures first");
+            }
+            return IOUtil.read(is, StringUtil.UTF8);
+        }catch(IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
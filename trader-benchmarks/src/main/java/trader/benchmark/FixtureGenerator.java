@@ -0,0 +1,141 @@
+package trader.benchmark;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.FileUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.trade.FutureFeeEvaluator.FutureFeeInfo;
+import trader.service.trade.TradeConstants;
+
+/**
+ * 生成性能测试的固定数据, 生成的文件提交到src/main/resources/fixtures, 保证每次测试的输入一致.
+ * <BR>运行: gradle :trader-benchmarks:generateFixtures
+ */
+public class FixtureGenerator implements TradeConstants {
+
+    public static final LocalDate TRADING_DAY = LocalDate.of(2018, 12, 28);
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(args.length>0?args[0]:"src/main/resources/fixtures");
+        dir.mkdirs();
+        FileUtil.save(new File(dir, BenchmarkFixtures.TICKS_CSV), String.join("\n", createTickLines("au1906", "SHFE", 0.05, 2000, 1))+"\n");
+        FileUtil.save(new File(dir, BenchmarkFixtures.COMMISSIONS_JSON), new GsonBuilder().setPrettyPrinting().create().toJson(createCommissions()));
+        System.out.println("Fixtures are generated in "+dir.getAbsolutePath());
+    }
+
+    /**
+     * 日市的CTP TICK数据, 每500毫秒一个, 1档/5档行情交替
+     */
+    static List<String> createTickLines(String instrumentId, String exchangeId, double priceTick, int count, long seed) {
+        Random random = new Random(seed);
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        List<String> result = new ArrayList<>(count+1);
+        result.add(String.join(",", csvMarshallHelper.getHeader()));
+        String tradingDayStr = TRADING_DAY.toString().replace("-", "");
+        double basePrice = 3000*priceTick;
+        int volume = 0;
+        double turnover = 0;
+        for(int i=0;i<count;i++) {
+            CThostFtdcDepthMarketDataField field = new CThostFtdcDepthMarketDataField();
+            int seconds = 9*3600 + i/2;
+            field.TradingDay = tradingDayStr;
+            field.ActionDay = tradingDayStr;
+            field.InstrumentID = instrumentId;
+            field.ExchangeID = exchangeId;
+            field.ExchangeInstID = instrumentId;
+            field.LastPrice = basePrice+random.nextInt(100)*priceTick;
+            field.PreSettlementPrice = basePrice;
+            field.PreClosePrice = basePrice;
+            field.PreOpenInterest = 100000;
+            field.OpenPrice = basePrice+priceTick;
+            field.HighestPrice = basePrice+100*priceTick;
+            field.LowestPrice = basePrice-priceTick;
+            volume += random.nextInt(50);
+            field.Volume = volume;
+            turnover += field.LastPrice*random.nextInt(50)*1000;
+            field.Turnover = turnover;
+            field.OpenInterest = 100000+random.nextInt(1000);
+            field.ClosePrice = Double.MAX_VALUE;
+            field.SettlementPrice = Double.MAX_VALUE;
+            field.UpperLimitPrice = basePrice*1.05;
+            field.LowerLimitPrice = basePrice*0.95;
+            field.CurrDelta = Double.MAX_VALUE;
+            field.UpdateTime = String.format("%02d:%02d:%02d", seconds/3600, (seconds/60)%60, seconds%60);
+            field.UpdateMillisec = (i%2)*500;
+            field.BidPrice1 = field.LastPrice-priceTick;
+            field.BidVolume1 = 1+random.nextInt(100);
+            field.AskPrice1 = field.LastPrice;
+            field.AskVolume1 = 1+random.nextInt(100);
+            if ( i%2==0 ) {
+                field.BidPrice2 = field.AskPrice2 = Double.MAX_VALUE;
+                field.BidPrice3 = field.AskPrice3 = Double.MAX_VALUE;
+                field.BidPrice4 = field.AskPrice4 = Double.MAX_VALUE;
+                field.BidPrice5 = field.AskPrice5 = Double.MAX_VALUE;
+            } else {
+                field.BidPrice2 = field.LastPrice-2*priceTick;
+                field.BidVolume2 = random.nextInt(100);
+                field.AskPrice2 = field.LastPrice+priceTick;
+                field.AskVolume2 = random.nextInt(100);
+                field.BidPrice3 = field.LastPrice-3*priceTick;
+                field.BidVolume3 = random.nextInt(100);
+                field.AskPrice3 = field.LastPrice+2*priceTick;
+                field.AskVolume3 = random.nextInt(100);
+                field.BidPrice4 = field.LastPrice-4*priceTick;
+                field.BidVolume4 = random.nextInt(100);
+                field.AskPrice4 = field.LastPrice+3*priceTick;
+                field.AskVolume4 = random.nextInt(100);
+                field.BidPrice5 = field.LastPrice-5*priceTick;
+                field.BidVolume5 = random.nextInt(100);
+                field.AskPrice5 = field.LastPrice+4*priceTick;
+                field.AskVolume5 = random.nextInt(100);
+            }
+            field.AveragePrice = turnover/Math.max(1, volume);
+            result.add(String.join(",", csvMarshallHelper.marshall(field)));
+        }
+        return result;
+    }
+
+    /**
+     * 几个常见品种的保证金和手续费, 格式与FutureFeeEvaluator.fromJson一致
+     */
+    static JsonObject createCommissions() {
+        Object[][] infos = {
+                {"au1906.shfe", "0.05", 1000, 0.09, 0.0, 10.0},
+                {"ru1905.shfe", "5", 10, 0.09, 0.000045, 0.0},
+                {"m1905.dce", "1", 10, 0.08, 0.0, 1.5},
+                {"CF905.czce", "5", 5, 0.07, 0.0, 4.3},
+                {"IF1901.cffex", "0.2", 300, 0.10, 0.000023, 0.0},
+        };
+        JsonObject feeInfos = new JsonObject();
+        JsonObject brokerMarginRatio = new JsonObject();
+        for(Object[] info:infos) {
+            FutureFeeInfo feeInfo = new FutureFeeInfo();
+            feeInfo.setPriceTick(PriceUtil.str2long((String)info[1]));
+            feeInfo.setVolumeMultiple((Integer)info[2]);
+            feeInfo.setMarginRatio(MarginRatio_LongByMoney, (Double)info[3]);
+            feeInfo.setMarginRatio(MarginRatio_ShortByMoney, (Double)info[3]);
+            feeInfo.setCommissionRatio(CommissionRatio_OpenByMoney, (Double)info[4]);
+            feeInfo.setCommissionRatio(CommissionRatio_OpenByVolume, (Double)info[5]);
+            feeInfo.setCommissionRatio(CommissionRatio_CloseByMoney, (Double)info[4]);
+            feeInfo.setCommissionRatio(CommissionRatio_CloseByVolume, (Double)info[5]);
+            feeInfo.setCommissionRatio(CommissionRatio_CloseTodayByMoney, (Double)info[4]);
+            feeInfo.setCommissionRatio(CommissionRatio_CloseTodayByVolume, (Double)info[5]);
+            feeInfos.add(Exchangeable.fromString((String)info[0]).toString(), feeInfo.toJson());
+        }
+        JsonObject json = new JsonObject();
+        json.add("feeInfos", feeInfos);
+        json.add("brokerMarginRatio", brokerMarginRatio);
+        return json;
+    }
+
+}
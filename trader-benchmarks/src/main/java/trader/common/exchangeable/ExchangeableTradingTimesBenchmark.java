@@ -0,0 +1,56 @@
+package trader.common.exchangeable;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.benchmark.FixtureGenerator;
+
+/**
+ * ExchangeableTradingTimes.getTimeStage, 时间覆盖整个交易日(包括夜市和非交易时间)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class ExchangeableTradingTimesBenchmark {
+
+    private static final int COUNT = 1024;
+
+    private ExchangeableTradingTimes tradingTimes;
+    private LocalDateTime[] times = new LocalDateTime[COUNT];
+
+    @Setup
+    public void setup() {
+        Exchangeable e = Exchangeable.fromString("au1906.shfe");
+        tradingTimes = e.exchange().getTradingTimes(e, FixtureGenerator.TRADING_DAY);
+        LocalDateTime begin = FixtureGenerator.TRADING_DAY.minusDays(1).atTime(20, 0);
+        long step = 20*3600/COUNT;
+        for(int i=0;i<COUNT;i++) {
+            times[i] = begin.plusSeconds(i*step);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void getTimeStage(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            bh.consume(tradingTimes.getTimeStage(times[i]));
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package trader.common.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.benchmark.BenchmarkFixtures;
+
+/**
+ * CSVUtil.parseLine 解析一行CTP TICK CSV的时间
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class CSVUtilBenchmark {
+
+    private static final int LINES = 2000;
+
+    private String[] lines;
+
+    @Setup
+    public void setup() {
+        List<String> allLines = BenchmarkFixtures.loadTickLines();
+        lines = allLines.subList(1, LINES+1).toArray(new String[LINES]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseLine(Blackhole bh) {
+        for(int i=0;i<lines.length;i++) {
+            bh.consume(CSVUtil.parseLine(lines[i], ','));
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package trader.common.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * PriceUtil 价格转换
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class PriceUtilBenchmark {
+
+    private static final int COUNT = 1024;
+
+    private double[] prices = new double[COUNT];
+    private long[] longPrices = new long[COUNT];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for(int i=0;i<COUNT;i++) {
+            prices[i] = (100000+random.nextInt(1000000))*0.05/10;
+            longPrices[i] = PriceUtil.price2long(prices[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void price2long(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            bh.consume(PriceUtil.price2long(prices[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void long2str(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            bh.consume(PriceUtil.long2str(longPrices[i]));
+        }
+    }
+
+}
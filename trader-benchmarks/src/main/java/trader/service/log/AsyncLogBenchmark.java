@@ -0,0 +1,108 @@
+package trader.service.log;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import trader.common.util.PriceUtil;
+
+/**
+ * 交易线程突发写出一批报单日志的耗时: 同步拼接字符串写出, 和通过AsyncLog写入RingBuffer.
+ * <BR>每次测量前等待异步日志写完, 测量的是突发时交易线程的耗时, 不是后台线程的吞吐量
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 200)
+@Measurement(iterations = 200)
+@Fork(3)
+@State(Scope.Benchmark)
+public class AsyncLogBenchmark {
+
+    private static final String SYNC_CATEGORY = "trader.benchmark.log.sync";
+    private static final String ASYNC_CATEGORY = "trader.benchmark.log.async";
+
+    /**
+     * 一次突发的日志条数, 小于RingBuffer容量
+     */
+    private static final int BURST = 1000;
+
+    private Logger syncLogger;
+    private Logger asyncLogger;
+    private String orderRef = "000123";
+    private long price = 28605000;
+    private long volume = 2;
+
+    @Setup
+    public void setup() {
+        syncLogger = createLogger(SYNC_CATEGORY);
+        asyncLogger = createLogger(ASYNC_CATEGORY);
+        LogServiceImpl.setLogAsync(ASYNC_CATEGORY, true);
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void drain() {
+        AsyncLog.flush(10000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        AsyncLog.flush(10000);
+        LogServiceImpl.setLogAsync(ASYNC_CATEGORY, false);
+    }
+
+    @Benchmark
+    public void syncConcat() {
+        for(int i=0;i<BURST;i++) {
+            if ( syncLogger.isInfoEnabled() ) {
+                syncLogger.info("Order "+orderRef+" price "+PriceUtil.long2str(price)+" volume "+volume);
+            }
+        }
+    }
+
+    @Benchmark
+    public void asyncLog() {
+        for(int i=0;i<BURST;i++) {
+            AsyncLog.info(asyncLogger, "Order {} price {p} volume {}", orderRef, price, volume);
+        }
+    }
+
+    /**
+     * 使用与账户日志相同的格式, 输出丢弃
+     */
+    private static Logger createLogger(String category) {
+        LoggerContext context = (LoggerContext)LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d [%thread] %-5level %logger{35} - %msg %n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        Logger logger = context.getLogger(category);
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+        return logger;
+    }
+
+}
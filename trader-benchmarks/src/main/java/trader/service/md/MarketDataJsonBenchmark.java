@@ -0,0 +1,84 @@
+package trader.service.md;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.benchmark.BenchmarkFixtures;
+import trader.benchmark.FixtureGenerator;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.CSVUtil;
+import trader.common.util.JsonStreamWriter;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.ctp.CtpMarketData;
+
+/**
+ * 行情JSON序列化: Gson JsonObject.toString() 和 JsonStreamWriter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class MarketDataJsonBenchmark {
+
+    private static final int COUNT = 1000;
+
+    private MarketData[] mds = new MarketData[COUNT];
+    private JsonStreamWriter writer = new JsonStreamWriter();
+
+    @Setup
+    public void setup() {
+        Exchangeable exchangeable = Exchangeable.fromString("au1906.shfe");
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        List<String> lines = BenchmarkFixtures.loadTickLines();
+        for(int i=0;i<COUNT;i++) {
+            mds[i] = new CtpMarketData("ctp", exchangeable, csvMarshallHelper.unmarshall(CSVUtil.parseLine(lines.get(i+1), ',')), FixtureGenerator.TRADING_DAY);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void gson(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            bh.consume(mds[i].toJson().toString());
+        }
+    }
+
+    /**
+     * 只写入缓冲区, 推送和REST直接输出字节时的开销
+     */
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void stream(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            writer.reset();
+            mds[i].toJson(writer);
+            bh.consume(writer.size());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void streamToString(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            writer.reset();
+            mds[i].toJson(writer);
+            bh.consume(writer.toString());
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package trader.service.md.ctp;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.benchmark.BenchmarkFixtures;
+import trader.benchmark.FixtureGenerator;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.CSVUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+
+/**
+ * 从CTP行情回调对象创建CtpMarketData的时间, 1档/5档行情各一半
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class CtpMarketDataBenchmark {
+
+    private static final int COUNT = 2000;
+
+    private Exchangeable exchangeable;
+    private CThostFtdcDepthMarketDataField[] fields = new CThostFtdcDepthMarketDataField[COUNT];
+
+    @Setup
+    public void setup() {
+        exchangeable = Exchangeable.fromString("au1906.shfe");
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        List<String> lines = BenchmarkFixtures.loadTickLines();
+        for(int i=0;i<COUNT;i++) {
+            fields[i] = csvMarshallHelper.unmarshall(CSVUtil.parseLine(lines.get(i+1), ','));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void create(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            bh.consume(new CtpMarketData("ctp", exchangeable, fields[i], FixtureGenerator.TRADING_DAY));
+        }
+    }
+
+}
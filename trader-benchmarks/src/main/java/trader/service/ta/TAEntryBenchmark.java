@@ -0,0 +1,77 @@
+package trader.service.ta;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.benchmark.BenchmarkFixtures;
+import trader.benchmark.FixtureGenerator;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.common.util.CSVUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpMarketData;
+
+/**
+ * TAEntry.getBarIndex 按TICK顺序定位1分钟KBar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class TAEntryBenchmark {
+
+    private static final int COUNT = 2000;
+
+    private long[] barBeginMillis;
+    private long[] timestamps = new long[COUNT];
+
+    @Setup
+    public void setup() {
+        Exchangeable e = Exchangeable.fromString("au1906.shfe");
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, FixtureGenerator.TRADING_DAY);
+        PriceLevel level = PriceLevel.MIN1;
+        int barCount = tradingTimes.getTotalTradingSeconds()/(60*level.getValue());
+        barBeginMillis = new long[barCount];
+        LocalDateTime mkTime = tradingTimes.getMarketTimes()[0];
+        for(int i=0;i<barCount;i++) {
+            LocalDateTime[] barTimes = TimeSeriesLoader.getBarTimes(tradingTimes, level, i, mkTime);
+            barBeginMillis[i] = DateUtil.localdatetime2long(e.exchange().getZoneId(), barTimes[0]);
+        }
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        List<String> lines = BenchmarkFixtures.loadTickLines();
+        for(int i=0;i<COUNT;i++) {
+            MarketData md = new CtpMarketData("ctp", e, csvMarshallHelper.unmarshall(CSVUtil.parseLine(lines.get(i+1), ',')), FixtureGenerator.TRADING_DAY);
+            timestamps[i] = md.updateTimestamp;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void getBarIndex(Blackhole bh) {
+        int barIndex = -1;
+        for(int i=0;i<COUNT;i++) {
+            barIndex = TAEntry.getBarIndex(barBeginMillis, barIndex, timestamps[i]);
+            bh.consume(barIndex);
+        }
+    }
+
+}
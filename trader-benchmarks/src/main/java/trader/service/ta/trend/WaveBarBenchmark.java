@@ -0,0 +1,79 @@
+package trader.service.ta.trend;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.benchmark.BenchmarkFixtures;
+import trader.benchmark.FixtureGenerator;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.CSVUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpMarketData;
+import trader.service.ta.LongNum;
+import trader.service.ta.trend.WaveBar.WaveType;
+
+/**
+ * 同一组TICK分别使用MarketDataWaveBarBuilder和WaveBarEngine构建笔划和线段
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class WaveBarBenchmark {
+
+    private static final int COUNT = 2000;
+
+    private long threshold;
+    private MarketData[] ticks = new MarketData[COUNT];
+
+    @Setup
+    public void setup() {
+        Exchangeable e = Exchangeable.fromString("au1906.shfe");
+        threshold = e.getPriceTick()*3;
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        List<String> lines = BenchmarkFixtures.loadTickLines();
+        for(int i=0;i<COUNT;i++) {
+            ticks[i] = new CtpMarketData("ctp", e, csvMarshallHelper.unmarshall(CSVUtil.parseLine(lines.get(i+1), ',')), FixtureGenerator.TRADING_DAY);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void builder(Blackhole bh) {
+        MarketDataWaveBarBuilder builder = new MarketDataWaveBarBuilder();
+        builder.setStrokeDirectionThreshold(new LongNum(threshold));
+        for(int i=0;i<COUNT;i++) {
+            builder.onMarketData(ticks[i]);
+        }
+        bh.consume(builder.getBars(WaveType.Section).size());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void engine(Blackhole bh) {
+        WaveBarEngine engine = new WaveBarEngine();
+        engine.setStrokeDirectionThreshold(threshold);
+        for(int i=0;i<COUNT;i++) {
+            engine.onMarketData(ticks[i]);
+        }
+        bh.consume(engine.getBarCount(WaveType.Section));
+        engine.close();
+    }
+
+}
@@ -0,0 +1,101 @@
+package trader.service.trade;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.benchmark.BenchmarkFixtures;
+import trader.common.exchangeable.Exchangeable;
+import trader.service.trade.TradeConstants.OrderDirection;
+import trader.service.trade.TradeConstants.OrderOffsetFlag;
+import trader.service.trade.TradeConstants.PosDirection;
+
+/**
+ * FutureFeeEvaluator 计算报单/成交的保证金和手续费
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class FutureFeeEvaluatorBenchmark {
+
+    private static final int COUNT = 1024;
+
+    private FutureFeeEvaluator feeEvaluator;
+    private Exchangeable[] exchangeables = new Exchangeable[COUNT];
+    private int[] feeIndexes = new int[COUNT];
+    private long[] orderResult = new long[3];
+    private long[] posResult = new long[2];
+    private long[] prices = new long[COUNT];
+    private int[] volumes = new int[COUNT];
+    private OrderDirection[] directions = new OrderDirection[COUNT];
+    private OrderOffsetFlag[] offsetFlags = new OrderOffsetFlag[COUNT];
+    private PosDirection[] posDirections = new PosDirection[COUNT];
+
+    @Setup
+    public void setup() {
+        feeEvaluator = FutureFeeEvaluator.fromJson(null, BenchmarkFixtures.loadCommissions());
+        Exchangeable[] all = feeEvaluator.getExchangeables().toArray(new Exchangeable[0]);
+        OrderOffsetFlag[] flags = {OrderOffsetFlag.OPEN, OrderOffsetFlag.CLOSE, OrderOffsetFlag.CLOSE_TODAY, OrderOffsetFlag.CLOSE_YESTERDAY};
+        Random random = new Random(1);
+        for(int i=0;i<COUNT;i++) {
+            Exchangeable e = all[random.nextInt(all.length)];
+            exchangeables[i] = e;
+            feeIndexes[i] = feeEvaluator.getFeeIndex(e);
+            prices[i] = (1000+random.nextInt(4000))*feeEvaluator.getPriceTick(e);
+            volumes[i] = 1+random.nextInt(10);
+            directions[i] = random.nextBoolean()?OrderDirection.Buy:OrderDirection.Sell;
+            offsetFlags[i] = flags[random.nextInt(flags.length)];
+            posDirections[i] = random.nextBoolean()?PosDirection.Long:PosDirection.Short;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void computeOrder(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            bh.consume(feeEvaluator.compute(exchangeables[i], volumes[i], prices[i], directions[i], offsetFlags[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void computePosition(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            bh.consume(feeEvaluator.compute(exchangeables[i], volumes[i], prices[i], posDirections[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void computeOrderByIndex(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            feeEvaluator.compute(feeIndexes[i], volumes[i], prices[i], directions[i], offsetFlags[i], orderResult);
+            bh.consume(orderResult[0]+orderResult[1]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void computePositionByIndex(Blackhole bh) {
+        for(int i=0;i<COUNT;i++) {
+            feeEvaluator.compute(feeIndexes[i], volumes[i], prices[i], posDirections[i], posResult);
+            bh.consume(posResult[0]);
+        }
+    }
+
+}
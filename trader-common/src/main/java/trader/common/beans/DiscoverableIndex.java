@@ -0,0 +1,87 @@
+package trader.common.beans;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Discoverable类索引文件, 编译时由DiscoverableIndexProcessor生成, 加载时不需要扫描classpath.
+ * <BR>每行一个类: 实现类\t接口\t用途, #开头为注释
+ */
+public class DiscoverableIndex {
+
+    /**
+     * 索引文件在jar或classes目录中的位置
+     */
+    public static final String INDEX_FILE = "META-INF/trader-discoverable.idx";
+
+    private static final String HEADER = "#class\tinterface\tpurpose";
+
+    public static class Entry{
+        private String className;
+        private String interfaceName;
+        private String purpose;
+
+        public Entry(String className, String interfaceName, String purpose) {
+            this.className = className;
+            this.interfaceName = interfaceName;
+            this.purpose = purpose;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getInterfaceName() {
+            return interfaceName;
+        }
+
+        public String getPurpose() {
+            return purpose;
+        }
+
+        @Override
+        public String toString() {
+            return className+"\t"+interfaceName+"\t"+purpose;
+        }
+    }
+
+    public static List<Entry> read(InputStream is) throws IOException
+    {
+        List<Entry> result = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String line = null;
+        while( (line=reader.readLine())!=null ) {
+            if ( line.isEmpty() || line.startsWith("#") ) {
+                continue;
+            }
+            String[] parts = line.split("\t", -1);
+            if ( parts.length<2 ) {
+                throw new IOException("Invalid discoverable index line: "+line);
+            }
+            result.add(new Entry(parts[0], parts[1], parts.length>2?parts[2]:""));
+        }
+        return result;
+    }
+
+    public static void write(OutputStream os, Collection<Entry> entries) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+        writer.write(HEADER);
+        writer.write("\n");
+        for(Entry entry:entries) {
+            writer.write(entry.toString());
+            writer.write("\n");
+        }
+        writer.flush();
+    }
+
+}
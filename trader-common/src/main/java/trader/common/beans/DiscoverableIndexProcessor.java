@@ -0,0 +1,90 @@
+package trader.common.beans;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * 编译时生成Discoverable类索引文件 META-INF/trader-discoverable.idx
+ * <BR>插件工程在annotationProcessor中引用trader-common即可
+ */
+@SupportedAnnotationTypes("trader.common.beans.Discoverable")
+public class DiscoverableIndexProcessor extends AbstractProcessor {
+
+    /**
+     * Key: 实现类
+     */
+    private Map<String, DiscoverableIndex.Entry> entries = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for(Element element:roundEnv.getElementsAnnotatedWith(Discoverable.class)) {
+            if ( element.getKind()!=ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT) ) {
+                continue;
+            }
+            TypeElement type = (TypeElement)element;
+            String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+            String interfaceName = null;
+            String purpose = "";
+            for(AnnotationMirror mirror:type.getAnnotationMirrors()) {
+                TypeElement annotationType = (TypeElement)mirror.getAnnotationType().asElement();
+                if ( !annotationType.getQualifiedName().contentEquals(Discoverable.class.getName()) ) {
+                    continue;
+                }
+                Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+                for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value:values.entrySet()) {
+                    String name = value.getKey().getSimpleName().toString();
+                    if ( name.equals("interfaceClass") ) {
+                        TypeMirror interfaceType = processingEnv.getTypeUtils().erasure((TypeMirror)value.getValue().getValue());
+                        interfaceName = processingEnv.getElementUtils().getBinaryName((TypeElement)((DeclaredType)interfaceType).asElement()).toString();
+                    } else if ( name.equals("purpose") ) {
+                        purpose = value.getValue().getValue().toString();
+                    }
+                }
+            }
+            if ( interfaceName!=null ) {
+                entries.put(className, new DiscoverableIndex.Entry(className, interfaceName, purpose));
+            }
+        }
+        if ( roundEnv.processingOver() && !entries.isEmpty() ) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        try{
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", DiscoverableIndex.INDEX_FILE);
+            try(OutputStream os = file.openOutputStream();){
+                DiscoverableIndex.write(os, entries.values());
+            }
+        }catch(IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Write "+DiscoverableIndex.INDEX_FILE+" failed: "+e);
+        }
+    }
+
+}
@@ -183,6 +183,22 @@ public class ExchangeableData {
             ,COLUMN_OPENINT
     };
 
+    private static final String[] FUTURE_DAY_COLUMNS = new String[]{
+            COLUMN_DATE
+            ,COLUMN_BEGIN_TIME
+            ,COLUMN_END_TIME
+            ,COLUMN_OPEN
+            ,COLUMN_HIGH
+            ,COLUMN_LOW
+            ,COLUMN_CLOSE
+            ,COLUMN_AVG
+            ,COLUMN_MKTAVG
+            ,COLUMN_VOLUME
+            ,COLUMN_TURNOVER
+            ,COLUMN_OPENINT
+            ,COLUMN_INDEX
+    };
+
     /**
      * 股票的TICK数据
      */
@@ -202,6 +218,16 @@ public class ExchangeableData {
      */
     public static final DataInfo DAY = new DataInfo("DAY", PriceLevel.DAY, STOCK_DAY_COLUMNS, null);
 
+    /**
+     * 由MIN1数据按交易日汇总的日线, 每个品种一个文件, 每个交易日一行, 归档时增量更新
+     */
+    public static final DataInfo DAY_BAR = new DataInfo("DAY_BAR", PriceLevel.DAY, FUTURE_DAY_COLUMNS, null);
+
+    /**
+     * 每个交易日收市后的波浪(笔划/线段/趋势)快照, 二进制压缩后以Base64保存
+     */
+    public static final DataInfo WAVE_SNAPSHOT = new DataInfo("WAVE_SNAPSHOT", null, null, null);
+
     public static class TradingData{
         public LocalDate tradingDay;
         public String content;
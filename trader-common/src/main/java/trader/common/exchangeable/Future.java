@@ -18,6 +18,10 @@ import trader.common.util.StringUtil;
  */
 public class Future extends Exchangeable {
     public static final Pattern PATTERN = Pattern.compile("([a-zA-Z]+)(\\d+)");
+    /**
+     * 主力连续合约的合约编号, 例如 ru888 由各月份的主力合约拼接而成
+     */
+    public static final String CONTRACT_CONTINUOUS = "888";
     protected String commodity;
     protected String contract;
     protected long priceTick;
@@ -67,6 +71,27 @@ public class Future extends Exchangeable {
         return contract;
     }
 
+    /**
+     * 是否是主力连续合约
+     */
+    public boolean isContinuous() {
+        return CONTRACT_CONTINUOUS.equals(contract);
+    }
+
+    /**
+     * 返回品种的主力连续合约
+     */
+    public static Future continuousOf(Exchange exchange, String commodity) {
+        return (Future)Exchangeable.fromString(exchange.name(), commodity+CONTRACT_CONTINUOUS);
+    }
+
+    /**
+     * 判断是否是主力连续合约
+     */
+    public static boolean isContinuous(Exchangeable e) {
+        return (e instanceof Future) && ((Future)e).isContinuous();
+    }
+
     @Override
     public long getPriceTick() {
         return priceTick;
@@ -28,6 +28,12 @@ public class PriceLevel {
     public static final PriceLevel VOL10K = PriceLevel.valueOf(LEVEL_VOL+"10k");
 
     public static final PriceLevel DAY = new PriceLevel("day", -1);
+    public static final PriceLevel WEEK = new PriceLevel("week", -1);
+
+    static {
+        levels.put(DAY.name, DAY);
+        levels.put(WEEK.name, WEEK);
+    }
 
     private String name;
     private int value;
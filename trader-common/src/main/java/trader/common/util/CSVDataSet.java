@@ -72,7 +72,8 @@ public class CSVDataSet {
                 return false;
             }
             dataIndex++;
-            row = CSVUtil.parseLine(line, delimiter);
+            //延迟到第一次访问时再拆分列
+            row = null;
             return true;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -88,6 +89,9 @@ public class CSVDataSet {
     }
 
     public String[] getRow(){
+        if ( row==null && line!=null && !beforeFirst ){
+            row = CSVUtil.parseLine(line, delimiter);
+        }
         return row;
     }
 
@@ -96,6 +100,7 @@ public class CSVDataSet {
     }
 
     public String get(int columnIndex){
+        String[] row = getRow();
         if ( columnIndex>=row.length ){
             return null;
         }
@@ -225,10 +230,11 @@ public class CSVDataSet {
 
     public boolean hasValue(String column){
         int columnIndex = getColumnIndex(column);
-        return row.length>columnIndex && row[columnIndex]!=null;
+        return hasValue(columnIndex);
     }
 
     public boolean hasValue(int columnIndex){
+        String[] row = getRow();
         return row.length>columnIndex && row[columnIndex]!=null;
     }
 
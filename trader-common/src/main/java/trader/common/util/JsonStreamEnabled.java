@@ -0,0 +1,10 @@
+package trader.common.util;
+
+/**
+ * 支持直接写入JsonStreamWriter, 输出内容与toJson().toString()相同
+ */
+public interface JsonStreamEnabled extends JsonEnabled {
+
+    public void toJson(JsonStreamWriter writer);
+
+}
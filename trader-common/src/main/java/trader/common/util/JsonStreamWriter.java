@@ -0,0 +1,477 @@
+package trader.common.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * 流式JSON输出, 以UTF-8直接写入可重用的byte缓冲区, 不构建JsonObject.
+ * <BR>输出与Gson JsonElement.toString()相同: 紧凑格式, 不做HTML转义, null值输出为null.
+ * <BR>非线程安全, 可以用local()获取当前线程重用的实例.
+ */
+public class JsonStreamWriter {
+
+    private static final int MAX_DEPTH = 63;
+
+    /**
+     * 线程实例保留的最大缓冲区, 超过后重新分配
+     */
+    private static final int MAX_RETAINED_SIZE = 256*1024;
+
+    private static final ThreadLocal<JsonStreamWriter> localWriters = ThreadLocal.withInitial(()->new JsonStreamWriter());
+
+    /**
+     * ASCII字符的转义, 与Gson JsonWriter相同
+     */
+    private static final byte[][] ESCAPES = new byte[128][];
+    static {
+        for(int i=0;i<0x20;i++) {
+            ESCAPES[i] = String.format("\\u%04x", i).getBytes(StandardCharsets.US_ASCII);
+        }
+        ESCAPES['"'] = "\\\"".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\\'] = "\\\\".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\t'] = "\\t".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\b'] = "\\b".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\n'] = "\\n".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\r'] = "\\r".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\f'] = "\\f".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int count;
+    private int depth;
+    /**
+     * 按位记录每一层是否已经有元素, 用于输出逗号
+     */
+    private long nonEmptyBits;
+    private boolean afterName;
+
+    /**
+     * 最近格式化的时间(秒), 同一秒内的时间直接复制
+     */
+    private long cachedSecond = Long.MIN_VALUE;
+    private byte[] cachedDateTime = new byte[19];
+
+    public JsonStreamWriter() {
+        this(1024);
+    }
+
+    public JsonStreamWriter(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    /**
+     * 返回当前线程重用的实例, 已清空
+     */
+    public static JsonStreamWriter local() {
+        JsonStreamWriter result = localWriters.get();
+        if ( result.buf.length>MAX_RETAINED_SIZE ) {
+            result.buf = new byte[1024];
+        }
+        result.reset();
+        return result;
+    }
+
+    /**
+     * 清空缓冲区和嵌套状态
+     */
+    public JsonStreamWriter reset() {
+        count = 0;
+        depth = 0;
+        nonEmptyBits = 0;
+        afterName = false;
+        return this;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 输出已缓存的内容并清空缓冲区, 嵌套状态保留, 用于分段输出大的数组
+     */
+    public void flushTo(OutputStream os) throws IOException {
+        os.write(buf, 0, count);
+        count = 0;
+    }
+
+    public JsonStreamWriter beginObject() {
+        return begin('{');
+    }
+
+    public JsonStreamWriter endObject() {
+        return end('}');
+    }
+
+    public JsonStreamWriter beginArray() {
+        return begin('[');
+    }
+
+    public JsonStreamWriter endArray() {
+        return end(']');
+    }
+
+    public JsonStreamWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        ensure(1);
+        buf[count++] = ':';
+        afterName = true;
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() {
+        beforeValue();
+        writeBytes(NULL);
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) {
+        if ( value==null ) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) {
+        beforeValue();
+        writeBytes(value?TRUE:FALSE);
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(Number value) {
+        if ( value==null ) {
+            return nullValue();
+        }
+        if ( value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+            return value(value.longValue());
+        }
+        beforeValue();
+        writeAscii(value.toString());
+        return this;
+    }
+
+    /**
+     * 价格字符串, 格式与PriceUtil.long2str()相同
+     */
+    public JsonStreamWriter priceValue(long price) {
+        beforeValue();
+        ensure(26);
+        buf[count++] = '"';
+        count = PriceUtil.long2str(price, buf, count);
+        buf[count++] = '"';
+        return this;
+    }
+
+    /**
+     * 时间字符串, 格式与DateUtil.date2str(LocalDateTime)相同
+     */
+    public JsonStreamWriter value(LocalDateTime time) {
+        if ( time==null ) {
+            return nullValue();
+        }
+        int year = time.getYear();
+        if ( year<0 || year>9999 ) {
+            return value(DateUtil.date2str(time));
+        }
+        long second = time.toEpochSecond(ZoneOffset.UTC);
+        if ( second!=cachedSecond ) {
+            formatDateTime(time, cachedDateTime);
+            cachedSecond = second;
+        }
+        beforeValue();
+        ensure(21);
+        buf[count++] = '"';
+        System.arraycopy(cachedDateTime, 0, buf, count, cachedDateTime.length);
+        count += cachedDateTime.length;
+        buf[count++] = '"';
+        return this;
+    }
+
+    public JsonStreamWriter value(JsonStreamEnabled value) {
+        if ( value==null ) {
+            return nullValue();
+        }
+        value.toJson(this);
+        return this;
+    }
+
+    /**
+     * 输出Gson对象
+     */
+    public JsonStreamWriter value(JsonElement json) {
+        if ( json==null || json.isJsonNull() ) {
+            return nullValue();
+        }
+        if ( json.isJsonObject() ) {
+            beginObject();
+            for(Map.Entry<String, JsonElement> entry:((JsonObject)json).entrySet()) {
+                name(entry.getKey());
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+        if ( json.isJsonArray() ) {
+            beginArray();
+            for(JsonElement e:(JsonArray)json) {
+                value(e);
+            }
+            return endArray();
+        }
+        JsonPrimitive primitive = (JsonPrimitive)json;
+        if ( primitive.isNumber() ) {
+            return value(primitive.getAsNumber());
+        } else if ( primitive.isBoolean() ) {
+            return value(primitive.getAsBoolean());
+        }
+        return value(primitive.getAsString());
+    }
+
+    /**
+     * 输出任意对象, 结果与JsonUtil.object2json(value).toString()相同
+     */
+    public JsonStreamWriter value(Object value) {
+        if ( value==null ) {
+            return nullValue();
+        }
+        if ( value.getClass().isArray() ) {
+            beginArray();
+            Class compClass = value.getClass().getComponentType();
+            if ( compClass==int.class ) {
+                for(int v:(int[])value) {
+                    value(v);
+                }
+            } else if ( compClass==long.class ) {
+                for(long v:(long[])value) {
+                    value(v);
+                }
+            } else if ( compClass==double.class ) {
+                for(double v:(double[])value) {
+                    value(Double.valueOf(v));
+                }
+            } else if ( compClass==boolean.class ) {
+                for(boolean v:(boolean[])value) {
+                    value(v);
+                }
+            } else {
+                int len = Array.getLength(value);
+                for(int i=0;i<len;i++) {
+                    value(Array.get(value, i));
+                }
+            }
+            return endArray();
+        }
+        if ( value instanceof JsonElement ) {
+            return value((JsonElement)value);
+        } else if ( value instanceof JsonStreamEnabled ) {
+            return value((JsonStreamEnabled)value);
+        } else if ( value instanceof JsonEnabled ) {
+            return value(((JsonEnabled)value).toJson());
+        } else if ( value instanceof Number ) {
+            return value((Number)value);
+        } else if ( value instanceof Boolean ) {
+            return value(((Boolean)value).booleanValue());
+        } else if ( value instanceof Map ) {
+            beginObject();
+            Map map = (Map)value;
+            for(Object k:map.keySet()) {
+                name(k.toString());
+                value(map.get(k));
+            }
+            return endObject();
+        } else if ( value instanceof Iterable ) {
+            beginArray();
+            for(Iterator it=((Iterable)value).iterator(); it.hasNext();) {
+                value(it.next());
+            }
+            return endArray();
+        }
+        return value(value.toString());
+    }
+
+    private JsonStreamWriter begin(char c) {
+        beforeValue();
+        if ( depth>=MAX_DEPTH ) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        depth++;
+        nonEmptyBits &= ~(1L<<depth);
+        ensure(1);
+        buf[count++] = (byte)c;
+        return this;
+    }
+
+    private JsonStreamWriter end(char c) {
+        depth--;
+        ensure(1);
+        buf[count++] = (byte)c;
+        return this;
+    }
+
+    /**
+     * 同一层的第二个及以后的元素前输出逗号, name之后的值不需要
+     */
+    private void beforeValue() {
+        if ( afterName ) {
+            afterName = false;
+            return;
+        }
+        long bit = 1L<<depth;
+        if ( (nonEmptyBits&bit)!=0 ) {
+            ensure(1);
+            buf[count++] = ',';
+        } else {
+            nonEmptyBits |= bit;
+        }
+    }
+
+    private void writeString(String str) {
+        int len = str.length();
+        //最坏情况每个字符6字节(\\u00XX)
+        ensure(len*6+2);
+        byte[] buf = this.buf;
+        int pos = count;
+        buf[pos++] = '"';
+        for(int i=0;i<len;i++) {
+            char c = str.charAt(i);
+            if ( c<0x80 ) {
+                byte[] escape = ESCAPES[c];
+                if ( escape==null ) {
+                    buf[pos++] = (byte)c;
+                } else {
+                    System.arraycopy(escape, 0, buf, pos, escape.length);
+                    pos += escape.length;
+                }
+            } else if ( c<0x800 ) {
+                buf[pos++] = (byte)(0xc0|(c>>6));
+                buf[pos++] = (byte)(0x80|(c&0x3f));
+            } else if ( c==LINE_SEPARATOR || c==PARAGRAPH_SEPARATOR ) {
+                buf[pos++] = '\\';
+                buf[pos++] = 'u';
+                buf[pos++] = '2';
+                buf[pos++] = '0';
+                buf[pos++] = '2';
+                buf[pos++] = (byte)(c==LINE_SEPARATOR?'8':'9');
+            } else if ( Character.isSurrogate(c) ) {
+                if ( Character.isHighSurrogate(c) && i+1<len && Character.isLowSurrogate(str.charAt(i+1)) ) {
+                    int cp = Character.toCodePoint(c, str.charAt(++i));
+                    buf[pos++] = (byte)(0xf0|(cp>>18));
+                    buf[pos++] = (byte)(0x80|((cp>>12)&0x3f));
+                    buf[pos++] = (byte)(0x80|((cp>>6)&0x3f));
+                    buf[pos++] = (byte)(0x80|(cp&0x3f));
+                } else {
+                    //和String.getBytes(UTF_8)相同, 不成对的代理字符输出为?
+                    buf[pos++] = '?';
+                }
+            } else {
+                buf[pos++] = (byte)(0xe0|(c>>12));
+                buf[pos++] = (byte)(0x80|((c>>6)&0x3f));
+                buf[pos++] = (byte)(0x80|(c&0x3f));
+            }
+        }
+        buf[pos++] = '"';
+        count = pos;
+    }
+
+    private void writeLong(long v) {
+        if ( v==Long.MIN_VALUE ) {
+            writeAscii(Long.toString(v));
+            return;
+        }
+        ensure(20);
+        if ( v<0 ) {
+            buf[count++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for(long l=v;l>=10;l/=10) {
+            digits++;
+        }
+        for(int i=count+digits-1;i>=count;i--) {
+            buf[i] = (byte)('0'+(v%10));
+            v /= 10;
+        }
+        count += digits;
+    }
+
+    private void writeAscii(String str) {
+        int len = str.length();
+        ensure(len);
+        for(int i=0;i<len;i++) {
+            buf[count++] = (byte)str.charAt(i);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void ensure(int size) {
+        if ( count+size>buf.length ) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length*2, count+size));
+        }
+    }
+
+    /**
+     * yyyy-MM-dd HH:mm:ss
+     */
+    private static void formatDateTime(LocalDateTime time, byte[] bytes) {
+        int year = time.getYear();
+        bytes[0] = (byte)('0'+year/1000);
+        bytes[1] = (byte)('0'+year/100%10);
+        bytes[2] = (byte)('0'+year/10%10);
+        bytes[3] = (byte)('0'+year%10);
+        bytes[4] = '-';
+        format2(time.getMonthValue(), bytes, 5);
+        bytes[7] = '-';
+        format2(time.getDayOfMonth(), bytes, 8);
+        bytes[10] = ' ';
+        format2(time.getHour(), bytes, 11);
+        bytes[13] = ':';
+        format2(time.getMinute(), bytes, 14);
+        bytes[16] = ':';
+        format2(time.getSecond(), bytes, 17);
+    }
+
+    private static void format2(int v, byte[] bytes, int pos) {
+        bytes[pos] = (byte)('0'+v/10);
+        bytes[pos+1] = (byte)('0'+v%10);
+    }
+
+}
@@ -0,0 +1,186 @@
+package trader.common.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁, 记录时不分配内存的对数分桶延迟直方图(类似HdrHistogram).
+ * <BR>小于32的值每个值一个桶, 之后每个2的幂区间分为16个桶, 相对误差不超过1/16.
+ * <BR>可以多线程同时记录, 读取的百分位数是近似一致的快照.
+ */
+public class LatencyHistogram {
+
+    /**
+     * 两次采样之间新增记录的百分位数, 用于定时统计, 不影响直方图的累计数据.
+     * <BR>只在一个线程中调用
+     */
+    public static class IntervalSampler {
+        private final LatencyHistogram histogram;
+        private final long[] lastCounts = new long[BUCKET_COUNT];
+        private final long[] intervalCounts = new long[BUCKET_COUNT];
+        private long intervalCount;
+        private long intervalMax;
+
+        public IntervalSampler(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        /**
+         * 结束当前区间, 之后的查询返回这个区间的数据
+         */
+        public void sample() {
+            long count = 0;
+            int lastBucket = -1;
+            for(int i=0;i<BUCKET_COUNT;i++) {
+                long curr = histogram.counts.get(i);
+                //直方图被reset后重新计数
+                long delta = curr>=lastCounts[i]?curr-lastCounts[i]:curr;
+                lastCounts[i] = curr;
+                intervalCounts[i] = delta;
+                if ( delta>0 ) {
+                    count += delta;
+                    lastBucket = i;
+                }
+            }
+            intervalCount = count;
+            intervalMax = lastBucket<0?0:Math.min(bucketUpperBound(lastBucket), histogram.getMax());
+        }
+
+        public long getCount() {
+            return intervalCount;
+        }
+
+        /**
+         * 区间内最大值所在桶的上限, 不超过累计最大值
+         */
+        public long getMax() {
+            return intervalMax;
+        }
+
+        public long getValueAtPercentile(double percentile) {
+            return valueAtPercentile(intervalCounts, intervalCount, intervalMax, percentile);
+        }
+    }
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1<<SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT/2;
+    /**
+     * 覆盖0-Long.MAX_VALUE所需的桶数量
+     */
+    private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE)+1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * 记录一个值, 负值按0记录
+     */
+    public void record(long value) {
+        if ( value<0 ) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        long max = maxValue.get();
+        while( value>max && !maxValue.compareAndSet(max, value) ) {
+            max = maxValue.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        if ( count==0 ) {
+            return 0;
+        }
+        return ((double)totalValue.get())/count;
+    }
+
+    /**
+     * 返回百分位数, 值为所在桶的上限, 不超过最大值
+     *
+     * @param percentile 0-100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for(int i=0;i<BUCKET_COUNT;i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        return valueAtPercentile(snapshot, count, maxValue.get(), percentile);
+    }
+
+    /**
+     * 超过value所在桶上限的记录数量, 相对误差和百分位数一样不超过1/16
+     */
+    public long getCountAbove(long value) {
+        long result = 0;
+        for(int i=bucketIndex(Math.max(0, value))+1;i<BUCKET_COUNT;i++) {
+            result += counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 清除所有记录, 与record并发时可能丢失少量数据
+     */
+    public void reset() {
+        for(int i=0;i<BUCKET_COUNT;i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    private static long valueAtPercentile(long[] bucketCounts, long count, long max, double percentile) {
+        if ( count==0 ) {
+            return 0;
+        }
+        long threshold = (long)Math.ceil(Math.min(100, Math.max(0, percentile))*count/100);
+        if ( threshold<1 ) {
+            threshold = 1;
+        }
+        long accumulated = 0;
+        for(int i=0;i<BUCKET_COUNT;i++) {
+            accumulated += bucketCounts[i];
+            if ( accumulated>=threshold ) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int bucketIndex(long value) {
+        if ( value<SUB_BUCKET_COUNT ) {
+            return (int)value;
+        }
+        int msb = 63-Long.numberOfLeadingZeros(value);
+        int shift = msb-(SUB_BUCKET_BITS-1);
+        int subBucket = (int)(value>>>shift) - SUB_BUCKET_HALF_COUNT;
+        return SUB_BUCKET_COUNT + (shift-1)*SUB_BUCKET_HALF_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if ( index<SUB_BUCKET_COUNT ) {
+            return index;
+        }
+        int shift = (index-SUB_BUCKET_COUNT)/SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index-SUB_BUCKET_COUNT)%SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        long upper = ((subBucket+1)<<shift)-1;
+        return upper<0?Long.MAX_VALUE:upper;
+    }
+
+}
@@ -97,6 +97,50 @@ public class PriceUtil {
         return builder.toString();
     }
 
+    /**
+     * 与long2str(long)格式相同, 直接写入byte数组, 不分配对象.
+     * <BR>buf从pos开始至少需要24字节空间
+     *
+     * @return 写入后的位置
+     */
+    public static int long2str(long pl, byte[] buf, int pos) {
+        if ( pl==Long.MAX_VALUE || pl==Long.MIN_VALUE ) {
+            String str = long2str(pl);
+            for(int i=0;i<str.length();i++) {
+                buf[pos++] = (byte)str.charAt(i);
+            }
+            return pos;
+        }
+        if ( pl<0 ) {
+            buf[pos++] = '-';
+            pl = -1*pl;
+        }
+        //整数部分
+        long l = pl/10000;
+        int digits = 1;
+        for(long v=l;v>=10;v/=10) {
+            digits++;
+        }
+        for(int i=pos+digits-1;i>=pos;i--) {
+            buf[i] = (byte)('0'+(l%10));
+            l /= 10;
+        }
+        pos += digits;
+        //小数部分最少2位, 最多4位
+        int ps = (int)(pl%10000);
+        int d3 = ps/10%10, d4 = ps%10;
+        buf[pos++] = '.';
+        buf[pos++] = (byte)('0'+ps/1000);
+        buf[pos++] = (byte)('0'+ps/100%10);
+        if ( d4!=0 ) {
+            buf[pos++] = (byte)('0'+d3);
+            buf[pos++] = (byte)('0'+d4);
+        } else if ( d3!=0 ) {
+            buf[pos++] = (byte)('0'+d3);
+        }
+        return pos;
+    }
+
 
     public static String long2str(long p, int scale){
         if ( p==Long.MAX_VALUE ) {
@@ -19,6 +19,9 @@ public interface ServiceErrorConstants {
     public static final int ERRCODE_TRADE_SESSION_NOT_READY             = SERVICE_TRADE|0X0007;
     public static final int ERRCODE_TRADE_MODIFY_ORDER_FAILED           = SERVICE_TRADE|0X0008;
     public static final int ERRCODE_TRADE_CANCEL_ORDER_FAILED           = SERVICE_TRADE|0X0009;
+    public static final int ERRCODE_TRADE_THROTTLED                     = SERVICE_TRADE|0X000A;
+    public static final int ERRCODE_TRADE_SELF_CROSS                    = SERVICE_TRADE|0X000B;
+    public static final int ERRCODE_TRADE_DUPLICATE_ORDER               = SERVICE_TRADE|0X000C;
 
     //行情错误
     public static final int ERR_MD_PRODUCER_CREATE_FAILED               = SERVICE_MD|0X0001;
@@ -0,0 +1,36 @@
+package trader.service.data;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 延迟批量写入的KVStore.
+ * <BR>put只进入写队列, 由后台线程合并为批量写入; 写入完成前get可以读到最新值.
+ */
+public interface BatchedKVStore extends KVStore {
+
+    /**
+     * 批量写入的持久化方式
+     */
+    public static enum Durability{
+        /**
+         * 写WAL并fsync
+         */
+        SyncWAL,
+        /**
+         * 写WAL不fsync, 进程崩溃不丢数据, 操作系统崩溃可能丢失
+         */
+        AsyncWAL,
+        /**
+         * 不写WAL, 进程崩溃可能丢失未落盘的数据
+         */
+        NoWAL
+    }
+
+    public Durability getDurability();
+
+    /**
+     * 写入屏障, 返回的Future在此之前所有的put都写入完成后结束
+     */
+    public CompletableFuture<Void> flush();
+
+}
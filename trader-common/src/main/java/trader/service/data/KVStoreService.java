@@ -9,4 +9,11 @@ public interface KVStoreService {
      */
     public KVStore getStore(String prefix);
 
+    /**
+     * 返回延迟批量写入的KVStore, 持久化方式由名字空间配置决定
+     *
+     * @param prefix 自动加prefix前缀, 缺省null
+     */
+    public BatchedKVStore getBatchedStore(String prefix);
+
 }
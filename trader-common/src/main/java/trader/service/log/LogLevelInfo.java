@@ -3,6 +3,7 @@ package trader.service.log;
 public class LogLevelInfo {
     private String level;
     private boolean inherited;
+    private boolean async;
     public String getLevel() {
         return level;
     }
@@ -15,5 +16,11 @@ public class LogLevelInfo {
     public void setInherited(boolean inherited) {
         this.inherited = inherited;
     }
+    public boolean isAsync() {
+        return async;
+    }
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
 
 }
@@ -7,4 +7,9 @@ public interface LogService {
     public void setLevel(String category, String levelStr, boolean propagate);
 
     public void setListener(LogListener listener);
+
+    /**
+     * 运行时切换日志分类是否通过异步RingBuffer写出
+     */
+    public void setAsync(String category, boolean async);
 }
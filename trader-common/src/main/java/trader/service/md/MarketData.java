@@ -9,13 +9,14 @@ import com.google.gson.JsonObject;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.util.DateUtil;
 import trader.common.util.FormatUtil;
-import trader.common.util.JsonEnabled;
+import trader.common.util.JsonStreamEnabled;
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.PriceUtil;
 
 /**
  * 市场行情数据对象
  */
-public abstract class MarketData implements Cloneable, JsonEnabled {
+public abstract class MarketData implements Cloneable, JsonStreamEnabled {
 
     /**
      * Producer Id
@@ -62,6 +63,11 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
      */
     public long updateTimestamp;
 
+    /**
+     * 本地收到行情的System.nanoTime(), 用于延迟统计, 0代表未知
+     */
+    public long receiveNanoTime;
+
     /**
      * 昨收
      */
@@ -159,17 +165,22 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
 
     protected void cloneImpl(MarketData marketDataToClone){
         marketDataToClone.producerId = producerId;
+        marketDataToClone.tradingDay = tradingDay;
         marketDataToClone.instrumentId = instrumentId;
         marketDataToClone.volume = volume;
         marketDataToClone.turnover = turnover;
         marketDataToClone.openInterest = openInterest;
         marketDataToClone.lastPrice = lastPrice;
         marketDataToClone.updateTime = updateTime;
+        marketDataToClone.updateTimestamp = updateTimestamp;
+        marketDataToClone.receiveNanoTime = receiveNanoTime;
         marketDataToClone.preClosePrice = preClosePrice;
         marketDataToClone.openPrice = openPrice;
         marketDataToClone.highestPrice = highestPrice;
         marketDataToClone.lowestPrice = lowestPrice;
         marketDataToClone.averagePrice = averagePrice;
+        marketDataToClone.upperLimitPrice = upperLimitPrice;
+        marketDataToClone.lowerLimitPrice = lowerLimitPrice;
         marketDataToClone.depth = depth;
         marketDataToClone.bidPrices = bidPrices;
         marketDataToClone.bidVolumes = bidVolumes;
@@ -239,6 +250,58 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
         return json;
     }
 
+    @Override
+    public void toJson(JsonStreamWriter writer) {
+        writer.beginObject()
+            .name("instrumentId").value(instrumentId.toString())
+            .name("producerId").value(producerId)
+            .name("tradingDay").value(tradingDay)
+            .name("volume").value(volume)
+            .name("openInterest").value(openInterest)
+            .name("updateTime").value(updateTime)
+            .name("updateTimestamp").value(updateTimestamp)
+            .name("turnover").priceValue(turnover)
+            .name("lastPrice").priceValue(lastPrice)
+            .name("openPrice").priceValue(openPrice)
+            .name("highestPrice").priceValue(highestPrice)
+            .name("lowestPrice").priceValue(lowestPrice)
+            .name("averagePrice").priceValue(averagePrice);
+
+        writer.name("bidPrices").beginArray();
+        for(int i=0;i<depth;i++) {
+            writer.priceValue(bidPrices[i]);
+        }
+        writer.endArray().name("bidVolumes").beginArray();
+        for(int i=0;i<depth;i++) {
+            writer.value(bidVolumes[i]);
+        }
+        writer.endArray();
+        if ( bidCounts!=null ) {
+            writer.name("bidCounts").beginArray();
+            for(int i=0;i<depth;i++) {
+                writer.value(bidCounts[i]);
+            }
+            writer.endArray();
+        }
+        writer.name("askPrices").beginArray();
+        for(int i=0;i<depth;i++) {
+            writer.priceValue(askPrices[i]);
+        }
+        writer.endArray().name("askVolumes").beginArray();
+        for(int i=0;i<depth;i++) {
+            writer.value(askVolumes[i]);
+        }
+        writer.endArray();
+        if ( askCounts!=null ) {
+            writer.name("askCounts").beginArray();
+            for(int i=0;i<depth;i++) {
+                writer.value(askCounts[i]);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
     @Override
     public String toString() {
         return "MD["+instrumentId+" "+updateTime+" "+PriceUtil.long2str(lastPrice)+" v "+volume+"]";
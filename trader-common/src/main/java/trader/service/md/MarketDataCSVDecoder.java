@@ -0,0 +1,22 @@
+package trader.service.md;
+
+import java.time.LocalDate;
+
+/**
+ * 从CSV文本行直接解析行情数据, 不经过中间的原始行情对象和String[]
+ */
+public interface MarketDataCSVDecoder {
+
+    /**
+     * 检查CSV列名是否和解析器支持的格式一致
+     */
+    public boolean accept(String[] columns);
+
+    /**
+     * 解析一行CSV行情数据
+     *
+     * @return 解析后的行情数据, 无法直接解析时返回null, 调用者需要使用CSVMarshallHelper重新解析
+     */
+    public MarketData decode(String csvLine, LocalDate tradingDay);
+
+}
@@ -14,6 +14,11 @@ public interface MarketDataProducer<T> extends JsonEnabled {
 
     public static final String PROVIDER_CTP = "ctp";
 
+    /**
+     * 压力测试用的随机/回放行情
+     */
+    public static final String PROVIDER_SYNTHETIC = "synthetic";
+
     /**
      * 唯一ID
      */
@@ -13,4 +13,12 @@ public interface MarketDataProducerFactory {
     public MarketDataProducer create(BeansContainer beansContainer, Map configMap);
 
     public CSVMarshallHelper createCSVMarshallHelper();
+
+    /**
+     * 创建CSV行情数据的直接解析器, 不支持返回null.
+     * <BR>缺省不支持, 已有的扩展实现不需要修改
+     */
+    public default MarketDataCSVDecoder createCSVDecoder(String producerId) {
+        return null;
+    }
 }
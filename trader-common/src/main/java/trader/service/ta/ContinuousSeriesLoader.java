@@ -0,0 +1,536 @@
+package trader.service.ta;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.LongUnaryOperator;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.num.Num;
+
+import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.ExchangeableData.DataInfo;
+import trader.common.exchangeable.Future;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.tick.PriceLevel;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.StringUtil;
+import trader.service.md.MarketData;
+
+/**
+ * 主力连续合约的行情数据加载.
+ * <BR>按交易日确定当天的主力合约, 将各个合约的MIN1 Bar和TICK拼接为一个连续的序列, 并按照换月时新旧合约的价差向前复权.
+ * <BR>主力合约根据前一交易日各合约的持仓量/成交量确定, 只向后换月; 也可以使用换月日历直接指定.
+ */
+public class ContinuousSeriesLoader {
+
+    /**
+     * 复权方式
+     */
+    public static enum AdjustMode{
+        /**
+         * 不复权, 使用各合约原始价格
+         */
+        None
+        /**
+         * 差价复权: 换月之前的价格加上新旧合约的价差
+         */
+        ,Difference
+        /**
+         * 比例复权: 换月之前的价格乘以新旧合约的价格比例
+         */
+        ,Ratio
+    }
+
+    /**
+     * 判断主力合约的依据
+     */
+    public static enum RollBy{
+        OpenInterest
+        ,Volume
+    }
+
+    /**
+     * 一段连续使用同一主力合约的交易日
+     */
+    public static class Segment{
+        private Exchangeable contract;
+        private LocalDate beginTradingDay;
+        private LocalDate endTradingDay;
+        private long priceDiff;
+        private double priceRatio = 1.0;
+
+        Segment(Exchangeable contract, LocalDate beginTradingDay){
+            this.contract = contract;
+            this.beginTradingDay = beginTradingDay;
+            this.endTradingDay = beginTradingDay;
+        }
+
+        public Exchangeable getContract() {
+            return contract;
+        }
+
+        public LocalDate getBeginTradingDay() {
+            return beginTradingDay;
+        }
+
+        public LocalDate getEndTradingDay() {
+            return endTradingDay;
+        }
+
+        /**
+         * 差价复权时需要加上的价差
+         */
+        public long getPriceDiff() {
+            return priceDiff;
+        }
+
+        /**
+         * 比例复权时需要乘以的比例
+         */
+        public double getPriceRatio() {
+            return priceRatio;
+        }
+
+        @Override
+        public String toString() {
+            return contract+" "+DateUtil.date2str(beginTradingDay)+"-"+DateUtil.date2str(endTradingDay);
+        }
+    }
+
+    /**
+     * 合约某个交易日的成交量和收市持仓量, 以及收盘价
+     */
+    private static class DayStats{
+        long volume;
+        long openInterest;
+        long openPrice;
+        long closePrice;
+    }
+
+    private BeansContainer beansContainer;
+    private ExchangeableData data;
+    private Future exchangeable;
+    private PriceLevel level;
+    private LocalDate startTradingDay;
+    private LocalDate endTradingDay;
+    private LocalDateTime endTime;
+    private AdjustMode adjustMode = AdjustMode.None;
+    private RollBy rollBy = RollBy.OpenInterest;
+    /**
+     * 换月日历: 起始交易日->主力合约
+     */
+    private TreeMap<LocalDate, Exchangeable> rollCalendar;
+
+    private Map<Exchangeable, Map<LocalDate, DayStats>> dayStats = new HashMap<>();
+    private List<Segment> segments;
+
+    public ContinuousSeriesLoader(BeansContainer beansContainer, ExchangeableData data) {
+        this.beansContainer = beansContainer;
+        this.data = data;
+    }
+
+    /**
+     * 设置主力连续合约, 例如 ru888
+     */
+    public ContinuousSeriesLoader setExchangeable(Exchangeable e) {
+        if ( !Future.isContinuous(e) ) {
+            throw new IllegalArgumentException(e+" is not a continuous future");
+        }
+        this.exchangeable = (Future)e;
+        segments = null;
+        return this;
+    }
+
+    public ContinuousSeriesLoader setLevel(PriceLevel level) {
+        this.level = level;
+        return this;
+    }
+
+    public ContinuousSeriesLoader setStartTradingDay(LocalDate d) {
+        this.startTradingDay = d;
+        segments = null;
+        return this;
+    }
+
+    public ContinuousSeriesLoader setEndTradingDay(LocalDate d) {
+        this.endTradingDay = d;
+        segments = null;
+        return this;
+    }
+
+    /**
+     * 设置最后一个交易日的最后的市场时间, 缺省为不限制
+     */
+    public ContinuousSeriesLoader setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+        return this;
+    }
+
+    public ContinuousSeriesLoader setAdjustMode(AdjustMode adjustMode) {
+        this.adjustMode = adjustMode;
+        return this;
+    }
+
+    public ContinuousSeriesLoader setRollBy(RollBy rollBy) {
+        this.rollBy = rollBy;
+        segments = null;
+        return this;
+    }
+
+    /**
+     * 设置换月日历, 每个交易日使用不晚于该日的最后一个合约
+     */
+    public ContinuousSeriesLoader setRollCalendar(Map<LocalDate, Exchangeable> rollCalendar) {
+        this.rollCalendar = null;
+        if ( rollCalendar!=null && !rollCalendar.isEmpty() ) {
+            this.rollCalendar = new TreeMap<>(rollCalendar);
+        }
+        segments = null;
+        return this;
+    }
+
+    /**
+     * 使用文本设置换月日历, 格式为: 20181203=ru1905,20181206=ru1909
+     */
+    public ContinuousSeriesLoader setRollCalendar(String text) {
+        Map<LocalDate, Exchangeable> rollCalendar = new TreeMap<>();
+        for(String entry:StringUtil.split(text, ",|;|\r|\n")) {
+            String[] kv = StringUtil.split(entry, "=");
+            if ( kv.length!=2 ) {
+                throw new IllegalArgumentException("Invalid roll calendar entry: "+entry);
+            }
+            Exchangeable contract = Exchangeable.fromString(exchangeable.exchange().name(), kv[1]);
+            rollCalendar.put(DateUtil.str2localdate(kv[0]), contract);
+        }
+        return setRollCalendar(rollCalendar);
+    }
+
+    /**
+     * 返回主力合约分段, 按交易日顺序排列
+     */
+    public List<Segment> getSegments() throws IOException {
+        if ( segments==null ) {
+            segments = detectSegments();
+            computeAdjustments(segments);
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * 返回交易日的主力合约, 不在加载范围内返回null
+     */
+    public Exchangeable getContract(LocalDate tradingDay) throws IOException {
+        Segment segment = getSegment(tradingDay);
+        if ( segment==null ) {
+            return null;
+        }
+        return segment.contract;
+    }
+
+    /**
+     * 加载拼接后的K线数据, Bar的价格按复权方式调整
+     */
+    public LeveledTimeSeries load() throws IOException {
+        if ( endTradingDay==null ) {
+            endTradingDay = LocalDate.now();
+        }
+        List<Bar> bars = new ArrayList<>();
+        //周线跨越换月, 先加载日线复权后再汇总
+        PriceLevel segmentLevel = level==PriceLevel.WEEK?PriceLevel.DAY:level;
+        for(Segment segment:getSegments()) {
+            TimeSeriesLoader loader = new TimeSeriesLoader(beansContainer, data)
+                    .setExchangeable(segment.contract)
+                    .setLevel(segmentLevel)
+                    .setStartTradingDay(segment.beginTradingDay)
+                    .setEndTradingDay(segment.endTradingDay)
+                    .setEndTime(endTime);
+            LeveledTimeSeries series = loader.load();
+            LongUnaryOperator priceAdjuster = getPriceAdjuster(segment);
+            for(int i=0;i<series.getBarCount();i++) {
+                bars.add(adjustBar(series.getBar(i), priceAdjuster));
+            }
+        }
+        if ( level==PriceLevel.WEEK ) {
+            TreeMap<LocalDate, Bar> dayBars = new TreeMap<>();
+            for(Bar bar:bars) {
+                dayBars.put(bar.getEndTime().toLocalDate(), bar);
+            }
+            bars = new ArrayList<>(DayBarAggregator.dayToWeekBars(dayBars).values());
+        }
+        BaseLeveledTimeSeries result = new BaseLeveledTimeSeries(exchangeable.name()+"-"+level, level, LongNum::valueOf);
+        for(Bar bar:bars) {
+            result.addBar(bar);
+        }
+        return result;
+    }
+
+    /**
+     * 加载某交易日主力合约的TICK数据, 价格按复权方式调整, instrumentId替换为主力连续合约
+     */
+    public List<MarketData> loadMarketDataTicks(LocalDate tradingDay, DataInfo tickDataInfo) throws IOException {
+        Segment segment = getSegment(tradingDay);
+        if ( segment==null ) {
+            return Collections.emptyList();
+        }
+        TimeSeriesLoader loader = new TimeSeriesLoader(beansContainer, data)
+                .setExchangeable(segment.contract)
+                .setEndTime(endTime);
+        List<MarketData> ticks = loader.loadMarketDataTicks(tradingDay, tickDataInfo);
+        LongUnaryOperator priceAdjuster = getPriceAdjuster(segment);
+        List<MarketData> result = new ArrayList<>(ticks.size());
+        for(MarketData tick:ticks) {
+            result.add(adjustTick(tick, priceAdjuster));
+        }
+        return result;
+    }
+
+    private Segment getSegment(LocalDate tradingDay) throws IOException {
+        for(Segment segment:getSegments()) {
+            if ( tradingDay.compareTo(segment.beginTradingDay)>=0 && tradingDay.compareTo(segment.endTradingDay)<=0 ) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 逐个交易日确定主力合约, 相同合约的连续交易日合并为一段
+     */
+    private List<Segment> detectSegments() throws IOException {
+        if ( endTradingDay==null ) {
+            endTradingDay = LocalDate.now();
+        }
+        List<Segment> result = new ArrayList<>();
+        Set<Exchangeable> expiredContracts = new HashSet<>();
+        Segment curr = null;
+        LocalDate tradingDay = startTradingDay;
+        if ( !MarketDayUtil.isMarketDay(exchangeable.exchange(), tradingDay) ) {
+            tradingDay = MarketDayUtil.nextMarketDay(exchangeable.exchange(), tradingDay);
+        }
+        while(tradingDay.compareTo(endTradingDay)<=0) {
+            Exchangeable contract = null;
+            if ( rollCalendar!=null ) {
+                Map.Entry<LocalDate, Exchangeable> entry = rollCalendar.floorEntry(tradingDay);
+                if ( entry!=null ) {
+                    contract = entry.getValue();
+                }
+            } else {
+                contract = detectPrimaryContract(tradingDay, curr!=null?curr.contract:null, expiredContracts);
+            }
+            if ( contract!=null ) {
+                if ( curr==null || !curr.contract.equals(contract) ) {
+                    if ( curr!=null ) {
+                        expiredContracts.add(curr.contract);
+                    }
+                    curr = new Segment(contract, tradingDay);
+                    result.add(curr);
+                }
+                curr.endTradingDay = tradingDay;
+            }
+            tradingDay = MarketDayUtil.nextMarketDay(exchangeable.exchange(), tradingDay);
+        }
+        return result;
+    }
+
+    /**
+     * 使用前一交易日持仓量/成交量最大的合约作为当天的主力合约, 只向后换月.
+     * <BR>前一交易日没有数据时使用当天的数据.
+     */
+    private Exchangeable detectPrimaryContract(LocalDate tradingDay, Exchangeable currContract, Set<Exchangeable> expiredContracts) throws IOException {
+        LocalDate prevTradingDay = MarketDayUtil.prevMarketDay(exchangeable.exchange(), tradingDay);
+        Exchangeable result = selectContract(prevTradingDay, tradingDay, expiredContracts);
+        if ( result==null ) {
+            result = selectContract(tradingDay, tradingDay, expiredContracts);
+        }
+        if ( result==null ) {
+            return currContract;
+        }
+        //当前主力合约今天仍有数据, 且新合约指标不超过当前合约时不换月
+        if ( currContract!=null && !result.equals(currContract) && getDayStats(currContract, tradingDay)!=null ) {
+            DayStats currStats = getDayStats(currContract, prevTradingDay);
+            DayStats resultStats = getDayStats(result, prevTradingDay);
+            if ( currStats!=null && resultStats!=null && getRollValue(resultStats)<=getRollValue(currStats) ) {
+                result = currContract;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从statsDay的数据中选择指标最大且在tradingDay有数据的合约
+     */
+    private Exchangeable selectContract(LocalDate statsDay, LocalDate tradingDay, Set<Exchangeable> expiredContracts) throws IOException {
+        Exchangeable result = null;
+        long resultValue = -1;
+        for(Exchangeable contract:getCandidateContracts(tradingDay)) {
+            if ( expiredContracts.contains(contract) ) {
+                continue;
+            }
+            DayStats stats = getDayStats(contract, statsDay);
+            if ( stats==null || getDayStats(contract, tradingDay)==null ) {
+                continue;
+            }
+            long value = getRollValue(stats);
+            if ( value>resultValue ) {
+                result = contract;
+                resultValue = value;
+            }
+        }
+        return result;
+    }
+
+    private long getRollValue(DayStats stats) {
+        if ( rollBy==RollBy.Volume ) {
+            return stats.volume;
+        }
+        return stats.openInterest;
+    }
+
+    private List<Future> getCandidateContracts(LocalDate tradingDay){
+        return Future.instrumentsFromMarketDay(tradingDay, exchangeable.exchange().name()+"."+exchangeable.commodity());
+    }
+
+    /**
+     * 从MIN1数据中计算合约某交易日的统计数据, 没有数据返回null
+     */
+    private DayStats getDayStats(Exchangeable contract, LocalDate tradingDay) throws IOException {
+        Map<LocalDate, DayStats> contractStats = dayStats.get(contract);
+        if ( contractStats==null ) {
+            contractStats = new HashMap<>();
+            dayStats.put(contract, contractStats);
+        }
+        if ( contractStats.containsKey(tradingDay) ) {
+            return contractStats.get(tradingDay);
+        }
+        DayStats result = null;
+        if ( data.exists(contract, ExchangeableData.MIN1, tradingDay) ) {
+            CSVDataSet csvDataSet = CSVUtil.parse(data.load(contract, ExchangeableData.MIN1, tradingDay));
+            while(csvDataSet.next()) {
+                if ( result==null ) {
+                    result = new DayStats();
+                    result.openPrice = csvDataSet.getPrice(ExchangeableData.COLUMN_OPEN);
+                }
+                result.volume += csvDataSet.getLong(ExchangeableData.COLUMN_VOLUME);
+                result.openInterest = csvDataSet.getLong(ExchangeableData.COLUMN_OPENINT);
+                result.closePrice = csvDataSet.getPrice(ExchangeableData.COLUMN_CLOSE);
+            }
+        }
+        contractStats.put(tradingDay, result);
+        return result;
+    }
+
+    /**
+     * 从最后一段向前计算累计的复权价差和比例.
+     * <BR>换月时使用旧合约最后一个交易日的收盘价, 新合约在该日没有数据时使用新合约第一个交易日的开盘价
+     */
+    private void computeAdjustments(List<Segment> segments) throws IOException {
+        long priceDiff = 0;
+        double priceRatio = 1.0;
+        for(int i=segments.size()-1;i>=0;i--) {
+            Segment segment = segments.get(i);
+            if ( i<segments.size()-1 ) {
+                Segment next = segments.get(i+1);
+                DayStats oldStats = getDayStats(segment.contract, segment.endTradingDay);
+                DayStats newStats = getDayStats(next.contract, segment.endTradingDay);
+                long oldPrice = 0, newPrice = 0;
+                if ( oldStats!=null ) {
+                    oldPrice = oldStats.closePrice;
+                }
+                if ( newStats!=null ) {
+                    newPrice = newStats.closePrice;
+                } else {
+                    newStats = getDayStats(next.contract, next.beginTradingDay);
+                    if ( newStats!=null ) {
+                        newPrice = newStats.openPrice;
+                    }
+                }
+                if ( oldPrice!=0 && newPrice!=0 ) {
+                    priceDiff += newPrice-oldPrice;
+                    priceRatio *= ((double)newPrice)/oldPrice;
+                }
+            }
+            segment.priceDiff = priceDiff;
+            segment.priceRatio = priceRatio;
+        }
+    }
+
+    /**
+     * 价格调整, 0和Long.MAX_VALUE表示没有价格(例如涨跌停时一侧没有报价), 保持不变
+     */
+    private LongUnaryOperator getPriceAdjuster(Segment segment) {
+        switch(adjustMode) {
+        case Difference:
+            long priceDiff = segment.priceDiff;
+            return (long price)->{ return isEmptyPrice(price)?price:price+priceDiff; };
+        case Ratio:
+            double priceRatio = segment.priceRatio;
+            return (long price)->{ return isEmptyPrice(price)?price:Math.round(price*priceRatio); };
+        default:
+            return (long price)->{ return price; };
+        }
+    }
+
+    private static boolean isEmptyPrice(long price) {
+        return price==0 || price==Long.MAX_VALUE;
+    }
+
+    private Bar adjustBar(Bar bar, LongUnaryOperator priceAdjuster) {
+        if ( bar instanceof FutureBar ) {
+            return ((FutureBar)bar).adjust(priceAdjuster, (MarketData tick)->{
+                return adjustTick(tick, priceAdjuster);
+            });
+        }
+        return new BaseBar(bar.getTimePeriod(), bar.getEndTime(),
+                adjustPrice(bar.getOpenPrice(), priceAdjuster),
+                adjustPrice(bar.getMaxPrice(), priceAdjuster),
+                adjustPrice(bar.getMinPrice(), priceAdjuster),
+                adjustPrice(bar.getClosePrice(), priceAdjuster),
+                bar.getVolume(),
+                bar.getAmount());
+    }
+
+    private static Num adjustPrice(Num price, LongUnaryOperator priceAdjuster) {
+        return new LongNum(priceAdjuster.applyAsLong(((LongNum)price).rawValue()));
+    }
+
+    private MarketData adjustTick(MarketData tick, LongUnaryOperator priceAdjuster) {
+        MarketData result = tick.clone();
+        result.instrumentId = exchangeable;
+        result.lastPrice = priceAdjuster.applyAsLong(tick.lastPrice);
+        result.preClosePrice = priceAdjuster.applyAsLong(tick.preClosePrice);
+        result.openPrice = priceAdjuster.applyAsLong(tick.openPrice);
+        result.highestPrice = priceAdjuster.applyAsLong(tick.highestPrice);
+        result.lowestPrice = priceAdjuster.applyAsLong(tick.lowestPrice);
+        result.averagePrice = priceAdjuster.applyAsLong(tick.averagePrice);
+        result.upperLimitPrice = priceAdjuster.applyAsLong(tick.upperLimitPrice);
+        result.lowerLimitPrice = priceAdjuster.applyAsLong(tick.lowerLimitPrice);
+        if ( tick.bidPrices!=null ) {
+            result.bidPrices = new long[tick.bidPrices.length];
+            for(int i=0;i<tick.bidPrices.length;i++) {
+                result.bidPrices[i] = priceAdjuster.applyAsLong(tick.bidPrices[i]);
+            }
+        }
+        if ( tick.askPrices!=null ) {
+            result.askPrices = new long[tick.askPrices.length];
+            for(int i=0;i<tick.askPrices.length;i++) {
+                result.askPrices[i] = priceAdjuster.applyAsLong(tick.askPrices[i]);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,162 @@
+package trader.service.ta;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ta4j.core.Bar;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+
+/**
+ * 由MIN1 Bar汇总日线/周线.
+ * <BR>按交易所的交易日划分, 夜市属于下一个交易日; 不在交易时间段内的Bar被忽略.
+ * <BR>汇总结果保存在ExchangeableData.DAY_BAR中, 每个品种一个文件, 归档时增量更新.
+ */
+public class DayBarAggregator {
+
+    /**
+     * 将连续的MIN1 Bar按交易日汇总为日线
+     *
+     * @return 交易日->日线
+     */
+    public static TreeMap<LocalDate, FutureBar> min1ToDayBars(Exchangeable exchangeable, List<Bar> min1Bars) {
+        TreeMap<LocalDate, FutureBar> result = new TreeMap<>();
+        ExchangeableTradingTimes tradingTimes = null;
+        List<Bar> dayBars = new ArrayList<>();
+        for(Bar bar:min1Bars) {
+            LocalDateTime beginTime = bar.getBeginTime().toLocalDateTime();
+            if ( tradingTimes==null || !contains(tradingTimes, beginTime) ) {
+                ExchangeableTradingTimes barTradingTimes = detectTradingTimes(exchangeable, beginTime);
+                if ( barTradingTimes==null ) {
+                    continue;
+                }
+                if ( !dayBars.isEmpty() ) {
+                    result.put(tradingTimes.getTradingDay(), FutureBar.fromBars(0, tradingTimes, dayBars));
+                    dayBars = new ArrayList<>();
+                }
+                tradingTimes = barTradingTimes;
+            }
+            dayBars.add(bar);
+        }
+        if ( !dayBars.isEmpty() ) {
+            result.put(tradingTimes.getTradingDay(), FutureBar.fromBars(0, tradingTimes, dayBars));
+        }
+        return result;
+    }
+
+    /**
+     * 将日线按自然周汇总为周线, 周线的交易日为该周的周一
+     */
+    public static TreeMap<LocalDate, FutureBar> dayToWeekBars(Map<LocalDate, ? extends Bar> dayBars) {
+        TreeMap<LocalDate, FutureBar> result = new TreeMap<>();
+        LocalDate week = null;
+        List<Bar> weekBars = new ArrayList<>();
+        for(Map.Entry<LocalDate, ? extends Bar> entry:(new TreeMap<>(dayBars)).entrySet()) {
+            LocalDate barWeek = entry.getKey().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            if ( week!=null && !week.equals(barWeek) ) {
+                result.put(week, FutureBar.fromBars(0, null, weekBars));
+                weekBars = new ArrayList<>();
+            }
+            week = barWeek;
+            weekBars.add(entry.getValue());
+        }
+        if ( !weekBars.isEmpty() ) {
+            result.put(week, FutureBar.fromBars(0, null, weekBars));
+        }
+        return result;
+    }
+
+    /**
+     * 加载已保存的日线
+     */
+    public static TreeMap<LocalDate, FutureBar> load(ExchangeableData data, Exchangeable exchangeable) throws IOException {
+        TreeMap<LocalDate, FutureBar> result = new TreeMap<>();
+        if ( !data.exists(exchangeable, ExchangeableData.DAY_BAR, null) ) {
+            return result;
+        }
+        CSVDataSet csvDataSet = CSVUtil.parse(data.load(exchangeable, ExchangeableData.DAY_BAR, null));
+        while(csvDataSet.next()) {
+            LocalDate tradingDay = DateUtil.str2localdate(csvDataSet.get(ExchangeableData.COLUMN_DATE));
+            result.put(tradingDay, FutureBar.fromCSV(csvDataSet, exchangeable));
+        }
+        return result;
+    }
+
+    /**
+     * 保存日线, 按交易日排序
+     */
+    public static void save(ExchangeableData data, Exchangeable exchangeable, Map<LocalDate, FutureBar> dayBars) throws IOException {
+        CSVWriter csvWriter = new CSVWriter(ExchangeableData.DAY_BAR.getColumns());
+        for(Map.Entry<LocalDate, FutureBar> entry:(new TreeMap<>(dayBars)).entrySet()) {
+            csvWriter.next();
+            entry.getValue().save(csvWriter);
+            csvWriter.set(ExchangeableData.COLUMN_DATE, DateUtil.date2str(entry.getKey()));
+        }
+        data.save(exchangeable, ExchangeableData.DAY_BAR, null, csvWriter.toString());
+    }
+
+    /**
+     * 从MIN1数据汇总指定交易日的日线, 合并到已保存的日线中.
+     *
+     * @return 新增或更新的日线数量
+     */
+    public static int update(ExchangeableData data, Exchangeable exchangeable, Collection<LocalDate> tradingDays) throws IOException {
+        TreeMap<LocalDate, FutureBar> dayBars = load(data, exchangeable);
+        int result = 0;
+        for(LocalDate tradingDay:tradingDays) {
+            if ( !data.exists(exchangeable, ExchangeableData.MIN1, tradingDay) ) {
+                continue;
+            }
+            List<Bar> min1Bars = new ArrayList<>();
+            CSVDataSet csvDataSet = CSVUtil.parse(data.load(exchangeable, ExchangeableData.MIN1, tradingDay));
+            while(csvDataSet.next()) {
+                min1Bars.add(FutureBar.fromCSV(csvDataSet, exchangeable));
+            }
+            FutureBar dayBar = min1ToDayBars(exchangeable, min1Bars).get(tradingDay);
+            if ( dayBar!=null ) {
+                dayBars.put(tradingDay, dayBar);
+                result++;
+            }
+        }
+        if ( result>0 ) {
+            save(data, exchangeable, dayBars);
+        }
+        return result;
+    }
+
+    private static boolean contains(ExchangeableTradingTimes tradingTimes, LocalDateTime time) {
+        LocalDateTime[] marketTimes = tradingTimes.getMarketTimes();
+        return time.compareTo(marketTimes[0])>=0 && time.compareTo(marketTimes[marketTimes.length-1])<0;
+    }
+
+    /**
+     * 返回时间所属的交易日, 夜市凌晨(周六凌晨)的时间也能找到下一个交易日
+     */
+    private static ExchangeableTradingTimes detectTradingTimes(Exchangeable exchangeable, LocalDateTime time) {
+        ExchangeableTradingTimes result = exchangeable.exchange().detectTradingTimes(exchangeable, time);
+        if ( result==null || !contains(result, time) ) {
+            LocalDate nextTradingDay = MarketDayUtil.nextMarketDay(exchangeable.exchange(), time.toLocalDate());
+            result = exchangeable.exchange().getTradingTimes(exchangeable, nextTradingDay);
+        }
+        if ( result==null || !contains(result, time) ) {
+            return null;
+        }
+        return result;
+    }
+
+}
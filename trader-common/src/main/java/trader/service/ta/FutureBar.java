@@ -5,7 +5,11 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
+import java.util.function.UnaryOperator;
 
+import org.ta4j.core.Bar;
 import org.ta4j.core.num.Num;
 
 import trader.common.exchangeable.Exchangeable;
@@ -242,6 +246,49 @@ public class FutureBar implements Bar2 {
         timePeriod = Duration.of(endMktTime-beginMktTime, ChronoUnit.MILLIS);
     }
 
+    /**
+     * 复制一个价格调整后的Bar, 用于主力连续合约的复权
+     */
+    FutureBar adjust(LongUnaryOperator priceAdjuster, UnaryOperator<MarketData> tickAdjuster) {
+        FutureBar result = new FutureBar();
+        result.index = index;
+        result.timePeriod = timePeriod;
+        result.beginTime = beginTime;
+        result.endTime = endTime;
+        result.openPrice = adjust(openPrice, priceAdjuster);
+        result.closePrice = adjust(closePrice, priceAdjuster);
+        result.maxPrice = adjust(maxPrice, priceAdjuster);
+        result.minPrice = adjust(minPrice, priceAdjuster);
+        result.avgPrice = adjust((LongNum)avgPrice, priceAdjuster);
+        result.mktAvgPrice = adjust(mktAvgPrice, priceAdjuster);
+        result.amount = amount;
+        result.volume = volume;
+        result.trades = trades;
+        result.beginMktTime = beginMktTime;
+        result.endMktTime = endMktTime;
+        result.openInterest = openInterest;
+        result.mktTimes = mktTimes;
+        result.openTick = adjust(openTick, tickAdjuster);
+        result.closeTick = closeTick==openTick?result.openTick:adjust(closeTick, tickAdjuster);
+        result.maxTick = maxTick==openTick?result.openTick:(maxTick==closeTick?result.closeTick:adjust(maxTick, tickAdjuster));
+        result.minTick = minTick==openTick?result.openTick:(minTick==closeTick?result.closeTick:adjust(minTick, tickAdjuster));
+        return result;
+    }
+
+    private static LongNum adjust(LongNum price, LongUnaryOperator priceAdjuster) {
+        if ( price==null ) {
+            return null;
+        }
+        return new LongNum(priceAdjuster.applyAsLong(price.rawValue()));
+    }
+
+    private static MarketData adjust(MarketData tick, UnaryOperator<MarketData> tickAdjuster) {
+        if ( tick==null ) {
+            return null;
+        }
+        return tickAdjuster.apply(tick);
+    }
+
     public void updateEndTime(ZonedDateTime endTime) {
         this.endTime = endTime;
     }
@@ -258,6 +305,60 @@ public class FutureBar implements Bar2 {
         return bar;
     }
 
+    /**
+     * 合并多个连续的Bar为一个更大级别的Bar, 例如MIN1合并为日线
+     */
+    public static FutureBar fromBars(int index, ExchangeableTradingTimes tradingTimes, List<Bar> bars) {
+        Bar first = bars.get(0), last = bars.get(bars.size()-1);
+        FutureBar bar = new FutureBar();
+        bar.index = index;
+        bar.mktTimes = tradingTimes;
+        bar.beginTime = first.getBeginTime();
+        bar.endTime = last.getEndTime();
+        bar.openPrice = (LongNum)first.getOpenPrice();
+        bar.closePrice = (LongNum)last.getClosePrice();
+        long max = ((LongNum)first.getMaxPrice()).rawValue(), min = ((LongNum)first.getMinPrice()).rawValue();
+        long volume = 0, amount = 0;
+        double avgAmount = 0;
+        for(Bar b:bars) {
+            max = Math.max(max, ((LongNum)b.getMaxPrice()).rawValue());
+            min = Math.min(min, ((LongNum)b.getMinPrice()).rawValue());
+            long barVolume = ((LongNum)b.getVolume()).rawValue();
+            volume += barVolume;
+            amount += ((LongNum)b.getAmount()).rawValue();
+            bar.trades += b.getTrades();
+            Num barAvg = b.getClosePrice();
+            if ( b instanceof Bar2 && ((Bar2)b).getAvgPrice()!=null ) {
+                barAvg = ((Bar2)b).getAvgPrice();
+            }
+            //按成交量加权平均, 避免使用合约乘数
+            avgAmount += PriceUtil.long2price(barVolume)*((LongNum)barAvg).rawValue();
+        }
+        bar.maxPrice = new LongNum(max);
+        bar.minPrice = new LongNum(min);
+        bar.volume = new LongNum(volume);
+        bar.amount = new LongNum(amount);
+        if ( volume>0 ) {
+            bar.avgPrice = new LongNum(Math.round(avgAmount/PriceUtil.long2price(volume)));
+        } else {
+            bar.avgPrice = bar.closePrice;
+        }
+        bar.mktAvgPrice = bar.closePrice;
+        if ( last instanceof Bar2 ) {
+            Bar2 last2 = (Bar2)last;
+            bar.openInterest = last2.getOpenInterest();
+            if ( last2.getMktAvgPrice()!=null ) {
+                bar.mktAvgPrice = (LongNum)last2.getMktAvgPrice();
+            }
+            bar.closeTick = last2.getCloseTick();
+        }
+        if ( first instanceof Bar2 ) {
+            bar.openTick = ((Bar2)first).getOpenTick();
+        }
+        bar.timePeriod = DateUtil.between(bar.beginTime.toLocalDateTime(), bar.endTime.toLocalDateTime());
+        return bar;
+    }
+
     public static FutureBar fromCSV(CSVDataSet csv, Exchangeable exchangeable) {
         FutureBar bar = new FutureBar();
         ZoneId zoneId = exchangeable.exchange().getZoneId();
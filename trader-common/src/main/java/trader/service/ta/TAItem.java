@@ -4,8 +4,10 @@ import java.util.List;
 
 import trader.common.exchangeable.Exchangeable;
 import trader.common.tick.PriceLevel;
+import trader.service.ta.indicators.IncrementalMACD;
 import trader.service.ta.trend.WaveBar;
 import trader.service.ta.trend.WaveBar.WaveType;
+import trader.service.ta.trend.WaveBarEngine;
 
 public interface TAItem {
 
@@ -18,8 +20,19 @@ public interface TAItem {
      */
     public LeveledTimeSeries getSeries(PriceLevel level);
 
+    /**
+     * 获得某个级别KBar的MACD, 随KBar增量更新, 所有策略共享
+     */
+    public IncrementalMACD getMACD(PriceLevel level);
+
     public List<WaveBar> getWaveBars(WaveType waveType);
 
     public WaveBar getLastWaveBar(WaveType waveType);
 
+    /**
+     * 按列保存的笔划/线段, 包含运行以来的全部历史, 较早的部分溢出到磁盘.
+     * <BR>getWaveBars只保留最近的Bar
+     */
+    public WaveBarEngine getWaveBarEngine();
+
 }
@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.ta4j.core.Bar;
 import org.ta4j.core.BaseBar;
@@ -23,6 +24,7 @@ import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableData.DataInfo;
 import trader.common.exchangeable.ExchangeableTradingTimes;
 import trader.common.exchangeable.ExchangeableType;
+import trader.common.exchangeable.Future;
 import trader.common.exchangeable.MarketDayUtil;
 import trader.common.exchangeable.MarketTimeStage;
 import trader.common.tick.PriceLevel;
@@ -31,9 +33,11 @@ import trader.common.util.CSVMarshallHelper;
 import trader.common.util.CSVUtil;
 import trader.common.util.DateUtil;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataCSVDecoder;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
+import trader.service.ta.ContinuousSeriesLoader.AdjustMode;
 
 /**
  * 行情数据加载和转换为分钟级别数据
@@ -56,6 +60,12 @@ public class TimeSeriesLoader {
      * 实际时间
      */
     private LocalDateTime endTime;
+    /**
+     * 主力连续合约的复权方式
+     */
+    private AdjustMode adjustMode = AdjustMode.None;
+
+    private ContinuousSeriesLoader continuousLoader;
 
     private Map<LocalDate, List<Bar>> min1BarsByDay = new HashMap<>();
 
@@ -105,15 +115,34 @@ public class TimeSeriesLoader {
         return this;
     }
 
+    /**
+     * 设置主力连续合约的复权方式, 缺省为不复权
+     */
+    public TimeSeriesLoader setAdjustMode(AdjustMode adjustMode){
+        this.adjustMode = adjustMode;
+        return this;
+    }
+
     public List<LocalDate> getLoadedDates(){
         return Collections.unmodifiableList(loadedDates);
     }
 
     /**
-     * 直接加载行情切片原始数据
+     * 直接加载行情切片原始数据.
+     * <BR>主力连续合约的复权基准与load()相同, 是加载范围内最后一个主力合约
      */
     public List<MarketData> loadMarketDataTicks(LocalDate tradingDay, DataInfo tickDataInfo) throws IOException
     {
+        if ( Future.isContinuous(exchangeable) ) {
+            LocalDate start = tradingDay, end = tradingDay;
+            if ( startTradingDay!=null && startTradingDay.isBefore(tradingDay) ) {
+                start = startTradingDay;
+            }
+            if ( endTradingDay!=null && endTradingDay.isAfter(tradingDay) ) {
+                end = endTradingDay;
+            }
+            return getContinuousLoader(start, end).loadMarketDataTicks(tradingDay, tickDataInfo);
+        }
         if ( !data.exists(exchangeable, tickDataInfo, tradingDay) ) {
             return Collections.emptyList();
         }
@@ -124,8 +153,18 @@ public class TimeSeriesLoader {
         CSVMarshallHelper csvMarshallHelper = ctpFactory.createCSVMarshallHelper();
         String csv = data.load(exchangeable, tickDataInfo, tradingDay);
         CSVDataSet csvDataSet = CSVUtil.parse(csv);
+        MarketDataCSVDecoder csvDecoder = ctpFactory.createCSVDecoder(mdProducer.getId());
+        if ( csvDecoder!=null && !csvDecoder.accept(csvDataSet.getColumns()) ) {
+            csvDecoder = null;
+        }
         while(csvDataSet.next()) {
-            MarketData marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+            MarketData marketData = null;
+            if ( csvDecoder!=null ) {
+                marketData = csvDecoder.decode(csvDataSet.getLine(), tradingDay);
+            }
+            if ( marketData==null ) {
+                marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+            }
             if ( this.endTime!=null && this.endTime.isBefore(marketData.updateTime)) {
                 continue;
             }
@@ -142,7 +181,10 @@ public class TimeSeriesLoader {
             endTradingDay = LocalDate.now();
         }
         loadedDates.clear();
-        if ( level==PriceLevel.DAY ) {
+        if ( Future.isContinuous(exchangeable) ) {
+            return loadContinuousSeries();
+        }
+        if ( level==PriceLevel.DAY || level==PriceLevel.WEEK ) {
             return loadDaySeries();
         }
         LinkedList<Bar> bars = new LinkedList<>();
@@ -189,6 +231,34 @@ public class TimeSeriesLoader {
         return result;
     }
 
+    /**
+     * 加载主力连续合约数据, 由各交易日的主力合约拼接而成
+     */
+    private LeveledTimeSeries loadContinuousSeries() throws IOException {
+        ContinuousSeriesLoader loader = getContinuousLoader(startTradingDay, endTradingDay);
+        LeveledTimeSeries result = loader.setLevel(level).load();
+        for(ContinuousSeriesLoader.Segment segment:loader.getSegments()) {
+            LocalDate tradingDay = segment.getBeginTradingDay();
+            while(tradingDay.compareTo(segment.getEndTradingDay())<=0) {
+                loadedDates.add(0, tradingDay);
+                tradingDay = MarketDayUtil.nextMarketDay(exchangeable.exchange(), tradingDay);
+            }
+        }
+        return result;
+    }
+
+    private ContinuousSeriesLoader getContinuousLoader(LocalDate startTradingDay, LocalDate endTradingDay) {
+        if ( continuousLoader==null ) {
+            continuousLoader = new ContinuousSeriesLoader(beansContainer, data).setExchangeable(exchangeable);
+        }
+        continuousLoader
+            .setAdjustMode(adjustMode)
+            .setEndTime(endTime)
+            .setStartTradingDay(startTradingDay)
+            .setEndTradingDay(endTradingDay);
+        return continuousLoader;
+    }
+
     /**
      * 将1分钟K线合并为多分钟K线
      */
@@ -308,11 +378,50 @@ public class TimeSeriesLoader {
     }
 
     /**
-     * 加载日线数据
+     * 加载日线/周线数据. 优先使用已保存的日线, 缺少的交易日从MIN1或TICK数据汇总
      */
     private LeveledTimeSeries loadDaySeries() throws IOException
     {
-        throw new IOException("日线数据未实现加载");
+        TreeMap<LocalDate, FutureBar> savedBars = DayBarAggregator.load(data, exchangeable);
+        TreeMap<LocalDate, FutureBar> dayBars = new TreeMap<>();
+        LocalDate tradingDay = endTradingDay;
+        //从后向前
+        while(tradingDay.compareTo(startTradingDay)>=0) {
+            FutureBar dayBar = savedBars.get(tradingDay);
+            //最后一个交易日限制了市场时间, 不能使用保存的完整日线
+            if ( dayBar==null || (endTime!=null && tradingDay.equals(endTradingDay)) ) {
+                dayBar = DayBarAggregator.min1ToDayBars(exchangeable, loadDayMin1Bars(tradingDay)).get(tradingDay);
+            }
+            if ( dayBar!=null ) {
+                dayBars.put(tradingDay, dayBar);
+                loadedDates.add(tradingDay);
+            }
+            tradingDay = MarketDayUtil.prevMarketDay(exchangeable.exchange(), tradingDay);
+        }
+        if ( level==PriceLevel.WEEK ) {
+            dayBars = DayBarAggregator.dayToWeekBars(dayBars);
+        }
+        BaseLeveledTimeSeries result = new BaseLeveledTimeSeries(exchangeable.name()+"-"+level, level, LongNum::valueOf);
+        for(FutureBar bar:dayBars.values()) {
+            result.addBar(bar);
+        }
+        return result;
+    }
+
+    /**
+     * 加载某个交易日的MIN1 Bar, 没有MIN1数据时从TICK数据转换
+     */
+    private List<Bar> loadDayMin1Bars(LocalDate tradingDay) throws IOException {
+        List<Bar> result = min1BarsByDay.get(tradingDay);
+        if ( result==null ) {
+            if ( data.exists(exchangeable, ExchangeableData.MIN1, tradingDay) ) {
+                result = loadMin1Bars(tradingDay);
+            } else {
+                result = marketDatas2bars(exchangeable, PriceLevel.MIN1, loadMarketData(tradingDay));
+            }
+            min1BarsByDay.put(tradingDay, result);
+        }
+        return result;
     }
 
     /**
@@ -425,7 +534,7 @@ public class TimeSeriesLoader {
      */
     public static int getBarIndex(ExchangeableTradingTimes tradingTimes, PriceLevel level, LocalDateTime marketTime)
     {
-        if( level==PriceLevel.DAY ){
+        if( level==PriceLevel.DAY || level==PriceLevel.WEEK ){
             return 0;
         }
         if ( tradingTimes==null ) {
@@ -0,0 +1,64 @@
+package trader.service.ta.indicators;
+
+import java.util.Arrays;
+
+/**
+ * 增量计算的EMA, 使用double数组保存每个KBar的值, 计算方式与ta4j EMAIndicator相同.
+ * <BR>已完成KBar的值不再变化, 最后一个KBar可以反复更新, 每次更新O(1)
+ */
+public class IncrementalEMA {
+
+    private final int barCount;
+    private final double multiplier;
+    private double[] values = new double[256];
+    private int endIndex = -1;
+
+    public IncrementalEMA(int barCount) {
+        this.barCount = barCount;
+        this.multiplier = 2.0/(barCount+1);
+    }
+
+    public int getBarCount() {
+        return barCount;
+    }
+
+    /**
+     * 最后计算的KBar位置, -1代表没有数据
+     */
+    public int getEndIndex() {
+        return endIndex;
+    }
+
+    public double getValue(int index) {
+        if ( index<0 || index>endIndex ) {
+            throw new IndexOutOfBoundsException("EMA index "+index+" out of range [0, "+endIndex+"]");
+        }
+        return values[index];
+    }
+
+    /**
+     * 更新某个KBar的输入值
+     *
+     * @param index KBar位置, 只能是最后计算的KBar或者下一个KBar
+     * @return 计算后的EMA值
+     */
+    public double update(int index, double input) {
+        if ( index<0 || index>endIndex+1 || index<endIndex ) {
+            throw new IllegalArgumentException("EMA index "+index+" is not current "+endIndex+" or next one");
+        }
+        if ( index>=values.length ) {
+            values = Arrays.copyOf(values, values.length*2);
+        }
+        double value;
+        if ( index==0 ) {
+            value = input;
+        } else {
+            double prevValue = values[index-1];
+            value = (input-prevValue)*multiplier+prevValue;
+        }
+        values[index] = value;
+        endIndex = index;
+        return value;
+    }
+
+}
@@ -0,0 +1,74 @@
+package trader.service.ta.indicators;
+
+import org.ta4j.core.TimeSeries;
+
+/**
+ * 增量计算的MACD, 包含DIFF/DEA/MACD, 使用double计算.
+ * <BR>DIFF=EMA(close,12)-EMA(close,26), DEA=EMA(DIFF,9), MACD=2*(DIFF-DEA)
+ * <BR>只有一个线程调用update, 其它线程只读取已经计算好的值.
+ */
+public class IncrementalMACD {
+
+    private final IncrementalEMA shortEMA;
+    private final IncrementalEMA longEMA;
+    private final IncrementalEMA deaEMA;
+    private volatile int endIndex = -1;
+
+    public IncrementalMACD() {
+        this(12, 26, 9);
+    }
+
+    public IncrementalMACD(int shortCount, int longCount, int deaCount) {
+        if ( shortCount>longCount ) {
+            throw new IllegalArgumentException("Long term period count must be greater than short term period count");
+        }
+        shortEMA = new IncrementalEMA(shortCount);
+        longEMA = new IncrementalEMA(longCount);
+        deaEMA = new IncrementalEMA(deaCount);
+    }
+
+    /**
+     * 最后计算的KBar位置, -1代表没有数据
+     */
+    public int getEndIndex() {
+        return endIndex;
+    }
+
+    public double getDIFF(int index) {
+        return shortEMA.getValue(index)-longEMA.getValue(index);
+    }
+
+    public double getDEA(int index) {
+        return deaEMA.getValue(index);
+    }
+
+    public double getMACD(int index) {
+        return 2*(getDIFF(index)-deaEMA.getValue(index));
+    }
+
+    /**
+     * 更新某个KBar的收盘价
+     *
+     * @param index KBar位置, 只能是最后计算的KBar或者下一个KBar
+     */
+    public void update(int index, double closePrice) {
+        double diff = shortEMA.update(index, closePrice)-longEMA.update(index, closePrice);
+        deaEMA.update(index, diff);
+        endIndex = index;
+    }
+
+    /**
+     * 与TimeSeries同步: 重新计算最后一个KBar, 并计算之后新增的KBar
+     */
+    public void update(TimeSeries series) {
+        int seriesEndIndex = series.getEndIndex();
+        int beginIndex = Math.max(endIndex, series.getBeginIndex());
+        if ( beginIndex<0 ) {
+            beginIndex = 0;
+        }
+        for(int i=beginIndex; i<=seriesEndIndex; i++) {
+            update(i, series.getBar(i).getClosePrice().doubleValue());
+        }
+    }
+
+}
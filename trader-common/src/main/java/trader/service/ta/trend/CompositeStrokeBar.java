@@ -9,6 +9,7 @@ import trader.common.exchangeable.Exchangeable;
 import trader.common.util.DateUtil;
 import trader.service.md.MarketData;
 import trader.service.ta.LongNum;
+import trader.service.trade.TradeConstants.PosDirection;
 
 /**
  * 复合笔划, 处理同向笔划的包含关系
@@ -29,6 +30,14 @@ public class CompositeStrokeBar<T> extends WaveBar<T> {
         update(null, null);
     }
 
+    /**
+     * 从快照恢复, OHLC等数据由调用者直接设置
+     */
+    CompositeStrokeBar(List<WaveBar<T>> bars, PosDirection direction) {
+        this.bars = new ArrayList<>(bars);
+        this.direction = direction;
+    }
+
     @Override
     public WaveType getWaveType() {
         return WaveType.Stroke;
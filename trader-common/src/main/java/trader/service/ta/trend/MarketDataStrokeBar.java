@@ -81,6 +81,26 @@ public class MarketDataStrokeBar extends WaveBar<MarketData> {
         updateVol();
     }
 
+    /**
+     * 从快照恢复, OHLC等数据由调用者直接设置
+     */
+    MarketDataStrokeBar(Num threshold, PosDirection direction, MarketData mdOpen, MarketData mdMax, MarketData mdMin, MarketData mdClose, MarketData mdSplit) {
+        this.threshold = threshold;
+        this.direction = direction;
+        this.mdOpen = mdOpen;
+        this.mdMax = mdMax;
+        this.mdMin = mdMin;
+        this.mdClose = mdClose;
+        this.mdSplit = mdSplit;
+    }
+
+    /**
+     * 拆分出下一笔划时的行情切片
+     */
+    MarketData getSplitTick() {
+        return mdSplit;
+    }
+
     @Override
     public MarketData getOpenTick() {
         return mdOpen;
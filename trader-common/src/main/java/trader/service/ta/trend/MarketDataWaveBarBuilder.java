@@ -1,6 +1,7 @@
 package trader.service.ta.trend;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 
@@ -14,14 +15,19 @@ import trader.service.ta.LongNum;
 import trader.service.ta.trend.WaveBar.WaveType;
 
 /**
- * 基于行情切片波浪数据直接构建: 分笔-笔划-线段
+ * 基于行情切片波浪数据直接构建: 分笔-笔划-线段-趋势
+ * <BR>第0级是笔划, 第1级是线段, 第2级及以上是趋势; 每一级都使用WaveBar的update/canMerge/merge处理下一级的最后一个Bar
  */
 @SuppressWarnings("rawtypes")
 public class MarketDataWaveBarBuilder implements MarketDataListener {
     private static final Logger logger = LoggerFactory.getLogger(MarketDataWaveBarBuilder.class);
 
-    private static final int INDEX_STROKE_BAR = WaveType.Stroke.ordinal();
-    private static final int INDEX_SECTION_BAR = WaveType.Section.ordinal();
+    /**
+     * 缺省级别数量: 笔划, 线段
+     */
+    public static final int DEFAULT_LEVEL_COUNT = 2;
+
+    private static final int INDEX_STROKE_BAR = 0;
 
     private Num strokeDirectionThreshold;
     private List<WaveBar>[] bars;
@@ -29,8 +35,18 @@ public class MarketDataWaveBarBuilder implements MarketDataListener {
     private Function<Number, Num> numFunction = LongNum::valueOf;
 
     public MarketDataWaveBarBuilder() {
-        lastBars = new WaveBar[WaveType.values().length];
-        bars = new ArrayList[lastBars.length];
+        this(DEFAULT_LEVEL_COUNT);
+    }
+
+    /**
+     * @param levelCount 级别数量, 1只有笔划, 2笔划和线段, 3及以上增加趋势
+     */
+    public MarketDataWaveBarBuilder(int levelCount) {
+        if ( levelCount<1 ) {
+            throw new IllegalArgumentException("Invalid wave level count: "+levelCount);
+        }
+        lastBars = new WaveBar[levelCount];
+        bars = new ArrayList[levelCount];
         for(int i=0;i<bars.length;i++) {
             bars[i] = new ArrayList<>(1024/(int)Math.pow(2, i));
         }
@@ -53,31 +69,112 @@ public class MarketDataWaveBarBuilder implements MarketDataListener {
         return this;
     }
 
+    public Num getStrokeDirectionThreshold() {
+        return strokeDirectionThreshold;
+    }
+
+    public int getLevelCount() {
+        return bars.length;
+    }
+
+    /**
+     * 返回波浪类型对应的Bar, 中枢或没有构建的级别返回空列表
+     */
     public List<WaveBar> getBars(WaveType waveType){
-        return bars[waveType.ordinal()];
+        int level = waveType2level(waveType);
+        if ( level<0 || level>=bars.length ) {
+            return Collections.emptyList();
+        }
+        return bars[level];
     }
 
     public WaveBar getLastBar(WaveType waveType) {
-        return lastBars[waveType.ordinal()];
+        int level = waveType2level(waveType);
+        if ( level<0 || level>=bars.length ) {
+            return null;
+        }
+        return lastBars[level];
+    }
+
+    /**
+     * 返回指定级别的Bar, 0笔划, 1线段, 2及以上趋势
+     */
+    public List<WaveBar> getBars(int level){
+        return bars[level];
+    }
+
+    public WaveBar getLastBar(int level) {
+        return lastBars[level];
+    }
+
+    /**
+     * 级别对应的波浪类型
+     */
+    public static WaveType level2waveType(int level) {
+        switch(level) {
+        case 0:
+            return WaveType.Stroke;
+        case 1:
+            return WaveType.Section;
+        default:
+            return WaveType.Trend;
+        }
+    }
+
+    private static int waveType2level(WaveType waveType) {
+        switch(waveType) {
+        case Stroke:
+            return 0;
+        case Section:
+            return 1;
+        case Trend:
+            return 2;
+        default:
+            return -1;
+        }
     }
 
     @Override
     public void onMarketData(MarketData md) {
-        List<WaveBar> strokeBars = bars[INDEX_STROKE_BAR];
-        List<WaveBar> sectionBars = bars[INDEX_SECTION_BAR];
-        WaveBar prevStrokeBar = null;
-        WaveBar prevSectionBar = null;
-        if ( strokeBars.size()>=2 ) {
-            prevStrokeBar = strokeBars.get(strokeBars.size()-2);
+        WaveBar lastBar = updateStroke(md);
+        //有了新笔划后, 逐级向上更新
+        for(int level=1; level<bars.length && lastBar!=null; level++) {
+            lastBar = updateLevel(level, lastBar);
         }
-        if ( sectionBars.size()>=2 ) {
-            prevSectionBar = sectionBars.get(sectionBars.size()-2);
+    }
+
+    /**
+     * 每一级只保留最近的maxBars个Bar, 被保留的上级Bar引用的下级Bar不受影响
+     */
+    public void prune(int maxBars) {
+        for(int i=0;i<bars.length;i++) {
+            List<WaveBar> levelBars = bars[i];
+            if ( levelBars.size()>maxBars ) {
+                levelBars.subList(0, levelBars.size()-maxBars).clear();
+            }
         }
-        WaveBar lastStrokeBar = lastBars[INDEX_STROKE_BAR];
-        WaveBar lastSectionBar = lastBars[INDEX_SECTION_BAR];
+    }
+
+    /**
+     * 从快照恢复各级Bar, 快照级别多于当前级别时忽略高级别
+     */
+    void restore(List<WaveBar>[] levelBars) {
+        for(int i=0;i<bars.length;i++) {
+            bars[i].clear();
+            lastBars[i] = null;
+            if ( i<levelBars.length ) {
+                bars[i].addAll(levelBars[i]);
+                if ( !bars[i].isEmpty() ) {
+                    lastBars[i] = bars[i].get(bars[i].size()-1);
+                }
+            }
+        }
+    }
 
+    private WaveBar updateStroke(MarketData md) {
+        List<WaveBar> strokeBars = bars[INDEX_STROKE_BAR];
+        WaveBar lastStrokeBar = lastBars[INDEX_STROKE_BAR];
         WaveBar lastStrokeBar0 = lastStrokeBar;
-        WaveBar lastSectionBar0 = lastSectionBar;
         if ( lastStrokeBar==null ) {
             lastStrokeBar = new MarketDataStrokeBar(strokeDirectionThreshold, md);
         }else {
@@ -92,36 +189,73 @@ public class MarketDataWaveBarBuilder implements MarketDataListener {
             strokeBars.add(lastStrokeBar);
             lastBars[INDEX_STROKE_BAR] = lastStrokeBar;
         }
-        //有了新笔划后, 尝试更新线段
-        if ( lastSectionBar==null ) {
-            if ( strokeBars.size()>=3 ) { //三个笔划对应一个线段
-                lastSectionBar = createFirstSection(strokeBars);
+        return lastStrokeBar;
+    }
+
+    /**
+     * 使用下一级的最后一个Bar更新当前级别
+     *
+     * @return 当前级别的最后一个Bar, 还没有时返回null
+     */
+    private WaveBar updateLevel(int level, WaveBar lowerLastBar) {
+        List<WaveBar> levelBars = bars[level];
+        WaveBar prevBar = null;
+        if ( levelBars.size()>=2 ) {
+            prevBar = levelBars.get(levelBars.size()-2);
+        }
+        WaveBar lastBar = lastBars[level];
+        WaveBar lastBar0 = lastBar;
+        if ( lastBar==null ) {
+            if ( bars[level-1].size()>=3 ) { //三个下级Bar对应一个Bar
+                lastBar = createFirstBar(level, bars[level-1]);
             }
         } else {
-            WaveBar newSectionBar = lastSectionBar.update(prevSectionBar, lastStrokeBar);
-            if ( newSectionBar!=null ) {
-                lastSectionBar = newSectionBar;
-            } else if ( (lastSectionBar).canMerge() && prevSectionBar!=null ) {
+            WaveBar newBar = lastBar.update(prevBar, lowerLastBar);
+            if ( newBar!=null ) {
+                lastBar = newBar;
+            } else if ( lastBar.canMerge() && prevBar!=null ) {
                 //需要合并
-                prevSectionBar.merge(lastSectionBar);
-                sectionBars.remove(lastSectionBar);
-                sectionBars.remove(prevSectionBar);
-                lastSectionBar = prevSectionBar;
+                prevBar.merge(lastBar);
+                levelBars.remove(lastBar);
+                levelBars.remove(prevBar);
+                removeMergedBar(level+1, lastBar);
+                lastBar = prevBar;
             }
         }
-        //如果有新的线段产生
-        if (lastSectionBar0!=lastSectionBar) {
-            sectionBars.add(lastSectionBar);
-            lastBars[INDEX_SECTION_BAR] = lastSectionBar;
+        //如果有新的Bar产生
+        if (lastBar0!=lastBar) {
+            levelBars.add(lastBar);
+            lastBars[level] = lastBar;
+        }
+        return lastBar;
+    }
+
+    /**
+     * 下级Bar被合并后, 从上级最后一个Bar中删除; 如果上级Bar因此为空, 继续向上删除
+     */
+    private void removeMergedBar(int level, WaveBar mergedBar) {
+        if ( level>=bars.length ) {
+            return;
+        }
+        SimpleSectionBar lastBar = (SimpleSectionBar)lastBars[level];
+        if ( lastBar==null || !lastBar.removeMergedBar(mergedBar) ) {
+            return;
+        }
+        List<WaveBar> levelBars = bars[level];
+        levelBars.remove(levelBars.size()-1);
+        lastBars[level] = levelBars.isEmpty()?null:levelBars.get(levelBars.size()-1);
+        if ( logger.isDebugEnabled() ) {
+            logger.debug("Removes empty "+level2waveType(level)+" at level "+level);
         }
+        removeMergedBar(level+1, lastBar);
     }
 
     /**
-     * 创建第一个线段, 有些形态要求:
+     * 创建第一个线段/趋势, 有些形态要求:
      * <LI>至少3根笔划
      * <LI>笔划1不可包含笔划2, 且笔划2不可包含笔划3
      */
-    private WaveBar createFirstSection(List<WaveBar> strokeBars){
+    private WaveBar createFirstBar(int level, List<WaveBar> strokeBars){
         int strokeIndex = 0;
         WaveBar strokeN = strokeBars.get(strokeBars.size()-1);
         WaveBar strokes[] =getSectionStrokes(strokeBars, strokeIndex);
@@ -148,9 +282,9 @@ public class MarketDataWaveBarBuilder implements MarketDataListener {
         for(int i=strokeIndex; i<strokeBars.size(); i++) {
             sectionStrokes.add(strokeBars.get(i));
         }
-        SimpleSectionBar result = new SimpleSectionBar(sectionStrokes);
+        SimpleSectionBar result = new SimpleSectionBar(level2waveType(level), sectionStrokes);
         if ( logger.isDebugEnabled() ) {
-            logger.debug("Creates first section "+result);
+            logger.debug("Creates first "+result);
         }
         return result;
     }
@@ -20,6 +20,7 @@ import trader.service.trade.TradeConstants.PosDirection;
 /**
  * 曲折线段, 但是有着相同方向.
  * 简单实现, 要求最后一个相同方向的笔划不能低于上一个相同方向的笔划.
+ * <BR>同样的规则也用于由线段构成的更高级别趋势
  */
 public class SimpleSectionBar extends WaveBar<WaveBar> {
     private static final long serialVersionUID = 358487162488223434L;
@@ -31,6 +32,14 @@ public class SimpleSectionBar extends WaveBar<WaveBar> {
     protected SimpleSectionBar mergedTo;
 
     public SimpleSectionBar(List<WaveBar> strokeBars) {
+        this(WaveType.Section, strokeBars);
+    }
+
+    /**
+     * @param waveType Section 由笔划构成, Trend 由线段或低级别趋势构成
+     */
+    public SimpleSectionBar(WaveType waveType, List<WaveBar> strokeBars) {
+        this.waveType = waveType;
         WaveBar stroke1 = strokeBars.get(0);
         WaveBar strokeN = strokeBars.get(strokeBars.size()-1);
         assert(stroke1.getDirection()==strokeN.getDirection());
@@ -44,9 +53,20 @@ public class SimpleSectionBar extends WaveBar<WaveBar> {
         assert(open!=null);
     }
 
+    /**
+     * 从快照恢复, OHLC等数据由调用者直接设置
+     */
+    SimpleSectionBar(WaveType waveType, PosDirection direction, List<WaveBar> bars, List<WaveBar> charBars, boolean canMerge) {
+        this.waveType = waveType;
+        this.direction = direction;
+        this.bars = new ArrayList<>(bars);
+        this.charBars = new LinkedList<>(charBars);
+        this.canMerge = canMerge;
+    }
+
     @Override
     public WaveType getWaveType() {
-        return WaveType.Section;
+        return waveType;
     }
 
     @Override
@@ -175,6 +195,33 @@ public class SimpleSectionBar extends WaveBar<WaveBar> {
         direction = PosDirection.Net;
     }
 
+    /**
+     * 特征序列, 用于保存快照
+     */
+    List<WaveBar> getCharBars(){
+        return charBars;
+    }
+
+    /**
+     * 下级Bar被合并到它的前一个Bar后, 从当前Bar中删除
+     *
+     * @return true 如果删除后没有剩余的下级Bar
+     */
+    boolean removeMergedBar(WaveBar mergedBar) {
+        int idx = bars.lastIndexOf(mergedBar);
+        if ( idx<0 ) {
+            return false;
+        }
+        bars.remove(idx);
+        if ( bars.isEmpty() ) {
+            charBars.clear();
+            return true;
+        }
+        rebuildcharBars();
+        recompute();
+        return false;
+    }
+
     /**
      * 更新数据: OHLC, VA
      */
@@ -326,14 +373,15 @@ public class SimpleSectionBar extends WaveBar<WaveBar> {
             return null;
         }
         WaveBar strokeN_2 = charBars.get(charBars.size()-3);
+        //趋势的特征序列是线段, 最后一个线段在破坏前可能收在起点另一侧, 开收价顺序只对笔划检查
 
         if ( getDirection()==PosDirection.Long ){
             assert(strokeN.getDirection()==PosDirection.Short);
             assert(strokeN_1.getDirection()==PosDirection.Short);
             assert(strokeN_2.getDirection()==PosDirection.Short);
-            assert(strokeN.getOpenPrice().isGreaterThan(strokeN.getClosePrice()) );
-            assert(strokeN_1.getOpenPrice().isGreaterThan(strokeN_1.getClosePrice()));
-            assert(strokeN_2.getOpenPrice().isGreaterThan(strokeN_2.getClosePrice()));
+            assert(waveType!=WaveType.Section || strokeN.getOpenPrice().isGreaterThan(strokeN.getClosePrice()) );
+            assert(waveType!=WaveType.Section || strokeN_1.getOpenPrice().isGreaterThan(strokeN_1.getClosePrice()));
+            assert(waveType!=WaveType.Section || strokeN_2.getOpenPrice().isGreaterThan(strokeN_2.getClosePrice()));
             //继续向上
 
             //正常: 形成顶底分型, 且第一第二笔划之间有重叠
@@ -355,9 +403,9 @@ public class SimpleSectionBar extends WaveBar<WaveBar> {
             assert(strokeN.getDirection()==PosDirection.Long);
             assert(strokeN_1.getDirection()==PosDirection.Long);
             assert(strokeN_2.getDirection()==PosDirection.Long);
-            assert(strokeN.getOpenPrice().isLessThan(strokeN.getClosePrice()));
-            assert(strokeN_1.getOpenPrice().isLessThan(strokeN_1.getClosePrice()));
-            assert(strokeN_2.getOpenPrice().isLessThan(strokeN_2.getClosePrice()));
+            assert(waveType!=WaveType.Section || strokeN.getOpenPrice().isLessThan(strokeN.getClosePrice()));
+            assert(waveType!=WaveType.Section || strokeN_1.getOpenPrice().isLessThan(strokeN_1.getClosePrice()));
+            assert(waveType!=WaveType.Section || strokeN_2.getOpenPrice().isLessThan(strokeN_2.getClosePrice()));
             //继续向下
             if ( strokeN.end.compareTo(strokeN_1.end)<0 ) {
                 return null;
@@ -402,7 +450,7 @@ public class SimpleSectionBar extends WaveBar<WaveBar> {
         end = lastStroke.end;
         recompute();
         assert(newStrokes.size()>0);
-        return new SimpleSectionBar(newStrokes);
+        return new SimpleSectionBar(waveType, newStrokes);
     }
 
     /**
@@ -436,7 +484,7 @@ public class SimpleSectionBar extends WaveBar<WaveBar> {
     @Override
     public String toString() {
         Duration dur= this.getTimePeriod();
-        return "Section[ "+direction+", B "+DateUtil.date2str(begin.toLocalDateTime())+", "+dur.toSeconds()+"S, O "+open+" C "+close+" H "+max+" L "+min+" ]";
+        return waveType+"[ "+direction+", B "+DateUtil.date2str(begin.toLocalDateTime())+", "+dur.toSeconds()+"S, O "+open+" C "+close+" H "+max+" L "+min+" ]";
     }
 
 }
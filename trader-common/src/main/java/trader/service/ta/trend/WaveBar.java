@@ -33,6 +33,10 @@ public abstract class WaveBar<T> implements Bar2 {
          * 中枢
          */
         ,Centrum
+        /**
+         * 趋势, 线段之上更高级别的走势, 可以递归多级
+         */
+        ,Trend
     }
 
     protected WaveType waveType;
@@ -0,0 +1,226 @@
+package trader.service.ta.trend;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 按列保存的波浪数据, 每个笔划/线段一行, 行号从0开始连续增长.
+ * <BR>内存中使用环形数组保留最近windowSize行, 更早的行按固定长度记录溢出到磁盘文件, 仍然可以按行号随机读写.
+ * <BR>retainFrom之后的行不会被溢出, 窗口不足时扩容.
+ * <BR>非线程安全
+ */
+public class WaveBarColumns implements AutoCloseable {
+
+    private int columnCount;
+    private int recordSize;
+    private File spillDir;
+    /**
+     * [列][环形位置]
+     */
+    private long[][] columns;
+    private int mask;
+    /**
+     * 内存中第一行的行号, 之前的行已经溢出到磁盘
+     */
+    private long firstRow;
+    private long size;
+    private long retainFrom;
+
+    private File spillFile;
+    private FileChannel spillChannel;
+    private ByteBuffer recordBuf;
+    private ByteBuffer valueBuf;
+
+    /**
+     * @param windowSize 内存中保留的行数, 向上取2的幂
+     * @param spillDir 溢出文件目录, null表示使用系统临时目录
+     */
+    public WaveBarColumns(int columnCount, int windowSize, File spillDir) {
+        this.columnCount = columnCount;
+        this.recordSize = columnCount*8;
+        this.spillDir = spillDir;
+        int capacity = Integer.highestOneBit(Math.max(2, windowSize)-1)<<1;
+        columns = new long[columnCount][capacity];
+        mask = capacity-1;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * 总行数, 包含已溢出的行
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 内存中第一行的行号
+     */
+    public long getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * 当前内存容量
+     */
+    public int getCapacity() {
+        return mask+1;
+    }
+
+    public File getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * 设置需要保留在内存的起始行号, 之后的行不会被溢出
+     */
+    public void setRetainFrom(long row) {
+        this.retainFrom = row;
+    }
+
+    /**
+     * 增加一行, 所有列为0
+     *
+     * @return 新行的行号
+     */
+    public long append() {
+        if ( size-firstRow>mask ) {
+            if ( firstRow<retainFrom ) {
+                spill(firstRow);
+                firstRow++;
+            } else {
+                grow();
+            }
+        }
+        long row = size++;
+        int slot = (int)(row&mask);
+        for(int i=0;i<columnCount;i++) {
+            columns[i][slot] = 0;
+        }
+        return row;
+    }
+
+    /**
+     * 删除最后一行
+     */
+    public void removeLast() {
+        if ( size<=firstRow ) {
+            throw new IllegalStateException("Last row "+(size-1)+" is spilled");
+        }
+        size--;
+    }
+
+    public long get(long row, int column) {
+        if ( row>=firstRow ) {
+            if ( row>=size ) {
+                throw new IndexOutOfBoundsException("Row "+row+" size "+size);
+            }
+            return columns[column][(int)(row&mask)];
+        }
+        return readSpilled(row, column);
+    }
+
+    public void set(long row, int column, long value) {
+        if ( row>=firstRow ) {
+            if ( row>=size ) {
+                throw new IndexOutOfBoundsException("Row "+row+" size "+size);
+            }
+            columns[column][(int)(row&mask)] = value;
+        } else {
+            writeSpilled(row, column, value);
+        }
+    }
+
+    @Override
+    public void close() {
+        if ( spillChannel!=null ) {
+            try{
+                spillChannel.close();
+            }catch(IOException e) {}
+            spillChannel = null;
+            spillFile.delete();
+        }
+    }
+
+    private void grow() {
+        int capacity = (mask+1)*2;
+        long[][] columns2 = new long[columnCount][capacity];
+        int mask2 = capacity-1;
+        for(long row=firstRow;row<size;row++) {
+            int slot = (int)(row&mask), slot2 = (int)(row&mask2);
+            for(int i=0;i<columnCount;i++) {
+                columns2[i][slot2] = columns[i][slot];
+            }
+        }
+        columns = columns2;
+        mask = mask2;
+    }
+
+    private void spill(long row) {
+        try{
+            if ( spillChannel==null ) {
+                spillFile = File.createTempFile("wavebar", ".bin", spillDir);
+                spillFile.deleteOnExit();
+                spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                recordBuf = ByteBuffer.allocate(recordSize);
+                valueBuf = ByteBuffer.allocate(8);
+            }
+            int slot = (int)(row&mask);
+            recordBuf.clear();
+            for(int i=0;i<columnCount;i++) {
+                recordBuf.putLong(columns[i][slot]);
+            }
+            recordBuf.flip();
+            long position = row*recordSize;
+            while(recordBuf.hasRemaining()) {
+                position += spillChannel.write(recordBuf, position);
+            }
+        }catch(IOException e) {
+            throw new UncheckedIOException("Spill row "+row+" failed", e);
+        }
+    }
+
+    private long readSpilled(long row, int column) {
+        if ( row<0 || spillChannel==null ) {
+            throw new IndexOutOfBoundsException("Row "+row+" first row "+firstRow);
+        }
+        try{
+            valueBuf.clear();
+            long position = row*recordSize+column*8;
+            while(valueBuf.hasRemaining()) {
+                int n = spillChannel.read(valueBuf, position);
+                if ( n<0 ) {
+                    throw new IOException("Unexpected EOF at "+position);
+                }
+                position += n;
+            }
+            return valueBuf.getLong(0);
+        }catch(IOException e) {
+            throw new UncheckedIOException("Read spilled row "+row+" failed", e);
+        }
+    }
+
+    private void writeSpilled(long row, int column, long value) {
+        if ( row<0 || spillChannel==null ) {
+            throw new IndexOutOfBoundsException("Row "+row+" first row "+firstRow);
+        }
+        try{
+            valueBuf.clear();
+            valueBuf.putLong(value);
+            valueBuf.flip();
+            long position = row*recordSize+column*8;
+            while(valueBuf.hasRemaining()) {
+                position += spillChannel.write(valueBuf, position);
+            }
+        }catch(IOException e) {
+            throw new UncheckedIOException("Write spilled row "+row+" failed", e);
+        }
+    }
+
+}
@@ -0,0 +1,830 @@
+package trader.service.ta.trend;
+
+import java.io.File;
+import java.util.Arrays;
+
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataListener;
+import trader.service.ta.trend.WaveBar.WaveType;
+import trader.service.trade.TradeConstants.PosDirection;
+
+/**
+ * 基本类型实现的波浪构建: 分笔-笔划-线段, 算法和结果与MarketDataWaveBarBuilder相同.
+ * <BR>笔划和线段按列保存在WaveBarColumns中: 价格为PriceUtil放大后的long, 时间为updateTimestamp, 行情切片使用序号表示, 不再保留MarketData和Num对象.
+ * <BR>最后两个线段和它们的笔划常驻内存, 更早的数据超出windowSize后溢出到磁盘, 按行号读取.
+ * <BR>非线程安全
+ */
+public class WaveBarEngine implements MarketDataListener, AutoCloseable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+    /**
+     * 笔划和线段共有的列
+     */
+    public static final int COL_DIRECTION = 0;
+    public static final int COL_OPEN = 1;
+    public static final int COL_CLOSE = 2;
+    public static final int COL_MAX = 3;
+    public static final int COL_MIN = 4;
+    public static final int COL_BEGIN_TIME = 5;
+    public static final int COL_END_TIME = 6;
+    public static final int COL_VOLUME = 7;
+    public static final int COL_AMOUNT = 8;
+    public static final int COL_OPEN_INTEREST = 9;
+    public static final int COL_AVG_PRICE = 10;
+    public static final int COL_MKT_AVG_PRICE = 11;
+    public static final int COL_OPEN_TICK = 12;
+    public static final int COL_CLOSE_TICK = 13;
+    /**
+     * 笔划的列
+     */
+    public static final int COL_MAX_TICK = 14;
+    public static final int COL_MIN_TICK = 15;
+    public static final int COL_OPEN_TICK_VOLUME = 16;
+    public static final int COL_OPEN_TICK_TURNOVER = 17;
+    public static final int COL_CLOSE_TICK_VOLUME = 18;
+    public static final int COL_CLOSE_TICK_TURNOVER = 19;
+    public static final int STROKE_COLUMN_COUNT = 20;
+    /**
+     * 线段的列: 笔划范围
+     */
+    public static final int COL_FIRST_STROKE = 14;
+    public static final int COL_LAST_STROKE = 15;
+    public static final int SECTION_COLUMN_COUNT = 16;
+
+    private static final int DIR_LONG = PosDirection.Long.ordinal();
+    private static final int DIR_SHORT = PosDirection.Short.ordinal();
+    private static final int DIR_NET = PosDirection.Net.ordinal();
+    private static final PosDirection[] DIRECTIONS = PosDirection.values();
+
+    /**
+     * 行情切片快照的字段
+     */
+    private static final int TICK_PRICE = 0;
+    private static final int TICK_TIMESTAMP = 1;
+    private static final int TICK_INDEX = 2;
+    private static final int TICK_VOLUME = 3;
+    private static final int TICK_TURNOVER = 4;
+    private static final int TICK_OPEN_INTEREST = 5;
+    private static final int TICK_AVG_PRICE = 6;
+    private static final int TICK_FIELD_COUNT = 7;
+
+    /**
+     * 线段的特征序列, 复合笔划保存合成时的价格和时间, 单个笔划直接读取笔划的列
+     */
+    private class CharBarList {
+        private int size;
+        private boolean[] composites = new boolean[16];
+        /**
+         * 单个笔划的行号, 或复合笔划中最后一个笔划的行号
+         */
+        private long[] strokes = new long[16];
+        private int[] directions = new int[16];
+        private long[] opens = new long[16];
+        private long[] closes = new long[16];
+        private long[] ends = new long[16];
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isLastStroke(long stroke) {
+            return size>0 && !composites[size-1] && strokes[size-1]==stroke;
+        }
+
+        long lastStroke(int idx) {
+            return strokes[idx];
+        }
+
+        int direction(int idx) {
+            return composites[idx]?directions[idx]:(int)strokeCol(strokes[idx], COL_DIRECTION);
+        }
+
+        long open(int idx) {
+            return composites[idx]?opens[idx]:strokeCol(strokes[idx], COL_OPEN);
+        }
+
+        long close(int idx) {
+            return composites[idx]?closes[idx]:strokeCol(strokes[idx], COL_CLOSE);
+        }
+
+        long end(int idx) {
+            return composites[idx]?ends[idx]:strokeCol(strokes[idx], COL_END_TIME);
+        }
+
+        void addStroke(long stroke) {
+            ensureCapacity();
+            composites[size] = false;
+            strokes[size] = stroke;
+            size++;
+        }
+
+        /**
+         * 最后两个特征Bar替换为复合笔划, 与CompositeStrokeBar相同的合成规则
+         */
+        void compositeLastTwo() {
+            int idx1 = size-2, idx2 = size-1;
+            int direction = direction(idx1);
+            long open1 = open(idx1), open2 = open(idx2), close1 = close(idx1), close2 = close(idx2);
+            long end = Math.max(end(idx1), end(idx2));
+            long stroke = strokes[idx2];
+            composites[idx1] = true;
+            strokes[idx1] = stroke;
+            directions[idx1] = direction;
+            if ( direction==DIR_LONG ) {
+                opens[idx1] = Math.max(open1, open2);
+                closes[idx1] = Math.max(close1, close2);
+            } else {
+                opens[idx1] = Math.min(open1, open2);
+                closes[idx1] = Math.min(close1, close2);
+            }
+            ends[idx1] = end;
+            size--;
+        }
+
+        private void ensureCapacity() {
+            if ( size==strokes.length ) {
+                int capacity = size*2;
+                composites = Arrays.copyOf(composites, capacity);
+                strokes = Arrays.copyOf(strokes, capacity);
+                directions = Arrays.copyOf(directions, capacity);
+                opens = Arrays.copyOf(opens, capacity);
+                closes = Arrays.copyOf(closes, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+            }
+        }
+    }
+
+    /**
+     * 最后两个线段的计算状态
+     */
+    private class SectionState {
+        long row;
+        boolean canMerge;
+        CharBarList charBars = new CharBarList();
+
+        SectionState(long row){
+            this.row = row;
+        }
+    }
+
+    private long strokeDirectionThreshold;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private File spillDir;
+    private WaveBarColumns strokes;
+    private WaveBarColumns sections;
+    private long tickCount;
+    /**
+     * 最后一个笔划的开始, 最高和最低行情切片
+     */
+    private long[] openTick = new long[TICK_FIELD_COUNT];
+    private long[] maxTick = new long[TICK_FIELD_COUNT];
+    private long[] minTick = new long[TICK_FIELD_COUNT];
+    private long[] currTick = new long[TICK_FIELD_COUNT];
+    private SectionState lastSection;
+    private SectionState prevSection;
+
+    /**
+     * 设置价格波动阈值, 低于这个范围会被视为细微波动而忽略.
+     */
+    public WaveBarEngine setStrokeDirectionThreshold(long threshold) {
+        this.strokeDirectionThreshold = threshold;
+        return this;
+    }
+
+    public long getStrokeDirectionThreshold() {
+        return strokeDirectionThreshold;
+    }
+
+    /**
+     * 设置内存中保留的笔划/线段数量, 必须在第一个行情切片之前调用
+     */
+    public WaveBarEngine setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 设置溢出文件目录, 缺省为系统临时目录
+     */
+    public WaveBarEngine setSpillDir(File spillDir) {
+        this.spillDir = spillDir;
+        return this;
+    }
+
+    /**
+     * 已处理的行情切片数量, 也是下一个行情切片的序号
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * 笔划/线段数量
+     */
+    public long getBarCount(WaveType waveType) {
+        WaveBarColumns columns = getColumns(waveType);
+        if ( columns==null ) {
+            return 0;
+        }
+        return columns.size();
+    }
+
+    /**
+     * 读取笔划/线段的列
+     *
+     * @see #COL_OPEN
+     */
+    public long get(WaveType waveType, long index, int column) {
+        WaveBarColumns columns = getColumns(waveType);
+        if ( columns==null ) {
+            throw new IndexOutOfBoundsException("Index "+index+" size 0");
+        }
+        return columns.get(index, column);
+    }
+
+    public PosDirection getDirection(WaveType waveType, long index) {
+        return DIRECTIONS[(int)get(waveType, index, COL_DIRECTION)];
+    }
+
+    /**
+     * 内存中的笔划/线段列数据, 没有数据时返回null
+     */
+    public WaveBarColumns getColumns(WaveType waveType) {
+        switch(waveType) {
+        case Stroke:
+            return strokes;
+        case Section:
+            return sections;
+        default:
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if ( strokes!=null ) {
+            strokes.close();
+        }
+        if ( sections!=null ) {
+            sections.close();
+        }
+    }
+
+    @Override
+    public void onMarketData(MarketData md) {
+        if ( strokes==null ) {
+            strokes = new WaveBarColumns(STROKE_COLUMN_COUNT, windowSize, spillDir);
+            sections = new WaveBarColumns(SECTION_COLUMN_COUNT, windowSize, spillDir);
+        }
+        snapshot(currTick, md, tickCount++);
+        long prevSectionRow = sections.size()-2;
+        long lastStroke = strokes.size()-1;
+        if ( lastStroke<0 ) {
+            lastStroke = createStroke(currTick);
+        } else {
+            long newStroke = updateStroke(lastStroke);
+            if ( newStroke>=0 ) {
+                lastStroke = newStroke;
+            }
+        }
+        //有了新笔划后, 尝试更新线段
+        if ( sections.size()==0 ) {
+            if ( strokes.size()>=3 ) {
+                createFirstSection();
+            }
+        } else {
+            SectionState section = getSectionState(sections.size()-1);
+            long newSection = updateSection(section, prevSectionRow, lastStroke);
+            if ( newSection<0 && section.canMerge && prevSectionRow>=0 ) {
+                mergeSection(prevSectionRow, section);
+            }
+        }
+        //最后两个线段的笔划需要保留在内存中
+        long sectionCount = sections.size();
+        if ( sectionCount>0 ) {
+            long retainSection = Math.max(0, sectionCount-2);
+            sections.setRetainFrom(retainSection);
+            strokes.setRetainFrom(sectionCol(retainSection, COL_FIRST_STROKE));
+        }
+    }
+
+    //------------------- 笔划 ----------------
+
+    private long strokeCol(long stroke, int column) {
+        return strokes.get(stroke, column);
+    }
+
+    private static void snapshot(long[] tick, MarketData md, long tickIndex) {
+        tick[TICK_PRICE] = md.lastPrice;
+        tick[TICK_TIMESTAMP] = md.updateTimestamp;
+        tick[TICK_INDEX] = tickIndex;
+        tick[TICK_VOLUME] = md.volume;
+        tick[TICK_TURNOVER] = md.turnover;
+        tick[TICK_OPEN_INTEREST] = md.openInterest;
+        tick[TICK_AVG_PRICE] = md.averagePrice;
+    }
+
+    /**
+     * 从单个行情切片创建笔划, 方向为Net
+     */
+    private long createStroke(long[] tick) {
+        long stroke = strokes.append();
+        long price = tick[TICK_PRICE];
+        strokes.set(stroke, COL_DIRECTION, DIR_NET);
+        strokes.set(stroke, COL_OPEN, price);
+        strokes.set(stroke, COL_MAX, price);
+        strokes.set(stroke, COL_MIN, price);
+        strokes.set(stroke, COL_BEGIN_TIME, tick[TICK_TIMESTAMP]);
+        strokes.set(stroke, COL_OPEN_TICK, tick[TICK_INDEX]);
+        strokes.set(stroke, COL_MAX_TICK, tick[TICK_INDEX]);
+        strokes.set(stroke, COL_MIN_TICK, tick[TICK_INDEX]);
+        strokes.set(stroke, COL_OPEN_TICK_VOLUME, tick[TICK_VOLUME]);
+        strokes.set(stroke, COL_OPEN_TICK_TURNOVER, tick[TICK_TURNOVER]);
+        setCloseTick(stroke, tick);
+        strokes.set(stroke, COL_VOLUME, 0);
+        strokes.set(stroke, COL_AMOUNT, 0);
+        strokes.set(stroke, COL_AVG_PRICE, price);
+        System.arraycopy(tick, 0, openTick, 0, TICK_FIELD_COUNT);
+        System.arraycopy(tick, 0, maxTick, 0, TICK_FIELD_COUNT);
+        System.arraycopy(tick, 0, minTick, 0, TICK_FIELD_COUNT);
+        return stroke;
+    }
+
+    /**
+     * 从开始结束两个行情切片创建笔划, 方向为Long/Short
+     */
+    private long createStroke(long[] tick0, long[] tick1) {
+        long stroke = strokes.append();
+        strokes.set(stroke, COL_OPEN, tick0[TICK_PRICE]);
+        strokes.set(stroke, COL_BEGIN_TIME, tick0[TICK_TIMESTAMP]);
+        strokes.set(stroke, COL_OPEN_TICK, tick0[TICK_INDEX]);
+        strokes.set(stroke, COL_OPEN_TICK_VOLUME, tick0[TICK_VOLUME]);
+        strokes.set(stroke, COL_OPEN_TICK_TURNOVER, tick0[TICK_TURNOVER]);
+        setCloseTick(stroke, tick1);
+        long[] max, min;
+        if ( tick0[TICK_PRICE]<tick1[TICK_PRICE] ) {
+            strokes.set(stroke, COL_DIRECTION, DIR_LONG);
+            max = tick1; min = tick0;
+        } else {
+            strokes.set(stroke, COL_DIRECTION, DIR_SHORT);
+            max = tick0; min = tick1;
+        }
+        strokes.set(stroke, COL_MAX, max[TICK_PRICE]);
+        strokes.set(stroke, COL_MAX_TICK, max[TICK_INDEX]);
+        strokes.set(stroke, COL_MIN, min[TICK_PRICE]);
+        strokes.set(stroke, COL_MIN_TICK, min[TICK_INDEX]);
+        updateVol(stroke);
+        //max/min可能和tick0/tick1是同一个数组, 先复制
+        long[] openTick0 = Arrays.copyOf(tick0, TICK_FIELD_COUNT);
+        System.arraycopy(max, 0, maxTick, 0, TICK_FIELD_COUNT);
+        System.arraycopy(min, 0, minTick, 0, TICK_FIELD_COUNT);
+        System.arraycopy(openTick0, 0, openTick, 0, TICK_FIELD_COUNT);
+        return stroke;
+    }
+
+    private void setCloseTick(long stroke, long[] tick) {
+        strokes.set(stroke, COL_CLOSE, tick[TICK_PRICE]);
+        strokes.set(stroke, COL_END_TIME, tick[TICK_TIMESTAMP]);
+        strokes.set(stroke, COL_CLOSE_TICK, tick[TICK_INDEX]);
+        strokes.set(stroke, COL_CLOSE_TICK_VOLUME, tick[TICK_VOLUME]);
+        strokes.set(stroke, COL_CLOSE_TICK_TURNOVER, tick[TICK_TURNOVER]);
+        strokes.set(stroke, COL_OPEN_INTEREST, tick[TICK_OPEN_INTEREST]);
+        strokes.set(stroke, COL_MKT_AVG_PRICE, tick[TICK_AVG_PRICE]);
+    }
+
+    private void updateVol(long stroke) {
+        long vol = strokeCol(stroke, COL_CLOSE_TICK_VOLUME)-strokeCol(stroke, COL_OPEN_TICK_VOLUME);
+        long amount = strokeCol(stroke, COL_CLOSE_TICK_TURNOVER)-strokeCol(stroke, COL_OPEN_TICK_TURNOVER);
+        strokes.set(stroke, COL_VOLUME, vol);
+        strokes.set(stroke, COL_AMOUNT, amount);
+        if ( vol==0 ) {
+            strokes.set(stroke, COL_AVG_PRICE, strokeCol(stroke, COL_MKT_AVG_PRICE));
+        } else {
+            strokes.set(stroke, COL_AVG_PRICE, amount/vol);
+        }
+    }
+
+    /**
+     * 用当前行情切片更新最后一个笔划
+     *
+     * @return 拆分出的新笔划, -1 没有拆分
+     */
+    private long updateStroke(long stroke) {
+        long price = currTick[TICK_PRICE];
+        setCloseTick(stroke, currTick);
+        if ( maxTick[TICK_PRICE]<price ) {
+            System.arraycopy(currTick, 0, maxTick, 0, TICK_FIELD_COUNT);
+            strokes.set(stroke, COL_MAX, price);
+            strokes.set(stroke, COL_MAX_TICK, currTick[TICK_INDEX]);
+        }
+        if ( minTick[TICK_PRICE]>price ) {
+            System.arraycopy(currTick, 0, minTick, 0, TICK_FIELD_COUNT);
+            strokes.set(stroke, COL_MIN, price);
+            strokes.set(stroke, COL_MIN_TICK, currTick[TICK_INDEX]);
+        }
+        updateVol(stroke);
+        //检测方向
+        int direction = (int)strokeCol(stroke, COL_DIRECTION);
+        long open = strokeCol(stroke, COL_OPEN);
+        if ( direction==DIR_NET ) {
+            if ( open<price-strokeDirectionThreshold ) {
+                direction = DIR_LONG;
+            } else if ( open>price+strokeDirectionThreshold ) {
+                direction = DIR_SHORT;
+            }
+            strokes.set(stroke, COL_DIRECTION, direction);
+        }
+        if ( direction==DIR_LONG ) {
+            //向上笔划, 最高点向下超出阈值, 从最高点拆分, 新笔划向下
+            if ( strokeCol(stroke, COL_MAX)>price+strokeDirectionThreshold ) {
+                setCloseTick(stroke, maxTick);
+                if ( minTick[TICK_TIMESTAMP]>maxTick[TICK_TIMESTAMP] ) {
+                    strokes.set(stroke, COL_MIN_TICK, openTick[TICK_PRICE]<maxTick[TICK_PRICE]?openTick[TICK_INDEX]:maxTick[TICK_INDEX]);
+                }
+                updateVol(stroke);
+                return createStroke(maxTick, currTick);
+            }
+        } else if ( direction==DIR_SHORT ) {
+            //向下笔划, 最低点向上超出阈值, 从最低点拆分, 新笔划向上
+            if ( strokeCol(stroke, COL_MIN)<price-strokeDirectionThreshold ) {
+                setCloseTick(stroke, minTick);
+                if ( maxTick[TICK_TIMESTAMP]>minTick[TICK_TIMESTAMP] ) {
+                    strokes.set(stroke, COL_MAX_TICK, openTick[TICK_PRICE]>minTick[TICK_PRICE]?openTick[TICK_INDEX]:minTick[TICK_INDEX]);
+                }
+                updateVol(stroke);
+                return createStroke(minTick, currTick);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 笔1包含笔2
+     */
+    private static boolean barContains(long open1, long close1, long open2, long close2) {
+        long high1 = Math.max(open1, close1), low1 = Math.min(open1, close1);
+        long high2 = Math.max(open2, close2), low2 = Math.min(open2, close2);
+        return high1>=high2 && low1<=low2;
+    }
+
+    private boolean strokeContains(long stroke1, long stroke2) {
+        return barContains(strokeCol(stroke1, COL_OPEN), strokeCol(stroke1, COL_CLOSE), strokeCol(stroke2, COL_OPEN), strokeCol(stroke2, COL_CLOSE));
+    }
+
+    private static boolean charContains(CharBarList charBars, int idx1, int idx2) {
+        return barContains(charBars.open(idx1), charBars.close(idx1), charBars.open(idx2), charBars.close(idx2));
+    }
+
+    /**
+     * 顶分型, 与WaveBar.barTopSeq相同
+     */
+    private static boolean charTopSeq(CharBarList charBars, int idx1, int idx2, int idx3) {
+        long high1 = charBars.open(idx1);
+        long high2 = Math.max(charBars.open(idx2), charBars.close(idx2));
+        long high3 = Math.max(charBars.open(idx2), charBars.close(idx3));
+        return high1<high2 && high3<high2;
+    }
+
+    /**
+     * 底分型, 与WaveBar.strokeBottomSeq相同
+     */
+    private static boolean charBottomSeq(CharBarList charBars, int idx1, int idx2, int idx3) {
+        long low1 = charBars.open(idx1), low2 = charBars.open(idx2), low3 = charBars.open(idx3);
+        return low1>low2 && low3>low2;
+    }
+
+    /**
+     * 两个笔划有重合
+     */
+    private static boolean charOverlap(CharBarList charBars, int idx1, int idx2) {
+        long totalV = Math.abs(charBars.open(idx1)-charBars.close(idx2));
+        long v1 = Math.abs(charBars.open(idx1)-charBars.close(idx1));
+        long v2 = Math.abs(charBars.open(idx2)-charBars.close(idx2));
+        return totalV<v1+v2;
+    }
+
+    //------------------- 线段 ----------------
+
+    private long sectionCol(long section, int column) {
+        return sections.get(section, column);
+    }
+
+    private SectionState getSectionState(long row) {
+        if ( lastSection!=null && lastSection.row==row ) {
+            return lastSection;
+        }
+        if ( prevSection!=null && prevSection.row==row ) {
+            return prevSection;
+        }
+        //线段被合并后, 更早的线段重新成为倒数第二个线段, 按笔划重建特征序列
+        SectionState result = new SectionState(row);
+        rebuildCharBars(result);
+        prevSection = result;
+        return result;
+    }
+
+    /**
+     * 创建第一个线段, 有些形态要求:
+     * <LI>至少3根笔划
+     * <LI>笔划1不可包含笔划2, 且笔划2不可包含笔划3
+     */
+    private void createFirstSection() {
+        long strokeCount = strokes.size();
+        long strokeN = strokeCount-1;
+        long strokeIndex = 0;
+        //笔2包含笔1和笔3, 需要从笔2开始
+        if ( strokeContains(1, 0) && strokeContains(1, 2) ) {
+            strokeIndex++;
+        }
+        //低于最少笔划
+        if ( strokeCount<strokeIndex+3 ) {
+            return;
+        }
+        long stroke0 = strokeIndex, stroke1 = strokeIndex+1, stroke2 = strokeIndex+2;
+        //笔1包含笔2, 笔2包含笔3
+        if ( strokeContains(stroke0, stroke1) && strokeContains(stroke1, stroke2) ) {
+            //笔3包含笔N, 说明没有走出方向
+            if ( strokeN!=stroke2 && strokeContains(stroke2, strokeN) ) {
+                return;
+            }
+        }
+        if ( strokeCol(stroke0, COL_DIRECTION)!=strokeCol(strokeN, COL_DIRECTION) ) {
+            return;
+        }
+        createSection(strokeIndex, strokeN);
+    }
+
+    /**
+     * 从连续的笔划创建新线段
+     */
+    private long createSection(long firstStroke, long lastStroke) {
+        long row = sections.append();
+        sections.set(row, COL_DIRECTION, strokeCol(firstStroke, COL_DIRECTION));
+        sections.set(row, COL_FIRST_STROKE, firstStroke);
+        sections.set(row, COL_LAST_STROKE, lastStroke);
+        recompute(row);
+        SectionState section = new SectionState(row);
+        rebuildCharBars(section);
+        prevSection = lastSection;
+        lastSection = section;
+        return row;
+    }
+
+    /**
+     * 更新数据: OHLC, VA
+     */
+    private void recompute(long row) {
+        long firstStroke = sectionCol(row, COL_FIRST_STROKE);
+        long lastStroke = sectionCol(row, COL_LAST_STROKE);
+        long max = strokeCol(firstStroke, COL_MAX), min = strokeCol(firstStroke, COL_MIN);
+        long volume = 0, amount = 0;
+        for(long stroke=firstStroke;stroke<=lastStroke;stroke++) {
+            max = Math.max(max, strokeCol(stroke, COL_MAX));
+            min = Math.min(min, strokeCol(stroke, COL_MIN));
+            volume += strokeCol(stroke, COL_VOLUME);
+            amount += strokeCol(stroke, COL_AMOUNT);
+        }
+        sections.set(row, COL_OPEN, strokeCol(firstStroke, COL_OPEN));
+        sections.set(row, COL_CLOSE, strokeCol(lastStroke, COL_CLOSE));
+        sections.set(row, COL_MAX, max);
+        sections.set(row, COL_MIN, min);
+        sections.set(row, COL_BEGIN_TIME, strokeCol(firstStroke, COL_BEGIN_TIME));
+        sections.set(row, COL_END_TIME, strokeCol(lastStroke, COL_END_TIME));
+        sections.set(row, COL_VOLUME, volume);
+        sections.set(row, COL_AMOUNT, amount);
+        sections.set(row, COL_OPEN_TICK, strokeCol(firstStroke, COL_OPEN_TICK));
+        sections.set(row, COL_CLOSE_TICK, strokeCol(lastStroke, COL_CLOSE_TICK));
+        long mktAvgPrice = strokeCol(lastStroke, COL_MKT_AVG_PRICE);
+        long vol = strokeCol(lastStroke, COL_CLOSE_TICK_VOLUME)-strokeCol(firstStroke, COL_OPEN_TICK_VOLUME);
+        if ( vol==0 ) {
+            sections.set(row, COL_AVG_PRICE, mktAvgPrice);
+        } else {
+            long turnover = strokeCol(lastStroke, COL_CLOSE_TICK_TURNOVER)-strokeCol(firstStroke, COL_OPEN_TICK_TURNOVER);
+            sections.set(row, COL_AVG_PRICE, turnover/vol);
+        }
+        sections.set(row, COL_OPEN_INTEREST, strokeCol(lastStroke, COL_OPEN_INTEREST));
+        sections.set(row, COL_MKT_AVG_PRICE, mktAvgPrice);
+    }
+
+    /**
+     * 当最后一个笔划更新或拆分后, 检查线段是否被破坏
+     *
+     * @return 新线段, -1 没有新线段
+     */
+    private long updateSection(SectionState section, long prevSectionRow, long stroke) {
+        long row = section.row;
+        section.canMerge = false;
+        boolean newStroke = false;
+        if ( stroke>sectionCol(row, COL_LAST_STROKE) ) {
+            sections.set(row, COL_LAST_STROKE, stroke);
+            newStroke = true;
+        }
+        //同向笔划更新, 不需要检查新的线段创建
+        if ( strokeCol(stroke, COL_DIRECTION)==sectionCol(row, COL_DIRECTION) ) {
+            recompute(row);
+            return -1;
+        }
+        //反向笔划, 判断是否需要重新生成特征序列
+        if ( newStroke ) {
+            addCharStroke(section, stroke);
+        } else if ( needRebuildCharBars(section, stroke) ) {
+            rebuildCharBars(section);
+        }
+        long breakStroke = checkSectionBreak1(section);
+        if ( breakStroke>=0 ) {
+            if ( needsMergeBack(prevSectionRow, row) ) {
+                section.canMerge = true;
+                return -1;
+            }
+            return sectionBreak(section, breakStroke);
+        }
+        breakStroke = checkSectionBreak2(section);
+        if ( breakStroke>=0 ) {
+            return sectionBreak(section, breakStroke);
+        }
+        recompute(row);
+        return -1;
+    }
+
+    /**
+     * 合并最后一个线段到上一个线段
+     */
+    private void mergeSection(long prevSectionRow, SectionState section) {
+        SectionState prev = getSectionState(prevSectionRow);
+        long firstStroke = sectionCol(section.row, COL_FIRST_STROKE);
+        long lastStroke = sectionCol(section.row, COL_LAST_STROKE);
+        for(long stroke=firstStroke;stroke<=lastStroke;stroke++) {
+            sections.set(prevSectionRow, COL_LAST_STROKE, stroke);
+            addCharStroke(prev, stroke);
+        }
+        recompute(prevSectionRow);
+        sections.removeLast();
+        lastSection = prev;
+        prevSection = null;
+    }
+
+    /**
+     * 增加一个特征序列，同时对上一个特征序列进行正规化处理
+     */
+    private void addCharStroke(SectionState section, long stroke) {
+        if ( strokeCol(stroke, COL_DIRECTION)==sectionCol(section.row, COL_DIRECTION) ) {
+            return;
+        }
+        CharBarList charBars = section.charBars;
+        if ( charBars.isLastStroke(stroke) ) {
+            return;
+        }
+        int size = charBars.size();
+        if ( size>=2 ) {
+            int toCanonical = size-1, stroke2 = size-2;
+            if ( charContains(charBars, stroke2, toCanonical) || charContains(charBars, toCanonical, stroke2) ) {
+                charBars.compositeLastTwo();
+            }
+        }
+        charBars.addStroke(stroke);
+    }
+
+    /**
+     * 判断是否需要重新构建特征序列
+     */
+    private boolean needRebuildCharBars(SectionState section, long lastStroke) {
+        CharBarList charBars = section.charBars;
+        //如果最后一个特征Bar是复合笔划, 需要重构特征序列
+        if ( !charBars.isLastStroke(lastStroke) ) {
+            return true;
+        }
+        int size = charBars.size();
+        if ( size>=2 ) {
+            //如果笔N与笔N-1包含, 需要重构特征序列
+            int prev = size-2, last = size-1;
+            if ( charContains(charBars, prev, last) || charContains(charBars, last, prev) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rebuildCharBars(SectionState section) {
+        section.charBars.clear();
+        long firstStroke = sectionCol(section.row, COL_FIRST_STROKE);
+        long lastStroke = sectionCol(section.row, COL_LAST_STROKE);
+        for(long stroke=firstStroke;stroke<=lastStroke;stroke++) {
+            addCharStroke(section, stroke);
+        }
+    }
+
+    /**
+     * 单个笔划超过线段起始位置，被破坏
+     *
+     * @return 破坏线段的笔划, -1 没有破坏
+     */
+    private long checkSectionBreak1(SectionState section) {
+        long row = section.row;
+        long lastStroke = sectionCol(row, COL_LAST_STROKE);
+        long close = strokeCol(lastStroke, COL_CLOSE);
+        long open = sectionCol(row, COL_OPEN);
+        boolean needBreak = false;
+        if ( sectionCol(row, COL_DIRECTION)==DIR_LONG ) {
+            needBreak = close<open;
+        } else {
+            needBreak = close>open;
+        }
+        if ( !needBreak ) {
+            return -1;
+        }
+        long result = lastStroke;
+        CharBarList charBars = section.charBars;
+        if ( charBars.size()>=3 && charBars.isLastStroke(lastStroke) ) {
+            int lastStroke2 = charBars.size()-2;
+            //向下的笔划不会调整, 与SimpleSectionBar相同
+            if ( strokeCol(lastStroke, COL_DIRECTION)==DIR_LONG && charBars.open(lastStroke2)<strokeCol(lastStroke, COL_OPEN) ) {
+                result = charBars.lastStroke(lastStroke2);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 线段破坏, 规则与SimpleSectionBar相同
+     *
+     * @return 破坏线段的笔划, -1 没有破坏
+     */
+    private long checkSectionBreak2(SectionState section) {
+        CharBarList charBars = section.charBars;
+        int size = charBars.size();
+        if ( size<3 ) {
+            return -1;
+        }
+        int strokeN = size-1, strokeN_1 = size-2, strokeN_2 = size-3;
+        if ( (charContains(charBars, strokeN_1, strokeN) || charContains(charBars, strokeN, strokeN_1)) && size==3 ) {
+            return -1;
+        }
+        if ( sectionCol(section.row, COL_DIRECTION)==DIR_LONG ) {
+            //正常: 形成顶底分型, 且第一第二笔划之间有重叠
+            if ( charTopSeq(charBars, strokeN_2, strokeN_1, strokeN)
+                    && (charOverlap(charBars, strokeN_2, strokeN_1) || charOverlap(charBars, strokeN_2, strokeN)) ) {
+                return charBars.lastStroke(strokeN_1);
+            }
+            //非顶底分型，检测是否是依次向下的序列
+            if ( charBars.open(strokeN_2)>charBars.open(strokeN_1) && charBars.open(strokeN_1)>charBars.open(strokeN) ) {
+                return charBars.lastStroke(strokeN_2);
+            }
+        } else {
+            if ( charBars.end(strokeN)<charBars.end(strokeN_1) ) {
+                return -1;
+            }
+            if ( charBottomSeq(charBars, strokeN_2, strokeN_1, strokeN)
+                    && (charOverlap(charBars, strokeN_2, strokeN_1) || charOverlap(charBars, strokeN_2, strokeN)) ) {
+                return charBars.lastStroke(strokeN_1);
+            }
+            //非顶底分型，检测是否是依次向上的序列
+            if ( charBars.open(strokeN_2)<charBars.open(strokeN_1) && charBars.open(strokeN_1)<charBars.open(strokeN) ) {
+                return charBars.lastStroke(strokeN_2);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从破坏笔划开始拆分出新的线段
+     */
+    private long sectionBreak(SectionState section, long breakStroke) {
+        long row = section.row;
+        long lastStroke = sectionCol(row, COL_LAST_STROKE);
+        sections.set(row, COL_LAST_STROKE, breakStroke-1);
+        rebuildCharBars(section);
+        recompute(row);
+        return createSection(breakStroke, lastStroke);
+    }
+
+    /**
+     * 当出现一根笔划破坏当前线段时, 是否需要合并当前线段到上一个线段
+     * <BR>1 当前线段high-low < 1/2* 上个线段
+     * <BR>2 当前线段笔划数<=4
+     */
+    private boolean needsMergeBack(long prevSectionRow, long row) {
+        if ( prevSectionRow<0 ) {
+            return false;
+        }
+        long firstStroke = sectionCol(row, COL_FIRST_STROKE);
+        long lastStroke = sectionCol(row, COL_LAST_STROKE);
+        long strokeCount = lastStroke-firstStroke+1;
+        if ( strokeCount<=2 ) {
+            return true;
+        }
+        long height2 = Math.abs(strokeCol(firstStroke, COL_OPEN)-strokeCol(lastStroke-1, COL_CLOSE));
+        long halfMax = PriceUtil.price2long(PriceUtil.long2price(sectionCol(prevSectionRow, COL_MAX))/2);
+        return strokeCount<=4 && height2<halfMax;
+    }
+
+}
@@ -0,0 +1,385 @@
+package trader.service.ta.trend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.ta4j.core.num.Num;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+import trader.service.ta.LongNum;
+import trader.service.ta.trend.WaveBar.WaveType;
+import trader.service.trade.TradeConstants.PosDirection;
+
+/**
+ * 波浪数据的二进制快照, 用于收市后保存各级笔划/线段/趋势, 下次启动直接恢复而不需要重新回放行情.
+ * <BR>快照格式: 头信息, 去重后的行情切片表, 按依赖顺序排列的Bar表, 各级别Bar序号.
+ * <BR>恢复后的行情切片只包含波浪计算需要的字段
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class WaveBarSnapshot {
+
+    private static final int MAGIC = 0x57415645; //WAVE
+    private static final int VERSION = 1;
+
+    private static final byte KIND_STROKE = 1;
+    private static final byte KIND_COMPOSITE = 2;
+    private static final byte KIND_SECTION = 3;
+
+    private static final PosDirection[] DIRECTIONS = PosDirection.values();
+    private static final WaveType[] WAVE_TYPES = WaveType.values();
+
+    /**
+     * 从快照恢复的行情切片
+     */
+    public static class SnapshotMarketData extends MarketData {
+
+        private static final String CSV_HEAD = "InstrumentID,UpdateTime,LastPrice,Volume,Turnover,OpenInterest,AveragePrice";
+
+        SnapshotMarketData(Exchangeable instrumentId) {
+            this.producerId = "snapshot";
+            this.instrumentId = instrumentId;
+            this.depth = 1;
+            this.bidPrices = new long[1];
+            this.bidVolumes = new int[1];
+            this.askPrices = new long[1];
+            this.askVolumes = new int[1];
+        }
+
+        @Override
+        public String getCsvHead() {
+            return CSV_HEAD;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+            rowBuf.append(instrumentId.id())
+                .append(",").append(DateUtil.date2str(updateTime))
+                .append(",").append(PriceUtil.long2str(lastPrice))
+                .append(",").append(volume)
+                .append(",").append(PriceUtil.long2str(turnover))
+                .append(",").append(openInterest)
+                .append(",").append(PriceUtil.long2str(averagePrice));
+        }
+
+        @Override
+        public MarketData clone() {
+            SnapshotMarketData result = new SnapshotMarketData(instrumentId);
+            cloneImpl(result);
+            return result;
+        }
+    }
+
+    /**
+     * 保存快照到指定交易日
+     */
+    public static void save(ExchangeableData data, Exchangeable e, LocalDate tradingDay, MarketDataWaveBarBuilder builder) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try(GZIPOutputStream gos = new GZIPOutputStream(bos);){
+            write(gos, e, builder);
+        }
+        data.save(e, ExchangeableData.WAVE_SNAPSHOT, tradingDay, Base64.getMimeEncoder().encodeToString(bos.toByteArray()));
+    }
+
+    /**
+     * 从指定交易日的快照恢复
+     *
+     * @return false 如果快照不存在
+     */
+    public static boolean load(ExchangeableData data, Exchangeable e, LocalDate tradingDay, MarketDataWaveBarBuilder builder) throws IOException
+    {
+        if ( !data.exists(e, ExchangeableData.WAVE_SNAPSHOT, tradingDay) ) {
+            return false;
+        }
+        byte[] bytes = Base64.getMimeDecoder().decode(data.load(e, ExchangeableData.WAVE_SNAPSHOT, tradingDay));
+        try(GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(bytes));){
+            read(gis, builder);
+        }
+        return true;
+    }
+
+    /**
+     * 未压缩的快照数据
+     */
+    public static byte[] toBytes(Exchangeable e, MarketDataWaveBarBuilder builder) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        write(bos, e, builder);
+        return bos.toByteArray();
+    }
+
+    public static void fromBytes(byte[] bytes, MarketDataWaveBarBuilder builder) throws IOException
+    {
+        read(new ByteArrayInputStream(bytes), builder);
+    }
+
+    private static void write(OutputStream os, Exchangeable e, MarketDataWaveBarBuilder builder) throws IOException
+    {
+        //收集行情切片和Bar, 下级Bar排在上级Bar之前
+        Map<MarketData, Integer> tickIndexes = new IdentityHashMap<>();
+        List<MarketData> ticks = new ArrayList<>();
+        Map<WaveBar, Integer> barIndexes = new IdentityHashMap<>();
+        List<WaveBar> bars = new ArrayList<>();
+        int levelCount = builder.getLevelCount();
+        for(int level=0;level<levelCount;level++) {
+            for(WaveBar bar:builder.getBars(level)) {
+                collect(bar, tickIndexes, ticks, barIndexes, bars);
+            }
+        }
+
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeUTF(e.toString());
+        writeNum(dos, builder.getStrokeDirectionThreshold());
+        dos.writeInt(ticks.size());
+        for(MarketData tick:ticks) {
+            writeDateTime(dos, tick.updateTime);
+            dos.writeLong(tick.updateTimestamp);
+            dos.writeLong(tick.lastPrice);
+            dos.writeLong(tick.volume);
+            dos.writeLong(tick.turnover);
+            dos.writeLong(tick.openInterest);
+            dos.writeLong(tick.averagePrice);
+        }
+        dos.writeInt(bars.size());
+        for(WaveBar bar:bars) {
+            if ( bar instanceof MarketDataStrokeBar ) {
+                MarketDataStrokeBar stroke = (MarketDataStrokeBar)bar;
+                dos.writeByte(KIND_STROKE);
+                writeBarFields(dos, bar);
+                writeTickIndex(dos, tickIndexes, stroke.getOpenTick());
+                writeTickIndex(dos, tickIndexes, stroke.getMaxTick());
+                writeTickIndex(dos, tickIndexes, stroke.getMinTick());
+                writeTickIndex(dos, tickIndexes, stroke.getCloseTick());
+                writeTickIndex(dos, tickIndexes, stroke.getSplitTick());
+            } else if ( bar instanceof CompositeStrokeBar ) {
+                dos.writeByte(KIND_COMPOSITE);
+                writeBarFields(dos, bar);
+                writeBarIndexes(dos, barIndexes, bar.getBars());
+            } else if ( bar instanceof SimpleSectionBar ) {
+                SimpleSectionBar section = (SimpleSectionBar)bar;
+                dos.writeByte(KIND_SECTION);
+                writeBarFields(dos, bar);
+                dos.writeByte(section.getWaveType().ordinal());
+                dos.writeBoolean(section.canMerge());
+                writeBarIndexes(dos, barIndexes, section.getBars());
+                writeBarIndexes(dos, barIndexes, section.getCharBars());
+            } else {
+                throw new IOException("Unsupported wave bar "+bar.getClass().getName());
+            }
+        }
+        dos.writeInt(levelCount);
+        for(int level=0;level<levelCount;level++) {
+            writeBarIndexes(dos, barIndexes, builder.getBars(level));
+        }
+        dos.flush();
+    }
+
+    private static void read(InputStream is, MarketDataWaveBarBuilder builder) throws IOException
+    {
+        DataInputStream dis = new DataInputStream(is);
+        if ( dis.readInt()!=MAGIC ) {
+            throw new IOException("Invalid wave snapshot");
+        }
+        int version = dis.readInt();
+        if ( version!=VERSION ) {
+            throw new IOException("Unsupported wave snapshot version "+version);
+        }
+        Exchangeable e = Exchangeable.fromString(dis.readUTF());
+        ZoneId zoneId = e.exchange().getZoneId();
+        Num threshold = readNum(dis);
+        MarketData[] ticks = new MarketData[dis.readInt()];
+        for(int i=0;i<ticks.length;i++) {
+            SnapshotMarketData tick = new SnapshotMarketData(e);
+            tick.updateTime = readDateTime(dis);
+            tick.updateTimestamp = dis.readLong();
+            tick.lastPrice = dis.readLong();
+            tick.volume = dis.readLong();
+            tick.turnover = dis.readLong();
+            tick.openInterest = dis.readLong();
+            tick.averagePrice = dis.readLong();
+            ticks[i] = tick;
+        }
+        WaveBar[] bars = new WaveBar[dis.readInt()];
+        for(int i=0;i<bars.length;i++) {
+            byte kind = dis.readByte();
+            PosDirection direction = DIRECTIONS[dis.readByte()];
+            WaveBar bar = null;
+            //通用字段在创建Bar之后设置
+            Num[] nums = new Num[8];
+            for(int j=0;j<nums.length;j++) {
+                nums[j] = readNum(dis);
+            }
+            LocalDateTime begin = readDateTime(dis), end = readDateTime(dis);
+            long openInterest = dis.readLong();
+            switch(kind) {
+            case KIND_STROKE:
+                bar = new MarketDataStrokeBar(threshold, direction, readTick(dis, ticks), readTick(dis, ticks), readTick(dis, ticks), readTick(dis, ticks), readTick(dis, ticks));
+                break;
+            case KIND_COMPOSITE:
+                bar = new CompositeStrokeBar(readBars(dis, bars), direction);
+                break;
+            case KIND_SECTION:
+                WaveType waveType = WAVE_TYPES[dis.readByte()];
+                boolean canMerge = dis.readBoolean();
+                bar = new SimpleSectionBar(waveType, direction, readBars(dis, bars), readBars(dis, bars), canMerge);
+                break;
+            default:
+                throw new IOException("Invalid wave bar kind "+kind+" at "+i);
+            }
+            bar.open = nums[0];
+            bar.close = nums[1];
+            bar.max = nums[2];
+            bar.min = nums[3];
+            bar.volume = nums[4];
+            bar.amount = nums[5];
+            bar.avgPrice = nums[6];
+            bar.mktAvgPrice = nums[7];
+            bar.begin = begin!=null?ZonedDateTime.of(begin, zoneId):null;
+            bar.end = end!=null?ZonedDateTime.of(end, zoneId):null;
+            bar.openInterest = openInterest;
+            bars[i] = bar;
+        }
+        List<WaveBar>[] levelBars = new List[dis.readInt()];
+        for(int level=0;level<levelBars.length;level++) {
+            levelBars[level] = readBars(dis, bars);
+        }
+        builder.restore(levelBars);
+    }
+
+    private static void collect(WaveBar bar, Map<MarketData, Integer> tickIndexes, List<MarketData> ticks, Map<WaveBar, Integer> barIndexes, List<WaveBar> bars)
+    {
+        if ( barIndexes.containsKey(bar) ) {
+            return;
+        }
+        if ( bar instanceof MarketDataStrokeBar ) {
+            MarketDataStrokeBar stroke = (MarketDataStrokeBar)bar;
+            collectTick(stroke.getOpenTick(), tickIndexes, ticks);
+            collectTick(stroke.getMaxTick(), tickIndexes, ticks);
+            collectTick(stroke.getMinTick(), tickIndexes, ticks);
+            collectTick(stroke.getCloseTick(), tickIndexes, ticks);
+            collectTick(stroke.getSplitTick(), tickIndexes, ticks);
+        } else {
+            for(Object child:bar.getBars()) {
+                collect((WaveBar)child, tickIndexes, ticks, barIndexes, bars);
+            }
+            if ( bar instanceof SimpleSectionBar ) {
+                for(WaveBar child:((SimpleSectionBar)bar).getCharBars()) {
+                    collect(child, tickIndexes, ticks, barIndexes, bars);
+                }
+            }
+        }
+        barIndexes.put(bar, bars.size());
+        bars.add(bar);
+    }
+
+    private static void collectTick(MarketData tick, Map<MarketData, Integer> tickIndexes, List<MarketData> ticks) {
+        if ( tick!=null && !tickIndexes.containsKey(tick) ) {
+            tickIndexes.put(tick, ticks.size());
+            ticks.add(tick);
+        }
+    }
+
+    private static void writeBarFields(DataOutputStream dos, WaveBar bar) throws IOException
+    {
+        dos.writeByte(bar.getDirection().ordinal());
+        writeNum(dos, bar.open);
+        writeNum(dos, bar.close);
+        writeNum(dos, bar.max);
+        writeNum(dos, bar.min);
+        writeNum(dos, bar.volume);
+        writeNum(dos, bar.amount);
+        writeNum(dos, bar.avgPrice);
+        writeNum(dos, bar.mktAvgPrice);
+        writeDateTime(dos, bar.begin!=null?bar.begin.toLocalDateTime():null);
+        writeDateTime(dos, bar.end!=null?bar.end.toLocalDateTime():null);
+        dos.writeLong(bar.openInterest);
+    }
+
+    private static void writeTickIndex(DataOutputStream dos, Map<MarketData, Integer> tickIndexes, MarketData tick) throws IOException
+    {
+        dos.writeInt(tick!=null?tickIndexes.get(tick):-1);
+    }
+
+    private static MarketData readTick(DataInputStream dis, MarketData[] ticks) throws IOException
+    {
+        int idx = dis.readInt();
+        return idx>=0?ticks[idx]:null;
+    }
+
+    private static void writeBarIndexes(DataOutputStream dos, Map<WaveBar, Integer> barIndexes, List<WaveBar> bars) throws IOException
+    {
+        dos.writeInt(bars.size());
+        for(WaveBar bar:bars) {
+            dos.writeInt(barIndexes.get(bar));
+        }
+    }
+
+    private static List<WaveBar> readBars(DataInputStream dis, WaveBar[] bars) throws IOException
+    {
+        int count = dis.readInt();
+        List<WaveBar> result = new ArrayList<>(count);
+        for(int i=0;i<count;i++) {
+            result.add(bars[dis.readInt()]);
+        }
+        return result;
+    }
+
+    private static void writeNum(DataOutputStream dos, Num num) throws IOException
+    {
+        dos.writeBoolean(num!=null);
+        if ( num!=null ) {
+            long value = (num instanceof LongNum)?((LongNum)num).rawValue():PriceUtil.price2long(num.doubleValue());
+            dos.writeLong(value);
+        }
+    }
+
+    private static Num readNum(DataInputStream dis) throws IOException
+    {
+        if ( !dis.readBoolean() ) {
+            return null;
+        }
+        return new LongNum(dis.readLong());
+    }
+
+    private static void writeDateTime(DataOutputStream dos, LocalDateTime time) throws IOException
+    {
+        dos.writeBoolean(time!=null);
+        if ( time!=null ) {
+            dos.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            dos.writeInt(time.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream dis) throws IOException
+    {
+        if ( !dis.readBoolean() ) {
+            return null;
+        }
+        long seconds = dis.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, dis.readInt(), ZoneOffset.UTC);
+    }
+
+}
@@ -3,14 +3,15 @@ package trader.service.trade;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import trader.common.util.JsonEnabled;
+import trader.common.util.JsonStreamEnabled;
+import trader.common.util.JsonStreamWriter;
 import trader.service.trade.TradeConstants.OrderState;
 import trader.service.trade.TradeConstants.OrderSubmitState;
 
 /**
  * 订单状态变化元组
  */
-public class OrderStateTuple implements JsonEnabled, Comparable<OrderStateTuple> {
+public class OrderStateTuple implements JsonStreamEnabled, Comparable<OrderStateTuple> {
     public static final OrderStateTuple STATE_UNKNOWN = new OrderStateTuple(OrderState.Unknown, OrderSubmitState.Unsubmitted, 0);
 
     private OrderState state;
@@ -88,6 +89,18 @@ public class OrderStateTuple implements JsonEnabled, Comparable<OrderStateTuple>
         return json;
     }
 
+    @Override
+    public void toJson(JsonStreamWriter writer) {
+        writer.beginObject()
+            .name("state").value(state.name())
+            .name("submitState").value(submitState.name())
+            .name("timestamp").value(timestamp);
+        if ( stateMessage!=null ) {
+            writer.name("stateMessage").value(stateMessage);
+        }
+        writer.endObject();
+    }
+
     @Override
     public String toString() {
         return toJson().toString();
@@ -2,6 +2,7 @@ package trader.service.trade;
 
 import com.google.gson.JsonObject;
 
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.PriceUtil;
 
 public interface TradeConstants {
@@ -483,6 +484,24 @@ public interface TradeConstants {
         return volumeJson;
     }
 
+    public static void posVolume2json(JsonStreamWriter writer, int[] volumes) {
+        writer.beginObject()
+            .name("Position").value(volumes[PosVolume_Position])
+            .name("OpenVolume").value(volumes[PosVolume_OpenVolume])
+            .name("CloseVolume").value(volumes[PosVolume_CloseVolume])
+            .name("LongFrozen").value(volumes[PosVolume_LongFrozen])
+            .name("ShortFrozen").value(volumes[PosVolume_ShortFrozen])
+            .name("TodayPosition").value(volumes[PosVolume_TodayPosition])
+            .name("YdPosition").value(volumes[PosVolume_YdPosition])
+            .name("LongPosition").value(volumes[PosVolume_LongPosition])
+            .name("ShortPosition").value(volumes[PosVolume_ShortPosition])
+            .name("LongTodayPosition").value(volumes[PosVolume_LongTodayPosition])
+            .name("ShortTodayPosition").value(volumes[PosVolume_ShortTodayPosition])
+            .name("LongYdPosition").value(volumes[PosVolume_LongYdPosition])
+            .name("ShortYdPosition").value(volumes[PosVolume_ShortYdPosition])
+            .endObject();
+    }
+
 
     public static int[] json2posVolumes(JsonObject json) {
         int volumes[] = new int[PosVolume_Count];
@@ -601,6 +620,29 @@ public interface TradeConstants {
         return moneyJson;
     }
 
+    public static void posMoney2json(JsonStreamWriter writer, long[] money) {
+        writer.beginObject()
+            .name("LongFrozenAmount").priceValue(money[PosMoney_LongFrozenAmount])
+            .name("ShortFrozenAmount").priceValue(money[PosMoney_ShortFrozenAmount])
+            .name("OpenAmount").priceValue(money[PosMoney_OpenAmount])
+            .name("CloseAmount").priceValue(money[PosMoney_CloseAmount])
+            .name("OpenCost").priceValue(money[PosMoney_OpenCost])
+            .name("PositionCost").priceValue(money[PosMoney_PositionCost])
+            .name("PreMargin").priceValue(money[PosMoney_PreMargin])
+            .name("UseMargin").priceValue(money[PosMoney_UseMargin])
+            .name("FrozenMargin").priceValue(money[PosMoney_FrozenMargin])
+            .name("FrozenCommission").priceValue(money[PosMoney_FrozenCommission])
+            .name("Commission").priceValue(money[PosMoney_Commission])
+            .name("CloseProfit").priceValue(money[PosMoney_CloseProfit])
+            .name("PositionProfit").priceValue(money[PosMoney_PositionProfit])
+            .name("PreSettlementPrice").priceValue(money[PosMoney_PreSettlementPrice])
+            .name("SettlementPrice").priceValue(money[PosMoney_SettlementPrice])
+            .name("ExchangeMargin").priceValue(money[PosMoney_ExchangeMargin])
+            .name("LongUseMargin").priceValue(money[PosMoney_LongUseMargin])
+            .name("ShortUseMargin").priceValue(money[PosMoney_ShortUseMargin])
+            .endObject();
+    }
+
     public static long[] json2posMoney(JsonObject json) {
         long[] money = new long[PosMoney_Count];
         money[PosMoney_LongFrozenAmount] = PriceUtil.str2long(json.get("LongFrozenAmount").getAsString());
@@ -681,6 +723,19 @@ public interface TradeConstants {
         return moneyJson;
     }
 
+    public static void odrMoney2json(JsonStreamWriter writer, long[] money) {
+        writer.beginObject()
+            .name("PriceCandidate").priceValue(money[OdrMoney_PriceCandidate])
+            .name("LocalUsedMargin").priceValue(money[OdrMoney_LocalUsedMargin])
+            .name("LocalFrozenMargin").priceValue(money[OdrMoney_LocalFrozenMargin])
+            .name("LocalUnfrozenMargin").priceValue(money[OdrMoney_LocalUnfrozenMargin])
+            .name("LocalUsedCommission").priceValue(money[OdrMoney_LocalUsedCommission])
+            .name("LocalFrozenCommission").priceValue(money[OdrMoney_LocalFrozenCommission])
+            .name("LocalUnfrozenCommission").priceValue(money[OdrMoney_LocalUnfrozenCommission])
+            .name("OpenCost").priceValue(money[OdrMoney_OpenCost])
+            .endObject();
+    }
+
     /**
      * 报单量
      */
@@ -719,4 +774,15 @@ public interface TradeConstants {
         return volumeJson;
     }
 
+    public static void odrVolume2json(JsonStreamWriter writer, int[] volumes) {
+        writer.beginObject()
+            .name("ReqVolume").value(volumes[OdrVolume_ReqVolume])
+            .name("TradeVolume").value(volumes[OdrVolume_TradeVolume])
+            .name("LongFrozen").value(volumes[OdrVolume_LongFrozen])
+            .name("ShortFrozen").value(volumes[OdrVolume_ShortFrozen])
+            .name("LongUnfrozen").value(volumes[OdrVolume_LongUnfrozen])
+            .name("ShortUnfrozen").value(volumes[OdrVolume_ShortUnfrozen])
+            .endObject();
+    }
+
 }
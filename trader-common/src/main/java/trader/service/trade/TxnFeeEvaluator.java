@@ -40,4 +40,25 @@ public interface TxnFeeEvaluator extends JsonEnabled {
      * @return 0 保证金 1 合约价值
      */
     public long[] compute(Exchangeable e, int volume, long price, PosDirection direction);
+
+    /**
+     * 返回品种的费率位置, 费率加载后不变, 调用方可以缓存
+     *
+     * @return -1 如果没有这个品种的费率
+     */
+    public int getFeeIndex(Exchangeable e);
+
+    /**
+     * 按费率位置计算保证金和手续费, 不分配内存
+     *
+     * @param result 0 保证金, 1 手续费, 2 合约价值
+     */
+    public void compute(int feeIndex, int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag, long[] result);
+
+    /**
+     * 按费率位置计算保证金和合约价值, 不分配内存
+     *
+     * @param result 0 保证金 1 合约价值
+     */
+    public void compute(int feeIndex, int volume, long price, PosDirection direction, long[] result);
 }
@@ -3,7 +3,9 @@ package trader.service.tradlet;
 import java.util.List;
 
 import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
 import trader.service.trade.Order;
+import trader.service.tradlet.TradletConstants.PlaybookState;
 
 /**
  * Playbook以及关联的报单, 成交的管理接口
@@ -47,6 +49,16 @@ public interface PlaybookKeeper {
      */
     public List<Playbook> getActivePlaybooks(String openActionId);
 
+    /**
+     * 返回某个品种的活动交易剧本列表
+     */
+    public List<Playbook> getActivePlaybooksByInstrument(Exchangeable e);
+
+    /**
+     * 返回某个状态的活动交易剧本列表
+     */
+    public List<Playbook> getActivePlaybooksByState(PlaybookState state);
+
     /**
      * 返回指定Playbook
      */
@@ -0,0 +1,30 @@
+package trader.service.tradlet;
+
+import com.google.gson.JsonElement;
+
+/**
+ * 支持热替换的Tradlet.
+ * <BR>插件更新后新实例先以影子模式运行: 接收相同的事件, 但是创建/关闭Playbook等交易动作被忽略.
+ * 新实例在isReady()返回true后, 在策略组线程中原子替换旧实例, 旧实例的exportState()结果传给新实例的importState().
+ * <BR>没有实现这个接口的Tradlet不经过影子模式, 新实例直接初始化后替换旧实例, 需要在init()中从策略组恢复运行状态
+ */
+public interface SwappableTradlet extends Tradlet {
+
+    /**
+     * 影子模式预热完成, 可以替换旧实例
+     */
+    public boolean isReady();
+
+    /**
+     * 替换前导出旧实例的运行状态, 不需要时返回null
+     */
+    public JsonElement exportState();
+
+    /**
+     * 替换时导入旧实例的运行状态, 在影子模式结束前调用
+     *
+     * @param state 旧实例exportState()的返回值, 旧实例没有实现SwappableTradlet时为null
+     */
+    public void importState(JsonElement state);
+
+}
@@ -0,0 +1,142 @@
+package trader.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.gson.JsonPrimitive;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.md.MarketData;
+
+/**
+ * JsonStreamWriter的输出必须与Gson JsonElement.toString()逐字节相同
+ */
+public class JsonStreamWriterTest {
+
+    @Test
+    public void testPrice() {
+        byte[] buf = new byte[32];
+        Random random = new Random(1);
+        List<Long> prices = new ArrayList<>(Arrays.asList(0L, 1L, -1L, 10L, 100L, 1000L, 10000L, 12340L, 12300L, 12345L, -12300L, Long.MAX_VALUE, Long.MIN_VALUE));
+        for(int i=0;i<10000;i++) {
+            prices.add(random.nextLong()/(1+random.nextInt(1000000)));
+        }
+        for(long price:prices) {
+            int len = PriceUtil.long2str(price, buf, 0);
+            assertEquals(PriceUtil.long2str(price), new String(buf, 0, len, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testString() {
+        String[] strs = {"", "abc", "a\"b\\c/d", "\t\b\n\r\f\u0000\u001f\u007f", "<html>&'=", "中文行情", "\ud83d\ude00", "x\u2028y\u2029", "lone\ud83d", "\udc00lone"};
+        JsonStreamWriter writer = new JsonStreamWriter(4);
+        for(String str:strs) {
+            writer.reset().value(str);
+            assertArrayEquals(str, (new JsonPrimitive(str)).toString().getBytes(StandardCharsets.UTF_8), writer.toByteArray());
+        }
+    }
+
+    @Test
+    public void testObject() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("int", 1);
+        map.put("long", Long.MIN_VALUE);
+        map.put("double", 1.5);
+        map.put("bool", true);
+        map.put("null", null);
+        map.put("str", "v\"1");
+        map.put("ints", new int[] {1, -2, 3});
+        map.put("doubles", new double[] {0.1, 2});
+        map.put("list", Arrays.asList("a", Arrays.asList(1L, 2L), new LinkedHashMap<>()));
+        map.put("empty", new ArrayList<>());
+        map.put("json", JsonUtil.object2json(Arrays.asList(1, "2")));
+        map.put("time", LocalDateTime.of(2019, 1, 2, 3, 4, 5));
+
+        JsonStreamWriter writer = new JsonStreamWriter();
+        writer.value(map);
+        assertEquals(JsonUtil.object2json(map).toString(), writer.toString());
+        assertEquals(JsonUtil.object2json(map).toString(), JsonStreamWriter.local().value(map).toString());
+    }
+
+    @Test
+    public void testDateTime() {
+        JsonStreamWriter writer = new JsonStreamWriter();
+        LocalDateTime[] times = {
+                LocalDateTime.of(2019, 1, 2, 9, 0, 0, 0), LocalDateTime.of(2019, 1, 2, 9, 0, 0, 500000000),
+                LocalDateTime.of(2019, 1, 2, 9, 0, 1), LocalDateTime.of(2019, 12, 31, 23, 59, 59), LocalDateTime.of(999, 1, 1, 0, 0)};
+        for(LocalDateTime time:times) {
+            writer.reset().value(time);
+            assertEquals("\""+DateUtil.date2str(time)+"\"", writer.toString());
+        }
+    }
+
+    @Test
+    public void testMarketData() throws Exception {
+        MarketData md = new TestMarketData();
+        md.producerId = "ctp";
+        md.instrumentId = Exchangeable.fromString("au1906");
+        md.tradingDay = "20190102";
+        md.updateTime = LocalDateTime.of(2019, 1, 2, 9, 30, 15, 500000000);
+        md.updateTimestamp = 1546392615500L;
+        md.volume = 12345;
+        md.openInterest = 234567;
+        md.turnover = PriceUtil.price2long(3502851450.0);
+        md.lastPrice = PriceUtil.price2long(283.75);
+        md.openPrice = PriceUtil.price2long(283.1);
+        md.highestPrice = PriceUtil.price2long(284);
+        md.lowestPrice = PriceUtil.price2long(282.95);
+        md.averagePrice = PriceUtil.price2long(283.7521);
+        md.depth = 2;
+        md.bidPrices = new long[] {PriceUtil.price2long(283.7), PriceUtil.price2long(283.65)};
+        md.bidVolumes = new int[] {12, 5};
+        md.askPrices = new long[] {PriceUtil.price2long(283.75), PriceUtil.price2long(283.8)};
+        md.askVolumes = new int[] {3, 20};
+        md.askCounts = new int[] {1, 4};
+
+        String golden = loadGolden("/json/marketdata.json");
+        assertEquals(golden, md.toJson().toString());
+        JsonStreamWriter writer = new JsonStreamWriter();
+        md.toJson(writer);
+        assertEquals(golden, writer.toString());
+        //对象嵌套在数组中
+        writer.reset().value(Arrays.asList(md, md));
+        assertEquals("["+golden+","+golden+"]", writer.toString());
+    }
+
+    static String loadGolden(String name) throws Exception {
+        try(InputStream is = JsonStreamWriterTest.class.getResourceAsStream(name);){
+            return IOUtil.read(is, StringUtil.UTF8).trim();
+        }
+    }
+
+    private static class TestMarketData extends MarketData {
+
+        @Override
+        public String getCsvHead() {
+            return null;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+        }
+
+        @Override
+        public MarketData clone() {
+            return null;
+        }
+    }
+
+}
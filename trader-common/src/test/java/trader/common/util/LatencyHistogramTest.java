@@ -0,0 +1,117 @@
+package trader.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        long prevUpper = -1;
+        for(int i=0;i<=LatencyHistogram.bucketIndex(Long.MAX_VALUE);i++) {
+            long upper = LatencyHistogram.bucketUpperBound(i);
+            assertTrue(upper>prevUpper);
+            //桶的上下限都落在本桶
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            assertEquals(i, LatencyHistogram.bucketIndex(prevUpper+1));
+            prevUpper = upper;
+        }
+        assertEquals(Long.MAX_VALUE, prevUpper);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        long[] values = new long[100000];
+        for(int i=0;i<values.length;i++) {
+            values[i] = (long)(Math.exp(random.nextGaussian()*1.5)*20000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length-1], histogram.getMax());
+
+        double[] percentiles = {0, 10, 50, 90, 99, 99.9, 100};
+        long prev = 0;
+        for(double p:percentiles) {
+            long v = histogram.getValueAtPercentile(p);
+            assertTrue(v>=prev);
+            prev = v;
+            int idx = Math.max(0, (int)Math.ceil(p*values.length/100)-1);
+            long exact = values[idx];
+            //误差不超过1/16
+            assertTrue(v>=exact);
+            assertTrue(v-exact<=exact/16+1);
+        }
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        histogram.record(-5);
+        histogram.record(7);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(7, histogram.getValueAtPercentile(99));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testCountAbove() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i=1;i<=100;i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCountAbove(0));
+        //小于32的值每个值一个桶, 没有误差
+        assertEquals(90, histogram.getCountAbove(10));
+        assertEquals(0, histogram.getCountAbove(100));
+        long countAbove = histogram.getCountAbove(50);
+        assertTrue(countAbove<=50 && countAbove>=50-50/16-1);
+    }
+
+    @Test
+    public void testIntervalSampler() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram.IntervalSampler sampler = new LatencyHistogram.IntervalSampler(histogram);
+        for(int i=1;i<=100;i++) {
+            histogram.record(i*1000);
+        }
+        sampler.sample();
+        assertEquals(100, sampler.getCount());
+        assertEquals(histogram.getValueAtPercentile(50), sampler.getValueAtPercentile(50));
+        assertEquals(100000, sampler.getMax());
+        //下一个区间只有小的值, 不受之前记录影响
+        for(int i=0;i<10;i++) {
+            histogram.record(20);
+        }
+        sampler.sample();
+        assertEquals(10, sampler.getCount());
+        assertEquals(20, sampler.getValueAtPercentile(99));
+        assertEquals(20, sampler.getMax());
+        assertEquals(100000, histogram.getMax());
+        //没有新记录
+        sampler.sample();
+        assertEquals(0, sampler.getCount());
+        assertEquals(0, sampler.getValueAtPercentile(99));
+        assertEquals(0, sampler.getMax());
+        //直方图被清除后重新计数
+        histogram.reset();
+        histogram.record(7);
+        sampler.sample();
+        assertEquals(1, sampler.getCount());
+        assertEquals(7, sampler.getMax());
+    }
+
+}
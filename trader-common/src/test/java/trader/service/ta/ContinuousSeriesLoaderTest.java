@@ -0,0 +1,148 @@
+package trader.service.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.Future;
+import trader.common.tick.PriceLevel;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.service.ta.ContinuousSeriesLoader.AdjustMode;
+import trader.service.ta.ContinuousSeriesLoader.Segment;
+
+/**
+ * 两个重叠合约 ru1905/ru1909 拼接为 ru888.
+ * <BR>ru1909 在 20181205 收市后持仓量超过 ru1905, 20181206 换月; 20181205 收盘价 ru1905 12000.5, ru1909 12300.5
+ */
+public class ContinuousSeriesLoaderTest {
+
+    private static final LocalDate[] DAYS = {
+            LocalDate.of(2018, 12, 3), LocalDate.of(2018, 12, 4), LocalDate.of(2018, 12, 5), LocalDate.of(2018, 12, 6), LocalDate.of(2018, 12, 7)};
+
+    private Exchangeable ru1905 = Exchangeable.fromString("ru1905");
+    private Exchangeable ru1909 = Exchangeable.fromString("ru1909");
+    private Exchangeable ru888 = Future.continuousOf(Exchange.SHFE, "ru");
+    private ExchangeableData data;
+
+    @Before
+    public void setup() throws Exception {
+        File dataDir = Files.createTempDirectory("continuous").toFile();
+        dataDir.deleteOnExit();
+        data = new ExchangeableData(dataDir, false);
+        long[] ru1909OpenInts = {500, 800, 1200, 1500, 1600};
+        for(int i=0;i<DAYS.length;i++) {
+            saveMin1(ru1905, DAYS[i], 12000, 1000);
+            saveMin1(ru1909, DAYS[i], 12300, ru1909OpenInts[i]);
+        }
+    }
+
+    @Test
+    public void testRollByOpenInterest() throws Exception {
+        ContinuousSeriesLoader loader = new ContinuousSeriesLoader(null, data)
+                .setExchangeable(ru888)
+                .setStartTradingDay(DAYS[0])
+                .setEndTradingDay(DAYS[4]);
+        List<Segment> segments = loader.getSegments();
+        assertEquals(2, segments.size());
+        assertEquals(ru1905, segments.get(0).getContract());
+        assertEquals(DAYS[2], segments.get(0).getEndTradingDay());
+        assertEquals(ru1909, segments.get(1).getContract());
+        assertEquals(DAYS[3], segments.get(1).getBeginTradingDay());
+        assertEquals(PriceUtil.price2long(300), segments.get(0).getPriceDiff());
+        assertEquals(12300.5/12000.5, segments.get(0).getPriceRatio(), 0.000001);
+        assertEquals(0, segments.get(1).getPriceDiff());
+    }
+
+    @Test
+    public void testAdjustModes() throws Exception {
+        ContinuousSeriesLoader loader = new ContinuousSeriesLoader(null, data)
+                .setExchangeable(ru888)
+                .setLevel(PriceLevel.MIN1)
+                .setStartTradingDay(DAYS[0])
+                .setEndTradingDay(DAYS[4]);
+        //首个bar收盘价 11999.5, 最后一个bar收盘价 12300.5
+        LeveledTimeSeries series = loader.load();
+        assertEquals(DAYS.length*3, series.getBarCount());
+        assertEquals(PriceUtil.price2long(11999.5), ((LongNum)series.getBar(0).getClosePrice()).rawValue());
+        assertEquals(PriceUtil.price2long(12300.5), ((LongNum)series.getLastBar().getClosePrice()).rawValue());
+
+        series = loader.setAdjustMode(AdjustMode.Difference).load();
+        assertEquals(PriceUtil.price2long(12299.5), ((LongNum)series.getBar(0).getClosePrice()).rawValue());
+        assertEquals(PriceUtil.price2long(12300.5), ((LongNum)series.getBar(8).getClosePrice()).rawValue());
+        assertEquals(PriceUtil.price2long(12300.5), ((LongNum)series.getLastBar().getClosePrice()).rawValue());
+
+        series = loader.setAdjustMode(AdjustMode.Ratio).load();
+        double ratio = loader.getSegments().get(0).getPriceRatio();
+        assertEquals(Math.round(PriceUtil.price2long(11999.5)*ratio), ((LongNum)series.getBar(0).getClosePrice()).rawValue());
+        assertEquals(PriceUtil.price2long(12300.5), ((LongNum)series.getLastBar().getClosePrice()).rawValue());
+        assertEquals(DAYS[3].atTime(9, 1), series.getBar(9).getEndTime().toLocalDateTime());
+    }
+
+    @Test
+    public void testRollCalendar() throws Exception {
+        ContinuousSeriesLoader loader = new ContinuousSeriesLoader(null, data)
+                .setExchangeable(ru888)
+                .setStartTradingDay(DAYS[0])
+                .setEndTradingDay(DAYS[4])
+                .setRollCalendar("20181201=ru1905,20181207=ru1909");
+        assertEquals(ru1905, loader.getContract(DAYS[3]));
+        assertEquals(ru1909, loader.getContract(DAYS[4]));
+        assertEquals(2, loader.getSegments().size());
+    }
+
+    @Test
+    public void testTimeSeriesLoader() throws Exception {
+        TimeSeriesLoader loader = new TimeSeriesLoader(null, data)
+                .setExchangeable(Exchangeable.fromString("ru888"))
+                .setAdjustMode(AdjustMode.Difference)
+                .setLevel(PriceLevel.MIN3)
+                .setStartTradingDay(DAYS[0])
+                .setEndTradingDay(DAYS[4]);
+        LeveledTimeSeries series = loader.load();
+        assertEquals(DAYS.length, series.getBarCount());
+        assertEquals(DAYS.length, loader.getLoadedDates().size());
+        assertTrue(series.getName().startsWith("ru888"));
+        assertEquals(PriceUtil.price2long(12300.5), ((LongNum)series.getBar(0).getClosePrice()).rawValue());
+    }
+
+    /**
+     * 每天3个MIN1 Bar, 收盘价依次为 close-0.5, close, close+0.5
+     */
+    private void saveMin1(Exchangeable e, LocalDate tradingDay, double close, long openInt) throws Exception {
+        CSVWriter csvWriter = new CSVWriter(ExchangeableData.COLUMN_INDEX, ExchangeableData.COLUMN_BEGIN_TIME, ExchangeableData.COLUMN_END_TIME,
+                ExchangeableData.COLUMN_OPEN, ExchangeableData.COLUMN_HIGH, ExchangeableData.COLUMN_LOW, ExchangeableData.COLUMN_CLOSE,
+                ExchangeableData.COLUMN_AVG, ExchangeableData.COLUMN_MKTAVG, ExchangeableData.COLUMN_VOLUME, ExchangeableData.COLUMN_TURNOVER, ExchangeableData.COLUMN_OPENINT);
+        for(int i=0;i<3;i++) {
+            LocalDateTime beginTime = tradingDay.atTime(9, i);
+            String price = PriceUtil.price2str(close+(i-1)*0.5);
+            csvWriter.next();
+            csvWriter.set(ExchangeableData.COLUMN_INDEX, ""+i);
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_TIME, DateUtil.date2str(beginTime));
+            csvWriter.set(ExchangeableData.COLUMN_END_TIME, DateUtil.date2str(beginTime.plusMinutes(1)));
+            csvWriter.set(ExchangeableData.COLUMN_OPEN, price);
+            csvWriter.set(ExchangeableData.COLUMN_HIGH, price);
+            csvWriter.set(ExchangeableData.COLUMN_LOW, price);
+            csvWriter.set(ExchangeableData.COLUMN_CLOSE, price);
+            csvWriter.set(ExchangeableData.COLUMN_AVG, price);
+            csvWriter.set(ExchangeableData.COLUMN_MKTAVG, price);
+            csvWriter.set(ExchangeableData.COLUMN_VOLUME, "10");
+            csvWriter.set(ExchangeableData.COLUMN_TURNOVER, "0");
+            csvWriter.set(ExchangeableData.COLUMN_OPENINT, ""+openInt);
+        }
+        data.save(e, ExchangeableData.MIN1, tradingDay, csvWriter.toString());
+    }
+
+}
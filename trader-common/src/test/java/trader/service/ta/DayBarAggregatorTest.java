@@ -0,0 +1,159 @@
+package trader.service.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.ta4j.core.Bar;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.tick.PriceLevel;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+
+/**
+ * au夜市 21:00-02:30, 交易日20181203(周一)的夜市从20181130(周五)21:00开始, 到20181201(周六)02:30结束
+ */
+public class DayBarAggregatorTest {
+
+    private static final LocalDate DAY1 = LocalDate.of(2018, 12, 3);
+    private static final LocalDate DAY2 = LocalDate.of(2018, 12, 4);
+
+    private Exchangeable au1906 = Exchangeable.fromString("au1906");
+
+    /**
+     * BeginTime, Open, High, Low, Close, Volume, OpenInt
+     */
+    private static final Object[][] MIN1_BARS = {
+            //集合竞价时间, 忽略
+            {"2018-11-30 20:59:00", 999, 999, 999, 999, 1, 999}
+            //交易日 20181203
+            ,{"2018-11-30 21:00:00", 280, 281, 279.5, 280.5, 10, 1000}
+            ,{"2018-12-01 00:30:00", 281, 283, 280, 282, 20, 1010}
+            ,{"2018-12-03 09:00:00", 282, 282.5, 278, 279, 30, 1020}
+            ,{"2018-12-03 14:59:00", 279, 280, 279, 279.5, 40, 1030}
+            //交易日 20181204
+            ,{"2018-12-03 21:00:00", 279.5, 279.5, 277, 278, 5, 1040}
+            ,{"2018-12-04 01:00:00", 278, 286, 278, 285, 15, 1050}
+            ,{"2018-12-04 10:00:00", 285, 285, 284, 284.5, 25, 1060}
+    };
+
+    @Test
+    public void testMin1ToDayBars() {
+        TreeMap<LocalDate, FutureBar> dayBars = DayBarAggregator.min1ToDayBars(au1906, loadBars(0, MIN1_BARS.length));
+        assertEquals(Arrays.asList(DAY1, DAY2), new ArrayList<>(dayBars.keySet()));
+
+        FutureBar bar1 = dayBars.get(DAY1);
+        assertBar(bar1, 280, 283, 278, 279.5, 100, 1030);
+        assertEquals(LocalDateTime.of(2018, 11, 30, 21, 0), bar1.getBeginTime().toLocalDateTime());
+        assertEquals(LocalDateTime.of(2018, 12, 3, 15, 0), bar1.getEndTime().toLocalDateTime());
+        //(280.5*10+282*20+279*30+279.5*40)/100
+        assertEquals(PriceUtil.price2long(279.95), ((LongNum)bar1.getAvgPrice()).rawValue());
+
+        FutureBar bar2 = dayBars.get(DAY2);
+        assertBar(bar2, 279.5, 286, 277, 284.5, 45, 1060);
+        assertEquals(LocalDateTime.of(2018, 12, 3, 21, 0), bar2.getBeginTime().toLocalDateTime());
+    }
+
+    @Test
+    public void testDayToWeekBars() {
+        TreeMap<LocalDate, FutureBar> weekBars = DayBarAggregator.dayToWeekBars(DayBarAggregator.min1ToDayBars(au1906, loadBars(0, MIN1_BARS.length)));
+        assertEquals(1, weekBars.size());
+        assertEquals(DAY1, weekBars.firstKey());
+        assertBar(weekBars.firstEntry().getValue(), 280, 286, 277, 284.5, 145, 1060);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File dataDir = Files.createTempDirectory("daybar").toFile();
+        dataDir.deleteOnExit();
+        ExchangeableData data = new ExchangeableData(dataDir, false);
+        data.save(au1906, ExchangeableData.MIN1, DAY1, min1Csv(1, 5));
+        data.save(au1906, ExchangeableData.MIN1, DAY2, min1Csv(5, MIN1_BARS.length));
+
+        //增量更新
+        assertEquals(1, DayBarAggregator.update(data, au1906, Arrays.asList(DAY1)));
+        assertEquals(1, DayBarAggregator.load(data, au1906).size());
+        assertEquals(1, DayBarAggregator.update(data, au1906, Arrays.asList(DAY2)));
+        TreeMap<LocalDate, FutureBar> dayBars = DayBarAggregator.load(data, au1906);
+        assertEquals(2, dayBars.size());
+        assertBar(dayBars.get(DAY1), 280, 283, 278, 279.5, 100, 1030);
+        assertBar(dayBars.get(DAY2), 279.5, 286, 277, 284.5, 45, 1060);
+        assertEquals(LocalDateTime.of(2018, 11, 30, 21, 0), dayBars.get(DAY1).getBeginTime().toLocalDateTime());
+
+        TimeSeriesLoader loader = new TimeSeriesLoader(null, data)
+                .setExchangeable(au1906)
+                .setLevel(PriceLevel.DAY)
+                .setStartTradingDay(DAY1)
+                .setEndTradingDay(DAY2);
+        LeveledTimeSeries series = loader.load();
+        assertEquals(2, series.getBarCount());
+        assertBar(series.getBar(1), 279.5, 286, 277, 284.5, 45, 1060);
+
+        //最后一个交易日限制市场时间时从MIN1重新汇总
+        series = loader.setEndTime(LocalDateTime.of(2018, 12, 4, 2, 0)).load();
+        assertBar(series.getBar(1), 279.5, 286, 277, 285, 20, 1050);
+
+        series = loader.setEndTime(null).setLevel(PriceLevel.WEEK).load();
+        assertEquals(1, series.getBarCount());
+        assertBar(series.getBar(0), 280, 286, 277, 284.5, 145, 1060);
+        assertTrue(PriceLevel.valueOf("week")==PriceLevel.WEEK);
+    }
+
+    private static void assertBar(Bar bar, double open, double high, double low, double close, long volume, long openInt) {
+        assertEquals(PriceUtil.price2long(open), ((LongNum)bar.getOpenPrice()).rawValue());
+        assertEquals(PriceUtil.price2long(high), ((LongNum)bar.getMaxPrice()).rawValue());
+        assertEquals(PriceUtil.price2long(low), ((LongNum)bar.getMinPrice()).rawValue());
+        assertEquals(PriceUtil.price2long(close), ((LongNum)bar.getClosePrice()).rawValue());
+        assertEquals(volume, bar.getVolume().longValue());
+        assertEquals(openInt, ((Bar2)bar).getOpenInterest());
+    }
+
+    private List<Bar> loadBars(int from, int to) {
+        List<Bar> result = new ArrayList<>();
+        CSVDataSet csvDataSet = CSVUtil.parse(min1Csv(from, to));
+        while(csvDataSet.next()) {
+            result.add(FutureBar.fromCSV(csvDataSet, au1906));
+        }
+        return result;
+    }
+
+    private static String min1Csv(int from, int to) {
+        CSVWriter csvWriter = new CSVWriter(ExchangeableData.COLUMN_INDEX, ExchangeableData.COLUMN_BEGIN_TIME, ExchangeableData.COLUMN_END_TIME,
+                ExchangeableData.COLUMN_OPEN, ExchangeableData.COLUMN_HIGH, ExchangeableData.COLUMN_LOW, ExchangeableData.COLUMN_CLOSE,
+                ExchangeableData.COLUMN_AVG, ExchangeableData.COLUMN_MKTAVG, ExchangeableData.COLUMN_VOLUME, ExchangeableData.COLUMN_TURNOVER, ExchangeableData.COLUMN_OPENINT);
+        for(int i=from;i<to;i++) {
+            Object[] row = MIN1_BARS[i];
+            LocalDateTime beginTime = DateUtil.str2localdatetime((String)row[0]);
+            String close = PriceUtil.price2str(((Number)row[4]).doubleValue());
+            csvWriter.next();
+            csvWriter.set(ExchangeableData.COLUMN_INDEX, ""+i);
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_TIME, DateUtil.date2str(beginTime));
+            csvWriter.set(ExchangeableData.COLUMN_END_TIME, DateUtil.date2str(beginTime.plusMinutes(1)));
+            csvWriter.set(ExchangeableData.COLUMN_OPEN, PriceUtil.price2str(((Number)row[1]).doubleValue()));
+            csvWriter.set(ExchangeableData.COLUMN_HIGH, PriceUtil.price2str(((Number)row[2]).doubleValue()));
+            csvWriter.set(ExchangeableData.COLUMN_LOW, PriceUtil.price2str(((Number)row[3]).doubleValue()));
+            csvWriter.set(ExchangeableData.COLUMN_CLOSE, close);
+            csvWriter.set(ExchangeableData.COLUMN_AVG, close);
+            csvWriter.set(ExchangeableData.COLUMN_MKTAVG, close);
+            csvWriter.set(ExchangeableData.COLUMN_VOLUME, ""+row[5]);
+            csvWriter.set(ExchangeableData.COLUMN_TURNOVER, "0");
+            csvWriter.set(ExchangeableData.COLUMN_OPENINT, ""+row[6]);
+        }
+        return csvWriter.toString();
+    }
+
+}
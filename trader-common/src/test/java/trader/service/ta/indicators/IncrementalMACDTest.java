@@ -0,0 +1,58 @@
+package trader.service.ta.indicators;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+
+public class IncrementalMACDTest {
+
+    @Test
+    public void testSameAsTa4j() {
+        Random random = new Random(1);
+        TimeSeries series = new BaseTimeSeries("test");
+        ZonedDateTime time = ZonedDateTime.of(2018, 12, 28, 9, 0, 0, 0, ZoneId.systemDefault());
+        IncrementalMACD macd = new IncrementalMACD();
+        double close = 3000;
+        for(int i=0;i<500;i++) {
+            //未完成的KBar反复更新
+            for(int j=0;j<5;j++) {
+                macd.update(i, close+random.nextInt(20)-10);
+            }
+            close += random.nextInt(20)-10;
+            macd.update(i, close);
+            series.addBar(time.plusMinutes(i+1), close, close, close, close, 1);
+        }
+
+        ClosePriceIndicator closePrice = new ClosePriceIndicator(series);
+        org.ta4j.core.indicators.MACDIndicator diff = new org.ta4j.core.indicators.MACDIndicator(closePrice, 12, 26);
+        EMAIndicator dea = new EMAIndicator(diff, 9);
+        MACDIndicator macd0 = new MACDIndicator(closePrice);
+
+        IncrementalMACD macd2 = new IncrementalMACD();
+        macd2.update(series);
+        assertEquals(series.getEndIndex(), macd.getEndIndex());
+        assertEquals(series.getEndIndex(), macd2.getEndIndex());
+        for(int i=0;i<=series.getEndIndex();i++) {
+            assertEquals(diff.getValue(i).doubleValue(), macd.getDIFF(i), 1e-6);
+            assertEquals(dea.getValue(i).doubleValue(), macd.getDEA(i), 1e-6);
+            assertEquals(macd0.getValue(i).doubleValue(), macd.getMACD(i), 1e-6);
+            assertEquals(macd.getMACD(i), macd2.getMACD(i), 1e-9);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSkipIndex() {
+        IncrementalMACD macd = new IncrementalMACD();
+        macd.update(0, 1);
+        macd.update(2, 1);
+    }
+
+}
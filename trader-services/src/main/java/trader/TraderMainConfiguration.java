@@ -16,6 +16,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.boot.web.embedded.jetty.JettyServletWebServerFactory;
 import org.springframework.boot.web.server.ErrorPage;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -36,6 +37,9 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import com.google.gson.GsonBuilder;
 
+import trader.api.push.PushWebSocketServlet;
+import trader.service.push.PushService;
+
 @Configuration
 @EnableScheduling
 @EnableAsync
@@ -67,6 +71,12 @@ public class TraderMainConfiguration implements WebMvcConfigurer, SchedulingConf
         return factory;
     }
 
+    @Bean
+    public ServletRegistrationBean<PushWebSocketServlet> pushWebSocketServlet(PushService pushService)
+    {
+        return new ServletRegistrationBean<>(new PushWebSocketServlet(pushService), PushWebSocketServlet.URL_PATH);
+    }
+
     @Override
     public void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
         converters.add(new StringHttpMessageConverter());
@@ -28,6 +28,14 @@ public class LogController {
         return ResponseEntity.ok(result);
     }
 
+    @RequestMapping(path=URL_PREFIX+"/async/{category:.+}",
+            method= {RequestMethod.PUT, RequestMethod.POST} ,
+            consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity setLogAsync(@PathVariable(value="category") String category, @RequestBody String async){
+        logService.setAsync(category, Boolean.parseBoolean(async.trim()));
+        return ResponseEntity.ok().build();
+    }
+
     @RequestMapping(path=URL_PREFIX+"/{category:.+}",
             method= {RequestMethod.PUT, RequestMethod.POST} ,
             consumes = MediaType.TEXT_PLAIN_VALUE)
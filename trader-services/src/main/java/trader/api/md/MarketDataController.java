@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import trader.api.ControllerConstants;
 import trader.common.exchangeable.Exchangeable;
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.JsonUtil;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataProducer;
@@ -55,7 +56,7 @@ public class MarketDataController {
     public ResponseEntity<String> getExchangeableLastData(@PathVariable(value="exchangeableId") String exchangeableId){
         Exchangeable e = Exchangeable.fromString(exchangeableId);
         MarketData md = marketDataService.getLastData(e);
-        return ResponseEntity.ok(md.toJson().toString());
+        return ResponseEntity.ok(JsonStreamWriter.local().value(md).toString());
     }
 
 }
@@ -0,0 +1,30 @@
+package trader.api.push;
+
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import trader.api.ControllerConstants;
+import trader.service.push.PushService;
+
+/**
+ * WebSocket推送入口, 每个连接对应一个PushSession
+ */
+public class PushWebSocketServlet extends WebSocketServlet {
+    private static final long serialVersionUID = 1L;
+
+    public static final String URL_PATH = ControllerConstants.URL_PREFIX+"/push";
+
+    private transient PushService pushService;
+
+    public PushWebSocketServlet(PushService pushService) {
+        this.pushService = pushService;
+    }
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.setCreator((req, resp)->{
+            return pushService.createSession();
+        });
+    }
+
+}
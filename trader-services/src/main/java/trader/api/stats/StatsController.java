@@ -2,6 +2,7 @@ package trader.api.stats;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -21,6 +22,9 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import trader.api.ControllerConstants;
+import trader.common.util.LatencyHistogram;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
 import trader.service.stats.StatsAggregator;
 import trader.service.stats.StatsCollector;
 import trader.service.stats.StatsItemAggregation;
@@ -176,6 +180,30 @@ public class StatsController {
         return ResponseEntity.ok().body(result);
     }
 
+    /**
+     * 返回行情->策略->报单各阶段的延迟百分位数, 单位纳秒
+     */
+    @RequestMapping(path=URI_PREFIX+"/latency",
+            method=RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<Map<String, Object>> getLatency()
+    {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for(Stage stage:Stage.values()) {
+            LatencyHistogram histogram = LatencyRecorder.getHistogram(stage);
+            Map<String, Object> stageResult = new LinkedHashMap<>();
+            stageResult.put("count", histogram.getCount());
+            stageResult.put("mean", (long)histogram.getMean());
+            stageResult.put("p50", histogram.getValueAtPercentile(50));
+            stageResult.put("p90", histogram.getValueAtPercentile(90));
+            stageResult.put("p99", histogram.getValueAtPercentile(99));
+            stageResult.put("p999", histogram.getValueAtPercentile(99.9));
+            stageResult.put("max", histogram.getMax());
+            result.put(stage.name(), stageResult);
+        }
+        return ResponseEntity.ok().body(result);
+    }
+
     private static String number2str(Object num) {
         if ( num instanceof Double ) {
             double dv = ((Double)num).doubleValue();
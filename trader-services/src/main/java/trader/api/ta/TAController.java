@@ -1,23 +1,27 @@
 package trader.api.ta;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.ta4j.core.Bar;
 import org.ta4j.core.TimeSeries;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
 import trader.api.ControllerConstants;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.tick.PriceLevel;
-import trader.common.util.DateUtil;
-import trader.common.util.PriceUtil;
+import trader.common.util.JsonStreamWriter;
 import trader.service.ta.Bar2;
 import trader.service.ta.TAItem;
 import trader.service.ta.TAService;
@@ -29,10 +33,32 @@ public class TAController {
     @Autowired
     private TAService taService;
 
+    private static final String FORMAT_JSON = "json";
+    private static final String FORMAT_BINARY = "binary";
+    private static final String HEADER_BAR_END_INDEX = "X-Bar-EndIndex";
+    private static final int BINARY_COLUMNS = 9;
+    private static final int JSON_FLUSH_SIZE = 16*1024;
+
+    /**
+     * 返回KBar数据, 直接写入输出流.
+     * <BR>增量轮询时使用since参数, 只返回结束时间>=since的KBar(包含未完成的最后一根KBar).
+     * <BR>响应头X-Bar-EndIndex返回当前最后一根KBar的位置, 可以作为下次的start参数.
+     *
+     * @param start 开始KBar位置, -1代表从头开始
+     * @param limit 最多返回KBar数量, 0代表不限制
+     * @param since 结束时间epoch millis, 0代表不限制
+     * @param format json或binary, binary为按列存放的long数组
+     */
     @RequestMapping(path=URL_PREFIX+"/{exchangeable}/{level}/",
     method=RequestMethod.GET,
-    produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> getBars(@PathVariable(value="exchangeable") String exchangeable, @PathVariable(value="level") String level){
+    produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public void getBars(@PathVariable(value="exchangeable") String exchangeable, @PathVariable(value="level") String level,
+            @RequestParam(value="start", required=false, defaultValue="-1") int start,
+            @RequestParam(value="limit", required=false, defaultValue="0") int limit,
+            @RequestParam(value="since", required=false, defaultValue="0") long since,
+            @RequestParam(value="format", required=false, defaultValue=FORMAT_JSON) String format,
+            HttpServletResponse response) throws IOException
+    {
         Exchangeable e = Exchangeable.fromString(exchangeable);
         PriceLevel l = PriceLevel.valueOf(level);
         TAItem item = taService.getItem(e);
@@ -41,32 +67,132 @@ public class TAController {
             series = item.getSeries(l);
         }
         if ( series==null ) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        //KBar数量只增不减, 先固定范围. 没有KBar时beginIndex/endIndex都是-1, 返回空数组
+        int endIndex = series.getEndIndex();
+        int beginIndex = Math.max(0, Math.max(series.getBeginIndex(), start));
+        int barCount = 0;
+        if ( series.getBarCount()>0 && endIndex>=0 && beginIndex<=endIndex ) {
+            if ( since>0 ) {
+                beginIndex = Math.max(beginIndex, findBarIndexSince(series, beginIndex, endIndex, since));
+            }
+            if ( limit>0 && endIndex-beginIndex+1>limit ) {
+                endIndex = beginIndex+limit-1;
+            }
+            barCount = Math.max(0, endIndex-beginIndex+1);
+        }
+        response.setHeader(HEADER_BAR_END_INDEX, ""+series.getEndIndex());
+        if ( FORMAT_BINARY.equalsIgnoreCase(format) ) {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            writeBinary(series, beginIndex, barCount, response.getOutputStream());
+        } else {
+            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            writeJson(series, beginIndex, barCount, response.getOutputStream());
+        }
+    }
+
+    /**
+     * 二分查找第一个结束时间>=since的KBar
+     */
+    private static int findBarIndexSince(TimeSeries series, int beginIndex, int endIndex, long since) {
+        int low = beginIndex, high = endIndex+1;
+        while(low<high) {
+            int mid = (low+high)>>>1;
+            if ( series.getBar(mid).getEndTime().toInstant().toEpochMilli()<since ) {
+                low = mid+1;
+            } else {
+                high = mid;
+            }
         }
-        JsonArray array = new JsonArray();
-        for(int i=0;i<series.getBarCount();i++) {
-            Bar bar = series.getBar(i);
-            array.add(bar2json(bar));
+        return low;
+    }
+
+    /**
+     * JSON数组格式, 字段与原有格式相同, 不构建JsonObject, 缓冲区满后分段输出
+     */
+    private static void writeJson(TimeSeries series, int beginIndex, int barCount, OutputStream os) throws IOException {
+        JsonStreamWriter writer = JsonStreamWriter.local();
+        writer.beginArray();
+        for(int i=0;i<barCount;i++) {
+            Bar bar = series.getBar(beginIndex+i);
+            writer.beginObject()
+                .name("beginTime").value(bar.getBeginTime().toLocalDateTime())
+                .name("beginTimestamp").value(epochMillis(bar.getBeginTime()))
+                .name("endTime").value(bar.getEndTime().toLocalDateTime())
+                .name("endTimestamp").value(epochMillis(bar.getEndTime()))
+                .name("open").priceValue(bar.getOpenPrice().longValue())
+                .name("max").priceValue(bar.getMaxPrice().longValue())
+                .name("min").priceValue(bar.getMinPrice().longValue())
+                .name("close").priceValue(bar.getClosePrice().longValue())
+                .name("amount").priceValue(bar.getAmount().longValue())
+                .name("volume").value(bar.getVolume().longValue());
+            if ( bar instanceof Bar2) {
+                writer.name("openInt").value(((Bar2)bar).getOpenInterest());
+            }
+            writer.endObject();
+            if ( writer.size()>=JSON_FLUSH_SIZE ) {
+                writer.flushTo(os);
+            }
         }
-        return ResponseEntity.ok(array.toString());
+        writer.endArray();
+        writer.flushTo(os);
+        os.flush();
+    }
+
+    /**
+     * 与toInstant().toEpochMilli()相同, 不创建Instant
+     */
+    private static long epochMillis(ZonedDateTime time) {
+        return time.toEpochSecond()*1000+time.getNano()/1000000;
     }
 
-    private static JsonObject bar2json(Bar bar) {
-        JsonObject json = new JsonObject();
-        json.addProperty("beginTime", DateUtil.date2str(bar.getBeginTime().toLocalDateTime()));
-        json.addProperty("beginTimestamp", bar.getBeginTime().toInstant().toEpochMilli() );
-        json.addProperty("endTime", DateUtil.date2str(bar.getEndTime().toLocalDateTime()));
-        json.addProperty("endTimestamp", bar.getEndTime().toInstant().toEpochMilli() );
-        json.addProperty("open", PriceUtil.long2str(bar.getOpenPrice().longValue()));
-        json.addProperty("max", PriceUtil.long2str(bar.getMaxPrice().longValue()));
-        json.addProperty("min", PriceUtil.long2str(bar.getMinPrice().longValue()));
-        json.addProperty("close", PriceUtil.long2str(bar.getClosePrice().longValue()));
-        json.addProperty("amount", PriceUtil.long2str(bar.getAmount().longValue()));
+    /**
+     * 按列存放的二进制格式(big-endian):
+     * <BR>int barCount, int beginIndex, 之后每列barCount个long:
+     * beginTimestamp, endTimestamp, open, max, min, close, amount, volume, openInt.
+     * 价格和金额为PriceUtil的long值
+     */
+    private static void writeBinary(TimeSeries series, int beginIndex, int barCount, OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, 16*1024));
+        dos.writeInt(barCount);
+        dos.writeInt(beginIndex);
+        Bar[] bars = new Bar[barCount];
+        for(int i=0;i<barCount;i++) {
+            bars[i] = series.getBar(beginIndex+i);
+        }
+        for(int col=0;col<BINARY_COLUMNS;col++) {
+            for(int i=0;i<barCount;i++) {
+                dos.writeLong(getBarColumn(bars[i], col));
+            }
+        }
+        dos.flush();
+    }
 
-        json.addProperty("volume", bar.getVolume().longValue());
-        if ( bar instanceof Bar2) {
-            json.addProperty("openInt", ((Bar2)bar).getOpenInterest());
+    private static long getBarColumn(Bar bar, int col) {
+        switch(col) {
+        case 0:
+            return bar.getBeginTime().toInstant().toEpochMilli();
+        case 1:
+            return bar.getEndTime().toInstant().toEpochMilli();
+        case 2:
+            return bar.getOpenPrice().longValue();
+        case 3:
+            return bar.getMaxPrice().longValue();
+        case 4:
+            return bar.getMinPrice().longValue();
+        case 5:
+            return bar.getClosePrice().longValue();
+        case 6:
+            return bar.getAmount().longValue();
+        case 7:
+            return bar.getVolume().longValue();
+        default:
+            if ( bar instanceof Bar2) {
+                return ((Bar2)bar).getOpenInterest();
+            }
+            return 0;
         }
-        return json;
     }
 }
@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import trader.api.ControllerConstants;
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.JsonUtil;
 import trader.service.trade.Account;
 import trader.service.trade.Order;
@@ -49,7 +50,7 @@ public class TradeController {
         if (null == account) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(JsonUtil.object2json(account.getPositions()).toString());
+        return ResponseEntity.ok(JsonStreamWriter.local().value(account.getPositions()).toString());
     }
 
         @RequestMapping(path=URL_PREFIX+"/account/{accountId}/orders",
@@ -60,7 +61,7 @@ public class TradeController {
         if (null == account) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(JsonUtil.object2json(account.getOrders()).toString());
+        return ResponseEntity.ok(JsonStreamWriter.local().value(account.getOrders()).toString());
     }
 
         @RequestMapping(path=URL_PREFIX+"/account/{accountId}/order/{orderRef}",
@@ -75,7 +76,7 @@ public class TradeController {
         if ( order==null ) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(JsonUtil.object2json(order).toString());
+        return ResponseEntity.ok(JsonStreamWriter.local().value(order).toString());
     }
 
 }
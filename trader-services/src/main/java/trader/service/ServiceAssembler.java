@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 import trader.common.beans.BeansContainer;
 import trader.service.event.AsyncEventServiceImpl;
 import trader.service.md.MarketDataService;
+import trader.service.push.PushService;
 import trader.service.ta.TAService;
 import trader.service.trade.TradeService;
 import trader.service.tradlet.TradletService;
@@ -36,6 +37,9 @@ public class ServiceAssembler {
     @Autowired
     private TradletService tradletService;
 
+    @Autowired
+    private PushService pushService;
+
     @PostConstruct
     public void init() throws Exception
     {
@@ -44,6 +48,7 @@ public class ServiceAssembler {
         taService.init(beansContainer);
         tradeService.init(beansContainer);
         tradletService.init(beansContainer);
+        pushService.init(beansContainer);
         asyncEventService.start();
     }
 
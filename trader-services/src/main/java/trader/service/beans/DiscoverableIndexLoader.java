@@ -0,0 +1,178 @@
+package trader.service.beans;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.reflections.Reflections;
+import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ConfigurationBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.beans.Discoverable;
+import trader.common.beans.DiscoverableIndex;
+import trader.common.util.FileUtil;
+import trader.common.util.StringUtil;
+import trader.common.util.TraderHomeUtil;
+
+/**
+ * 加载jar或classes目录中的Discoverable类列表.
+ * <BR>优先读取编译时生成的索引文件; 没有索引的jar使用Reflections扫描, 扫描结果按jar内容MD5缓存在TraderHome工作目录
+ */
+public class DiscoverableIndexLoader {
+    private static final Logger logger = LoggerFactory.getLogger(DiscoverableIndexLoader.class);
+
+    private static final String CACHE_DIR = "discoverable";
+
+    /**
+     * 扫描结果缓存目录
+     */
+    public static File getCacheDir() {
+        return new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_WORK), CACHE_DIR);
+    }
+
+    /**
+     * 返回ClassLoader的classpath, 非URLClassLoader使用java.class.path
+     */
+    public static List<URL> getClassPathUrls(ClassLoader classLoader)
+    {
+        Set<URL> result = new LinkedHashSet<>();
+        if ( classLoader instanceof URLClassLoader ) {
+            Collections.addAll(result, ((URLClassLoader)classLoader).getURLs());
+        } else {
+            for(String path:StringUtil.split(System.getProperty("java.class.path", ""), File.pathSeparator)) {
+                try{
+                    result.add(new File(path).toURI().toURL());
+                }catch(IOException e) {
+                    logger.warn("Invalid class path "+path+" : "+e);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    public static List<DiscoverableIndex.Entry> load(URL url, ClassLoader classLoader)
+    {
+        return load(url, classLoader, getCacheDir());
+    }
+
+    /**
+     * 加载jar或classes目录中的Discoverable类
+     *
+     * @param cacheDir 没有索引的jar的扫描结果缓存目录
+     */
+    public static List<DiscoverableIndex.Entry> load(URL url, ClassLoader classLoader, File cacheDir)
+    {
+        File file = toFile(url);
+        try{
+            if ( file==null ) {
+                return scan(url, classLoader);
+            }
+            if ( !file.exists() ) {
+                return Collections.emptyList();
+            }
+            if ( file.isDirectory() ) {
+                File indexFile = new File(file, DiscoverableIndex.INDEX_FILE);
+                if ( indexFile.exists() ) {
+                    try(InputStream is = new FileInputStream(indexFile);){
+                        return DiscoverableIndex.read(is);
+                    }
+                }
+                return scan(url, classLoader);
+            }
+            try(JarFile jarFile = new JarFile(file);){
+                JarEntry indexEntry = jarFile.getJarEntry(DiscoverableIndex.INDEX_FILE);
+                if ( indexEntry!=null ) {
+                    try(InputStream is = jarFile.getInputStream(indexEntry);){
+                        return DiscoverableIndex.read(is);
+                    }
+                }
+            }
+            return loadCachedScan(url, file, classLoader, cacheDir);
+        }catch(Throwable t) {
+            logger.warn("Load discoverable classes from "+url+" failed: "+t, t);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 没有索引的jar, 按内容MD5读取或保存扫描结果
+     */
+    private static List<DiscoverableIndex.Entry> loadCachedScan(URL url, File jarFile, ClassLoader classLoader, File cacheDir) throws Exception
+    {
+        File cacheFile = new File(cacheDir, FileUtil.md5(jarFile)+".idx");
+        if ( cacheFile.exists() ) {
+            try(InputStream is = new FileInputStream(cacheFile);){
+                return DiscoverableIndex.read(is);
+            }
+        }
+        List<DiscoverableIndex.Entry> result = scan(url, classLoader);
+        cacheDir.mkdirs();
+        File tempFile = new File(cacheDir, cacheFile.getName()+".tmp");
+        try(OutputStream os = new FileOutputStream(tempFile);){
+            DiscoverableIndex.write(os, result);
+        }
+        if ( !tempFile.renameTo(cacheFile) ) {
+            tempFile.delete();
+        }
+        return result;
+    }
+
+    /**
+     * 使用Reflections扫描单个jar或目录
+     */
+    static List<DiscoverableIndex.Entry> scan(URL url, ClassLoader classLoader)
+    {
+        ConfigurationBuilder scanConf = (new ConfigurationBuilder())
+                .setUrls(url)
+                .addClassLoaders(classLoader)
+                .filterInputsBy(name->name.endsWith(".class"))
+                .setScanners(new TypeAnnotationsScanner());
+        Reflections ref = new Reflections(scanConf);
+        List<DiscoverableIndex.Entry> result = new ArrayList<>();
+        Iterable<String> classNames = ref.getStore().getOrCreate(TypeAnnotationsScanner.class.getSimpleName()).get(Discoverable.class.getName());
+        for(String className:classNames) {
+            Discoverable d = null;
+            try{
+                Class clazz = Class.forName(className, false, classLoader);
+                //与DiscoverableIndexProcessor一致, 只记录具体类
+                if ( !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers()) ) {
+                    d = (Discoverable)clazz.getAnnotation(Discoverable.class);
+                }
+            }catch(Throwable t) {
+                logger.warn("Load discoverable class "+className+" from "+url+" failed: "+t);
+            }
+            if ( d!=null ) {
+                result.add(new DiscoverableIndex.Entry(className, d.interfaceClass().getName(), d.purpose()));
+            }
+        }
+        return result;
+    }
+
+    private static File toFile(URL url) {
+        if ( !"file".equals(url.getProtocol()) ) {
+            return null;
+        }
+        try{
+            return new File(url.toURI());
+        }catch(URISyntaxException e) {
+            return new File(url.getPath());
+        }
+    }
+
+}
@@ -3,21 +3,18 @@ package trader.service.beans;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.net.URL;
-import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Discoverable;
+import trader.common.beans.DiscoverableIndex;
 import trader.common.beans.Lifecycle;
 
 @SuppressWarnings("rawtypes")
@@ -94,19 +91,26 @@ public class DiscoverableRegistry {
         return result;
     }
 
+    /**
+     * 读取classpath中每个jar/目录的Discoverable索引, 没有索引时扫描
+     */
     private static Map<Class, Map<String, Class>> scanDiscoverableClasses() {
         Map<Class, Map<String, Class>> concreteInstances = new HashMap<>();
-        //LogServiceImpl.setLogLevel("org.reflections.Reflections", "ERROR");
-        List<Object> params = new ArrayList<>();
         ClassLoader cl = DiscoverableRegistry.class.getClassLoader();
-        params.add(cl);
-        if ( cl instanceof URLClassLoader ) {
-            URL urls[] = ((URLClassLoader)cl).getURLs();
-            params.addAll(Arrays.asList(urls));
+        Set<String> classNames = new LinkedHashSet<>();
+        for(URL url:DiscoverableIndexLoader.getClassPathUrls(cl)) {
+            for(DiscoverableIndex.Entry entry:DiscoverableIndexLoader.load(url, cl)) {
+                classNames.add(entry.getClassName());
+            }
         }
-        Reflections reflections = new Reflections(params.toArray(new Object[params.size()]));
-        Set<Class<?>> allClasses = reflections.getTypesAnnotatedWith(Discoverable.class);
-        for(Class clazz:allClasses) {
+        for(String className:classNames) {
+            Class clazz = null;
+            try{
+                clazz = Class.forName(className, false, cl);
+            }catch(Throwable t) {
+                logger.warn("Load discoverable class "+className+" failed: "+t);
+                continue;
+            }
             Discoverable d = getDiscoverableClass(clazz);
             if ( d==null ) {
                 continue;
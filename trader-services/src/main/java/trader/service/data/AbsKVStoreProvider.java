@@ -9,6 +9,23 @@ public abstract class AbsKVStoreProvider implements KVStore, Lifecycle {
 
     public abstract void put(byte[] key, byte[] data);
 
+    /**
+     * 返回某个名字空间下带有前缀的KVStore, 缺省实现直接给key加上 namespace.keyPrefix 前缀
+     */
+    public KVStore getStore(String namespace, String keyPrefix) {
+        return new KVStoreWrapper(namespace+"."+keyPrefix, this);
+    }
+
+    /**
+     * 返回批量写入的KVStore, 缺省实现直接写入
+     */
+    public BatchedKVStore getBatchedStore(String namespace, String keyPrefix) {
+        if ( StringUtil.isEmpty(namespace) ) {
+            return new BatchedKVStoreWrapper(this);
+        }
+        return new BatchedKVStoreWrapper(getStore(namespace, keyPrefix));
+    }
+
     @Override
     public byte[] get(String key) {
         return get(key.getBytes(StringUtil.UTF8));
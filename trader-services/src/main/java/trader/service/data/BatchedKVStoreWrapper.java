@@ -0,0 +1,50 @@
+package trader.service.data;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 不支持批量写入时的简单包装, put直接写入
+ */
+public class BatchedKVStoreWrapper implements BatchedKVStore {
+    private KVStore delegate;
+
+    public BatchedKVStoreWrapper(KVStore delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public String getAsString(String key) {
+        return delegate.getAsString(key);
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        delegate.put(key, data);
+    }
+
+    @Override
+    public void put(String key, String value) {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public KVStoreIterator iterator() {
+        return delegate.iterator();
+    }
+
+    @Override
+    public Durability getDurability() {
+        return Durability.AsyncWAL;
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+}
@@ -1,36 +1,48 @@
 package trader.service.data;
 
-import trader.common.util.StringUtil;
-
+/**
+ * 只返回带有前缀的key, 返回的key去掉前缀
+ */
 public class KVStoreIteratorWrapper implements KVStoreIterator {
 
     private String prefix;
     private KVStoreIterator iterator;
+    private String nextKey;
+    private byte[] nextValue;
+    private byte[] value;
+
     public KVStoreIteratorWrapper(String prefix, KVStoreIterator iterator) {
         this.prefix = prefix;
         this.iterator = iterator;
     }
 
-
     @Override
     public boolean hasNext() {
-        return iterator.hasNext();
+        while( nextKey==null && iterator.hasNext() ) {
+            String key = iterator.next();
+            if ( key!=null && key.startsWith(prefix) ) {
+                nextKey = key.substring(prefix.length());
+                nextValue = iterator.getValue();
+            }
+        }
+        return nextKey!=null;
     }
 
     @Override
     public String next() {
-        while(true) {
-            String key = next();
-            if ( !StringUtil.isEmpty(key) && !key.startsWith(prefix)) {
-                continue;
-            }
-            return key;
+        if ( !hasNext() ) {
+            return null;
         }
+        String key = nextKey;
+        value = nextValue;
+        nextKey = null;
+        nextValue = null;
+        return key;
     }
 
     @Override
     public byte[] getValue() {
-        return iterator.getValue();
+        return value;
     }
 
 }
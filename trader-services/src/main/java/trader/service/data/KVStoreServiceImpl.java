@@ -1,8 +1,9 @@
 package trader.service.data;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -25,6 +26,14 @@ public class KVStoreServiceImpl implements KVStoreService {
      * 行情数据源定义
      */
     private static final String ITEM_PROVIDER = "KVStore/provider";
+    /**
+     * RocksDB 共享BlockCache大小
+     */
+    private static final String ITEM_ROCKSDB_BLOCK_CACHE_SIZE = "KVStore/rocksdb/blockCacheSize";
+    /**
+     * RocksDB ColumnFamily 定义
+     */
+    private static final String ITEM_ROCKSDB_COLUMN_FAMILIES = "KVStore/rocksdb/columnFamily[]";
 
     @Autowired
     private BeansContainer beansContainer;
@@ -35,7 +44,9 @@ public class KVStoreServiceImpl implements KVStoreService {
      * Key: StoreType-StoreId
      * Value: Store
      */
-    Map<String, KVStore> storeViews = new HashMap<>();
+    Map<String, KVStore> storeViews = new ConcurrentHashMap<>();
+
+    Map<String, BatchedKVStore> batchedStoreViews = new ConcurrentHashMap<>();
 
     @PostConstruct
     public void init() throws Exception {
@@ -60,12 +71,35 @@ public class KVStoreServiceImpl implements KVStoreService {
         }
         KVStore storeView = storeViews.get(prefix);
         if ( storeView==null ) {
-            storeView = new KVStoreWrapper(prefix, kvStore);
+            //前缀第一段作为名字空间
+            int idx = prefix.indexOf('.');
+            storeView = kvStore.getStore(prefix.substring(0, idx), prefix.substring(idx+1));
             storeViews.put(prefix, storeView);
         }
         return storeView;
     }
 
+    @Override
+    public BatchedKVStore getBatchedStore(String prefix) {
+        if ( StringUtil.isEmpty(prefix)) {
+            prefix = "";
+        } else if ( !prefix.endsWith(".")) {
+            prefix = prefix+".";
+        }
+        BatchedKVStore storeView = batchedStoreViews.get(prefix);
+        if ( storeView==null ) {
+            int idx = prefix.indexOf('.');
+            if ( idx<0 ) {
+                storeView = kvStore.getBatchedStore(null, null);
+            } else {
+                storeView = kvStore.getBatchedStore(prefix.substring(0, idx), prefix.substring(idx+1));
+            }
+            batchedStoreViews.put(prefix, storeView);
+        }
+        return storeView;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
     private AbsKVStoreProvider createStoreProvider(String path) throws Exception {
         String provider = ConfigUtil.getString(ITEM_PROVIDER);
         if (StringUtil.isEmpty(provider)) {
@@ -74,7 +108,9 @@ public class KVStoreServiceImpl implements KVStoreService {
         AbsKVStoreProvider result = null;
         switch(provider.toLowerCase()){
         case "rocksdb":
-            result = new RocksDBStore(path);
+            result = new RocksDBStore(path
+                    , ConfigUtil.getLong(ITEM_ROCKSDB_BLOCK_CACHE_SIZE, RocksDBStore.DEFAULT_BLOCK_CACHE_SIZE)
+                    , (List<Map>)ConfigUtil.getObject(ITEM_ROCKSDB_COLUMN_FAMILIES));
             break;
         default:
             throw new Exception("Unsupported store provider: "+provider);
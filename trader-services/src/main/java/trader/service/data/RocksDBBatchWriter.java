@@ -0,0 +1,190 @@
+package trader.service.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.service.data.BatchedKVStore.Durability;
+
+/**
+ * RocksDB 后台批量写入线程.
+ * <BR>写入线程每次取出队列中所有的写操作, 按照持久化方式合并为WriteBatch写入(group commit), 上一批写入期间到达的写操作合并到下一批.
+ */
+class RocksDBBatchWriter implements Runnable {
+    private final static Logger logger = LoggerFactory.getLogger(RocksDBBatchWriter.class);
+
+    /**
+     * 写操作完成回调
+     */
+    static interface WriteCallback{
+        void onWritten(byte[] key, byte[] value);
+    }
+
+    private static class WriteOp{
+        ColumnFamilyHandle handle;
+        byte[] key;
+        byte[] value;
+        Durability durability;
+        WriteCallback callback;
+        CompletableFuture<Void> flushFuture;
+    }
+
+    private RocksDB db;
+    private WriteOptions[] writeOptions;
+    private Object lock = new Object();
+    private ArrayList<WriteOp> pendingOps = new ArrayList<>();
+    private ArrayList<WriteOp> writingOps = new ArrayList<>();
+    private Thread thread;
+    private volatile boolean stopped;
+    private volatile long totalBatches;
+    private volatile long totalOps;
+
+    RocksDBBatchWriter(RocksDB db){
+        this.db = db;
+        writeOptions = new WriteOptions[Durability.values().length];
+        writeOptions[Durability.SyncWAL.ordinal()] = new WriteOptions().setSync(true);
+        writeOptions[Durability.AsyncWAL.ordinal()] = new WriteOptions();
+        writeOptions[Durability.NoWAL.ordinal()] = new WriteOptions().setDisableWAL(true);
+        thread = new Thread(this, "KVStore-BatchWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void put(ColumnFamilyHandle handle, byte[] key, byte[] value, Durability durability, WriteCallback callback) {
+        WriteOp op = new WriteOp();
+        op.handle = handle;
+        op.key = key;
+        op.value = value;
+        op.durability = durability;
+        op.callback = callback;
+        enqueue(op);
+    }
+
+    public CompletableFuture<Void> flush() {
+        WriteOp op = new WriteOp();
+        op.flushFuture = new CompletableFuture<>();
+        enqueue(op);
+        return op.flushFuture;
+    }
+
+    public long getTotalBatches() {
+        return totalBatches;
+    }
+
+    public long getTotalOps() {
+        return totalOps;
+    }
+
+    /**
+     * 写入所有队列中的数据后停止写入线程
+     */
+    public void close() {
+        stopped = true;
+        synchronized(lock) {
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {}
+        for(WriteOptions options:writeOptions) {
+            options.close();
+        }
+    }
+
+    private void enqueue(WriteOp op) {
+        synchronized(lock) {
+            if ( stopped ) {
+                throw new IllegalStateException("KVStore batch writer is closed");
+            }
+            pendingOps.add(op);
+            if ( pendingOps.size()==1 ) {
+                lock.notify();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while(true) {
+            synchronized(lock) {
+                while( pendingOps.isEmpty() && !stopped ) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {}
+                }
+                if ( pendingOps.isEmpty() ) {
+                    break;
+                }
+                ArrayList<WriteOp> ops = pendingOps;
+                pendingOps = writingOps;
+                writingOps = ops;
+            }
+            write(writingOps);
+            writingOps.clear();
+        }
+    }
+
+    private void write(List<WriteOp> ops) {
+        WriteBatch[] batches = new WriteBatch[Durability.values().length];
+        List<CompletableFuture<Void>> flushFutures = null;
+        Throwable error = null;
+        int opCount = 0;
+        try {
+            for(int i=0;i<ops.size();i++) {
+                WriteOp op = ops.get(i);
+                if ( op.flushFuture!=null ) {
+                    if ( flushFutures==null ) {
+                        flushFutures = new ArrayList<>();
+                    }
+                    flushFutures.add(op.flushFuture);
+                    continue;
+                }
+                int idx = op.durability.ordinal();
+                if ( batches[idx]==null ) {
+                    batches[idx] = new WriteBatch();
+                }
+                batches[idx].put(op.handle, op.key, op.value);
+                opCount++;
+            }
+            for(int i=0;i<batches.length;i++) {
+                if ( batches[i]!=null ) {
+                    db.write(writeOptions[i], batches[i]);
+                    totalBatches++;
+                }
+            }
+            totalOps += opCount;
+        }catch(Throwable t) {
+            error = t;
+            logger.error("KVStore batch write "+opCount+" ops failed", t);
+        }finally {
+            for(WriteBatch batch:batches) {
+                if ( batch!=null ) {
+                    batch.close();
+                }
+            }
+        }
+        for(int i=0;i<ops.size();i++) {
+            WriteOp op = ops.get(i);
+            if ( op.callback!=null ) {
+                op.callback.onWritten(op.key, op.value);
+            }
+        }
+        if ( flushFutures!=null ) {
+            for(CompletableFuture<Void> future:flushFutures) {
+                if ( error==null ) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(error);
+                }
+            }
+        }
+    }
+
+}
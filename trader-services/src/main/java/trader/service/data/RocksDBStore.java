@@ -1,24 +1,127 @@
 package trader.service.data;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import trader.common.beans.BeansContainer;
+import trader.common.util.ConversionUtil;
+import trader.common.util.StringUtil;
+import trader.service.data.BatchedKVStore.Durability;
 
 /**
  * 基于RocksDB实现KVStore
+ * <BR>每个名字空间(前缀第一段, 例如account)使用单独的ColumnFamily, 共享BlockCache, 每个ColumnFamily可以单独配置压缩/BloomFilter/前缀提取.
+ * <BR>直接通过本对象读写带名字空间的key时, 会自动路由到对应的ColumnFamily.
  */
 public class RocksDBStore extends AbsKVStoreProvider {
     private final static Logger logger = LoggerFactory.getLogger(RocksDBStore.class);
 
+    public static final String FAMILY_ATTR_ID = "id";
+    /**
+     * 压缩算法: none, snappy, zlib, lz4, lz4hc, zstd, 缺省lz4
+     */
+    public static final String FAMILY_ATTR_COMPRESSION = "compression";
+    /**
+     * BloomFilter每个key的bit数, 0代表不使用, 缺省10
+     */
+    public static final String FAMILY_ATTR_BLOOM_BITS = "bloomBitsPerKey";
+    /**
+     * 前缀提取长度, 用于按前缀的iterator, 0代表不使用, 缺省0
+     */
+    public static final String FAMILY_ATTR_PREFIX_LENGTH = "prefixLength";
+    /**
+     * MemTable大小, 缺省使用RocksDB缺省值
+     */
+    public static final String FAMILY_ATTR_WRITE_BUFFER_SIZE = "writeBufferSize";
+    /**
+     * 写入持久化方式: SyncWAL, AsyncWAL, NoWAL, 缺省AsyncWAL
+     */
+    public static final String FAMILY_ATTR_DURABILITY = "durability";
+
+    public static final long DEFAULT_BLOCK_CACHE_SIZE = 32*1024*1024;
+
+    private static final String DEFAULT_FAMILY = new String(RocksDB.DEFAULT_COLUMN_FAMILY, StringUtil.UTF8);
+
+    /**
+     * 一个ColumnFamily
+     */
+    private static class FamilyInfo {
+        final String name;
+        final ColumnFamilyHandle handle;
+        final int prefixLength;
+        final Durability durability;
+        final WriteOptions writeOptions;
+
+        FamilyInfo(String name, ColumnFamilyHandle handle, int prefixLength, Durability durability){
+            this.name = name;
+            this.handle = handle;
+            this.prefixLength = prefixLength;
+            this.durability = durability;
+            writeOptions = new WriteOptions()
+                    .setSync(durability==Durability.SyncWAL)
+                    .setDisableWAL(durability==Durability.NoWAL);
+        }
+
+        void close() {
+            handle.close();
+            writeOptions.close();
+        }
+    }
+
     private String path;
+    private long blockCacheSize;
+    private Map<String, Map> familyConfigs = new HashMap<>();
     private RocksDB db;
+    private DBOptions dbOptions;
+    private Cache blockCache;
+    private List<ColumnFamilyOptions> familyOptions = new ArrayList<>();
+    private List<BloomFilter> bloomFilters = new ArrayList<>();
+    private FamilyInfo defaultFamily;
+    private Map<String, FamilyInfo> families = new ConcurrentHashMap<>();
+    private RocksDBBatchWriter batchWriter;
 
     public RocksDBStore(String path) {
+        this(path, DEFAULT_BLOCK_CACHE_SIZE, null);
+    }
+
+    /**
+     * @param blockCacheSize 所有ColumnFamily共享的BlockCache大小
+     * @param familyConfigs 每个ColumnFamily的配置, 使用FAMILY_ATTR_XXX
+     */
+    public RocksDBStore(String path, long blockCacheSize, List<Map> familyConfigs) {
         this.path = path;
+        this.blockCacheSize = blockCacheSize>0?blockCacheSize:DEFAULT_BLOCK_CACHE_SIZE;
+        if ( familyConfigs!=null ) {
+            for(Map familyConfig:familyConfigs) {
+                this.familyConfigs.put(ConversionUtil.toString(familyConfig.get(FAMILY_ATTR_ID)), familyConfig);
+            }
+        }
     }
 
     @Override
@@ -26,21 +129,114 @@ public class RocksDBStore extends AbsKVStoreProvider {
     {
         File rocksdbDir = (new File(path,"rocksdb")).getAbsoluteFile();
         rocksdbDir.mkdirs();
-        db = RocksDB.open(rocksdbDir.getAbsolutePath());
-        logger.info("RocksDB kvstore is open on "+rocksdbDir);
+        blockCache = new LRUCache(blockCacheSize);
+        dbOptions = new DBOptions()
+                .setCreateIfMissing(true)
+                .setCreateMissingColumnFamilies(true);
+
+        List<String> existingFamilies = new ArrayList<>();
+        try(Options options = new Options();){
+            for(byte[] name:RocksDB.listColumnFamilies(options, rocksdbDir.getAbsolutePath())) {
+                existingFamilies.add(new String(name, StringUtil.UTF8));
+            }
+        }
+        if ( !existingFamilies.contains(DEFAULT_FAMILY) ) {
+            existingFamilies.add(0, DEFAULT_FAMILY);
+        }
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        for(String name:existingFamilies) {
+            descriptors.add(new ColumnFamilyDescriptor(name.getBytes(StringUtil.UTF8), createFamilyOptions(name)));
+        }
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        db = RocksDB.open(dbOptions, rocksdbDir.getAbsolutePath(), descriptors, handles);
+        for(int i=0;i<existingFamilies.size();i++) {
+            String name = existingFamilies.get(i);
+            FamilyInfo family = new FamilyInfo(name, handles.get(i), getPrefixLength(name), getDurability(name));
+            if ( name.equals(DEFAULT_FAMILY) ) {
+                defaultFamily = family;
+            } else {
+                families.put(name, family);
+            }
+        }
+        batchWriter = new RocksDBBatchWriter(db);
+        //上次创建ColumnFamily后迁移未完成(进程退出), 缺省ColumnFamily中还有遗留数据
+        for(FamilyInfo family:families.values()) {
+            migrate(family, true);
+        }
+        //配置中的ColumnFamily在第一次启动时创建并迁移数据
+        for(String name:familyConfigs.keySet()) {
+            getFamily(name);
+        }
+        logger.info("RocksDB kvstore is open on "+rocksdbDir+", column families: "+existingFamilies);
     }
 
     @Override
     public void destroy() {
+        if ( batchWriter!=null ) {
+            batchWriter.close();
+            batchWriter = null;
+        }
         if ( null!=db ) {
+            for(FamilyInfo family:families.values()) {
+                family.close();
+            }
+            defaultFamily.close();
             db.close();
+            db = null;
+        }
+        for(ColumnFamilyOptions options:familyOptions) {
+            options.close();
+        }
+        for(BloomFilter filter:bloomFilters) {
+            filter.close();
+        }
+        if ( dbOptions!=null ) {
+            dbOptions.close();
+        }
+        if ( blockCache!=null ) {
+            blockCache.close();
+        }
+    }
+
+    @Override
+    public KVStore getStore(String namespace, String keyPrefix) {
+        FamilyInfo family = getFamily(namespace);
+        if ( family==null ) {
+            return super.getStore(namespace, keyPrefix);
+        }
+        return new FamilyStore(family, keyPrefix);
+    }
+
+    /**
+     * 返回批量写入的KVStore, namespace为空时使用缺省ColumnFamily, 不进行名字空间路由
+     */
+    @Override
+    public BatchedKVStore getBatchedStore(String namespace, String keyPrefix) {
+        FamilyInfo family = defaultFamily;
+        if ( !StringUtil.isEmpty(namespace) ) {
+            family = getFamily(namespace);
+            if ( family==null ) {
+                return super.getBatchedStore(namespace, keyPrefix);
+            }
         }
+        return new BatchedFamilyStore(family, keyPrefix);
+    }
+
+    /**
+     * 批量写入的统计: 批次数, 写操作数
+     */
+    public long[] getBatchWriterStats() {
+        return new long[] {batchWriter.getTotalBatches(), batchWriter.getTotalOps()};
     }
 
     @Override
     public byte[] get(byte[] key) {
+        FamilyInfo family = routeFamily(key);
         try{
-            return db.get(key);
+            if ( family==defaultFamily ) {
+                return db.get(key);
+            }
+            return db.get(family.handle, removeNamespace(family, key));
         }catch(Exception e) {
             throw new RuntimeException(e);
         }
@@ -48,16 +244,347 @@ public class RocksDBStore extends AbsKVStoreProvider {
 
     @Override
     public void put(byte[] key, byte[] data) {
+        FamilyInfo family = routeFamily(key);
         try{
-            db.put(key, data);
+            if ( family==defaultFamily ) {
+                db.put(family.handle, family.writeOptions, key, data);
+            } else {
+                db.put(family.handle, family.writeOptions, removeNamespace(family, key), data);
+            }
         }catch(Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 遍历所有ColumnFamily, 非缺省ColumnFamily的key加上名字空间前缀返回
+     */
     @Override
     public KVStoreIterator iterator() {
-        return new RocksDBStoreIterator(db.newIterator());
+        List<RocksDBStoreIterator> iterators = new ArrayList<>();
+        iterators.add(newIterator(defaultFamily, "", ""));
+        List<String> names = new ArrayList<>(families.keySet());
+        Collections.sort(names);
+        for(String name:names) {
+            iterators.add(newIterator(families.get(name), "", name+"."));
+        }
+        return new ChainedIterator(iterators);
+    }
+
+    /**
+     * 返回名字空间对应的ColumnFamily, 不存在则创建并从缺省ColumnFamily迁移数据
+     */
+    private FamilyInfo getFamily(String namespace) {
+        if ( StringUtil.isEmpty(namespace) || namespace.equals(DEFAULT_FAMILY) ) {
+            return null;
+        }
+        FamilyInfo family = families.get(namespace);
+        if ( family==null ) {
+            synchronized(this) {
+                family = families.get(namespace);
+                if ( family==null ) {
+                    try {
+                        ColumnFamilyHandle handle = db.createColumnFamily(new ColumnFamilyDescriptor(namespace.getBytes(StringUtil.UTF8), createFamilyOptions(namespace)));
+                        family = new FamilyInfo(namespace, handle, getPrefixLength(namespace), getDurability(namespace));
+                        migrate(family, false);
+                        families.put(namespace, family);
+                    }catch(RocksDBException e) {
+                        throw new RuntimeException("Create column family "+namespace+" failed", e);
+                    }
+                }
+            }
+        }
+        return family;
+    }
+
+    /**
+     * 将缺省ColumnFamily中带有 namespace. 前缀的key移动到新的ColumnFamily
+     *
+     * @param recover 恢复未完成的迁移: ColumnFamily中已经存在的key是迁移后写入的新值, 不被覆盖
+     */
+    private void migrate(FamilyInfo family, boolean recover) throws RocksDBException {
+        byte[] prefix = (family.name+".").getBytes(StringUtil.UTF8);
+        int count = 0;
+        try(ReadOptions readOptions = new ReadOptions().setTotalOrderSeek(true);
+            RocksIterator it = db.newIterator(defaultFamily.handle, readOptions);
+            WriteBatch batch = new WriteBatch();
+            WriteOptions writeOptions = new WriteOptions().setSync(true);)
+        {
+            for(it.seek(prefix); it.isValid() && startsWith(it.key(), prefix); it.next()) {
+                byte[] key = it.key();
+                byte[] newKey = new byte[key.length-prefix.length];
+                System.arraycopy(key, prefix.length, newKey, 0, newKey.length);
+                if ( !recover || db.get(family.handle, newKey)==null ) {
+                    batch.put(family.handle, newKey, it.value());
+                }
+                batch.delete(defaultFamily.handle, key);
+                count++;
+            }
+            if ( count>0 ) {
+                db.write(writeOptions, batch);
+            }
+        }
+        if ( count>0 ) {
+            logger.info("Migrated "+count+" keys with prefix "+family.name+". into column family "+family.name);
+        }
+    }
+
+    private ColumnFamilyOptions createFamilyOptions(String name) {
+        Map config = familyConfigs.get(name);
+        if ( config==null ) {
+            config = Collections.emptyMap();
+        }
+        ColumnFamilyOptions options = new ColumnFamilyOptions();
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        tableConfig.setBlockCache(blockCache);
+        int bloomBits = config.containsKey(FAMILY_ATTR_BLOOM_BITS)?ConversionUtil.toInt(config.get(FAMILY_ATTR_BLOOM_BITS)):10;
+        if ( bloomBits>0 ) {
+            BloomFilter bloomFilter = new BloomFilter(bloomBits, false);
+            bloomFilters.add(bloomFilter);
+            tableConfig.setFilter(bloomFilter);
+        }
+        options.setTableFormatConfig(tableConfig);
+        options.setCompressionType(toCompressionType(ConversionUtil.toString(config.get(FAMILY_ATTR_COMPRESSION))));
+        int prefixLength = getPrefixLength(name);
+        if ( prefixLength>0 ) {
+            options.useCappedPrefixExtractor(prefixLength);
+            options.setMemtablePrefixBloomSizeRatio(0.1);
+        }
+        if ( config.containsKey(FAMILY_ATTR_WRITE_BUFFER_SIZE) ) {
+            options.setWriteBufferSize(ConversionUtil.toLong(config.get(FAMILY_ATTR_WRITE_BUFFER_SIZE)));
+        }
+        familyOptions.add(options);
+        return options;
+    }
+
+    private int getPrefixLength(String name) {
+        Map config = familyConfigs.get(name);
+        if ( config!=null && config.containsKey(FAMILY_ATTR_PREFIX_LENGTH) ) {
+            return ConversionUtil.toInt(config.get(FAMILY_ATTR_PREFIX_LENGTH));
+        }
+        return 0;
+    }
+
+    private Durability getDurability(String name) {
+        Map config = familyConfigs.get(name);
+        if ( config!=null && config.containsKey(FAMILY_ATTR_DURABILITY) ) {
+            Durability result = ConversionUtil.toEnum(Durability.class, config.get(FAMILY_ATTR_DURABILITY));
+            if ( result==null ) {
+                throw new RuntimeException("Unsupported rocksdb durability: "+config.get(FAMILY_ATTR_DURABILITY));
+            }
+            return result;
+        }
+        return Durability.AsyncWAL;
+    }
+
+    private static CompressionType toCompressionType(String compression) {
+        if ( StringUtil.isEmpty(compression) ) {
+            return CompressionType.LZ4_COMPRESSION;
+        }
+        switch(compression.toLowerCase()) {
+        case "none":
+            return CompressionType.NO_COMPRESSION;
+        case "snappy":
+            return CompressionType.SNAPPY_COMPRESSION;
+        case "zlib":
+            return CompressionType.ZLIB_COMPRESSION;
+        case "lz4":
+            return CompressionType.LZ4_COMPRESSION;
+        case "lz4hc":
+            return CompressionType.LZ4HC_COMPRESSION;
+        case "zstd":
+            return CompressionType.ZSTD_COMPRESSION;
+        default:
+            throw new RuntimeException("Unsupported rocksdb compression: "+compression);
+        }
+    }
+
+    /**
+     * 根据key的第一段找到ColumnFamily, 只查找已经存在的
+     */
+    private FamilyInfo routeFamily(byte[] key) {
+        if ( !families.isEmpty() ) {
+            for(int i=0;i<key.length;i++) {
+                if ( key[i]=='.' ) {
+                    FamilyInfo family = families.get(new String(key, 0, i, StringUtil.UTF8));
+                    if ( family!=null ) {
+                        return family;
+                    }
+                    break;
+                }
+            }
+        }
+        return defaultFamily;
+    }
+
+    private static byte[] removeNamespace(FamilyInfo family, byte[] key) {
+        int offset = family.name.getBytes(StringUtil.UTF8).length+1;
+        byte[] result = new byte[key.length-offset];
+        System.arraycopy(key, offset, result, 0, result.length);
+        return result;
+    }
+
+    static boolean startsWith(byte[] data, byte[] prefix) {
+        if ( data.length<prefix.length ) {
+            return false;
+        }
+        for(int i=0;i<prefix.length;i++) {
+            if ( data[i]!=prefix[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RocksDBStoreIterator newIterator(FamilyInfo family, String keyPrefix, String returnPrefix) {
+        byte[] prefix = keyPrefix.getBytes(StringUtil.UTF8);
+        ReadOptions readOptions = new ReadOptions();
+        if ( family.prefixLength>0 && prefix.length>=family.prefixLength ) {
+            readOptions.setPrefixSameAsStart(true);
+        } else {
+            readOptions.setTotalOrderSeek(true);
+        }
+        return new RocksDBStoreIterator(db.newIterator(family.handle, readOptions), readOptions, prefix, returnPrefix);
+    }
+
+    /**
+     * 某个ColumnFamily中带有固定前缀的KVStore
+     */
+    private class FamilyStore extends AbsKVStoreProvider {
+        protected final FamilyInfo family;
+        protected final String keyPrefix;
+
+        FamilyStore(FamilyInfo family, String keyPrefix){
+            this.family = family;
+            this.keyPrefix = keyPrefix!=null?keyPrefix:"";
+        }
+
+        @Override
+        public void init(BeansContainer beansContainer) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public byte[] get(String key) {
+            return get((keyPrefix+key).getBytes(StringUtil.UTF8));
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            put((keyPrefix+key).getBytes(StringUtil.UTF8), data);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            put((keyPrefix+key).getBytes(StringUtil.UTF8), value.getBytes(StringUtil.UTF8));
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            try{
+                return db.get(family.handle, key);
+            }catch(Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void put(byte[] key, byte[] data) {
+            try{
+                db.put(family.handle, family.writeOptions, key, data);
+            }catch(Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * 只返回带有前缀的key, 返回的key去掉前缀
+         */
+        @Override
+        public KVStoreIterator iterator() {
+            return newIterator(family, keyPrefix, "");
+        }
+    }
+
+    /**
+     * 批量写入的KVStore, 写入完成前的值保存在pendingValues中
+     */
+    private class BatchedFamilyStore extends FamilyStore implements BatchedKVStore, RocksDBBatchWriter.WriteCallback {
+        private final Map<ByteBuffer, byte[]> pendingValues = new ConcurrentHashMap<>();
+
+        BatchedFamilyStore(FamilyInfo family, String keyPrefix){
+            super(family, keyPrefix);
+        }
+
+        @Override
+        public Durability getDurability() {
+            return family.durability;
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            if ( !pendingValues.isEmpty() ) {
+                byte[] value = pendingValues.get(ByteBuffer.wrap(key));
+                if ( value!=null ) {
+                    return value;
+                }
+            }
+            return super.get(key);
+        }
+
+        @Override
+        public void put(byte[] key, byte[] data) {
+            pendingValues.put(ByteBuffer.wrap(key), data);
+            batchWriter.put(family.handle, key, data, family.durability, this);
+        }
+
+        @Override
+        public void onWritten(byte[] key, byte[] value) {
+            //只有值没有被再次修改时才删除
+            pendingValues.remove(ByteBuffer.wrap(key), value);
+        }
+
+        @Override
+        public CompletableFuture<Void> flush() {
+            return batchWriter.flush();
+        }
+    }
+
+    /**
+     * 依次遍历多个Iterator
+     */
+    private static class ChainedIterator implements KVStoreIterator {
+        private List<RocksDBStoreIterator> iterators;
+        private int index;
+
+        ChainedIterator(List<RocksDBStoreIterator> iterators){
+            this.iterators = iterators;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(index<iterators.size()) {
+                if ( iterators.get(index).hasNext() ) {
+                    return true;
+                }
+                index++;
+            }
+            return false;
+        }
+
+        @Override
+        public String next() {
+            hasNext();
+            return iterators.get(Math.min(index, iterators.size()-1)).next();
+        }
+
+        @Override
+        public byte[] getValue() {
+            return iterators.get(Math.min(index, iterators.size()-1)).getValue();
+        }
     }
 
 }
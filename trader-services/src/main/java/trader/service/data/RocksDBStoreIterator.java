@@ -1,34 +1,72 @@
 package trader.service.data;
 
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksIterator;
 
 import trader.common.util.StringUtil;
 
+/**
+ * 遍历某个ColumnFamily中带有前缀的key, 返回的key去掉前缀再加上returnPrefix.
+ * <BR>遍历结束后自动释放RocksIterator
+ */
 public class RocksDBStoreIterator implements KVStoreIterator{
 
     private RocksIterator rocksIterator;
+    private ReadOptions readOptions;
+    private byte[] prefix;
+    private String returnPrefix;
+    private byte[] value;
 
-    public RocksDBStoreIterator(RocksIterator rocksIterator) {
+    public RocksDBStoreIterator(RocksIterator rocksIterator, ReadOptions readOptions, byte[] prefix, String returnPrefix) {
         this.rocksIterator = rocksIterator;
+        this.readOptions = readOptions;
+        this.prefix = prefix;
+        this.returnPrefix = returnPrefix;
+        if ( prefix.length==0 ) {
+            rocksIterator.seekToFirst();
+        } else {
+            rocksIterator.seek(prefix);
+        }
     }
 
     @Override
     public boolean hasNext() {
-        return rocksIterator.isValid();
+        if ( rocksIterator==null ) {
+            return false;
+        }
+        if ( rocksIterator.isValid() && RocksDBStore.startsWith(rocksIterator.key(), prefix) ) {
+            return true;
+        }
+        close();
+        return false;
     }
 
     @Override
     public String next() {
-        rocksIterator.next();
-        if ( rocksIterator.isValid() ) {
-            return new String(rocksIterator.key(), StringUtil.UTF8);
+        if ( !hasNext() ) {
+            value = null;
+            return null;
         }
-        return null;
+        byte[] key = rocksIterator.key();
+        value = rocksIterator.value();
+        rocksIterator.next();
+        return returnPrefix+new String(key, prefix.length, key.length-prefix.length, StringUtil.UTF8);
     }
 
+    /**
+     * 返回上一次next()返回的key对应的值
+     */
     @Override
     public byte[] getValue() {
-        return rocksIterator.value();
+        return value;
+    }
+
+    private void close() {
+        if ( rocksIterator!=null ) {
+            rocksIterator.close();
+            readOptions.close();
+            rocksIterator = null;
+        }
     }
 
-}
\ No newline at end of file
+}
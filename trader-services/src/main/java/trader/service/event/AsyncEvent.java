@@ -32,11 +32,17 @@ public class AsyncEvent {
 
 	public Object data2;
 
+	/**
+	 * 发布到RingBuffer的System.nanoTime(), 用于延迟统计
+	 */
+	public long publishNanoTime;
+
     public void setData(int eventType, AsyncEventProcessor processor, Object data, Object data2) {
         this.eventType = eventType;
         this.processor = processor;
         this.data = data;
         this.data2 = data2;
+        this.publishNanoTime = System.nanoTime();
     }
 
     void clear() {
@@ -44,6 +50,7 @@ public class AsyncEvent {
         processor = null;
         data = null;
         data2 = null;
+        publishNanoTime = 0;
     }
 
 }
@@ -9,6 +9,11 @@ public interface AsyncEventService {
      */
     public static final String FILTER_CHAIN_MAIN = "Main";
 
+    /**
+     * 报单/成交回报事件处理线程, 使用独立的RingBuffer, 不会排在行情事件之后
+     */
+    public static final String FILTER_CHAIN_TXN = "Txn";
+
     /**
      * 增加事件处理过滤器, 不同名称的过滤器会放在不同的EventHandler中执行
      *
@@ -20,4 +25,20 @@ public interface AsyncEventService {
     public void publishMarketData(MarketData md);
 
     public void publishProcessorEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2);
+
+    /**
+     * 发布报单/成交回报事件到交易事件RingBuffer, 由FILTER_CHAIN_TXN的过滤器在独立线程中按发布顺序处理.
+     * <BR>没有注册FILTER_CHAIN_TXN过滤器时, 与publishProcessorEvent相同
+     */
+    public void publishTxnEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2);
+
+    /**
+     * RingBuffer 容量
+     */
+    public int getRingBufferSize();
+
+    /**
+     * RingBuffer 中已发布但还没有处理完的事件数量
+     */
+    public long getRingBufferUsed();
 }
@@ -5,6 +5,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,8 @@ import trader.common.beans.Lifecycle;
 import trader.common.config.ConfigUtil;
 import trader.common.util.ConversionUtil;
 import trader.service.md.MarketData;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
 import trader.service.util.ConcurrentUtil;
 
 @Service
@@ -26,13 +29,20 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
 
     public static final String ITEM_DISRUPTOR_WAIT_STRATEGY = "/AsyncEventService/disruptor/waitStrategy";
     public static final String ITEM_DISRUPTOR_RINGBUFFER_SIZE = "/AsyncEventService/disruptor/ringBufferSize";
+    public static final String ITEM_TXN_DISRUPTOR_WAIT_STRATEGY = "/AsyncEventService/txnDisruptor/waitStrategy";
+    public static final String ITEM_TXN_DISRUPTOR_RINGBUFFER_SIZE = "/AsyncEventService/txnDisruptor/ringBufferSize";
 
     private static class AsyncEventHandler implements EventHandler<AsyncEvent>{
 
         private int[] filterMasks;
         private AsyncEventFilter[] filters;
+        /**
+         * 多个EventHandler时只由第一个记录排队延迟, null不记录
+         */
+        private Stage latencyStage;
 
-        public AsyncEventHandler(List<Object[]> filters0) {
+        public AsyncEventHandler(List<Object[]> filters0, Stage latencyStage) {
+            this.latencyStage = latencyStage;
             filterMasks = new int[filters0.size()];
             filters = new AsyncEventFilter[filters0.size()];
             for(int i=0;i<filters0.size();i++) {
@@ -44,6 +54,9 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
 
         @Override
         public void onEvent(AsyncEvent event, long sequence, boolean endOfBatch) throws Exception {
+            if ( latencyStage!=null ) {
+                LatencyRecorder.recordSince(latencyStage, event.publishNanoTime);
+            }
             for(int i=0;i<filters.length;i++) {
                 int filterMask = filterMasks[i];
                 int eventType = event.eventType;
@@ -62,11 +75,20 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
 
     private Disruptor<AsyncEvent> disruptor;
     private RingBuffer<AsyncEvent> ringBuffer;
+    /**
+     * 报单/成交回报使用的独立RingBuffer和处理线程
+     */
+    private Disruptor<AsyncEvent> txnDisruptor;
+    private RingBuffer<AsyncEvent> txnRingBuffer;
 
     private List<Object[]> registeredFilters = new ArrayList<>();
 
     @Override
     public void init(BeansContainer beansContainer) throws Exception {
+        if ( executorService==null ) {
+            //不在Spring中运行时, 从BeansContainer获取
+            executorService = beansContainer.getBean(ExecutorService.class);
+        }
         //启动disruptor
         disruptor = new Disruptor<AsyncEvent>( new AsyncEventFactory()
             , ConfigUtil.getInt(ITEM_DISRUPTOR_RINGBUFFER_SIZE, 65536)
@@ -74,6 +96,18 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
             , ProducerType.MULTI
             , ConcurrentUtil.createDisruptorWaitStrategy(ConfigUtil.getString(ITEM_DISRUPTOR_WAIT_STRATEGY))
             );
+        //交易事件使用独立的命名线程, 不占用共享线程池
+        ThreadFactory txnThreadFactory = (Runnable r)->{
+            Thread thread = new Thread(r, "AsyncEvent-"+FILTER_CHAIN_TXN);
+            thread.setDaemon(true);
+            return thread;
+        };
+        txnDisruptor = new Disruptor<AsyncEvent>( new AsyncEventFactory()
+            , ConfigUtil.getInt(ITEM_TXN_DISRUPTOR_RINGBUFFER_SIZE, 4096)
+            , txnThreadFactory
+            , ProducerType.MULTI
+            , ConcurrentUtil.createDisruptorWaitStrategy(ConfigUtil.getString(ITEM_TXN_DISRUPTOR_WAIT_STRATEGY))
+            );
     }
 
     @Override
@@ -83,12 +117,22 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
             disruptor.shutdown();
             ringBuffer = null;
         }
+        if ( txnRingBuffer!=null ) {
+            txnDisruptor.halt();
+            txnDisruptor.shutdown();
+            txnRingBuffer = null;
+        }
     }
 
     public void start() {
         Map<String, List<Object[]>> filtersByChain = new LinkedHashMap<>();
+        List<Object[]> txnFilters = new ArrayList<>();
         for(Object[] filter:registeredFilters) {
             String chainName = filter[0].toString();
+            if ( chainName.equals(FILTER_CHAIN_TXN) ) {
+                txnFilters.add(filter);
+                continue;
+            }
             List<Object[]> filters = filtersByChain.get(chainName);
             if ( filters==null) {
                 filters = new ArrayList<>();
@@ -99,7 +143,12 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
         List<List<Object[]>> allFilters = new ArrayList<>(filtersByChain.values());
         AsyncEventHandler[] handlers = new AsyncEventHandler[filtersByChain.size()];
         for(int i=0;i<allFilters.size();i++) {
-            handlers[i] = new AsyncEventHandler(allFilters.get(i));
+            handlers[i] = new AsyncEventHandler(allFilters.get(i), i==0?Stage.AsyncEventQueue:null);
+        }
+        //为交易事件启动独立的线程
+        if ( !txnFilters.isEmpty() ) {
+            txnDisruptor.handleEventsWith(new AsyncEventHandler(txnFilters, Stage.TxnEventQueue));
+            txnRingBuffer = txnDisruptor.start();
         }
         disruptor.handleEventsWith(handlers);
         ringBuffer= disruptor.start();
@@ -133,4 +182,41 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
         }
     }
 
+    /**
+     * 交易事件只有一个处理线程, 同一账户的报单/成交回报按发布顺序处理
+     */
+    @Override
+    public void publishTxnEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2) {
+        RingBuffer<AsyncEvent> txnRingBuffer = this.txnRingBuffer;
+        if ( txnRingBuffer==null ) {
+            publishProcessorEvent(processor, dataType, data, data2);
+            return;
+        }
+        long seq = txnRingBuffer.next();
+        try {
+            AsyncEvent event = txnRingBuffer.get(seq);
+            event.setData(AsyncEvent.EVENT_TYPE_PROCESSOR|dataType, processor, data,  data2);
+        }finally {
+            txnRingBuffer.publish(seq);
+        }
+    }
+
+    @Override
+    public int getRingBufferSize() {
+        RingBuffer<AsyncEvent> ringBuffer = this.ringBuffer;
+        if ( ringBuffer==null ) {
+            return 0;
+        }
+        return ringBuffer.getBufferSize();
+    }
+
+    @Override
+    public long getRingBufferUsed() {
+        RingBuffer<AsyncEvent> ringBuffer = this.ringBuffer;
+        if ( ringBuffer==null ) {
+            return 0;
+        }
+        return ringBuffer.getBufferSize()-ringBuffer.remainingCapacity();
+    }
+
 }
@@ -0,0 +1,117 @@
+package trader.service.log;
+
+import org.slf4j.Logger;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * 交易线程热路径使用的日志接口.
+ * <BR>日志分类通过LogService.setAsync()或logback配置使用AsyncLogAppender时, 参数直接写入预分配的RingBuffer事件槽,
+ * 由后台线程格式化和写出, 调用线程不拼接字符串也不创建新对象; 否则在调用线程格式化后同步写出.
+ * <BR>format中的占位符按对象参数, 长整数参数的顺序替换: <code>{}</code> 原样输出, <code>{p}</code> 按PriceUtil.long2str格式输出长整数价格,
+ * <code>{x}</code> 按十六进制输出长整数.
+ * 对象参数在后台线程中调用toString(), 只能传递不再修改的对象.
+ */
+public class AsyncLog {
+
+    private static final ThreadLocal<AsyncLogEvent> syncEvents = ThreadLocal.withInitial(()->{
+        return new AsyncLogEvent();
+    });
+
+    private static final ThreadLocal<StringBuilder> syncBuilders = ThreadLocal.withInitial(()->{
+        return new StringBuilder(256);
+    });
+
+    public static void info(Logger logger, String format, Object a0) {
+        if ( logger.isInfoEnabled() ) {
+            log(logger, Level.INFO, format, 1, a0, null, null, null, 0, 0, 0);
+        }
+    }
+
+    public static void info(Logger logger, String format, Object a0, Object a1) {
+        if ( logger.isInfoEnabled() ) {
+            log(logger, Level.INFO, format, 2, a0, a1, null, null, 0, 0, 0);
+        }
+    }
+
+    public static void info(Logger logger, String format, Object a0, Object a1, Object a2) {
+        if ( logger.isInfoEnabled() ) {
+            log(logger, Level.INFO, format, 3, a0, a1, a2, null, 0, 0, 0);
+        }
+    }
+
+    public static void info(Logger logger, String format, Object a0, long v0) {
+        if ( logger.isInfoEnabled() ) {
+            log(logger, Level.INFO, format, 1, a0, null, null, null, 1, v0, 0);
+        }
+    }
+
+    public static void info(Logger logger, String format, Object a0, long v0, long v1) {
+        if ( logger.isInfoEnabled() ) {
+            log(logger, Level.INFO, format, 1, a0, null, null, null, 2, v0, v1);
+        }
+    }
+
+    public static void info(Logger logger, String format, Object a0, Object a1, long v0, long v1) {
+        if ( logger.isInfoEnabled() ) {
+            log(logger, Level.INFO, format, 2, a0, a1, null, null, 2, v0, v1);
+        }
+    }
+
+    public static void info(Logger logger, String format, Object a0, Object a1, Object a2, Object a3, long v0, long v1) {
+        if ( logger.isInfoEnabled() ) {
+            log(logger, Level.INFO, format, 4, a0, a1, a2, a3, 2, v0, v1);
+        }
+    }
+
+    public static void debug(Logger logger, String format, Object a0) {
+        if ( logger.isDebugEnabled() ) {
+            log(logger, Level.DEBUG, format, 1, a0, null, null, null, 0, 0, 0);
+        }
+    }
+
+    public static void debug(Logger logger, String format, Object a0, Object a1) {
+        if ( logger.isDebugEnabled() ) {
+            log(logger, Level.DEBUG, format, 2, a0, a1, null, null, 0, 0, 0);
+        }
+    }
+
+    public static void debug(Logger logger, String format, Object a0, Object a1, long v0) {
+        if ( logger.isDebugEnabled() ) {
+            log(logger, Level.DEBUG, format, 2, a0, a1, null, null, 1, v0, 0);
+        }
+    }
+
+    /**
+     * 等待已经发布的异步日志全部写出
+     *
+     * @return false表示超时
+     */
+    public static boolean flush(long timeoutMillis) {
+        return AsyncLogRing.flush(timeoutMillis);
+    }
+
+    private static void log(Logger logger, Level level, String format, int objectCount, Object a0, Object a1, Object a2, Object a3, int longCount, long v0, long v1) {
+        AsyncLogAppender appender = AsyncLogAppender.resolve(logger);
+        if ( appender!=null && !AsyncLogRing.isConsumerThread() ) {
+            AsyncLogRing.publish(appender, (ch.qos.logback.classic.Logger)logger, level, format, objectCount, a0, a1, a2, a3, longCount, v0, v1);
+            return;
+        }
+        AsyncLogEvent event = syncEvents.get();
+        event.set(null, level, format, objectCount, a0, a1, a2, a3, longCount, v0, v1);
+        StringBuilder builder = syncBuilders.get();
+        builder.setLength(0);
+        try{
+            event.format(builder);
+        }finally {
+            event.clear();
+        }
+        String message = builder.toString();
+        if ( level==Level.DEBUG ) {
+            logger.debug(message);
+        } else {
+            logger.info(message);
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package trader.service.log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+
+/**
+ * 把日志事件放入AsyncLogRing, 在后台线程中写入下级appender的logback appender.
+ * <BR>可以在logback.xml中使用appender-ref配置下级appender, 也可以通过LogService.setAsync()在运行时切换某个日志分类.
+ * <BR>普通的logger.info()调用只在调用线程获取线程名和MDC, 参数在后台线程中格式化, 所以参数对象在记录后不能再修改;
+ * 热路径使用AsyncLog, 不创建新对象.
+ */
+public class AsyncLogAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+
+    private static final Object NONE = new Object();
+
+    /**
+     * logger名称 -> 负责该logger的AsyncLogAppender, 运行时切换后清空
+     */
+    private static ConcurrentHashMap<String, Object> resolvedAppenders = new ConcurrentHashMap<>();
+
+    /**
+     * 运行时切换的日志分类 -> 对应的AsyncLogAppender
+     */
+    private static ConcurrentHashMap<String, AsyncLogAppender> routedAppenders = new ConcurrentHashMap<>();
+
+    private AppenderAttachableImpl<ILoggingEvent> aai = new AppenderAttachableImpl<>();
+
+    /**
+     * 切换前logger自己的appender
+     */
+    private List<Appender<ILoggingEvent>> ownAppenders = new ArrayList<>();
+    private boolean ownAdditive;
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if ( AsyncLogRing.isConsumerThread() ) {
+            aai.appendLoopOnAppenders(event);
+            return;
+        }
+        event.getThreadName();
+        event.getMDCPropertyMap();
+        AsyncLogRing.publish(this, event);
+    }
+
+    @Override
+    public void stop() {
+        AsyncLogRing.flush(1000);
+        super.stop();
+    }
+
+    void appendLoopOnAppenders(ILoggingEvent event) {
+        aai.appendLoopOnAppenders(event);
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> newAppender) {
+        aai.addAppender(newAppender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return aai.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return aai.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return aai.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        aai.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return aai.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return aai.detachAppender(name);
+    }
+
+    /**
+     * 查找logger的日志最终写入的AsyncLogAppender.
+     * <BR>只有从logger到AsyncLogAppender所在logger之间没有其它appender时才返回, 否则返回null, 由调用线程同步写日志
+     */
+    static AsyncLogAppender resolve(org.slf4j.Logger logger) {
+        Object result = resolvedAppenders.get(logger.getName());
+        if ( result==null ) {
+            result = NONE;
+            if ( logger instanceof Logger ) {
+                AsyncLogAppender appender = resolve0((Logger)logger);
+                if ( appender!=null ) {
+                    result = appender;
+                }
+            }
+            resolvedAppenders.put(logger.getName(), result);
+        }
+        if ( result==NONE ) {
+            return null;
+        }
+        return (AsyncLogAppender)result;
+    }
+
+    private static AsyncLogAppender resolve0(Logger logger) {
+        LoggerContext context = logger.getLoggerContext();
+        Logger l = logger;
+        while(l!=null) {
+            boolean hasAppenders = false;
+            for(Iterator<Appender<ILoggingEvent>> it=l.iteratorForAppenders(); it.hasNext();) {
+                Appender<ILoggingEvent> appender = it.next();
+                if ( appender instanceof AsyncLogAppender && appender.isStarted() ) {
+                    return (AsyncLogAppender)appender;
+                }
+                hasAppenders = true;
+            }
+            if ( hasAppenders || !l.isAdditive() ) {
+                return null;
+            }
+            l = getParent(context, l);
+        }
+        return null;
+    }
+
+    private static Logger getParent(LoggerContext context, Logger logger) {
+        String name = logger.getName();
+        if ( Logger.ROOT_LOGGER_NAME.equals(name) ) {
+            return null;
+        }
+        int idx = name.lastIndexOf('.');
+        if ( idx<0 ) {
+            return context.getLogger(Logger.ROOT_LOGGER_NAME);
+        }
+        return context.getLogger(name.substring(0, idx));
+    }
+
+    static boolean isRouted(String category) {
+        return routedAppenders.containsKey(category);
+    }
+
+    /**
+     * 把日志分类的输出切换到异步写入.
+     * <BR>logger自己的appender, 以及additive时上级logger的appender, 都移到AsyncLogAppender之下, logger改为非additive
+     */
+    static synchronized void route(Logger logger) {
+        String category = logger.getName();
+        if ( routedAppenders.containsKey(category) ) {
+            return;
+        }
+        AsyncLogAppender asyncAppender = new AsyncLogAppender();
+        asyncAppender.setContext(logger.getLoggerContext());
+        asyncAppender.setName("async-"+category);
+        for(Iterator<Appender<ILoggingEvent>> it=logger.iteratorForAppenders(); it.hasNext();) {
+            asyncAppender.ownAppenders.add(it.next());
+        }
+        for(Appender<ILoggingEvent> appender:asyncAppender.ownAppenders) {
+            logger.detachAppender(appender);
+            asyncAppender.addAppender(appender);
+        }
+        asyncAppender.ownAdditive = logger.isAdditive();
+        if ( logger.isAdditive() ) {
+            LoggerContext context = logger.getLoggerContext();
+            for(Logger l=getParent(context, logger); l!=null; l=getParent(context, l)) {
+                for(Iterator<Appender<ILoggingEvent>> it=l.iteratorForAppenders(); it.hasNext();) {
+                    asyncAppender.addAppender(it.next());
+                }
+                if ( !l.isAdditive() ) {
+                    break;
+                }
+            }
+        }
+        asyncAppender.start();
+        logger.addAppender(asyncAppender);
+        logger.setAdditive(false);
+        routedAppenders.put(category, asyncAppender);
+        resolvedAppenders.clear();
+    }
+
+    /**
+     * 恢复日志分类原有的appender和additive设置
+     */
+    static synchronized void unroute(Logger logger) {
+        AsyncLogAppender asyncAppender = routedAppenders.remove(logger.getName());
+        if ( asyncAppender==null ) {
+            return;
+        }
+        resolvedAppenders.clear();
+        AsyncLogRing.flush(1000);
+        logger.detachAppender(asyncAppender);
+        for(Appender<ILoggingEvent> appender:asyncAppender.ownAppenders) {
+            logger.addAppender(appender);
+        }
+        logger.setAdditive(asyncAppender.ownAdditive);
+        asyncAppender.stop();
+    }
+
+}
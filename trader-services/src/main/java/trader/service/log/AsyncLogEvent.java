@@ -0,0 +1,133 @@
+package trader.service.log;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import trader.common.util.PriceUtil;
+
+/**
+ * 异步日志RingBuffer中预分配的事件槽.
+ * <BR>热路径的参数直接写入槽中的对象/长整数数组, 不创建新对象; 日志内容在后台线程中格式化
+ */
+class AsyncLogEvent {
+    static final int MAX_OBJECTS = 4;
+    static final int MAX_LONGS = 2;
+
+    AsyncLogAppender appender;
+    /**
+     * 通过logback appender进入的事件
+     */
+    ILoggingEvent loggingEvent;
+
+    Logger logger;
+    Level level;
+    long timestamp;
+    String threadName;
+    String format;
+    int objectCount;
+    final Object[] objects = new Object[MAX_OBJECTS];
+    int longCount;
+    final long[] longs = new long[MAX_LONGS];
+
+    void set(Logger logger, Level level, String format, int objectCount, Object a0, Object a1, Object a2, Object a3, int longCount, long v0, long v1) {
+        this.logger = logger;
+        this.level = level;
+        this.format = format;
+        this.objectCount = objectCount;
+        objects[0] = a0;
+        objects[1] = a1;
+        objects[2] = a2;
+        objects[3] = a3;
+        this.longCount = longCount;
+        longs[0] = v0;
+        longs[1] = v1;
+    }
+
+    /**
+     * 释放引用
+     */
+    void clear() {
+        appender = null;
+        loggingEvent = null;
+        logger = null;
+        threadName = null;
+        format = null;
+        objects[0] = null;
+        objects[1] = null;
+        objects[2] = null;
+        objects[3] = null;
+    }
+
+    /**
+     * 格式化日志内容.
+     * <BR>参数按对象参数, 长整数参数的顺序依次替换format中的占位符: <code>{}</code> 原样输出, <code>{p}</code> 按价格输出长整数, <code>{x}</code> 按十六进制输出长整数
+     */
+    void format(StringBuilder builder) {
+        int argIndex = 0;
+        int argCount = objectCount+longCount;
+        int len = format.length();
+        for(int i=0;i<len;i++) {
+            char c = format.charAt(i);
+            if ( c=='{' && argIndex<argCount ) {
+                if ( i+1<len && format.charAt(i+1)=='}' ) {
+                    appendArg(builder, argIndex++, '}');
+                    i++;
+                    continue;
+                }
+                if ( i+2<len && format.charAt(i+2)=='}' && (format.charAt(i+1)=='p' || format.charAt(i+1)=='x') ) {
+                    appendArg(builder, argIndex++, format.charAt(i+1));
+                    i+=2;
+                    continue;
+                }
+            }
+            builder.append(c);
+        }
+    }
+
+    private void appendArg(StringBuilder builder, int argIndex, char type) {
+        if ( argIndex<objectCount ) {
+            builder.append(objects[argIndex]);
+            return;
+        }
+        long v = longs[argIndex-objectCount];
+        switch(type) {
+        case 'p':
+            appendPrice(builder, v);
+            break;
+        case 'x':
+            builder.append(Long.toHexString(v).toUpperCase());
+            break;
+        default:
+            builder.append(v);
+            break;
+        }
+    }
+
+    /**
+     * 与PriceUtil.long2str相同的格式, 不创建字符串
+     */
+    static void appendPrice(StringBuilder builder, long v) {
+        if ( v==Long.MAX_VALUE ) {
+            builder.append(PriceUtil.MAX_STR);
+            return;
+        }
+        if ( v<0 ) {
+            builder.append('-');
+            v = -v;
+        }
+        builder.append(v/10000).append('.');
+        int frac = (int)(v%10000);
+        for(int d=1000;d>0;d/=10) {
+            builder.append((char)('0'+frac/d%10));
+        }
+        //最多去掉两位末尾的0
+        for(int i=0;i<2;i++) {
+            int last = builder.length()-1;
+            if ( builder.charAt(last)!='0' ) {
+                break;
+            }
+            builder.setLength(last);
+        }
+    }
+
+}
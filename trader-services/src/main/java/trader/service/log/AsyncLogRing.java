@@ -0,0 +1,136 @@
+package trader.service.log;
+
+import java.util.concurrent.ThreadFactory;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * 全局的异步日志RingBuffer和后台格式化线程.
+ * <BR>RingBuffer满时发布线程等待, 日志不会丢失; 后台线程按发布顺序格式化并写入appender
+ */
+class AsyncLogRing {
+
+    static final int RING_SIZE = 16384;
+
+    private static final String FQCN = AsyncLog.class.getName();
+
+    private static Disruptor<AsyncLogEvent> disruptor;
+    private static volatile RingBuffer<AsyncLogEvent> ringBuffer;
+    private static volatile Thread consumerThread;
+
+    private static class AsyncLogHandler implements EventHandler<AsyncLogEvent> {
+        private StringBuilder builder = new StringBuilder(256);
+
+        @Override
+        public void onEvent(AsyncLogEvent event, long sequence, boolean endOfBatch) throws Exception {
+            try{
+                if ( event.loggingEvent!=null ) {
+                    event.appender.appendLoopOnAppenders(event.loggingEvent);
+                } else {
+                    builder.setLength(0);
+                    event.format(builder);
+                    LoggingEvent loggingEvent = new LoggingEvent(FQCN, event.logger, event.level, builder.toString(), null, null);
+                    loggingEvent.setTimeStamp(event.timestamp);
+                    loggingEvent.setThreadName(event.threadName);
+                    event.appender.appendLoopOnAppenders(loggingEvent);
+                }
+            }catch(Throwable t) {
+                System.err.println("Async log event process failed: "+t);
+            }finally {
+                event.clear();
+            }
+        }
+    }
+
+    private static RingBuffer<AsyncLogEvent> getRingBuffer() {
+        RingBuffer<AsyncLogEvent> result = ringBuffer;
+        if ( result==null ) {
+            synchronized(AsyncLogRing.class) {
+                if ( ringBuffer==null ) {
+                    ThreadFactory threadFactory = (Runnable r)->{
+                        Thread thread = new Thread(r, "AsyncLog");
+                        thread.setDaemon(true);
+                        consumerThread = thread;
+                        return thread;
+                    };
+                    disruptor = new Disruptor<AsyncLogEvent>(()->{ return new AsyncLogEvent(); }, RING_SIZE, threadFactory, ProducerType.MULTI, new SleepingWaitStrategy());
+                    disruptor.handleEventsWith(new AsyncLogHandler());
+                    ringBuffer = disruptor.start();
+                }
+                result = ringBuffer;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 发布logback日志事件, 参数的格式化推迟到后台线程
+     */
+    static void publish(AsyncLogAppender appender, ILoggingEvent loggingEvent) {
+        RingBuffer<AsyncLogEvent> ringBuffer = getRingBuffer();
+        long seq = ringBuffer.next();
+        try{
+            AsyncLogEvent event = ringBuffer.get(seq);
+            event.appender = appender;
+            event.loggingEvent = loggingEvent;
+        }finally {
+            ringBuffer.publish(seq);
+        }
+    }
+
+    /**
+     * 发布热路径日志, 参数直接写入预分配的事件槽
+     */
+    static void publish(AsyncLogAppender appender, Logger logger, Level level, String format, int objectCount, Object a0, Object a1, Object a2, Object a3, int longCount, long v0, long v1) {
+        RingBuffer<AsyncLogEvent> ringBuffer = getRingBuffer();
+        long seq = ringBuffer.next();
+        try{
+            AsyncLogEvent event = ringBuffer.get(seq);
+            event.appender = appender;
+            event.timestamp = System.currentTimeMillis();
+            event.threadName = Thread.currentThread().getName();
+            event.set(logger, level, format, objectCount, a0, a1, a2, a3, longCount, v0, v1);
+        }finally {
+            ringBuffer.publish(seq);
+        }
+    }
+
+    static boolean isConsumerThread() {
+        return Thread.currentThread()==consumerThread;
+    }
+
+    /**
+     * 等待已发布的日志全部写出
+     *
+     * @return false 表示超时
+     */
+    static boolean flush(long timeoutMillis) {
+        RingBuffer<AsyncLogEvent> ringBuffer = AsyncLogRing.ringBuffer;
+        if ( ringBuffer==null || isConsumerThread() ) {
+            return true;
+        }
+        long cursor = ringBuffer.getCursor();
+        long deadline = System.currentTimeMillis()+timeoutMillis;
+        while( ringBuffer.getMinimumGatingSequence()<cursor ) {
+            if ( System.currentTimeMillis()>=deadline ) {
+                return false;
+            }
+            try{
+                Thread.sleep(1);
+            }catch(InterruptedException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
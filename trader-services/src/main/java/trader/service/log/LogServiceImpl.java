@@ -58,8 +58,17 @@ public class LogServiceImpl implements LogService {
         }
     }
 
+    @Override
+    public void setAsync(String category, boolean async) {
+        if ( logger.isInfoEnabled() ) {
+            logger.info("set category "+category+(async?" async":" sync"));
+        }
+        setLogAsync(category, async);
+    }
+
     public static LogLevelInfo getLogLevel(String category) {
         LogLevelInfo result = new LogLevelInfo();
+        result.setAsync(AsyncLogAppender.isRouted(category));
         Logger categoryLogger = LoggerFactory.getLogger(category);
 
         boolean foundFromReflection=false;
@@ -136,4 +145,20 @@ public class LogServiceImpl implements LogService {
         return;
     }
 
+    /**
+     * 切换日志分类的输出到AsyncLogAppender, 只支持logback
+     */
+    public static void setLogAsync(String category, boolean async) {
+        if ( !LOGBACK.equals(logProvider) ) {
+            logger.error("Set log category "+category+" async is not supported by "+logProvider);
+            return;
+        }
+        ch.qos.logback.classic.Logger categoryLogger = (ch.qos.logback.classic.Logger)LoggerFactory.getLogger(category);
+        if ( async ) {
+            AsyncLogAppender.route(categoryLogger);
+        } else {
+            AsyncLogAppender.unroute(categoryLogger);
+        }
+    }
+
 }
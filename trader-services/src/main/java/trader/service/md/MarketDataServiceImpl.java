@@ -51,6 +51,7 @@ import trader.service.event.AsyncEventFilter;
 import trader.service.event.AsyncEventService;
 import trader.service.md.ctp.CtpMarketDataProducerFactory;
 import trader.service.md.spi.AbsMarketDataProducer;
+import trader.service.md.synthetic.SyntheticMarketDataProducerFactory;
 import trader.service.md.spi.MarketDataProducerListener;
 import trader.service.plugin.Plugin;
 import trader.service.plugin.PluginService;
@@ -155,6 +156,20 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         }else {
             logger.info("MarketDataServie save data is disabled.");
         }
+        initEventProcessing(beansContainer);
+    }
+
+    /**
+     * 初始化行情事件处理: 发布到AsyncEventService, 检查时间戳后派发给Listener.
+     * <BR>不加载配置中的行情源和订阅, 不保存行情. 压力测试直接调用, 行情源由调用者创建
+     */
+    public void initEventProcessing(BeansContainer beansContainer) {
+        if ( asyncEventService==null ) {
+            //不在Spring中运行时, 从BeansContainer获取
+            this.beansContainer = beansContainer;
+            executorService = beansContainer.getBean(ExecutorService.class);
+            asyncEventService = beansContainer.getBean(AsyncEventService.class);
+        }
         asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MAIN, this, AsyncEvent.EVENT_TYPE_MARKETDATA_MASK);
     }
 
@@ -684,6 +699,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         Map<String, MarketDataProducerFactory> result = new TreeMap<>();
 
         result.put(MarketDataProducer.PROVIDER_CTP, new CtpMarketDataProducerFactory());
+        result.put(MarketDataProducer.PROVIDER_SYNTHETIC, new SyntheticMarketDataProducerFactory());
 
         PluginService pluginService = beansContainer.getBean(PluginService.class);
         if (pluginService!=null) {
@@ -0,0 +1,377 @@
+package trader.service.md.ctp;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataCSVDecoder;
+
+/**
+ * CTP TICK CSV行直接解析为CtpMarketData, 不创建CThostFtdcDepthMarketDataField和每列的String.
+ * <BR>解析结果和 CtpCSVMarshallHelper.unmarshall()+CtpMarketData 完全一致, 遇到无法精确解析的列返回null.
+ * <BR>非线程安全, 每个加载线程需要单独创建
+ */
+public class CtpCSVMarketDataDecoder implements MarketDataCSVDecoder {
+    private static final String[] HEADER = new CtpCSVMarshallHelper().getHeader();
+    private static final ZoneId CFFEX_ZONE_ID = Exchange.CFFEX.getZoneId();
+
+    private static final int COL_TRADING_DAY = 0;
+    private static final int COL_INSTRUMENT_ID = 1;
+    private static final int COL_EXCHANGE_ID = 2;
+    private static final int COL_LAST_PRICE = 4;
+    private static final int COL_PRE_CLOSE_PRICE = 6;
+    private static final int COL_OPEN_PRICE = 8;
+    private static final int COL_HIGHEST_PRICE = 9;
+    private static final int COL_LOWEST_PRICE = 10;
+    private static final int COL_VOLUME = 11;
+    private static final int COL_TURNOVER = 12;
+    private static final int COL_OPEN_INTEREST = 13;
+    private static final int COL_UPPER_LIMIT_PRICE = 16;
+    private static final int COL_LOWER_LIMIT_PRICE = 17;
+    private static final int COL_UPDATE_TIME = 20;
+    private static final int COL_UPDATE_MILLISEC = 21;
+    /**
+     * BidPrice1, 之后每档依次为 BidVolume, AskPrice, AskVolume
+     */
+    private static final int COL_DEPTH_BEGIN = 22;
+    private static final int COL_AVERAGE_PRICE = 42;
+    private static final int COL_ACTION_DAY = 43;
+
+    /**
+     * 整数部分超过这个长度的价格, 使用double转换以保证和PriceUtil.price2long结果一致
+     */
+    private static final int MAX_EXACT_INT_DIGITS = 9;
+
+    private final String producerId;
+    private final int[] colBegins = new int[HEADER.length];
+    private final int[] colEnds = new int[HEADER.length];
+    private String line;
+
+    private Map<String, Exchangeable> exchangeables = new HashMap<>();
+    private String lastInstrumentId;
+    private Exchangeable lastExchangeable;
+
+    private String lastTradingDayStr;
+    private LocalDate lastTradingDay;
+    private String lastTradingDayParamStr;
+
+    private int lastActionDay;
+    private LocalDate lastActionDate;
+    private long lastActionDayMillis;
+
+    private int lastDceTradingDay;
+    private LocalDate lastDcePrevDay;
+    private LocalDate lastDcePrevDayNext;
+
+    public CtpCSVMarketDataDecoder(String producerId) {
+        this.producerId = producerId;
+    }
+
+    @Override
+    public boolean accept(String[] columns) {
+        if ( columns==null || columns.length!=HEADER.length ) {
+            return false;
+        }
+        for(int i=0;i<HEADER.length;i++) {
+            if ( !HEADER[i].equalsIgnoreCase(columns[i]) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public MarketData decode(String csvLine, LocalDate tradingDay) {
+        this.line = csvLine;
+        try {
+            if ( !split() ) {
+                return null;
+            }
+            return decode0(tradingDay);
+        }catch(NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }finally {
+            this.line = null;
+        }
+    }
+
+    private CtpMarketData decode0(LocalDate tradingDay) {
+        Exchangeable exchangeable = getExchangeable();
+        Exchange exchange = exchangeable.exchange();
+        CtpMarketData md = new CtpMarketData(producerId, exchangeable, line);
+
+        md.volume = parseInt(COL_VOLUME);
+        md.turnover = parsePrice(COL_TURNOVER);
+        md.openInterest = parseLongTruncated(COL_OPEN_INTEREST);
+        md.lastPrice = parsePrice(COL_LAST_PRICE);
+
+        //UpdateTime: HH:MM:SS 或 H:MM:SS
+        int timeBegin = colBegins[COL_UPDATE_TIME], timeEnd = colEnds[COL_UPDATE_TIME];
+        int hour=0, minute=0, second=0, millisec=0;
+        if ( timeEnd>timeBegin ) {
+            int offset = 0;
+            if ( timeEnd-timeBegin==7 ) {
+                hour = digit(timeBegin);
+            } else if ( timeEnd-timeBegin==8 ) {
+                hour = digit(timeBegin)*10+digit(timeBegin+1);
+                offset = 1;
+            } else {
+                throw new NumberFormatException();
+            }
+            minute = digit(timeBegin+offset+2)*10 + digit(timeBegin+offset+3);
+            second = digit(timeBegin+offset+5)*10 + digit(timeBegin+offset+6);
+            millisec = parseInt(COL_UPDATE_MILLISEC);
+        }
+        int timeInt = hour*10000+minute*100+second;
+
+        String tradingDayStr = getTradingDayStr(exchange, tradingDay);
+        LocalDate actionDate = null;
+        if ( exchange==Exchange.DCE && (timeInt<80000 || timeInt>185000) ) {
+            //DCE的ActionDay, 夜市的值实际上是TradignDay
+            int dceTradingDay = parseDate(COL_TRADING_DAY);
+            if ( dceTradingDay!=lastDceTradingDay ) {
+                lastDcePrevDay = MarketDayUtil.prevMarketDay(exchange, int2date(dceTradingDay));
+                lastDcePrevDayNext = lastDcePrevDay.plusDays(1);
+                lastDceTradingDay = dceTradingDay;
+            }
+            // 夜市的00:0002:30, 夜市后半场
+            actionDate = timeInt<30000 ? lastDcePrevDayNext : lastDcePrevDay;
+            actionDate = getActionDate(actionDate.getYear()*10000+actionDate.getMonthValue()*100+actionDate.getDayOfMonth());
+        } else {
+            actionDate = getActionDate(parseDate(COL_ACTION_DAY));
+        }
+
+        md.updateTime = actionDate.atTime(hour, minute, second, millisec*1000000);
+        md.updateTimestamp = lastActionDayMillis+((hour*60+minute)*60+second)*1000L+millisec;
+        md.preClosePrice = parsePrice(COL_PRE_CLOSE_PRICE);
+        md.openPrice = parsePrice(COL_OPEN_PRICE);
+        md.highestPrice = parsePrice(COL_HIGHEST_PRICE);
+        md.lowestPrice = parsePrice(COL_LOWEST_PRICE);
+        //CTP的市场均价需要除以合约乘数, 郑州所除外
+        if ( exchange==Exchange.CZCE ) {
+            md.averagePrice = parsePrice(COL_AVERAGE_PRICE);
+        } else {
+            md.averagePrice = parsePrice(COL_AVERAGE_PRICE)/exchangeable.getVolumeMutiplier();
+        }
+        md.tradingDay = tradingDayStr;
+        md.upperLimitPrice = parsePrice(COL_UPPER_LIMIT_PRICE);
+        md.lowerLimitPrice = parsePrice(COL_LOWER_LIMIT_PRICE);
+
+        long bidPrice2 = parsePrice(COL_DEPTH_BEGIN+4);
+        int depth = 5;
+        if (bidPrice2 == Long.MAX_VALUE || bidPrice2==0) {
+            depth = 1;
+        }
+        md.depth = depth;
+        md.bidPrices = new long[depth];
+        md.bidVolumes = new int[depth];
+        md.askPrices = new long[depth];
+        md.askVolumes = new int[depth];
+        for(int i=0;i<depth;i++) {
+            int col = COL_DEPTH_BEGIN+i*4;
+            md.bidPrices[i] = parsePrice(col);
+            md.bidVolumes[i] = parseInt(col+1);
+            md.askPrices[i] = parsePrice(col+2);
+            md.askVolumes[i] = parseInt(col+3);
+        }
+        return md;
+    }
+
+    /**
+     * 记录每列的起止位置
+     */
+    private boolean split() {
+        int col = 0, begin = 0;
+        final int len = line.length();
+        for(int i=0;i<len;i++) {
+            char c = line.charAt(i);
+            if ( c==',' ) {
+                if ( col>=HEADER.length-1 ) {
+                    return false;
+                }
+                colBegins[col] = begin;
+                colEnds[col] = i;
+                col++;
+                begin = i+1;
+            } else if ( c=='"' ) {
+                return false;
+            }
+        }
+        if ( col!=HEADER.length-1 ) {
+            return false;
+        }
+        colBegins[col] = begin;
+        colEnds[col] = len;
+        return true;
+    }
+
+    private Exchangeable getExchangeable() {
+        int begin = colBegins[COL_INSTRUMENT_ID], len = colEnds[COL_INSTRUMENT_ID]-begin;
+        if ( lastInstrumentId!=null && lastInstrumentId.length()==len && line.regionMatches(begin, lastInstrumentId, 0, len) ) {
+            return lastExchangeable;
+        }
+        String instrumentId = line.substring(begin, begin+len);
+        Exchangeable result = exchangeables.get(instrumentId);
+        if ( result==null ) {
+            String exchangeId = line.substring(colBegins[COL_EXCHANGE_ID], colEnds[COL_EXCHANGE_ID]);
+            result = Exchangeable.create(Exchange.getInstance(exchangeId), instrumentId);
+            exchangeables.put(instrumentId, result);
+        }
+        lastInstrumentId = instrumentId;
+        lastExchangeable = result;
+        return result;
+    }
+
+    private String getTradingDayStr(Exchange exchange, LocalDate tradingDay) {
+        int begin = colBegins[COL_TRADING_DAY], len = colEnds[COL_TRADING_DAY]-begin;
+        if ( exchange==Exchange.CZCE || len==0 ) {
+            //CZCE的tradingDay是actionDay, 需要判断后加以识别
+            if ( !tradingDay.equals(lastTradingDay) ) {
+                lastTradingDay = tradingDay;
+                lastTradingDayParamStr = DateUtil.date2str(tradingDay);
+            }
+            return lastTradingDayParamStr;
+        }
+        if ( lastTradingDayStr==null || lastTradingDayStr.length()!=len || !line.regionMatches(begin, lastTradingDayStr, 0, len) ) {
+            lastTradingDayStr = line.substring(begin, begin+len);
+        }
+        return lastTradingDayStr;
+    }
+
+    private LocalDate getActionDate(int actionDay) {
+        if ( actionDay!=lastActionDay ) {
+            lastActionDate = int2date(actionDay);
+            lastActionDayMillis = ZonedDateTime.of(lastActionDate.atStartOfDay(), CFFEX_ZONE_ID).toInstant().toEpochMilli();
+            lastActionDay = actionDay;
+        }
+        return lastActionDate;
+    }
+
+    private static LocalDate int2date(int yyyymmdd) {
+        return LocalDate.of(yyyymmdd/10000, (yyyymmdd/100)%100, yyyymmdd%100);
+    }
+
+    private int digit(int index) {
+        char c = line.charAt(index);
+        if ( c<'0' || c>'9' ) {
+            throw new NumberFormatException();
+        }
+        return c-'0';
+    }
+
+    /**
+     * yyyyMMdd格式日期转为int
+     */
+    private int parseDate(int col) {
+        int begin = colBegins[col], end = colEnds[col];
+        if ( end-begin!=8 ) {
+            throw new NumberFormatException();
+        }
+        int result = 0;
+        for(int i=begin;i<end;i++) {
+            result = result*10+digit(i);
+        }
+        return result;
+    }
+
+    /**
+     * 等同于 Integer.parseInt
+     */
+    private int parseInt(int col) {
+        int begin = colBegins[col], end = colEnds[col];
+        if ( end-begin>9 ) {
+            return Integer.parseInt(line.substring(begin, end));
+        }
+        boolean negative = false;
+        if ( begin<end && line.charAt(begin)=='-' ) {
+            negative = true;
+            begin++;
+        }
+        if ( begin==end ) {
+            throw new NumberFormatException();
+        }
+        int result = 0;
+        for(int i=begin;i<end;i++) {
+            result = result*10+digit(i);
+        }
+        return negative?-result:result;
+    }
+
+    /**
+     * 等同于 (long)PriceUtil.str2price
+     */
+    private long parseLongTruncated(int col) {
+        int begin = colBegins[col], end = colEnds[col];
+        long result = 0;
+        int intDigits = 0;
+        int i = begin;
+        for(;i<end;i++) {
+            char c = line.charAt(i);
+            if ( c<'0' || c>'9' ) {
+                break;
+            }
+            result = result*10+(c-'0');
+            intDigits++;
+        }
+        if ( i<end && line.charAt(i)=='.' ) {
+            i++;
+            while( i<end && line.charAt(i)>='0' && line.charAt(i)<='9' ) {
+                i++;
+            }
+        }
+        if ( i!=end || intDigits==0 || intDigits>15 ) {
+            return (long)PriceUtil.str2price(line.substring(begin, end));
+        }
+        return result;
+    }
+
+    /**
+     * 等同于 PriceUtil.price2long(PriceUtil.str2price())
+     */
+    private long parsePrice(int col) {
+        int begin = colBegins[col], end = colEnds[col];
+        if ( end-begin==PriceUtil.MAX_STR.length() && line.startsWith(PriceUtil.MAX_STR, begin) ) {
+            return Long.MAX_VALUE;
+        }
+        long result = 0;
+        int intDigits = 0, fracDigits = 0;
+        int i = begin;
+        for(;i<end;i++) {
+            char c = line.charAt(i);
+            if ( c<'0' || c>'9' ) {
+                break;
+            }
+            result = result*10+(c-'0');
+            intDigits++;
+        }
+        if ( i<end && line.charAt(i)=='.' ) {
+            i++;
+            for(;i<end;i++) {
+                char c = line.charAt(i);
+                if ( c<'0' || c>'9' ) {
+                    break;
+                }
+                result = result*10+(c-'0');
+                fracDigits++;
+            }
+        }
+        //负数, 科学计数法, 超过4位小数等情况, 使用原始的double转换方式
+        if ( i!=end || intDigits==0 || intDigits>MAX_EXACT_INT_DIGITS || fracDigits>4 ) {
+            return PriceUtil.price2long(PriceUtil.str2price(line.substring(begin, end)));
+        }
+        for(;fracDigits<4;fracDigits++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+}
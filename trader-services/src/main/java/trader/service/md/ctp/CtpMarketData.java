@@ -19,6 +19,20 @@ public class CtpMarketData extends MarketData {
 
     CThostFtdcDepthMarketDataField field;
 
+    /**
+     * 直接从CSV解析时的原始行, 此时field为null
+     */
+    String csvRow;
+
+    /**
+     * 由CtpCSVMarketDataDecoder填充各个字段
+     */
+    CtpMarketData(String producerId, Exchangeable exchangeable, String csvRow) {
+        this.producerId = producerId;
+        this.instrumentId = exchangeable;
+        this.csvRow = csvRow;
+    }
+
     public CtpMarketData(String producerId, Exchangeable exchangeable, CThostFtdcDepthMarketDataField data, LocalDate tradingDay) {
         this.producerId = producerId;
         this.field = data;
@@ -123,6 +137,10 @@ public class CtpMarketData extends MarketData {
 
     @Override
     public void toCsvRow(StringBuilder rowBuf) {
+        if ( field==null ) {
+            rowBuf.append(csvRow);
+            return;
+        }
         String[] fields = csvMarshallHelper.marshall(field);
         for(int i=0;i<fields.length;i++) {
             if ( i>0){
@@ -134,7 +152,12 @@ public class CtpMarketData extends MarketData {
 
     @Override
     public MarketData clone() {
-        CtpMarketData obj = new CtpMarketData(producerId, instrumentId, field, DateUtil.str2localdate(tradingDay));
+        CtpMarketData obj = null;
+        if ( field==null ) {
+            obj = new CtpMarketData(producerId, instrumentId, csvRow);
+        } else {
+            obj = new CtpMarketData(producerId, instrumentId, field, DateUtil.str2localdate(tradingDay));
+        }
         cloneImpl(obj);
         return obj;
     }
@@ -34,6 +34,8 @@ import trader.service.md.MarketData;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.spi.AbsMarketDataProducer;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
 import trader.service.trade.MarketTimeService;
 
 @Discoverable(interfaceClass = MarketDataProducerFactory.class, purpose = MarketDataProducer.PROVIDER_CTP)
@@ -228,8 +230,11 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
 
     @Override
     public void OnRtnDepthMarketData(CThostFtdcDepthMarketDataField pDepthMarketData) {
+        long receiveNanoTime = System.nanoTime();
         MarketData md = createMarketData(pDepthMarketData, tradingDay);
+        md.receiveNanoTime = receiveNanoTime;
         notifyData(md);
+        LatencyRecorder.recordSince(Stage.MarketDataProduce, receiveNanoTime);
     }
 
     private Map<String, Exchangeable> exchangeableMap = new HashMap<>();
@@ -6,6 +6,7 @@ import trader.common.beans.BeansContainer;
 import trader.common.beans.Discoverable;
 import trader.common.util.CSVMarshallHelper;
 import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketDataCSVDecoder;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 
@@ -22,4 +23,9 @@ public class CtpMarketDataProducerFactory implements MarketDataProducerFactory {
         return new CtpCSVMarshallHelper();
     }
 
+    @Override
+    public MarketDataCSVDecoder createCSVDecoder(String producerId) {
+        return new CtpCSVMarketDataDecoder(producerId);
+    }
+
 }
@@ -0,0 +1,353 @@
+package trader.service.md.synthetic;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.ConversionUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.JsonEnabled;
+import trader.common.util.LatencyHistogram;
+import trader.common.util.StringUtil;
+import trader.service.data.KVStoreService;
+import trader.service.event.AsyncEventService;
+import trader.service.event.AsyncEventServiceImpl;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataListener;
+import trader.service.md.MarketDataService;
+import trader.service.md.MarketDataServiceImpl;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
+import trader.service.ta.LeveledTimeSeries;
+import trader.service.ta.TAListener;
+import trader.service.ta.TAService;
+import trader.service.ta.TAServiceImpl;
+import trader.service.trade.MarketTimeService;
+import trader.service.trade.TradeService;
+import trader.service.tradlet.TradletGroup;
+import trader.service.tradlet.TradletService;
+import trader.service.tradlet.TradletServiceImpl;
+import trader.simulator.SimBeansContainer;
+import trader.simulator.SimKVStoreService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.trade.SimTradeService;
+
+/**
+ * 行情压力测试: SyntheticMarketDataProducer -> MarketDataServiceImpl -> TAServiceImpl -> TradletServiceImpl.
+ * <BR>使用真实的行情, KBar和策略服务. 策略组从配置加载, 账户使用SimTradeService模拟, 报单不撮合.
+ * <BR>结束后分别返回行情, TA和策略三个阶段的吞吐量, 丢弃和超过lateThresholdMicros的事件数量.
+ */
+public class MarketDataLoadTester implements MarketDataListener, TAListener {
+
+    public static class Result implements JsonEnabled {
+        public long lateThresholdMicros;
+        public long elapsedMillis;
+        /**
+         * 行情: 发布到RingBuffer, MarketDataServiceImpl检查时间戳后派发, 丢弃旧的行情
+         */
+        public long produced;
+        public long delivered;
+        public long dropped;
+        public long late;
+        public long maxLagMicros;
+        public double producedPerSecond;
+        public double deliveredPerSecond;
+        public int ringBufferSize;
+        public long ringBufferMaxUsed;
+        public double ringBufferAvgUsed;
+        public long queueP50Micros;
+        public long queueP99Micros;
+        public long queueMaxMicros;
+        /**
+         * TA: 从收到行情到TAServiceImpl更新KBar和策略事件排队完成. 没有TA数据的合约行情计入taDropped
+         */
+        public long taTicks;
+        public long taDropped;
+        public long taLate;
+        public long taBars;
+        public double taPerSecond;
+        public long taP50Micros;
+        public long taP99Micros;
+        public long taMaxMicros;
+        /**
+         * 策略: 行情和KBar事件在策略组RingBuffer中的排队. 结束时没有处理的事件计入tradletDropped
+         */
+        public int tradletGroups;
+        public long tradletQueued;
+        public long tradletEvents;
+        public long tradletDropped;
+        public long tradletLate;
+        public double tradletPerSecond;
+        public long tradletP50Micros;
+        public long tradletP99Micros;
+        public long tradletMaxMicros;
+
+        @Override
+        public JsonElement toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("lateThresholdMicros", lateThresholdMicros);
+            json.addProperty("elapsedMillis", elapsedMillis);
+            JsonObject md = new JsonObject();
+            md.addProperty("produced", produced);
+            md.addProperty("delivered", delivered);
+            md.addProperty("dropped", dropped);
+            md.addProperty("late", late);
+            md.addProperty("maxLagMicros", maxLagMicros);
+            md.addProperty("producedPerSecond", (long)producedPerSecond);
+            md.addProperty("deliveredPerSecond", (long)deliveredPerSecond);
+            md.addProperty("ringBufferSize", ringBufferSize);
+            md.addProperty("ringBufferMaxUsed", ringBufferMaxUsed);
+            md.addProperty("ringBufferAvgUsed", ringBufferAvgUsed);
+            md.addProperty("queueP50Micros", queueP50Micros);
+            md.addProperty("queueP99Micros", queueP99Micros);
+            md.addProperty("queueMaxMicros", queueMaxMicros);
+            json.add("marketData", md);
+            JsonObject ta = new JsonObject();
+            ta.addProperty("ticks", taTicks);
+            ta.addProperty("dropped", taDropped);
+            ta.addProperty("late", taLate);
+            ta.addProperty("bars", taBars);
+            ta.addProperty("ticksPerSecond", (long)taPerSecond);
+            ta.addProperty("p50Micros", taP50Micros);
+            ta.addProperty("p99Micros", taP99Micros);
+            ta.addProperty("maxMicros", taMaxMicros);
+            json.add("ta", ta);
+            JsonObject tradlet = new JsonObject();
+            tradlet.addProperty("groups", tradletGroups);
+            tradlet.addProperty("queued", tradletQueued);
+            tradlet.addProperty("events", tradletEvents);
+            tradlet.addProperty("dropped", tradletDropped);
+            tradlet.addProperty("late", tradletLate);
+            tradlet.addProperty("eventsPerSecond", (long)tradletPerSecond);
+            tradlet.addProperty("queueP50Micros", tradletP50Micros);
+            tradlet.addProperty("queueP99Micros", tradletP99Micros);
+            tradlet.addProperty("queueMaxMicros", tradletMaxMicros);
+            json.add("tradlet", tradlet);
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return toJson().toString();
+        }
+    }
+
+    private Properties producerProps;
+    private long lateThresholdNanos;
+    private TAService taService;
+    /**
+     * 每个合约对应的策略组数量
+     */
+    private Map<Exchangeable, int[]> groupCounts = new HashMap<>();
+    private LatencyHistogram taHistogram = new LatencyHistogram();
+    /**
+     * 只在AsyncEventService处理线程中修改
+     */
+    private volatile long delivered;
+    private volatile long taTicks;
+    private volatile long taLate;
+    private volatile long taBars;
+    private volatile long tradletQueued;
+
+    /**
+     * @param producerProps SyntheticMarketDataProducer 参数, lateThresholdMicros 同时用于TA和策略阶段
+     */
+    public MarketDataLoadTester(Properties producerProps) {
+        this.producerProps = producerProps;
+        this.lateThresholdNanos = TimeUnit.MICROSECONDS.toNanos(ConversionUtil.toLong(producerProps.getProperty("lateThresholdMicros", "1000")));
+    }
+
+    /**
+     * 运行压力测试, 到达maxTicks或者超过durationMillis时结束
+     */
+    public Result run(long durationMillis) throws Exception {
+        Properties props = new Properties();
+        props.putAll(producerProps);
+        if ( !props.containsKey("instruments") ) {
+            props.setProperty("instruments", "shfe.ru1901,shfe.au1906,dce.m1905,czce.CF905,cffex.IF1901");
+        }
+        List<Exchangeable> instruments = new ArrayList<>();
+        for(String instrument:StringUtil.split(props.getProperty("instruments"), ",|;|\\s")) {
+            instruments.add(Exchangeable.fromString(instrument));
+        }
+        //行情和市场时间使用同一个交易日
+        Exchangeable first = instruments.get(0);
+        LocalDate tradingDay = null;
+        if ( props.containsKey("tradingDay") ) {
+            tradingDay = DateUtil.str2localdate(props.getProperty("tradingDay"));
+        } else {
+            tradingDay = MarketDayUtil.lastMarketDay(first.exchange(), false);
+            props.setProperty("tradingDay", DateUtil.date2str(tradingDay));
+        }
+        ExchangeableTradingTimes tradingTimes = first.exchange().getTradingTimes(first, tradingDay);
+        if ( tradingTimes==null ) {
+            throw new IllegalArgumentException(first+" 在 "+tradingDay+" 不交易");
+        }
+        StringBuilder text = new StringBuilder();
+        for(Object key:props.keySet()) {
+            text.append(key).append("=").append(props.get(key)).append("\n");
+        }
+        Map<String, Object> producerConfig = new HashMap<>();
+        producerConfig.put("id", "loadtest");
+        producerConfig.put("text", text.toString());
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        SimBeansContainer beansContainer = new SimBeansContainer();
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        AsyncEventServiceImpl asyncEventService = new AsyncEventServiceImpl();
+        MarketDataServiceImpl mdService = new MarketDataServiceImpl();
+        SimKVStoreService kvStoreService = new SimKVStoreService();
+        SimTradeService tradeService = new SimTradeService();
+        TAServiceImpl taService = new TAServiceImpl();
+        TradletServiceImpl tradletService = new TradletServiceImpl();
+        this.taService = taService;
+        beansContainer.addBean(ExecutorService.class, executorService);
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(AsyncEventService.class, asyncEventService);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(KVStoreService.class, kvStoreService);
+        beansContainer.addBean(TradeService.class, tradeService);
+        beansContainer.addBean(TAService.class, taService);
+        beansContainer.addBean(TradletService.class, tradletService);
+
+        mtService.setTimeRanges(tradingDay, tradingTimes.getMarketTimes());
+        asyncEventService.init(beansContainer);
+        mdService.initEventProcessing(beansContainer);
+        mdService.addSubscriptions(instruments);
+        taService.init(beansContainer);
+        tradeService.init(beansContainer);
+        tradletService.init(beansContainer);
+        for(TradletGroup group:tradletService.getGroups()) {
+            groupCounts.computeIfAbsent(group.getExchangeable(), (e)->new int[1])[0]++;
+        }
+        //在TA和策略服务之后派发, 统计前面各阶段的处理时间
+        mdService.addListener(this, instruments.toArray(new Exchangeable[instruments.size()]));
+        taService.addListener(this);
+        asyncEventService.start();
+        LatencyRecorder.getHistogram(Stage.AsyncEventQueue).reset();
+        LatencyRecorder.getHistogram(Stage.TradletEventQueue).reset();
+
+        SyntheticMarketDataProducer producer = new SyntheticMarketDataProducer(beansContainer, producerConfig);
+        producer.setListener(mdService);
+
+        Result result = new Result();
+        result.lateThresholdMicros = TimeUnit.NANOSECONDS.toMicros(lateThresholdNanos);
+        result.ringBufferSize = asyncEventService.getRingBufferSize();
+        result.tradletGroups = tradletService.getGroups().size();
+        long sampleCount = 0, usedTotal = 0;
+        long beginTime = System.currentTimeMillis();
+        try {
+            producer.connect();
+            while( producer.isRunning() && (System.currentTimeMillis()-beginTime)<durationMillis ) {
+                long used = asyncEventService.getRingBufferUsed();
+                result.ringBufferMaxUsed = Math.max(result.ringBufferMaxUsed, used);
+                usedTotal += used;
+                sampleCount++;
+                Thread.sleep(1);
+            }
+        } finally {
+            producer.close();
+        }
+        //等待RingBuffer和策略组处理完毕
+        long produced = producer.getTickCount();
+        LatencyHistogram queueHistogram = LatencyRecorder.getHistogram(Stage.AsyncEventQueue);
+        LatencyHistogram tradletHistogram = LatencyRecorder.getHistogram(Stage.TradletEventQueue);
+        long drainBeginTime = System.currentTimeMillis();
+        while( (queueHistogram.getCount()<produced || asyncEventService.getRingBufferUsed()>0) && (System.currentTimeMillis()-drainBeginTime)<5000 ) {
+            Thread.sleep(1);
+        }
+        asyncEventService.destroy();
+        while( tradletHistogram.getCount()<tradletQueued && (System.currentTimeMillis()-drainBeginTime)<5000 ) {
+            Thread.sleep(1);
+        }
+        long elapsedNanos = producer.getElapsedNanos();
+        tradletService.destroy();
+        taService.destroy();
+        scheduledExecutorService.shutdownNow();
+        executorService.shutdownNow();
+
+        result.produced = produced;
+        result.delivered = delivered;
+        result.dropped = produced-delivered;
+        result.late = producer.getLateCount();
+        result.maxLagMicros = TimeUnit.NANOSECONDS.toMicros(producer.getMaxLagNanos());
+        result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if ( sampleCount>0 ) {
+            result.ringBufferAvgUsed = ((double)usedTotal)/sampleCount;
+        }
+        result.queueP50Micros = TimeUnit.NANOSECONDS.toMicros(queueHistogram.getValueAtPercentile(50));
+        result.queueP99Micros = TimeUnit.NANOSECONDS.toMicros(queueHistogram.getValueAtPercentile(99));
+        result.queueMaxMicros = TimeUnit.NANOSECONDS.toMicros(queueHistogram.getMax());
+
+        result.taTicks = taTicks;
+        result.taDropped = result.delivered-taTicks;
+        result.taLate = taLate;
+        result.taBars = taBars;
+        result.taP50Micros = TimeUnit.NANOSECONDS.toMicros(taHistogram.getValueAtPercentile(50));
+        result.taP99Micros = TimeUnit.NANOSECONDS.toMicros(taHistogram.getValueAtPercentile(99));
+        result.taMaxMicros = TimeUnit.NANOSECONDS.toMicros(taHistogram.getMax());
+
+        result.tradletQueued = tradletQueued;
+        result.tradletEvents = tradletHistogram.getCount();
+        result.tradletDropped = Math.max(0, tradletQueued-result.tradletEvents);
+        result.tradletLate = tradletHistogram.getCountAbove(lateThresholdNanos);
+        result.tradletP50Micros = TimeUnit.NANOSECONDS.toMicros(tradletHistogram.getValueAtPercentile(50));
+        result.tradletP99Micros = TimeUnit.NANOSECONDS.toMicros(tradletHistogram.getValueAtPercentile(99));
+        result.tradletMaxMicros = TimeUnit.NANOSECONDS.toMicros(tradletHistogram.getMax());
+        if ( elapsedNanos>0 ) {
+            result.producedPerSecond = produced*1000000000.0/elapsedNanos;
+            result.deliveredPerSecond = result.delivered*1000000000.0/elapsedNanos;
+            result.taPerSecond = result.taTicks*1000000000.0/elapsedNanos;
+            result.tradletPerSecond = result.tradletEvents*1000000000.0/elapsedNanos;
+        }
+        return result;
+    }
+
+    /**
+     * MarketDataServiceImpl检查时间戳之后, 在TAServiceImpl和TradletServiceImpl之后回调
+     */
+    @Override
+    public void onMarketData(MarketData md) {
+        delivered++;
+        if ( taService.getItem(md.instrumentId)!=null ) {
+            long nanos = System.nanoTime()-md.receiveNanoTime;
+            taHistogram.record(nanos);
+            if ( nanos>lateThresholdNanos ) {
+                taLate++;
+            }
+            taTicks++;
+        }
+        int[] groupCount = groupCounts.get(md.instrumentId);
+        if ( groupCount!=null ) {
+            tradletQueued += groupCount[0];
+        }
+    }
+
+    /**
+     * 在TradletServiceImpl之后回调
+     */
+    @Override
+    public void onNewBar(Exchangeable e, LeveledTimeSeries series) {
+        taBars++;
+        int[] groupCount = groupCounts.get(e);
+        if ( groupCount!=null ) {
+            tradletQueued += groupCount[0];
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package trader.service.md.synthetic;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+
+/**
+ * 随机游走生成的行情数据, 直接填充字段, 不需要解析时间字符串
+ */
+public class SyntheticMarketData extends MarketData {
+
+    private static final String CSV_HEAD = "InstrumentID,UpdateTime,LastPrice,Volume,Turnover,OpenInterest,BidPrice1,BidVolume1,AskPrice1,AskVolume1";
+
+    public SyntheticMarketData(String producerId, Exchangeable instrumentId) {
+        this.producerId = producerId;
+        this.instrumentId = instrumentId;
+        this.depth = 1;
+    }
+
+    @Override
+    public String getCsvHead() {
+        return CSV_HEAD;
+    }
+
+    @Override
+    public void toCsvRow(StringBuilder rowBuf) {
+        rowBuf.append(instrumentId.id())
+            .append(",").append(DateUtil.date2str(updateTime))
+            .append(",").append(PriceUtil.long2str(lastPrice))
+            .append(",").append(volume)
+            .append(",").append(PriceUtil.long2str(turnover))
+            .append(",").append(openInterest)
+            .append(",").append(PriceUtil.long2str(bidPrices[0]))
+            .append(",").append(bidVolumes[0])
+            .append(",").append(PriceUtil.long2str(askPrices[0]))
+            .append(",").append(askVolumes[0]);
+    }
+
+    @Override
+    public MarketData clone() {
+        SyntheticMarketData result = new SyntheticMarketData(producerId, instrumentId);
+        cloneImpl(result);
+        return result;
+    }
+
+}
@@ -0,0 +1,445 @@
+package trader.service.md.synthetic;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.ConversionUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.StringUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.ServiceConstants.ConnState;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataCSVDecoder;
+import trader.service.md.ctp.CtpCSVMarketDataDecoder;
+import trader.service.md.ctp.CtpMarketDataProducer;
+import trader.service.md.spi.AbsMarketDataProducer;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
+
+/**
+ * 用于压力测试的行情数据源, 不需要连接CTP.
+ * <BR>mode=random 为每个合约生成随机游走的行情; mode=replay 循环回放某个交易日的TICK_CTP行情数据.
+ * <BR>pacing=wallClock 时按照rate(每秒tick数量, 每次连续发送burst个)发送, rate=0则按照行情时间戳/speed发送; pacing=maxSpeed 不等待.
+ * <BR>行情在独立的线程中产生, 调用者可以通过tickCount/lateCount/maxLag了解实际的发送速度.
+ */
+public class SyntheticMarketDataProducer extends AbsMarketDataProducer<MarketData> {
+    private final static Logger logger = LoggerFactory.getLogger(SyntheticMarketDataProducer.class);
+
+    public static final String MODE_RANDOM = "random";
+    public static final String MODE_REPLAY = "replay";
+
+    public static final String PACING_WALLCLOCK = "wallClock";
+    public static final String PACING_MAXSPEED = "maxSpeed";
+
+    /**
+     * 提前醒来自旋等待的时间
+     */
+    private static final long SPIN_NANOS = 50*1000;
+
+    /**
+     * 行情切片来源
+     */
+    private static interface TickSource {
+        MarketData next();
+    }
+
+    private String mode;
+    private boolean maxSpeed;
+    private int rate;
+    private int burst;
+    private double speed;
+    private long maxTicks;
+    private long lateThresholdNanos;
+    private int tickIntervalMillis;
+    private LocalDate tradingDay;
+    private long seed;
+    private List<Exchangeable> configInstruments = new ArrayList<>();
+
+    private volatile Thread generatorThread;
+    private volatile boolean running;
+    private volatile long lateCount;
+    private volatile long maxLagNanos;
+    private volatile long beginNanoTime;
+    private volatile long endNanoTime;
+
+    public SyntheticMarketDataProducer(BeansContainer beansContainer, Map configMap) {
+        super(beansContainer, configMap);
+        if ( connectionProps==null ) {
+            connectionProps = new Properties();
+        }
+        mode = connectionProps.getProperty("mode", MODE_RANDOM);
+        maxSpeed = PACING_MAXSPEED.equalsIgnoreCase(connectionProps.getProperty("pacing", PACING_WALLCLOCK));
+        rate = ConversionUtil.toInt(connectionProps.getProperty("rate", "10000"));
+        burst = Math.max(1, ConversionUtil.toInt(connectionProps.getProperty("burst", "1")));
+        speed = ConversionUtil.toDouble(connectionProps.getProperty("speed", "1"));
+        maxTicks = ConversionUtil.toLong(connectionProps.getProperty("maxTicks", "0"));
+        lateThresholdNanos = TimeUnit.MICROSECONDS.toNanos(ConversionUtil.toLong(connectionProps.getProperty("lateThresholdMicros", "1000")));
+        tickIntervalMillis = Math.max(1, ConversionUtil.toInt(connectionProps.getProperty("tickIntervalMillis", "500")));
+        seed = ConversionUtil.toLong(connectionProps.getProperty("seed", ""+System.nanoTime()));
+        String tradingDayStr = connectionProps.getProperty("tradingDay");
+        if ( !StringUtil.isEmpty(tradingDayStr) ) {
+            tradingDay = DateUtil.str2localdate(tradingDayStr);
+        } else {
+            tradingDay = LocalDate.now();
+        }
+        for(String instrument:StringUtil.split(connectionProps.getProperty("instruments", ""), ",|;|\\s")) {
+            configInstruments.add(Exchangeable.fromString(instrument));
+        }
+    }
+
+    @Override
+    public String getProvider() {
+        return PROVIDER_SYNTHETIC;
+    }
+
+    @Override
+    public JsonElement toJson() {
+        JsonObject json = (JsonObject)super.toJson();
+        json.addProperty("lateCount", lateCount);
+        json.addProperty("maxLagMicros", TimeUnit.NANOSECONDS.toMicros(maxLagNanos));
+        json.addProperty("ticksPerSecond", getTicksPerSecond());
+        return json;
+    }
+
+    /**
+     * 连接后立刻可用, 如果配置了instruments, 直接开始产生行情
+     */
+    @Override
+    public void connect() {
+        changeStatus(ConnState.Connected);
+        if ( !configInstruments.isEmpty() ) {
+            start(configInstruments);
+        }
+    }
+
+    @Override
+    public void subscribe(Collection<Exchangeable> exchangeables) {
+        List<Exchangeable> instruments = new ArrayList<>();
+        for(Exchangeable e:exchangeables) {
+            if ( !subscriptions.contains(e.toString()) ) {
+                subscriptions.add(e.toString());
+            }
+            instruments.add(e);
+        }
+        if ( configInstruments.isEmpty() ) {
+            start(instruments);
+        }
+    }
+
+    @Override
+    public boolean canSubscribe(Exchangeable e) {
+        return true;
+    }
+
+    @Override
+    public MarketData createMarketData(MarketData rawMarketData, LocalDate actionDay) {
+        return rawMarketData;
+    }
+
+    @Override
+    protected void close0() {
+        running = false;
+        Thread thread = generatorThread;
+        if ( thread!=null ) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {}
+        }
+        changeStatus(ConnState.Disconnected);
+    }
+
+    /**
+     * 等待行情产生结束(maxTicks)
+     *
+     * @return true 如果已经结束
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        Thread thread = generatorThread;
+        if ( thread!=null ) {
+            thread.join(timeoutMillis);
+            return !thread.isAlive();
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 超过lateThresholdMicros没有按时发送的次数
+     */
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    /**
+     * 从开始产生行情到现在或结束的时间
+     */
+    public long getElapsedNanos() {
+        if ( beginNanoTime==0 ) {
+            return 0;
+        }
+        long end = endNanoTime;
+        if ( end==0 ) {
+            end = System.nanoTime();
+        }
+        return end-beginNanoTime;
+    }
+
+    public double getTicksPerSecond() {
+        long elapsed = getElapsedNanos();
+        if ( elapsed==0 ) {
+            return 0;
+        }
+        return tickCount*1000000000.0/elapsed;
+    }
+
+    private synchronized void start(List<Exchangeable> instruments) {
+        if ( running || instruments.isEmpty() ) {
+            return;
+        }
+        TickSource source = null;
+        try {
+            if ( MODE_REPLAY.equalsIgnoreCase(mode) ) {
+                source = createReplaySource(instruments);
+            } else {
+                source = createRandomWalkSource(instruments);
+            }
+        }catch(Throwable t) {
+            logger.error(getId()+" create "+mode+" tick source for "+instruments+" failed", t);
+            changeStatus(ConnState.ConnectFailed);
+            return;
+        }
+        running = true;
+        final TickSource source0 = source;
+        Thread thread = new Thread(()->{
+            try {
+                generate(source0);
+            }catch(Throwable t) {
+                logger.error(getId()+" generate market data failed", t);
+            }finally {
+                endNanoTime = System.nanoTime();
+                running = false;
+            }
+            logger.info(getId()+" generated "+tickCount+" ticks, "+(long)getTicksPerSecond()+" ticks/sec, late "+lateCount+", max lag "+TimeUnit.NANOSECONDS.toMicros(maxLagNanos)+" us");
+        }, "SyntheticMD-"+getId());
+        thread.setDaemon(true);
+        generatorThread = thread;
+        logger.info(getId()+" start "+mode+" market data for "+instruments+", pacing "+(maxSpeed?PACING_MAXSPEED:PACING_WALLCLOCK)+", rate "+rate+", burst "+burst);
+        thread.start();
+    }
+
+    private void generate(TickSource source) {
+        long intervalNanos = rate>0 ? 1000000000L*burst/rate : 0;
+        long begin = System.nanoTime();
+        beginNanoTime = begin;
+        long nextSendTime = begin;
+        long firstTimestamp = 0;
+        long count = 0;
+        MarketData md = source.next();
+        while( running && md!=null && (maxTicks<=0 || count<maxTicks) ) {
+            if ( !maxSpeed ) {
+                if ( intervalNanos==0 ) {
+                    //按照行情时间发送
+                    if ( firstTimestamp==0 ) {
+                        firstTimestamp = md.updateTimestamp;
+                    }
+                    nextSendTime = begin + (long)(TimeUnit.MILLISECONDS.toNanos(md.updateTimestamp-firstTimestamp)/speed);
+                }
+                waitUntil(nextSendTime);
+            }
+            int burstCount = intervalNanos==0?1:burst;
+            for(int i=0; i<burstCount && md!=null && (maxTicks<=0 || count<maxTicks); i++) {
+                long receiveNanoTime = System.nanoTime();
+                md.receiveNanoTime = receiveNanoTime;
+                notifyData(md);
+                LatencyRecorder.recordSince(Stage.MarketDataProduce, receiveNanoTime);
+                count++;
+                md = source.next();
+            }
+            nextSendTime += intervalNanos;
+        }
+    }
+
+    /**
+     * 等待到指定时间, 已经超时则记录延迟
+     */
+    private void waitUntil(long sendTime) {
+        long now = System.nanoTime();
+        long wait = sendTime-now;
+        if ( wait>0 ) {
+            if ( wait>SPIN_NANOS ) {
+                LockSupport.parkNanos(wait-SPIN_NANOS);
+            }
+            while(System.nanoTime()<sendTime) {
+                Thread.onSpinWait();
+            }
+        } else {
+            long lag = -wait;
+            if ( lag>lateThresholdNanos ) {
+                lateCount++;
+            }
+            if ( lag>maxLagNanos ) {
+                maxLagNanos = lag;
+            }
+        }
+    }
+
+    /**
+     * 随机游走行情, 轮流为每个合约产生tick, 每个合约的行情时间间隔tickIntervalMillis
+     */
+    private TickSource createRandomWalkSource(List<Exchangeable> instruments) {
+        final int count = instruments.size();
+        final Exchangeable[] exchangeables = instruments.toArray(new Exchangeable[count]);
+        final long[] priceTicks = new long[count];
+        final long[] prices = new long[count];
+        final long[] openPrices = new long[count];
+        final long[] highPrices = new long[count];
+        final long[] lowPrices = new long[count];
+        final long[] volumes = new long[count];
+        final long[] turnovers = new long[count];
+        final long[] openInterests = new long[count];
+        final long[] timestamps = new long[count];
+        final Random random = new Random(seed);
+        final String tradingDayStr = DateUtil.date2str(tradingDay);
+        long beginTimestamp = DateUtil.localdatetime2long(Exchange.CFFEX.getZoneId(), tradingDay.atTime(LocalTime.of(9, 0)));
+        for(int i=0;i<count;i++) {
+            long priceTick = exchangeables[i].getPriceTick();
+            if ( priceTick<=0 ) {
+                priceTick = 10000;
+            }
+            priceTicks[i] = priceTick;
+            prices[i] = openPrices[i] = highPrices[i] = lowPrices[i] = (1000+random.nextInt(4000))*priceTick;
+            openInterests[i] = 100000+random.nextInt(100000);
+            timestamps[i] = beginTimestamp+i;
+        }
+        return new TickSource() {
+            int index = 0;
+            @Override
+            public MarketData next() {
+                int i = index;
+                index = (i+1)%count;
+                long priceTick = priceTicks[i];
+                long price = prices[i] + priceTick*(random.nextInt(3)-1);
+                if ( price<priceTick ) {
+                    price = priceTick;
+                }
+                prices[i] = price;
+                highPrices[i] = Math.max(highPrices[i], price);
+                lowPrices[i] = Math.min(lowPrices[i], price);
+                int volume = 1+random.nextInt(20);
+                volumes[i] += volume;
+                turnovers[i] += price*volume*exchangeables[i].getVolumeMutiplier();
+                openInterests[i] += random.nextInt(5)-2;
+                long timestamp = timestamps[i];
+                timestamps[i] = timestamp+tickIntervalMillis;
+
+                SyntheticMarketData md = new SyntheticMarketData(getId(), exchangeables[i]);
+                md.tradingDay = tradingDayStr;
+                md.updateTimestamp = timestamp;
+                md.updateTime = DateUtil.long2datetime(Exchange.CFFEX.getZoneId(), timestamp);
+                md.lastPrice = price;
+                md.volume = volumes[i];
+                md.turnover = turnovers[i];
+                md.openInterest = openInterests[i];
+                md.preClosePrice = openPrices[i];
+                md.openPrice = openPrices[i];
+                md.highestPrice = highPrices[i];
+                md.lowestPrice = lowPrices[i];
+                md.averagePrice = turnovers[i]/volumes[i]/exchangeables[i].getVolumeMutiplier();
+                md.upperLimitPrice = openPrices[i]*11/10;
+                md.lowerLimitPrice = openPrices[i]*9/10;
+                md.bidPrices = new long[] {price-priceTick};
+                md.bidVolumes = new int[] {1+random.nextInt(100)};
+                md.askPrices = new long[] {price+priceTick};
+                md.askVolumes = new int[] {1+random.nextInt(100)};
+                return md;
+            }
+        };
+    }
+
+    /**
+     * 循环回放TICK_CTP数据, 每次循环行情时间顺延, 保证时间戳递增
+     */
+    private TickSource createReplaySource(List<Exchangeable> instruments) throws Exception {
+        ExchangeableData data = TraderHomeUtil.getExchangeableData();
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        CtpMarketDataProducer ctpProducer = new CtpMarketDataProducer(beansContainer, null);
+        List<MarketData> ticks = new ArrayList<>();
+        for(Exchangeable e:instruments) {
+            if ( !data.exists(e, ExchangeableData.TICK_CTP, tradingDay) ) {
+                logger.warn(getId()+" no TICK_CTP data for "+e+" on "+tradingDay);
+                continue;
+            }
+            CSVDataSet csvDataSet = CSVUtil.parse(data.load(e, ExchangeableData.TICK_CTP, tradingDay));
+            MarketDataCSVDecoder csvDecoder = new CtpCSVMarketDataDecoder(getId());
+            if ( !csvDecoder.accept(csvDataSet.getColumns()) ) {
+                csvDecoder = null;
+            }
+            while(csvDataSet.next()) {
+                MarketData md = null;
+                if ( csvDecoder!=null ) {
+                    md = csvDecoder.decode(csvDataSet.getLine(), tradingDay);
+                }
+                if ( md==null ) {
+                    md = ctpProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+                }
+                md.producerId = getId();
+                ticks.add(md);
+            }
+        }
+        if ( ticks.isEmpty() ) {
+            throw new RuntimeException("No TICK_CTP data on "+tradingDay+" for "+instruments);
+        }
+        Collections.sort(ticks, (MarketData md1, MarketData md2)->{
+            return Long.compare(md1.updateTimestamp, md2.updateTimestamp);
+        });
+        final long span = ticks.get(ticks.size()-1).updateTimestamp - ticks.get(0).updateTimestamp + tickIntervalMillis;
+        return new TickSource() {
+            int index = 0;
+            long offset = 0;
+            @Override
+            public MarketData next() {
+                if ( index>=ticks.size() ) {
+                    index = 0;
+                    offset += span;
+                }
+                MarketData md = ticks.get(index++);
+                if ( offset!=0 ) {
+                    md = md.clone();
+                    md.updateTimestamp += offset;
+                    md.updateTime = md.updateTime.plusNanos(TimeUnit.MILLISECONDS.toNanos(offset));
+                }
+                return md;
+            }
+        };
+    }
+
+}
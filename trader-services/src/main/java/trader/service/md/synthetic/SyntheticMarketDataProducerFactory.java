@@ -0,0 +1,27 @@
+package trader.service.md.synthetic;
+
+import java.util.Map;
+
+import trader.common.beans.BeansContainer;
+import trader.common.beans.Discoverable;
+import trader.common.util.CSVMarshallHelper;
+import trader.service.md.MarketDataProducer;
+import trader.service.md.MarketDataProducerFactory;
+
+@Discoverable(interfaceClass = MarketDataProducerFactory.class, purpose = MarketDataProducer.PROVIDER_SYNTHETIC)
+public class SyntheticMarketDataProducerFactory implements MarketDataProducerFactory {
+
+    @Override
+    public MarketDataProducer create(BeansContainer beansContainer, Map configMap) {
+        return new SyntheticMarketDataProducer(beansContainer, configMap);
+    }
+
+    /**
+     * 生成的行情数据不需要从CSV解析
+     */
+    @Override
+    public CSVMarshallHelper createCSVMarshallHelper() {
+        return null;
+    }
+
+}
@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -21,9 +22,6 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.reflections.Configuration;
-import org.reflections.Reflections;
-import org.reflections.util.ConfigurationBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,12 +30,14 @@ import com.google.gson.JsonObject;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Discoverable;
+import trader.common.beans.DiscoverableIndex;
 import trader.common.beans.Lifecycle;
 import trader.common.util.ChildFirstURLClassLoader;
 import trader.common.util.FileUtil;
 import trader.common.util.JsonUtil;
 import trader.common.util.ResourceUtil;
 import trader.common.util.StringUtil;
+import trader.service.beans.DiscoverableIndexLoader;
 
 /**
  * 插件实现类.
@@ -281,12 +281,21 @@ public class PluginImpl implements Plugin, AutoCloseable {
         destroyBeans();
         initExposedInterfaces();
         List<URL> urls = initClassLoader();
-        Configuration scanConf = (new ConfigurationBuilder())
-                .setUrls(urls)
-                .addClassLoaders(classLoader);
-        Reflections ref = (new Reflections(scanConf));
-        Set<Class<?>> allClasses = ref.getTypesAnnotatedWith(Discoverable.class);
-        for(Class clazz:allClasses) {
+        //优先使用jar中的索引文件, 没有时扫描
+        Set<String> classNames = new LinkedHashSet<>();
+        for(URL url:urls) {
+            for(DiscoverableIndex.Entry entry:DiscoverableIndexLoader.load(url, classLoader)) {
+                classNames.add(entry.getClassName());
+            }
+        }
+        for(String className:classNames) {
+            Class clazz = null;
+            try{
+                clazz = classLoader.loadClass(className);
+            }catch(Throwable t) {
+                logger.error("Plugin "+getId()+" load class "+className+" failed", t);
+                continue;
+            }
             if ( clazz.getClassLoader()!=classLoader
                     || clazz.isInterface()
                     || Modifier.isAbstract(clazz.getModifiers())
@@ -0,0 +1,286 @@
+package trader.service.push;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.ta4j.core.Bar;
+
+import com.google.gson.JsonObject;
+
+import trader.common.beans.BeansContainer;
+import trader.common.beans.Lifecycle;
+import trader.common.config.ConfigUtil;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.common.util.JsonStreamWriter;
+import trader.common.util.PriceUtil;
+import trader.service.ServiceConstants.AccountState;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataListener;
+import trader.service.md.MarketDataService;
+import trader.service.ta.Bar2;
+import trader.service.ta.LeveledTimeSeries;
+import trader.service.ta.TAListener;
+import trader.service.ta.TAService;
+import trader.service.trade.Account;
+import trader.service.trade.AccountListener;
+import trader.service.trade.Order;
+import trader.service.trade.OrderStateTuple;
+import trader.service.trade.TradeService;
+import trader.service.trade.Transaction;
+
+/**
+ * WebSocket推送服务, 将行情, KBar, 账户和报单事件推送给订阅的WebSocket连接.
+ * <BR>主题格式:
+ * <LI>md/shfe.au1906 : TICK行情
+ * <LI>ta/shfe.au1906/min1 : 新完成的KBar
+ * <LI>account/accountId : 账户状态变化
+ * <LI>order/accountId : 报单状态变化和成交
+ * <BR>每个事件只序列化一次, 所有订阅的连接共享同一个消息字符串.
+ */
+@Service
+public class PushService implements Lifecycle, MarketDataListener, TAListener, AccountListener {
+    private final static Logger logger = LoggerFactory.getLogger(PushService.class);
+
+    public static final String ITEM_SESSION_QUEUE_SIZE = "/PushService/sessionQueueSize";
+
+    public static final String TOPIC_MD = "md";
+    public static final String TOPIC_TA = "ta";
+    public static final String TOPIC_ACCOUNT = "account";
+    public static final String TOPIC_ORDER = "order";
+
+    public static final int DEFAULT_SESSION_QUEUE_SIZE = 1024;
+
+    private int sessionQueueSize = DEFAULT_SESSION_QUEUE_SIZE;
+
+    private Set<PushSession> sessions = ConcurrentHashMap.newKeySet();
+
+    private Map<String, Set<PushSession>> subscribers = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(BeansContainer beansContainer) throws Exception {
+        sessionQueueSize = ConfigUtil.getInt(ITEM_SESSION_QUEUE_SIZE, DEFAULT_SESSION_QUEUE_SIZE);
+        beansContainer.getBean(MarketDataService.class).addListener(this);
+        beansContainer.getBean(TAService.class).addListener(this);
+        for(Account account:beansContainer.getBean(TradeService.class).getAccounts()) {
+            account.addAccountListener(this);
+        }
+        logger.info("Push service started, session queue size "+sessionQueueSize);
+    }
+
+    @Override
+    @PreDestroy
+    public void destroy() {
+        for(PushSession session:sessions) {
+            session.close();
+        }
+        sessions.clear();
+        subscribers.clear();
+    }
+
+    /**
+     * 为新的WebSocket连接创建会话
+     */
+    public PushSession createSession() {
+        return new PushSession(this, sessionQueueSize);
+    }
+
+    public Collection<PushSession> getSessions(){
+        return Collections.unmodifiableCollection(sessions);
+    }
+
+    void onSessionOpen(PushSession session) {
+        sessions.add(session);
+    }
+
+    void onSessionClose(PushSession session) {
+        sessions.remove(session);
+        for(Set<PushSession> topicSessions:subscribers.values()) {
+            topicSessions.remove(session);
+        }
+    }
+
+    /**
+     * 订阅主题
+     *
+     * @return 规范化后的主题, 无效主题被忽略
+     */
+    List<String> subscribe(PushSession session, Collection<String> topics) {
+        List<String> result = new ArrayList<>();
+        for(String topic:topics) {
+            String normalized = normalizeTopic(topic);
+            if ( normalized==null ) {
+                logger.error("Push session "+session.getSession()+" subscribe invalid topic: "+topic);
+                continue;
+            }
+            subscribers.computeIfAbsent(normalized, k->ConcurrentHashMap.newKeySet()).add(session);
+            result.add(normalized);
+        }
+        return result;
+    }
+
+    List<String> unsubscribe(PushSession session, Collection<String> topics) {
+        List<String> result = new ArrayList<>();
+        for(String topic:topics) {
+            String normalized = normalizeTopic(topic);
+            if ( normalized==null ) {
+                continue;
+            }
+            Set<PushSession> topicSessions = subscribers.get(normalized);
+            if ( topicSessions!=null ) {
+                topicSessions.remove(session);
+            }
+            result.add(normalized);
+        }
+        return result;
+    }
+
+    /**
+     * 规范化主题中的品种和KBar级别, 使客户端可以使用不同的写法
+     */
+    static String normalizeTopic(String topic) {
+        if ( topic==null ) {
+            return null;
+        }
+        String[] parts = topic.trim().split("/");
+        try{
+            switch(parts[0]) {
+            case TOPIC_MD:
+                if ( parts.length==2 ) {
+                    return TOPIC_MD+"/"+Exchangeable.fromString(parts[1]);
+                }
+                break;
+            case TOPIC_TA:
+                if ( parts.length==3 ) {
+                    return TOPIC_TA+"/"+Exchangeable.fromString(parts[1])+"/"+PriceLevel.valueOf(parts[2]);
+                }
+                break;
+            case TOPIC_ACCOUNT:
+            case TOPIC_ORDER:
+                if ( parts.length==2 && parts[1].length()>0 ) {
+                    return parts[0]+"/"+parts[1];
+                }
+                break;
+            }
+        }catch(Throwable t) {}
+        return null;
+    }
+
+    //------------------- MarketDataListener ----------------
+
+    @Override
+    public void onMarketData(MarketData md) {
+        String topic = TOPIC_MD+"/"+md.instrumentId;
+        Set<PushSession> topicSessions = subscribers.get(topic);
+        if ( topicSessions==null || topicSessions.isEmpty() ) {
+            return;
+        }
+        publish(topicSessions, topic, topic, md, false);
+    }
+
+    //------------------- TAListener ----------------
+
+    @Override
+    public void onNewBar(Exchangeable e, LeveledTimeSeries series) {
+        String topic = TOPIC_TA+"/"+e+"/"+series.getLevel();
+        Set<PushSession> topicSessions = subscribers.get(topic);
+        if ( topicSessions==null || topicSessions.isEmpty() ) {
+            return;
+        }
+        //新KBar刚刚创建, 推送上一根已完成的KBar
+        int barIndex = series.getEndIndex()-1;
+        if ( barIndex<series.getBeginIndex() ) {
+            return;
+        }
+        JsonObject json = bar2json(series.getBar(barIndex));
+        json.addProperty("index", barIndex);
+        publish(topicSessions, topic, topic, json, false);
+    }
+
+    //------------------- AccountListener ----------------
+
+    @Override
+    public void onAccountStateChanged(Account account, AccountState oldState) {
+        String topic = TOPIC_ACCOUNT+"/"+account.getId();
+        Set<PushSession> topicSessions = subscribers.get(topic);
+        if ( topicSessions==null || topicSessions.isEmpty() ) {
+            return;
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("state", account.getState().name());
+        json.addProperty("oldState", oldState.name());
+        publish(topicSessions, topic, topic, json, false);
+    }
+
+    @Override
+    public void onOrderStateChanged(Account account, Order order, OrderStateTuple lastStateTuple) {
+        String topic = TOPIC_ORDER+"/"+account.getId();
+        Set<PushSession> topicSessions = subscribers.get(topic);
+        if ( topicSessions==null || topicSessions.isEmpty() ) {
+            return;
+        }
+        //同一报单只保留最新状态
+        publish(topicSessions, topic, topic+"/"+order.getRef(), order, true);
+    }
+
+    @Override
+    public void onTransaction(Account account, Transaction txn) {
+        String topic = TOPIC_ORDER+"/"+account.getId();
+        Set<PushSession> topicSessions = subscribers.get(topic);
+        if ( topicSessions==null || topicSessions.isEmpty() ) {
+            return;
+        }
+        //成交不合并
+        publish(topicSessions, topic, topic+"/txn/"+txn.getId(), txn, true);
+    }
+
+    /**
+     * 序列化一次, 放入所有订阅连接的发送队列.
+     * <BR>data为JsonElement或JsonEnabled等, 直接写入当前线程的JsonStreamWriter
+     * <BR>reliable: 报单/成交消息不能丢弃, 见PushSession.offer()
+     */
+    private void publish(Set<PushSession> topicSessions, String topic, String key, Object data, boolean reliable) {
+        String text = JsonStreamWriter.local()
+                .beginObject()
+                .name("topic").value(topic)
+                .name("data").value(data)
+                .endObject()
+                .toString();
+        for(PushSession session:topicSessions) {
+            session.offer(key, text, reliable);
+        }
+    }
+
+    /**
+     * 字段与TAController返回的JSON格式相同
+     */
+    private static JsonObject bar2json(Bar bar) {
+        JsonObject json = new JsonObject();
+        json.addProperty("beginTime", DateUtil.date2str(bar.getBeginTime().toLocalDateTime()));
+        json.addProperty("beginTimestamp", bar.getBeginTime().toInstant().toEpochMilli());
+        json.addProperty("endTime", DateUtil.date2str(bar.getEndTime().toLocalDateTime()));
+        json.addProperty("endTimestamp", bar.getEndTime().toInstant().toEpochMilli());
+        json.addProperty("open", PriceUtil.long2str(bar.getOpenPrice().longValue()));
+        json.addProperty("max", PriceUtil.long2str(bar.getMaxPrice().longValue()));
+        json.addProperty("min", PriceUtil.long2str(bar.getMinPrice().longValue()));
+        json.addProperty("close", PriceUtil.long2str(bar.getClosePrice().longValue()));
+        json.addProperty("amount", PriceUtil.long2str(bar.getAmount().longValue()));
+        json.addProperty("volume", bar.getVolume().longValue());
+        if ( bar instanceof Bar2 ) {
+            json.addProperty("openInt", ((Bar2)bar).getOpenInterest());
+        }
+        return json;
+    }
+
+}
@@ -0,0 +1,282 @@
+package trader.service.push;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.common.util.JsonEnabled;
+
+/**
+ * WebSocket连接, 每个连接有独立的订阅主题和有界发送队列.
+ * <BR>同一时间只有一个异步发送, 发送未完成时新消息进入队列, 队列中已有相同key的消息时直接替换(合并),
+ * 队列满并且没有可合并的消息时丢弃新消息(行情/KBar/账户).
+ * <BR>报单和成交消息不能丢弃: 队列满时关闭连接, 客户端重新连接后通过REST接口重新加载报单.
+ * <BR>客户端消息格式: {"action":"subscribe|unsubscribe", "topics":["md/shfe.au1906", "ta/shfe.au1906/min1", "account/acc1", "order/acc1"]}
+ */
+public class PushSession implements WebSocketListener, WriteCallback, JsonEnabled {
+    private final static Logger logger = LoggerFactory.getLogger(PushSession.class);
+
+    public static final String ACTION_SUBSCRIBE = "subscribe";
+    public static final String ACTION_UNSUBSCRIBE = "unsubscribe";
+
+    private PushService pushService;
+    private int queueSize;
+    private volatile Session session;
+    private Set<String> topics = Collections.synchronizedSet(new HashSet<>());
+    /**
+     * 待发送消息, key为合并key, 按照首次进入队列的顺序发送
+     */
+    private LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+    /**
+     * 有一个异步发送未完成
+     */
+    private boolean sending;
+    /**
+     * 有一个线程正在循环发送
+     */
+    private boolean draining;
+    private boolean closed;
+    private long sentCount;
+    private long conflatedCount;
+    private long droppedCount;
+    private boolean overflowed;
+
+    PushSession(PushService pushService, int queueSize) {
+        this.pushService = pushService;
+        this.queueSize = queueSize;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Set<String> getTopics(){
+        synchronized(topics) {
+            return new HashSet<>(topics);
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * 发送未完成时被后续消息替换的消息数量
+     */
+    public synchronized long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    /**
+     * 队列满被丢弃的消息数量
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * 发送队列满无法保存报单/成交消息, 连接已被关闭
+     */
+    public synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 放入发送队列, 消息内容在多个连接之间共享
+     *
+     * @param key 合并key, 发送前相同key的新消息替换旧消息
+     * @param text 已经序列化的消息
+     * @param reliable 不能丢弃的消息, 队列满时关闭连接
+     */
+    public void offer(String key, String text, boolean reliable) {
+        boolean overflow = false;
+        synchronized(this) {
+            if ( closed ) {
+                return;
+            }
+            if ( pending.containsKey(key) ) {
+                pending.put(key, text);
+                conflatedCount++;
+                return;
+            }
+            if ( pending.size()>=queueSize && !reliable ) {
+                droppedCount++;
+                return;
+            }
+            if ( pending.size()>=queueSize ) {
+                overflowed = overflow = true;
+            } else {
+                pending.put(key, text);
+                if ( sending || draining ) {
+                    return;
+                }
+                draining = true;
+            }
+        }
+        if ( overflow ) {
+            logger.warn("Push session "+session+" queue is full, close it to avoid losing order event "+key);
+            close();
+            return;
+        }
+        drain();
+    }
+
+    /**
+     * 循环发送, 避免发送同步完成时回调中递归发送
+     */
+    private void drain() {
+        while(true) {
+            String text = null;
+            Session session = this.session;
+            synchronized(this) {
+                if ( closed || sending || pending.isEmpty() || session==null ) {
+                    draining = false;
+                    return;
+                }
+                Iterator<Map.Entry<String, String>> it = pending.entrySet().iterator();
+                text = it.next().getValue();
+                it.remove();
+                sending = true;
+            }
+            session.getRemote().sendString(text, this);
+        }
+    }
+
+    public void close() {
+        synchronized(this) {
+            closed = true;
+            pending.clear();
+        }
+        Session session = this.session;
+        if ( session!=null && session.isOpen() ) {
+            session.close();
+        }
+    }
+
+    //------------------- WriteCallback ----------------
+
+    @Override
+    public void writeSuccess() {
+        synchronized(this) {
+            sending = false;
+            sentCount++;
+            if ( draining ) {
+                return;
+            }
+            draining = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void writeFailed(Throwable x) {
+        if ( logger.isDebugEnabled() ) {
+            logger.debug("Push session "+session+" write failed: "+x, x);
+        }
+        synchronized(this) {
+            sending = false;
+        }
+        close();
+    }
+
+    //------------------- WebSocketListener ----------------
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        this.session = session;
+        pushService.onSessionOpen(this);
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        synchronized(this) {
+            closed = true;
+            pending.clear();
+        }
+        pushService.onSessionClose(this);
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        logger.error("Push session "+session+" error: "+cause, cause);
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        String action = null;
+        List<String> topics = new ArrayList<>();
+        try{
+            JsonObject json = (JsonObject)(new JsonParser()).parse(message);
+            action = json.get("action").getAsString();
+            JsonElement topicsElem = json.get("topics");
+            if ( topicsElem!=null && topicsElem.isJsonArray() ) {
+                for(JsonElement topic:(JsonArray)topicsElem) {
+                    topics.add(topic.getAsString());
+                }
+            }
+        }catch(Throwable t) {
+            logger.error("Push session "+session+" invalid message: "+message);
+            return;
+        }
+        if ( ACTION_SUBSCRIBE.equals(action) ) {
+            for(String topic:pushService.subscribe(this, topics)) {
+                this.topics.add(topic);
+            }
+        } else if ( ACTION_UNSUBSCRIBE.equals(action) ) {
+            for(String topic:pushService.unsubscribe(this, topics)) {
+                this.topics.remove(topic);
+            }
+        }
+    }
+
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int len) {
+    }
+
+    @Override
+    public JsonElement toJson() {
+        JsonObject json = new JsonObject();
+        Session session = this.session;
+        if ( session!=null ) {
+            json.addProperty("remoteAddress", session.getRemoteAddress().toString());
+        }
+        JsonArray topicsArray = new JsonArray();
+        for(String topic:getTopics()) {
+            topicsArray.add(topic);
+        }
+        json.add("topics", topicsArray);
+        synchronized(this) {
+            json.addProperty("pending", pending.size());
+            json.addProperty("sent", sentCount);
+            json.addProperty("conflated", conflatedCount);
+            json.addProperty("dropped", droppedCount);
+            json.addProperty("overflowed", overflowed);
+        }
+        return json;
+    }
+
+}
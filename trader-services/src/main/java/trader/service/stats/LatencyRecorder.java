@@ -0,0 +1,96 @@
+package trader.service.stats;
+
+import trader.common.util.LatencyHistogram;
+
+/**
+ * 行情->策略->报单 路径上各阶段的延迟统计(纳秒).
+ * <BR>记录时不加锁不分配内存, 可以在行情/策略线程中直接调用.
+ */
+public class LatencyRecorder {
+
+    /**
+     * 延迟统计阶段
+     */
+    public static enum Stage{
+        /**
+         * 行情回调到发布到AsyncEventService RingBuffer
+         */
+        MarketDataProduce,
+        /**
+         * AsyncEvent 在RingBuffer中的排队时间
+         */
+        AsyncEventQueue,
+        /**
+         * 报单/成交回报在交易事件RingBuffer中的排队时间
+         */
+        TxnEventQueue,
+        /**
+         * TradletEvent 在策略组RingBuffer中的排队时间
+         */
+        TradletEventQueue,
+        /**
+         * 策略组处理一个行情事件
+         */
+        TradletProcessTick,
+        /**
+         * 报单创建: 校验, 冻结资金和仓位
+         */
+        OrderCreate,
+        /**
+         * 发送报单到交易通道
+         */
+        OrderSend,
+        /**
+         * 从收到行情到报单发送完成
+         */
+        TickToOrder
+    }
+
+    private static final LatencyHistogram[] histograms;
+    static {
+        histograms = new LatencyHistogram[Stage.values().length];
+        for(int i=0;i<histograms.length;i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 当前线程正在处理的行情的接收时间, 用于计算TickToOrder
+     */
+    private static final ThreadLocal<long[]> currentTickTime = ThreadLocal.withInitial(()->new long[1]);
+
+    public static void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * 记录从beginNanoTime到现在的延迟, beginNanoTime为0时忽略
+     */
+    public static void recordSince(Stage stage, long beginNanoTime) {
+        if ( beginNanoTime!=0 ) {
+            histograms[stage.ordinal()].record(System.nanoTime()-beginNanoTime);
+        }
+    }
+
+    public static LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * 设置当前线程处理的行情接收时间, 0代表当前不是在处理行情
+     */
+    public static void setCurrentTickTime(long nanoTime) {
+        currentTickTime.get()[0] = nanoTime;
+    }
+
+    public static long getCurrentTickTime() {
+        return currentTickTime.get()[0];
+    }
+
+    public static void resetAll() {
+        for(LatencyHistogram histogram:histograms) {
+            histogram.reset();
+        }
+    }
+
+}
@@ -23,10 +23,12 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import trader.common.util.IniFile;
+import trader.common.util.LatencyHistogram;
 import trader.common.util.ResourceUtil;
 import trader.common.util.StringUtil;
 import trader.common.util.SystemUtil;
 import trader.service.ServiceConstants;
+import trader.service.trade.OrderThrottle;
 
 /**
  * 每分钟collect一次数据
@@ -55,6 +57,8 @@ public class StatsCollectorImpl implements StatsCollector {
 
     private List<StatsItemFactory> itemFactories = new ArrayList<>();
 
+    private List<LatencyHistogram.IntervalSampler> latencySamplers = new ArrayList<>();
+
     private String thisNodeName;
 
     private String thisApplicationName;
@@ -95,6 +99,8 @@ public class StatsCollectorImpl implements StatsCollector {
                 };
             }
         } catch(Throwable t) {}
+        registerLatencyItems();
+        registerThrottleItems();
     }
 
     @Override
@@ -178,6 +184,12 @@ public class StatsCollectorImpl implements StatsCollector {
             logger.trace("sampleAll ENTER");
         }
         List<StatsItemPublishEvent> result = new ArrayList<>();
+        //Start a new latency interval for periodic sample
+        if ( !instantSample ) {
+            for(LatencyHistogram.IntervalSampler sampler:latencySamplers) {
+                sampler.sample();
+            }
+        }
         //Pick up updated sample items from fixed stats items
         long sampleTime = Instant.now().getEpochSecond();
         for( StatsItemCollectionEntry itemEntry:statsItems.values() ) {
@@ -206,6 +218,37 @@ public class StatsCollectorImpl implements StatsCollector {
         return result;
     }
 
+    /**
+     * 注册各阶段延迟的百分位数统计, 单位微秒.
+     * <BR>curr开头的统计项只计算上一个采样周期内的记录
+     */
+    private void registerLatencyItems() {
+        for(LatencyRecorder.Stage stage:LatencyRecorder.Stage.values()) {
+            LatencyHistogram.IntervalSampler sampler = new LatencyHistogram.IntervalSampler(LatencyRecorder.getHistogram(stage));
+            latencySamplers.add(sampler);
+            registerStatsItem(new StatsItem("Latency", stage.name(), "currP50"), (StatsItem itemInfo)->{
+                return sampler.getValueAtPercentile(50)/1000.0;
+            });
+            registerStatsItem(new StatsItem("Latency", stage.name(), "currP99"), (StatsItem itemInfo)->{
+                return sampler.getValueAtPercentile(99)/1000.0;
+            });
+            registerStatsItem(new StatsItem("Latency", stage.name(), "currMax"), (StatsItem itemInfo)->{
+                return sampler.getMax()/1000.0;
+            });
+        }
+    }
+
+    /**
+     * 注册报单流控的累计拒绝次数
+     */
+    private void registerThrottleItems() {
+        for(OrderThrottle.Reject reject:OrderThrottle.Reject.values()) {
+            registerStatsItem(new StatsItem("OrderThrottle", reject.name(), "totalRejects"), (StatsItem itemInfo)->{
+                return OrderThrottle.getTotalRejects(reject);
+            });
+        }
+    }
+
     /**
      * Fill the node name of statsItem.
      * <BR>If no node name, will use this host name as the value
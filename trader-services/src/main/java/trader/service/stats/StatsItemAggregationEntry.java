@@ -4,16 +4,16 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 采样数据的归并类
+ * <BR>采样数据保存在环形数组中, 每个统计区间维护开始位置和累加值, 每次采样只需要O(1)更新.
+ * <BR>归并结果保存在ConcurrentHashMap中, 查询不需要加锁.
  */
 public class StatsItemAggregationEntry implements StatsItemAggregation {
     private static final Logger logger = LoggerFactory.getLogger(StatsItemAggregationEntry.class);
@@ -25,62 +25,62 @@ public class StatsItemAggregationEntry implements StatsItemAggregation {
      */
     private static final int MAX_KEEP_SAMPLE_VALUE_SECONDS = 3600;
 
-    private StatsItem item;
-
-    private long adjustFactor;
-
-    private long lastAggregateTime;
-
     /**
-     * 根据顺序排列的采样数据列表
+     * 统计区间(分钟), 与KEY_LAST_5/15/60_MINUTE_AVG_VALUE对应
      */
-    private LinkedList<SampleValueEntry> sampleValues = new LinkedList<>();
+    private static final int[] WINDOW_MINUTES = {5, 15, 60};
+    private static final String[] WINDOW_KEYS = {KEY_LAST_5_MINUTE_AVG_VALUE, KEY_LAST_15_MINUTE_AVG_VALUE, KEY_LAST_60_MINUTE_AVG_VALUE};
 
-    private Map<String, Object> aggregatedValues = new HashMap<>();;
+    /**
+     * 可以用long精确表示的最大整数
+     */
+    private static final double MAX_EXACT_LONG = 1L<<53;
 
-    public static class SampleValueEntry {
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i=1;i<POWERS_OF_TEN.length;i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1]*10;
+        }
+    }
 
-        /**
-         * 采样时间
-         */
-        long sampleTime;
+    private StatsItem item;
 
-        /**
-         * 原始值
-         */
-        double sampleValue;
+    private long adjustFactor;
 
-        /**
-         * 修正值: 只对可重新启动的累积值生效
-         */
-        double adjustedSampleValue;
+    private volatile long lastAggregateTime;
 
-        SampleValueEntry(long sampleTime, double sampleValue, double adjustedSampleValue)
-        {
-            this.sampleTime = sampleTime;
-            this.sampleValue = sampleValue;
-            this.adjustedSampleValue = adjustedSampleValue;
-        }
+    private volatile long lastSampleTime;
 
-        SampleValueEntry(long sampleTime, double sampleValue)
-        {
-            this(sampleTime, sampleValue, sampleValue);
-        }
+    /**
+     * 按时间顺序排列的采样时间(秒)和修正后采样值, 环形数组, 长度为2的幂
+     */
+    private long[] sampleTimes = new long[64];
+    private double[] sampleValues = new double[64];
+    /**
+     * 第一个和下一个采样数据的序号, 数组位置为 序号&(length-1)
+     */
+    private long firstSeq;
+    private long nextSeq;
 
-        /**
-         * 采样时间(秒)
-         */
-        public long getTime() {
-            return sampleTime;
-        }
+    /**
+     * 每个统计区间的第一个采样数据序号
+     */
+    private long[] windowFirstSeqs = new long[WINDOW_MINUTES.length];
+    /**
+     * 每个统计区间的采样值累加
+     */
+    private double[] windowSums = new double[WINDOW_MINUTES.length];
+    /**
+     * 采样值都是整数时使用long精确累加, 与逆序累加的double结果一致
+     */
+    private long[] windowLongSums = new long[WINDOW_MINUTES.length];
+    /**
+     * 统计区间内非整数采样值的数量
+     */
+    private int[] windowNonIntegers = new int[WINDOW_MINUTES.length];
 
-        /**
-         * 调整后采样值
-         */
-        public double getValue() {
-            return adjustedSampleValue;
-        }
-    }
+    private Map<String, Object> aggregatedValues = new ConcurrentHashMap<>();
 
     public StatsItemAggregationEntry(StatsItem item) {
         this.item = item;
@@ -97,11 +97,8 @@ public class StatsItemAggregationEntry implements StatsItemAggregation {
     }
 
     @Override
-    public synchronized long getLastSampleTime() {
-        if ( sampleValues.isEmpty()) {
-            return 0;
-        }
-        return sampleValues.getLast().getTime();
+    public long getLastSampleTime() {
+        return lastSampleTime;
     }
 
     @Override
@@ -111,117 +108,198 @@ public class StatsItemAggregationEntry implements StatsItemAggregation {
 
     public synchronized void aggregate(long sampleTime, double sampleValue)
     {
-        preprocessSampleValue(sampleTime, sampleValue);
-
-        //删除过期数据
-        while(!sampleValues.isEmpty()) {
-            SampleValueEntry first = sampleValues.peek();
-            if ( (sampleTime - first.sampleTime)>MAX_KEEP_SAMPLE_VALUE_SECONDS ) {
-                sampleValues.poll();
-            }else {
-                break;
+        addSampleValue(sampleTime, preprocessSampleValue(sampleValue));
+
+        //更新统计区间
+        for(int w=0;w<WINDOW_MINUTES.length;w++) {
+            long windowSeconds = WINDOW_MINUTES[w]*60;
+            long seq = windowFirstSeqs[w];
+            while(seq<nextSeq && (sampleTime-sampleTimes[index(seq)])>windowSeconds) {
+                double value = sampleValues[index(seq)];
+                windowSums[w] -= value;
+                if ( isLong(value) ) {
+                    windowLongSums[w] -= (long)value;
+                }else {
+                    windowNonIntegers[w]--;
+                }
+                seq++;
+            }
+            windowFirstSeqs[w] = seq;
+            if ( windowNonIntegers[w]==0 ) {
+                //消除累积误差
+                windowSums[w] = windowLongSums[w];
             }
         }
+        //删除过期数据, 统计区间都不超过保存时间, 区间开始位置不会早于firstSeq
+        while(firstSeq<nextSeq && (sampleTime-sampleTimes[index(firstSeq)])>MAX_KEEP_SAMPLE_VALUE_SECONDS) {
+            firstSeq++;
+        }
         //重新计算
         if ( item.getType()==StatsItemType.Cumulative ) {
             aggregateCumulativeValues();
         }else {
             aggregateInstantValues();
         }
+        lastSampleTime = sampleTime;
         lastAggregateTime = Instant.now().getEpochSecond();
     }
 
-    private void preprocessSampleValue(long sampleTime, double sampleValue) {
+    /**
+     * 返回修正后的采样值
+     */
+    private double preprocessSampleValue(double sampleValue) {
         if ( item.getType()==StatsItemType.Cumulative && item.isCumulativeOnRestart()) {
-            SampleValueEntry lastValue = sampleValues.peekLast();
             long sampleLong = (long)sampleValue;
-            if ( lastValue!=null
+            if ( firstSeq<nextSeq
                  && sampleLong>0
-                 && (long)lastValue.getValue() > (sampleLong+adjustFactor) )
+                 && (long)sampleValues[index(nextSeq-1)] > (sampleLong+adjustFactor) )
             {
                 long prevFactor = adjustFactor;
                 adjustFactor += sampleLong;
                 logger.info("Stats item "+item.getKey()+" changed adjust factor to : "+adjustFactor+", prev: "+prevFactor+", added: "+sampleLong);
             }
-            sampleValues.offer(new SampleValueEntry(sampleTime, sampleValue, (adjustFactor+sampleValue)));
-        }else {
-            sampleValues.offer(new SampleValueEntry(sampleTime, sampleValue));
+            return adjustFactor+sampleValue;
         }
+        return sampleValue;
+    }
+
+    private void addSampleValue(long sampleTime, double value) {
+        if ( nextSeq-firstSeq==sampleTimes.length ) {
+            //扩容, 保持序号不变
+            int newLength = sampleTimes.length*2;
+            long[] newTimes = new long[newLength];
+            double[] newValues = new double[newLength];
+            for(long seq=firstSeq;seq<nextSeq;seq++) {
+                newTimes[(int)(seq&(newLength-1))] = sampleTimes[index(seq)];
+                newValues[(int)(seq&(newLength-1))] = sampleValues[index(seq)];
+            }
+            sampleTimes = newTimes;
+            sampleValues = newValues;
+        }
+        int idx = index(nextSeq);
+        sampleTimes[idx] = sampleTime;
+        sampleValues[idx] = value;
+        nextSeq++;
+        boolean isLong = isLong(value);
+        for(int w=0;w<WINDOW_MINUTES.length;w++) {
+            windowSums[w] += value;
+            if ( isLong ) {
+                windowLongSums[w] += (long)value;
+            } else {
+                windowNonIntegers[w]++;
+            }
+        }
+    }
+
+    private int index(long seq) {
+        return (int)(seq&(sampleTimes.length-1));
     }
 
     /**
      * 计算即时数据
      */
     private void aggregateInstantValues() {
-        SampleValueEntry lastEntry = sampleValues.peekLast();
-        if ( lastEntry==null ) {
+        if ( firstSeq==nextSeq ) {
             return;
         }
-        aggregatedValues.put(KEY_LAST_5_MINUTE_AVG_VALUE, getInstantAvgValue(sampleValues, 5));
-        aggregatedValues.put(KEY_LAST_15_MINUTE_AVG_VALUE, getInstantAvgValue(sampleValues, 15));
-        aggregatedValues.put(KEY_LAST_60_MINUTE_AVG_VALUE, getInstantAvgValue(sampleValues, 60));
-        aggregatedValues.put(KEY_LAST_VALUE, lastEntry.getValue());
+        for(int w=0;w<WINDOW_MINUTES.length;w++) {
+            aggregatedValues.put(WINDOW_KEYS[w], getInstantAvgValue(w));
+        }
+        aggregatedValues.put(KEY_LAST_VALUE, sampleValues[index(nextSeq-1)]);
     }
 
     /**
      * 计算累积数据
      */
     private void aggregateCumulativeValues() {
-        SampleValueEntry lastEntry = sampleValues.peekLast();
-        if ( lastEntry==null ) {
+        if ( firstSeq==nextSeq ) {
             return;
         }
-        aggregatedValues.put(KEY_LAST_5_MINUTE_AVG_VALUE, getCumulativeAvgValuePerMinute(sampleValues, 5));
-        aggregatedValues.put(KEY_LAST_15_MINUTE_AVG_VALUE, getCumulativeAvgValuePerMinute(sampleValues, 15));
-        aggregatedValues.put(KEY_LAST_60_MINUTE_AVG_VALUE, getCumulativeAvgValuePerMinute(sampleValues, 60));
-        aggregatedValues.put(KEY_LAST_VALUE, lastEntry.getValue());
+        for(int w=0;w<WINDOW_MINUTES.length;w++) {
+            aggregatedValues.put(WINDOW_KEYS[w], getCumulativeAvgValuePerMinute(w));
+        }
+        aggregatedValues.put(KEY_LAST_VALUE, sampleValues[index(nextSeq-1)]);
     }
 
     /**
      * 计算方式: 统计区间内的数据, 计算平均数
      */
-    private double getInstantAvgValue(LinkedList<SampleValueEntry> values, int averageMinutes)
+    private double getInstantAvgValue(int window)
     {
-        double tv = 0;
-        int tc = 0;
-        SampleValueEntry lastEntry=null;
-        for( Iterator<SampleValueEntry> it=values.descendingIterator(); it.hasNext(); ) {
-            SampleValueEntry entry = it.next();
-            if( lastEntry==null ) {
-                lastEntry = entry;
-            }
-            if ( (lastEntry.getTime()-entry.getTime())>averageMinutes*60 ) {
-                break;
-            }
-            tv += entry.getValue(); tc++;
-        }
-        BigDecimal v = new BigDecimal(tv, VALUE_CONTEXT);
-        BigDecimal av = v.divide(new BigDecimal(tc), RoundingMode.HALF_UP);
-        return av.doubleValue();
+        long count = nextSeq-windowFirstSeqs[window];
+        return divide(windowSums[window], count);
     }
 
     /**
      * 计算方式: 区间内开始结束两个数据, 计算差值的分钟平均.
      */
-    private double getCumulativeAvgValuePerMinute(LinkedList<SampleValueEntry> values, int maxMinutes)
+    private double getCumulativeAvgValuePerMinute(int window)
     {
-        SampleValueEntry lastEntry = values.peekLast();
-        SampleValueEntry firstEntry = lastEntry;
+        int lastIdx = index(nextSeq-1);
+        int firstIdx = index(windowFirstSeqs[window]);
+        long minutes = ((sampleTimes[lastIdx]-sampleTimes[firstIdx])+30) / 60;
+        if ( minutes<=0 ) {
+            minutes = 1;
+        }
+        return divide(sampleValues[lastIdx]-sampleValues[firstIdx], minutes);
+    }
 
-        for( Iterator<SampleValueEntry> it=values.descendingIterator(); it.hasNext(); ) { //从后向前逆序
-            SampleValueEntry entry = it.next();
-            if ( (lastEntry.getTime()-entry.getTime())>maxMinutes*60 ) {
-                break;
+    /**
+     * 等同于 new BigDecimal(value, VALUE_CONTEXT).divide(new BigDecimal(divisor), RoundingMode.HALF_UP).doubleValue()
+     * <BR>value为整数时直接使用long计算, 否则使用BigDecimal
+     */
+    static double divide(double value, long divisor) {
+        if ( !isLong(value) ) {
+            BigDecimal v = new BigDecimal(value, VALUE_CONTEXT);
+            BigDecimal av = v.divide(new BigDecimal(divisor), RoundingMode.HALF_UP);
+            return av.doubleValue();
+        }
+        long unscaled = (long)value;
+        boolean negative = unscaled<0;
+        if ( negative ) {
+            unscaled = -unscaled;
+        }
+        //保留2位有效数字, HALF_UP, 记录去掉的位数
+        int droppedDigits = 0;
+        int digits = digits(unscaled);
+        if ( digits>2 ) {
+            droppedDigits = digits-2;
+            unscaled = divideHalfUp(unscaled, POWERS_OF_TEN[droppedDigits]);
+            if ( unscaled==100 ) {
+                unscaled = 10;
+                droppedDigits++;
             }
-            firstEntry = entry;
         }
-        BigDecimal v = new BigDecimal((lastEntry.getValue()-firstEntry.getValue()), VALUE_CONTEXT);
-        long minutes = ((lastEntry.getTime()-firstEntry.getTime())+30) / 60;
-        if ( minutes<=0 ) {
-            minutes = 1;
+        //保持scale不变做除法
+        long q = divideHalfUp(unscaled, divisor);
+        if ( negative ) {
+            q = -q;
+        }
+        return droppedDigits==0 ? q : q*(double)POWERS_OF_TEN[droppedDigits];
+    }
+
+    /**
+     * 非负数除法, HALF_UP
+     */
+    private static long divideHalfUp(long value, long divisor) {
+        long q = value/divisor;
+        long r = value%divisor;
+        if ( r>=divisor-r ) {
+            q++;
+        }
+        return q;
+    }
+
+    private static int digits(long value) {
+        int result = 1;
+        while(result<POWERS_OF_TEN.length && value>=POWERS_OF_TEN[result]) {
+            result++;
         }
-        BigDecimal av = v.divide(new BigDecimal(minutes), RoundingMode.HALF_UP);
-        return av.doubleValue();
+        return result;
+    }
+
+    private static boolean isLong(double value) {
+        return value==Math.rint(value) && Math.abs(value)<MAX_EXACT_LONG;
     }
 
 }
@@ -1,5 +1,6 @@
 package trader.service.ta;
 
+import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -12,16 +13,21 @@ import org.ta4j.core.TimeSeries;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Lifecycle;
+import trader.common.config.ConfigUtil;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableTradingTimes;
 import trader.common.exchangeable.MarketDayUtil;
+import trader.common.exchangeable.MarketTimeStage;
 import trader.common.tick.PriceLevel;
 import trader.common.util.DateUtil;
 import trader.common.util.TraderHomeUtil;
 import trader.service.md.MarketData;
+import trader.service.ta.indicators.IncrementalMACD;
 import trader.service.ta.trend.MarketDataWaveBarBuilder;
 import trader.service.ta.trend.WaveBar;
+import trader.service.ta.trend.WaveBarEngine;
+import trader.service.ta.trend.WaveBarSnapshot;
 import trader.service.ta.trend.WaveBar.WaveType;
 import trader.service.trade.MarketTimeService;
 
@@ -47,21 +53,50 @@ public class TAEntry implements TAItem, Lifecycle {
         int barIndex = -1;
         MarketData lastTick;
         boolean newBar = false;
+        IncrementalMACD macd = new IncrementalMACD();
         LevelSeriesInfo(PriceLevel level){
             this.level = level;
         }
     }
     private static final PriceLevel[] minuteLevels = getMinuteLevels();
+    /**
+     * 波浪级别: 笔划, 线段, 趋势
+     */
+    private static final int WAVE_LEVEL_COUNT = 3;
+    /**
+     * 加载的历史日线交易日数
+     */
+    private static final int DAY_HISTORY_COUNT = 60;
 
     private Exchangeable exchangeable;
+    /**
+     * 是否读写波浪快照
+     */
+    private boolean waveSnapshot;
+    private MarketTimeService mtService;
     private MarketDataWaveBarBuilder waveBarBuilder;
+    /**
+     * 波浪每一级最多保留的Bar数量, 避免快照和内存逐日增长
+     */
+    private int waveMaxBars;
+    /**
+     * 按列保存的笔划/线段完整历史, 超出内存窗口的部分溢出到磁盘
+     */
+    private WaveBarEngine waveBarEngine;
     private LevelSeriesInfo[] levelSeries;
+    /**
+     * 日线, 当前交易日的日线随TICK实时更新
+     */
+    private LevelSeriesInfo daySeries = new LevelSeriesInfo(PriceLevel.DAY);
     private List<LocalDate> historicalDates = Collections.emptyList();
+    private ExchangeableData data;
+    private LocalDate tradingDay;
 
     private ExchangeableTradingTimes tradingTimes;
 
-    public TAEntry(Exchangeable exchangeable) {
+    public TAEntry(Exchangeable exchangeable, boolean waveSnapshot) {
         this.exchangeable = exchangeable;
+        this.waveSnapshot = waveSnapshot;
 
         levelSeries = new LevelSeriesInfo[minuteLevels.length];
     }
@@ -69,18 +104,83 @@ public class TAEntry implements TAItem, Lifecycle {
     @Override
     public void init(BeansContainer beansContainer) throws Exception
     {
-        MarketTimeService mtService = beansContainer.getBean(MarketTimeService.class);
-        ExchangeableData data = TraderHomeUtil.getExchangeableData();
+        mtService = beansContainer.getBean(MarketTimeService.class);
+        data = TraderHomeUtil.getExchangeableData();
+        tradingDay = mtService.getTradingDay();
         loadHistoryData(beansContainer, mtService, data);
         buildBarTimestampTable(mtService);
-        waveBarBuilder = new MarketDataWaveBarBuilder();
+        waveBarBuilder = new MarketDataWaveBarBuilder(WAVE_LEVEL_COUNT);
         long threshold = exchangeable.getPriceTick()*3;
         waveBarBuilder.setStrokeDirectionThreshold(new LongNum(threshold));
+        waveMaxBars = ConfigUtil.getInt(TAServiceImpl.ITEM_WAVE_MAX_BARS, TAServiceImpl.DEFAULT_WAVE_MAX_BARS);
+        File spillDir = new File(ConfigUtil.getString0(TAServiceImpl.ITEM_WAVE_SPILL_DIR, new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_WORK), "wave").getAbsolutePath()));
+        spillDir.mkdirs();
+        waveBarEngine = new WaveBarEngine()
+                .setStrokeDirectionThreshold(threshold)
+                .setWindowSize(ConfigUtil.getInt(TAServiceImpl.ITEM_WAVE_WINDOW_SIZE, WaveBarEngine.DEFAULT_WINDOW_SIZE))
+                .setSpillDir(spillDir);
+        if ( waveSnapshot ) {
+            loadWaveSnapshot(beansContainer);
+        }
     }
 
+    /**
+     * 收市后保存当天的波浪快照. 盘中停止不保存, 避免下一个交易日恢复不完整的波浪
+     */
     @Override
     public void destroy() {
+        if ( waveBarEngine!=null ) {
+            waveBarEngine.close();
+        }
+        if ( !waveSnapshot || waveBarBuilder==null || tradingTimes==null || waveBarBuilder.getBars(WaveType.Stroke).isEmpty() ) {
+            return;
+        }
+        LocalDateTime marketTime = mtService.getMarketTime();
+        if ( marketTime.isBefore(tradingTimes.getMarketCloseTime()) ) {
+            logger.info(exchangeable+" wave snapshot of "+tradingDay+" is not saved before market close: "+marketTime);
+            return;
+        }
+        try{
+            waveBarBuilder.prune(waveMaxBars);
+            WaveBarSnapshot.save(data, exchangeable, tradingDay, waveBarBuilder);
+        }catch(Throwable t) {
+            logger.error(exchangeable+" save wave snapshot of "+tradingDay+" failed", t);
+        }
+    }
 
+    /**
+     * 从波浪快照恢复, 不需要回放历史行情:
+     * <LI>收市后重启, 直接使用当天的快照
+     * <LI>否则使用上一个交易日的快照, 再回放当天已有的行情
+     * <BR>WaveBarEngine不使用快照, 只包含当天回放和实时的行情
+     */
+    private void loadWaveSnapshot(BeansContainer beansContainer) {
+        if ( tradingDay==null ) {
+            return;
+        }
+        LocalDate snapshotDay = tradingDay;
+        try{
+            if ( !WaveBarSnapshot.load(data, exchangeable, snapshotDay, waveBarBuilder) ) {
+                snapshotDay = MarketDayUtil.prevMarketDay(exchangeable.exchange(), tradingDay);
+                if ( !WaveBarSnapshot.load(data, exchangeable, snapshotDay, waveBarBuilder) ) {
+                    snapshotDay = null;
+                }
+                List<MarketData> ticks = new TimeSeriesLoader(beansContainer, data)
+                        .setExchangeable(exchangeable)
+                        .setEndTime(mtService.getMarketTime())
+                        .loadMarketDataTicks(tradingDay, ExchangeableData.TICK_CTP);
+                for(MarketData tick:ticks) {
+                    waveBarBuilder.onMarketData(tick);
+                    waveBarEngine.onMarketData(tick);
+                }
+            }
+            waveBarBuilder.prune(waveMaxBars);
+            if ( snapshotDay!=null ) {
+                logger.info(exchangeable+" wave snapshot of "+snapshotDay+" loaded, strokes: "+waveBarBuilder.getBars(WaveType.Stroke).size());
+            }
+        }catch(Throwable t) {
+            logger.error(exchangeable+" load wave snapshot of "+snapshotDay+" failed", t);
+        }
     }
 
     /**
@@ -122,6 +222,9 @@ public class TAEntry implements TAItem, Lifecycle {
 
     @Override
     public LeveledTimeSeries getSeries(PriceLevel level) {
+        if ( level==PriceLevel.DAY ) {
+            return daySeries.series;
+        }
         LevelSeriesInfo levelEntry = levelSeries[level2index(level)];
         if (levelEntry!=null) {
             return levelEntry.series;
@@ -129,6 +232,18 @@ public class TAEntry implements TAItem, Lifecycle {
         return null;
     }
 
+    @Override
+    public IncrementalMACD getMACD(PriceLevel level) {
+        if ( level==PriceLevel.DAY ) {
+            return daySeries.macd;
+        }
+        LevelSeriesInfo levelEntry = levelSeries[level2index(level)];
+        if (levelEntry!=null) {
+            return levelEntry.macd;
+        }
+        return null;
+    }
+
     @Override
     public List<WaveBar> getWaveBars(WaveType waveType) {
         return waveBarBuilder.getBars(waveType);
@@ -139,6 +254,11 @@ public class TAEntry implements TAItem, Lifecycle {
         return waveBarBuilder.getLastBar(waveType);
     }
 
+    @Override
+    public WaveBarEngine getWaveBarEngine() {
+        return waveBarEngine;
+    }
+
     /**
      * 加载历史数据. 目前只加载昨天的数据.
      * TODO 加载最近指定KBar数量的数据
@@ -160,8 +280,23 @@ public class TAEntry implements TAItem, Lifecycle {
             LevelSeriesInfo levelSeries = new LevelSeriesInfo(level);
             this.levelSeries[i] = levelSeries;
             levelSeries.series = seriesLoader.setLevel(level).load();
+            levelSeries.macd.update(levelSeries.series);
         }
         historicalDates = seriesLoader.getLoadedDates();
+
+        //日线只加载到上一个交易日, 当天的日线由TICK生成
+        LocalDate prevTradingDay = MarketDayUtil.prevMarketDay(exchangeable.exchange(), tradingTimes.getTradingDay());
+        LocalDate dayStartTradingDay = prevTradingDay;
+        for(int i=1;i<DAY_HISTORY_COUNT;i++) {
+            dayStartTradingDay = MarketDayUtil.prevMarketDay(exchangeable.exchange(), dayStartTradingDay);
+        }
+        daySeries.series = new TimeSeriesLoader(beansContainer, data)
+                .setExchangeable(exchangeable)
+                .setLevel(PriceLevel.DAY)
+                .setStartTradingDay(dayStartTradingDay)
+                .setEndTradingDay(prevTradingDay)
+                .load();
+        daySeries.macd.update(daySeries.series);
         return true;
     }
 
@@ -170,7 +305,7 @@ public class TAEntry implements TAItem, Lifecycle {
      */
     public boolean onMarketData(MarketData tick) {
         boolean result = false;
-        waveBarBuilder.onMarketData(tick);
+        updateWaveBars(tick);
         for(int i=0;i<minuteLevels.length;i++) {
             LevelSeriesInfo levelSeries = this.levelSeries[i];
             int barIndex = getBarIndex(levelSeries, tick);
@@ -178,12 +313,25 @@ public class TAEntry implements TAItem, Lifecycle {
                 break;
             }
             boolean levelNewBar = updateLevelSeries(levelSeries, tick, barIndex);
+            levelSeries.macd.update(levelSeries.series);
             levelSeries.newBar = levelNewBar;
             result |= levelNewBar;
         }
+        result |= updateDaySeries(tick);
         return result;
     }
 
+    /**
+     * 更新笔划/线段/趋势. WaveBar超出waveMaxBars的1/4后才删除, 避免每个新笔划都移动整个列表
+     */
+    private void updateWaveBars(MarketData tick) {
+        waveBarBuilder.onMarketData(tick);
+        waveBarEngine.onMarketData(tick);
+        if ( waveBarBuilder.getBars(WaveType.Stroke).size()>waveMaxBars+waveMaxBars/4 ) {
+            waveBarBuilder.prune(waveMaxBars);
+        }
+    }
+
     /**
      * 通知KBar有新增
      */
@@ -200,6 +348,13 @@ public class TAEntry implements TAItem, Lifecycle {
                     }
                 }
             }
+            if ( daySeries.newBar ) {
+                try{
+                    listener.onNewBar(exchangeable, daySeries.series);
+                }catch(Throwable t) {
+                    logger.error("KBar notify "+listener+" failed : "+t.toString(), t);
+                }
+            }
         }
     }
 
@@ -207,16 +362,7 @@ public class TAEntry implements TAItem, Lifecycle {
         int result = -1;
         long marketBeginMillis = levelSeries.barBeginMillis[0];
         if ( tick.updateTimestamp>=marketBeginMillis ) {
-            int currBarIndex = levelSeries.barIndex;
-            if ( currBarIndex<0 ) {
-                currBarIndex = 0;
-            }
-            for(int i=currBarIndex;i<levelSeries.barBeginMillis.length;i++) {
-                if ( tick.updateTimestamp < levelSeries.barBeginMillis[i] ) {
-                    break;
-                }
-                result = i;
-            }
+            result = getBarIndex(levelSeries.barBeginMillis, levelSeries.barIndex, tick.updateTimestamp);
             //TimeSeriesLoader.getBarIndex(exchangeable, levelSeries.level, tick.updateTime);
         }else {
             if ( logger.isDebugEnabled() ) {
@@ -226,6 +372,26 @@ public class TAEntry implements TAItem, Lifecycle {
         return result;
     }
 
+    /**
+     * 从当前KBar开始向后查找时间戳所在的KBar
+     *
+     * @param barBeginMillis 预先计算的KBar开始时间
+     * @param currBarIndex 当前KBar位置, -1代表还没有KBar
+     */
+    static int getBarIndex(long[] barBeginMillis, int currBarIndex, long timestamp) {
+        int result = -1;
+        if ( currBarIndex<0 ) {
+            currBarIndex = 0;
+        }
+        for(int i=currBarIndex;i<barBeginMillis.length;i++) {
+            if ( timestamp < barBeginMillis[i] ) {
+                break;
+            }
+            result = i;
+        }
+        return result;
+    }
+
     /**
      * 更新TimeSeries
      *
@@ -268,6 +434,32 @@ public class TAEntry implements TAItem, Lifecycle {
         return result;
     }
 
+    /**
+     * 使用TICK的当日累计数据更新当前交易日的日线
+     *
+     * @return true 如果产生了当天的日线
+     */
+    private boolean updateDaySeries(MarketData tick) {
+        daySeries.newBar = false;
+        if ( daySeries.series==null || tradingTimes==null || tradingTimes.getTimeStage(tick.updateTime)!=MarketTimeStage.MarketOpen ) {
+            return false;
+        }
+        if ( daySeries.barIndex<0 ) {
+            FutureBar bar = FutureBar.create(0, tradingTimes, tradingTimes.getMarketTimes()[0], null, tick, tick.lastPrice, tick.lastPrice);
+            daySeries.series.addBar(bar);
+            daySeries.barIndex = 0;
+            daySeries.newBar = true;
+            if ( logger.isDebugEnabled() ) {
+                logger.debug(exchangeable+" "+PriceLevel.DAY+" NEW Kbar "+tradingTimes.getTradingDay()+" : "+bar);
+            }
+        } else {
+            ((FutureBar)daySeries.series.getLastBar()).update(tick, tick.updateTime);
+        }
+        daySeries.lastTick = tick;
+        daySeries.macd.update(daySeries.series);
+        return daySeries.newBar;
+    }
+
     private static PriceLevel[] getMinuteLevels() {
         return new PriceLevel[]{PriceLevel.MIN1, PriceLevel.MIN3, PriceLevel.MIN5, PriceLevel.MIN15};
     }
@@ -22,6 +22,7 @@ import trader.service.md.MarketData;
 import trader.service.md.MarketDataListener;
 import trader.service.md.MarketDataService;
 import trader.service.trade.MarketTimeService;
+import trader.service.trade.MarketTimeServiceImpl;
 
 /**
  * 技术分析/KBar实现类.
@@ -31,6 +32,21 @@ import trader.service.trade.MarketTimeService;
 public class TAServiceImpl implements TAService, MarketDataListener {
     private final static Logger logger = LoggerFactory.getLogger(TAServiceImpl.class);
 
+    /**
+     * 波浪每一级保留的WaveBar数量, 盘中超出后删除最早的Bar
+     */
+    public static final String ITEM_WAVE_MAX_BARS = "/TAService/wave/maxBars";
+    /**
+     * 按列保存的笔划/线段在内存中保留的行数, 超出后溢出到磁盘
+     */
+    public static final String ITEM_WAVE_WINDOW_SIZE = "/TAService/wave/windowSize";
+    /**
+     * 笔划/线段溢出文件目录, 缺省为data/work/wave
+     */
+    public static final String ITEM_WAVE_SPILL_DIR = "/TAService/wave/spillDir";
+
+    public static final int DEFAULT_WAVE_MAX_BARS = 2000;
+
     private MarketDataService mdService;
 
     private MarketTimeService mtService;
@@ -51,12 +67,14 @@ public class TAServiceImpl implements TAService, MarketDataListener {
         long t0=System.currentTimeMillis();
         mdService.addListener(this);
         TreeMap<Exchangeable, List<LocalDate>> historicalDates = new TreeMap<>();
+        //模拟和回测使用模拟时间, 不读写波浪快照
+        boolean waveSnapshot = mtService instanceof MarketTimeServiceImpl;
         for(Exchangeable e:mdService.getSubscriptions()) {
             ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, mtService.getMarketTime().toLocalDate());
             if ( tradingTimes==null ) {
                 continue;
             }
-            TAEntry entry = new TAEntry(e);
+            TAEntry entry = new TAEntry(e, waveSnapshot);
             entries.put(e, entry);
             try{
                 entry.init(beansContainer);
@@ -72,6 +90,9 @@ public class TAServiceImpl implements TAService, MarketDataListener {
     @Override
     @PreDestroy
     public void destroy() {
+        for(TAEntry entry:entries.values()) {
+            entry.destroy();
+        }
     }
 
     @Override
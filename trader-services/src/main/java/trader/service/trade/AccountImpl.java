@@ -3,6 +3,7 @@ package trader.service.trade;
 import java.io.File;
 import java.io.StringReader;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -13,6 +14,7 @@ import java.util.Properties;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -35,6 +37,8 @@ import trader.common.util.ConversionUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.FileUtil;
 import trader.common.util.IniFile;
+import trader.common.util.JsonEnabled;
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.JsonUtil;
 import trader.common.util.PriceUtil;
 import trader.common.util.StringUtil;
@@ -42,12 +46,20 @@ import trader.common.util.TraderHomeUtil;
 import trader.service.ServiceConstants.AccountState;
 import trader.service.ServiceConstants.ConnState;
 import trader.service.ServiceErrorConstants;
+import trader.service.data.BatchedKVStore;
 import trader.service.data.KVStore;
 import trader.service.data.KVStoreService;
+import trader.service.log.AsyncLog;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataListener;
 import trader.service.md.MarketDataService;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
 import trader.service.trade.spi.AbsTxnSession;
+import trader.service.trade.journal.TradeJournalRecord;
+import trader.service.trade.journal.TradeJournalReplayer;
+import trader.service.trade.journal.TradeJournalSnapshot;
+import trader.service.trade.journal.TradeJournalWriter;
 import trader.service.trade.spi.TxnSessionListener;
 
 /**
@@ -57,6 +69,11 @@ import trader.service.trade.spi.TxnSessionListener;
  */
 public class AccountImpl implements Account, TxnSessionListener, TradeConstants, ServiceErrorConstants, MarketDataListener {
 
+    /**
+     * 启动时是否从交易日志恢复当天报单, 缺省为true. 资金和持仓总是以交易通道查询结果为准
+     */
+    public static final String PROP_RECOVER_FROM_JOURNAL = "recoverFromJournal";
+
     private String id;
     private BeansContainer beansContainer;
     /**
@@ -66,7 +83,11 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     private String loggerCategory;
     private Logger logger;
     private File tradingWorkDir;
-    private KVStore kvStore;
+    private BatchedKVStore kvStore;
+    /**
+     * 交易日志, 回测模式不创建
+     */
+    private TradeJournalWriter journal;
     private long[] money = new long[AccMoney_Count];
     private AccountState state;
     private TradeService tradeService;
@@ -83,6 +104,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     private Map<String, OrderImpl> orders = new ConcurrentHashMap<>();
     private Map<Exchangeable, AtomicInteger> cancelCounts = new ConcurrentHashMap<>();
     private Lock positionLock = new ReentrantLock();
+    private OrderThrottle throttle;
 
     public AccountImpl(TradeService tradeService, BeansContainer beansContainer, Map configElem) {
         this.tradeService = tradeService;
@@ -96,9 +118,10 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         LocalDate tradingDay = beansContainer.getBean(MarketTimeService.class).getTradingDay();
         tradingWorkDir = new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_WORK), DateUtil.date2str(tradingDay));
         createAccountLogger();
+        throttle = new OrderThrottle(id, mtService);
 
         try{
-            kvStore = beansContainer.getBean(KVStoreService.class).getStore("account."+id+".");
+            kvStore = beansContainer.getBean(KVStoreService.class).getBatchedStore("account."+id+".");
         }catch(Throwable t) {
             logger.error("Create datastore failed", t);
         }
@@ -188,6 +211,10 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         return i.get();
     }
 
+    public OrderThrottle getThrottle() {
+        return throttle;
+    }
+
     @Override
     public void addAccountListener(AccountListener listener) {
         if ( listener!=null && !listeners.contains(listener)) {
@@ -208,16 +235,17 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
 
     @Override
     public Order createOrder(OrderBuilder builder) throws AppException {
+        long beginNanoTime = System.nanoTime();
         if ( txnSession==null || txnSession.getState()!=ConnState.Connected ) {
             throw new AppException(ERRCODE_TRADE_SESSION_NOT_READY, "Account "+getId()+" txn session is not ready");
         }
         long[] localOrderMoney = (new OrderValidator(beansContainer, this, builder)).validate();
+        //流控, 自成交和重复报单检查
+        throttle.checkInsert(builder, orders.values());
         //创建Order
         Exchangeable e = builder.getExchangeable();
         OrderImpl order = new OrderImpl(orderRefGen.nextRefId(id), builder, null);
-        if ( logger.isInfoEnabled() ) {
-            logger.info("创建报单: "+order.toString());
-        }
+        AsyncLog.info(logger, "创建报单: {} {} {} {} 价格 {p} 数量 {}", order.getRef(), e, builder.getDirection(), builder.getOffsetFlag(), builder.getLimitPrice(), builder.getVolume());
         PositionImpl pos = null;
         orders.put(order.getRef(), order);
         synchronized(order) {
@@ -233,12 +261,18 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                     localFreeze(order);
                     //仓位管理
                     pos.localFreeze(order);
+                    journal(TradeJournalRecord.TYPE_FREEZE, order, null, pos);
                 }finally {
                     positionLock.unlock();
                 }
                 order.attachPosition(pos);
                 //异步发送
+                long sendNanoTime = System.nanoTime();
+                LatencyRecorder.record(Stage.OrderCreate, sendNanoTime-beginNanoTime);
                 txnSession.asyncSendOrder(order);
+                LatencyRecorder.recordSince(Stage.OrderSend, sendNanoTime);
+                LatencyRecorder.recordSince(Stage.TickToOrder, LatencyRecorder.getCurrentTickTime());
+                saveOrder(order);
                 return order;
             }catch(AppException t) {
                 //回退本地已冻结资金和仓位
@@ -246,6 +280,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                 try {
                     localUnfreeze(order);
                     pos.localUnfreeze(order);
+                    journal(TradeJournalRecord.TYPE_UNFREEZE, order, null, pos);
                 }finally {
                     positionLock.unlock();
                 }
@@ -276,6 +311,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                     && odrSubmitState!=OrderSubmitState.CancelSubmitted )
             {
                 PositionImpl pos = getOrCreatePosition(e, true);
+                throttle.checkCancel(order);
                 txnSession.asyncCancelOrder(order);
                 result = true;
             }
@@ -298,8 +334,9 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                     && !odrSubmitState.isSubmitting()
                     && odrSubmitState!=OrderSubmitState.ModifySubmitted )
             {
+                throttle.checkCancel(order);
                 txnSession.asyncModifyOrder(order, builder);
-                logger.info("Order "+order.getRef()+" is modified, new limitPrice: "+PriceUtil.long2str(builder.getLimitPrice())+", old: "+PriceUtil.long2str(order.getLimitPrice()));
+                AsyncLog.info(logger, "Order {} is modified, new limitPrice: {p}, old: {p}", order.getRef(), builder.getLimitPrice(), order.getLimitPrice());
                 order.setLimitPrice(builder.getLimitPrice());
                 result = true;
             }
@@ -325,6 +362,9 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             money = txnSession.syncQryAccounts();
             //查询持仓
             positions = loadPositions();
+            //交易通道只推送重连后的回报(QUICK), 停机期间的成交和撤单只体现在查询结果中
+            recoverFromJournal();
+            openJournal(true);
             //加载品种的交易数据
             if ( null==feeEvaluator ) {
                 loadFeeEvaluator();
@@ -339,6 +379,22 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
     public void destroy() {
+        //等待报单和成交数据写入完成
+        if ( kvStore!=null ) {
+            try{
+                kvStore.flush().get(5, TimeUnit.SECONDS);
+            }catch(Throwable t) {
+                logger.error("Account "+getId()+" flush kvstore failed", t);
+            }
+        }
+        if ( journal!=null ) {
+            try{
+                journal.close();
+            }catch(Throwable t) {
+                logger.error("Account "+getId()+" close journal failed", t);
+            }
+            journal = null;
+        }
     }
 
     /**
@@ -387,6 +443,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         json.add("brokerMarginRatio", JsonUtil.object2json(brokerMarginRatio));
         json.add("money", TradeConstants.accMoney2json(money));
         json.add("cancelCounts", JsonUtil.object2json(cancelCounts));
+        json.add("throttle", throttle.toJson());
         return json;
     }
 
@@ -472,7 +529,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         }
         OrderStateTuple oldState = order.changeState(newState);
         if ( oldState!=null ) {
-            logger.info("Account "+getId()+" order "+order.getRef()+" changed state to "+newState);
+            AsyncLog.info(logger, "Account {} order {} changed state to {}", getId(), order.getRef(), newState);
             PositionImpl pos = ((PositionImpl)order.getPosition());
             switch(newState.getState()) {
             case Failed: //报单失败, 本地回退冻结仓位和资金
@@ -484,6 +541,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                     pos.localUnfreeze(order);
                     order.addMoney(OdrMoney_LocalUnfrozenMargin, order.getMoney(OdrMoney_LocalFrozenMargin) - order.getMoney(OdrMoney_LocalUnfrozenMargin)  );
                     order.addMoney(OdrMoney_LocalUnfrozenCommission, order.getMoney(OdrMoney_LocalFrozenCommission) - order.getMoney(OdrMoney_LocalUnfrozenCommission) );
+                    journal(TradeJournalRecord.TYPE_UNFREEZE, order, null, pos);
                 }finally {
                     positionLock.unlock();
                 }
@@ -604,6 +662,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             }
 
             updateAccountMoneyOnMarket();
+            journal(TradeJournalRecord.TYPE_TRANSACTION, order, txn, position);
         }finally {
             positionLock.unlock();
         }
@@ -748,6 +807,8 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
     private void publishOrderStateChanged(Order order, OrderStateTuple lastStateTuple) {
+        saveOrder(order);
+        journal(TradeJournalRecord.TYPE_ORDER_STATE, (OrderImpl)order, null, (PositionImpl)order.getPosition());
         OrderListener odrListener = order.getListener();
         try{
             if ( odrListener!=null ) {
@@ -766,6 +827,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
     private void publishTransaction(Transaction txn) {
+        saveTransaction(txn);
         Order order = txn.getOrder();
         if ( order!=null ) {
             OrderListener odrListener = order.getListener();
@@ -786,6 +848,199 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         }
     }
 
+    private File getJournalFile() {
+        return new File(tradingWorkDir, id+".journal");
+    }
+
+    /**
+     * 打开交易日志
+     *
+     * @param writeInitialState 写入从交易通道查询到的账户和持仓初始状态, 以及已恢复的报单
+     */
+    private void openJournal(boolean writeInitialState) {
+        if ( simMode ) {
+            return;
+        }
+        try{
+            journal = new TradeJournalWriter(getJournalFile());
+            if ( writeInitialState ) {
+                positionLock.lock();
+                try {
+                    journal(TradeJournalRecord.TYPE_ACCOUNT, null, null, null);
+                    for(PositionImpl pos:positions.values()) {
+                        journal(TradeJournalRecord.TYPE_POSITION, null, null, pos);
+                    }
+                    //新的初始状态会清除之前的报单, 需要重新写入
+                    for(OrderImpl order:orders.values()) {
+                        journal(TradeJournalRecord.TYPE_ORDER_STATE, order, null, null);
+                    }
+                }finally {
+                    positionLock.unlock();
+                }
+            }
+        }catch(Throwable t) {
+            logger.error("Account "+getId()+" open journal "+getJournalFile()+" failed", t);
+        }
+    }
+
+    /**
+     * 回放当天的交易日志, 恢复报单, 并与交易通道查询到的资金和持仓核对.
+     * <BR>资金和持仓以查询结果为准; 日志中未完成的报单在停机期间可能已成交或撤销, 只作为历史报单恢复, 不再冻结持仓.
+     * <BR>可以通过connectionProps的recoverFromJournal=false关闭
+     */
+    private void recoverFromJournal() {
+        if ( simMode || !ConversionUtil.toBoolean(connectionProps.getProperty(PROP_RECOVER_FROM_JOURNAL), true) ) {
+            return;
+        }
+        File journalFile = getJournalFile();
+        long t0 = System.currentTimeMillis();
+        TradeJournalSnapshot snapshot = null;
+        try{
+            snapshot = TradeJournalReplayer.replay(journalFile);
+        }catch(Throwable t) {
+            logger.error("Account "+getId()+" replay journal "+journalFile+" failed", t);
+            return;
+        }
+        if ( snapshot.accountMoney==null ) {
+            return;
+        }
+        //核对资金和持仓
+        if ( snapshot.accountMoney[AccMoney_Balance]!=money[AccMoney_Balance] ) {
+            logger.warn("Account "+getId()+" balance "+PriceUtil.long2str(money[AccMoney_Balance])+" differs from journal "+PriceUtil.long2str(snapshot.accountMoney[AccMoney_Balance]));
+        }
+        for(TradeJournalSnapshot.PositionState posState:snapshot.positions.values()) {
+            PositionImpl pos = positions.get(Exchangeable.fromString(posState.exchangeable));
+            int volume = pos!=null?pos.getVolume(PosVolume_Position):0;
+            if ( volume!=posState.volumes[PosVolume_Position] ) {
+                logger.warn("Account "+getId()+" position "+posState.exchangeable+" volume "+volume+" differs from journal "+posState.volumes[PosVolume_Position]);
+            }
+        }
+        int unfinishedOrders = 0;
+        for(TradeJournalRecord odrRecord:snapshot.orders.values()) {
+            Exchangeable e = Exchangeable.fromString(odrRecord.orderExchangeable);
+            OrderBuilder builder = new OrderBuilder()
+                    .setExchagneable(e)
+                    .setDirection(odrRecord.orderDirection)
+                    .setPriceType(odrRecord.orderPriceType)
+                    .setOffsetFlag(odrRecord.orderOffsetFlag)
+                    .setVolumeCondition(odrRecord.orderVolumeCondition)
+                    .setLimitPrice(odrRecord.orderLimitPrice);
+            OrderImpl order = new OrderImpl(odrRecord.orderRef, builder, new OrderStateTuple(odrRecord.orderState, odrRecord.orderSubmitState, odrRecord.orderStateTime));
+            for(int i=0;i<odrRecord.orderMoney.length && i<OdrMoney_Count;i++) {
+                order.setMoney(i, odrRecord.orderMoney[i]);
+            }
+            for(int i=0;i<odrRecord.orderVolumes.length && i<OdrVolume_Count;i++) {
+                order.addVolume(i, odrRecord.orderVolumes[i]-order.getVolume(i));
+            }
+            order.attachPosition(getOrCreatePosition(e, true));
+            if ( !odrRecord.orderState.isDone() ) {
+                unfinishedOrders++;
+                logger.warn("Account "+getId()+" order "+order.getRef()+" was "+odrRecord.orderState+" before restart, actual state is unknown");
+            }
+            orders.put(order.getRef(), order);
+        }
+        long t1 = System.currentTimeMillis();
+        logger.info("Account "+getId()+" recovered "+snapshot.orders.size()+" orders ("+unfinishedOrders+" unfinished) from journal "+journalFile+", "+snapshot.recordCount+" records in "+(t1-t0)+" ms");
+    }
+
+    /**
+     * 写交易日志, 记录事件以及事件处理后的账户和持仓状态
+     */
+    private void journal(byte type, OrderImpl order, TransactionImpl txn, PositionImpl pos) {
+        if ( journal==null ) {
+            return;
+        }
+        TradeJournalRecord record = new TradeJournalRecord();
+        record.type = type;
+        record.timestamp = System.currentTimeMillis();
+        if ( order!=null ) {
+            OrderStateTuple stateTuple = order.getStateTuple();
+            record.orderRef = order.getRef();
+            record.orderExchangeable = order.getExchangeable().toString();
+            record.orderDirection = order.getDirection();
+            record.orderPriceType = order.getPriceType();
+            record.orderOffsetFlag = order.getOffsetFlags();
+            record.orderVolumeCondition = order.getVolumeCondition();
+            record.orderLimitPrice = order.getLimitPrice();
+            record.orderState = stateTuple.getState();
+            record.orderSubmitState = stateTuple.getSubmitState();
+            record.orderStateTime = stateTuple.getTimestamp();
+            record.orderMoney = order.getMoney();
+            record.orderVolumes = new int[OdrVolume_Count];
+            for(int i=0;i<OdrVolume_Count;i++) {
+                record.orderVolumes[i] = order.getVolume(i);
+            }
+        }
+        if ( txn!=null ) {
+            record.txnId = txn.getId();
+            record.txnDirection = txn.getDirection();
+            record.txnOffsetFlag = txn.getOffsetFlags();
+            record.txnPrice = txn.getPrice();
+            record.txnVolume = txn.getVolume();
+            record.txnTime = txn.getTime();
+        }
+        positionLock.lock();
+        try {
+            record.accountMoney = money;
+            if ( pos!=null ) {
+                record.posExchangeable = pos.getExchangeable().toString();
+                record.posDirection = pos.getDirection();
+                record.posMoney = new long[PosMoney_Count];
+                for(int i=0;i<PosMoney_Count;i++) {
+                    record.posMoney[i] = pos.getMoney(i);
+                }
+                record.posVolumes = new int[PosVolume_Count];
+                for(int i=0;i<PosVolume_Count;i++) {
+                    record.posVolumes[i] = pos.getVolume(i);
+                }
+                List<PositionDetailImpl> details = pos.getDetails();
+                record.posDetails = new ArrayList<>(details.size());
+                for(PositionDetailImpl detail:details) {
+                    TradeJournalRecord.DetailInfo detailInfo = new TradeJournalRecord.DetailInfo();
+                    detailInfo.direction = detail.getDirection();
+                    detailInfo.volume = detail.getVolume();
+                    detailInfo.price = detail.getPrice();
+                    detailInfo.openTime = detail.getOpenTime().toEpochSecond(ZoneOffset.UTC);
+                    detailInfo.today = detail.isToday();
+                    record.posDetails.add(detailInfo);
+                }
+            }
+            //在锁内编码, 保证资金和持仓数据一致
+            journal.append(record);
+        }catch(Throwable t) {
+            logger.error("Account "+getId()+" write journal failed", t);
+        }finally {
+            positionLock.unlock();
+        }
+    }
+
+    /**
+     * 保存报单, 批量异步写入KVStore.
+     * <BR>使用当前线程的JsonStreamWriter直接序列化, 不创建Gson对象树
+     */
+    private void saveOrder(Order order) {
+        if ( kvStore!=null && order instanceof JsonEnabled ) {
+            try{
+                kvStore.put("order."+order.getRef(), JsonStreamWriter.local().value(order).toString());
+            }catch(Throwable t) {
+                logger.error("Account "+getId()+" save order "+order.getRef()+" failed", t);
+            }
+        }
+    }
+
+    /**
+     * 保存成交, 批量异步写入KVStore
+     */
+    private void saveTransaction(Transaction txn) {
+        if ( kvStore!=null && txn instanceof JsonEnabled ) {
+            try{
+                kvStore.put("txn."+txn.getId(), JsonStreamWriter.local().value(txn).toString());
+            }catch(Throwable t) {
+                logger.error("Account "+getId()+" save txn "+txn.getId()+" failed", t);
+            }
+        }
+    }
+
     /**
      * 更新账户资金的持仓盈亏
      */
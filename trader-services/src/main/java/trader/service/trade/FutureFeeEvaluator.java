@@ -119,11 +119,13 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
 
     private Map<Exchangeable, FutureFeeInfo> feeInfos;
     private Properties brokerMarginRatio;
+    private FutureFeeTable feeTable;
 
     public FutureFeeEvaluator(Properties brokerMarginRatio, Map<Exchangeable, FutureFeeInfo> feeInfos)
     {
         this.brokerMarginRatio = brokerMarginRatio;
         this.feeInfos = feeInfos;
+        this.feeTable = new FutureFeeTable(feeInfos);
         for(Exchangeable e:feeInfos.keySet()) {
             long feePriceTick = feeInfos.get(e).priceTick;
             if ( e.getPriceTick()!= feePriceTick)  {
@@ -145,6 +147,10 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
         return this.brokerMarginRatio;
     }
 
+    public FutureFeeTable getFeeTable() {
+        return feeTable;
+    }
+
     @Override
     public long getPriceTick(Exchangeable e) {
         FutureFeeInfo feeInfo = feeInfos.get(e);
@@ -162,81 +168,39 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
 
     @Override
     public long[] compute(Exchangeable e, int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag) {
-        FutureFeeInfo feeInfo = feeInfos.get(e);
-        if ( feeInfo==null ) {
+        int idx = feeTable.indexOf(e);
+        if ( idx<0 ) {
             return null;
         }
-        long turnover = volume*price*feeInfo.getVolumeMultiple();
-        long margin=0, commission=0;
-        {//保证金
-            if ( direction==OrderDirection.Buy ) {
-                double longByMoney = feeInfo.marginRatios[MarginRatio_LongByMoney];
-                double longByVolume = feeInfo.marginRatios[MarginRatio_LongByVolume];
-                long marginByMoney = (long)(longByMoney*turnover);
-                margin = marginByMoney;
-            }else {
-                double shortByMoney = feeInfo.marginRatios[MarginRatio_ShortByMoney];
-                double shortByVolume = feeInfo.marginRatios[MarginRatio_ShortByVolume];
-                long marginByMoney = (long)(shortByMoney*turnover);
-                margin = marginByMoney;
-            }
-        }
-        {//手续费
-            switch(offsetFlag) {
-            case OPEN:
-                long openMoney = (long)( turnover*feeInfo.commissionRatios[CommissionRatio_OpenByMoney] );
-                long openVolume = PriceUtil.price2long( volume*feeInfo.commissionRatios[CommissionRatio_OpenByVolume] );
-                commission = (openMoney+openVolume);
-                break;
-            case CLOSE:
-            case CLOSE_YESTERDAY:
-            case FORCE_CLOSE:
-                long closeMoney = (long)( turnover*feeInfo.commissionRatios[CommissionRatio_CloseByMoney] );
-                long closeVolume = PriceUtil.price2long( volume*feeInfo.commissionRatios[CommissionRatio_CloseByVolume] );
-                commission = closeMoney+closeVolume;
-                break;
-            case CLOSE_TODAY:
-                long closeTodayMoney = (long)( turnover*feeInfo.commissionRatios[CommissionRatio_CloseTodayByMoney] );
-                long closeTodayVolume = PriceUtil.price2long( volume*feeInfo.commissionRatios[CommissionRatio_CloseTodayByVolume] );
-                commission = closeTodayMoney+closeTodayVolume;
-                break;
-            }
-        }
-        margin = PriceUtil.round(margin);
-        commission = PriceUtil.round(commission);
-        turnover = PriceUtil.round(turnover);
-        return  new long[] {margin, commission, turnover};
+        long[] result = new long[3];
+        feeTable.compute(idx, volume, price, direction, offsetFlag, result);
+        return result;
     }
 
     @Override
     public long[] compute(Exchangeable e, int volume, long price, PosDirection direction){
-        FutureFeeInfo feeInfo = feeInfos.get(e);
-        if ( feeInfo==null ) {
+        int idx = feeTable.indexOf(e);
+        if ( idx<0 ) {
             return null;
         }
-        long turnover = volume*price*feeInfo.getVolumeMultiple();
-        long margin = 0;
-        switch(direction) {
-        case Long:
-            {
-                double longByMoney = feeInfo.marginRatios[MarginRatio_LongByMoney];
-                double longByVolume = feeInfo.marginRatios[MarginRatio_LongByVolume];
-                long marginByMoney = (long)(longByMoney*turnover);
-                margin = marginByMoney;
-                break;
-            }
-        default:
-            {
-                double shortByMoney = feeInfo.marginRatios[MarginRatio_ShortByMoney];
-                double shortByVolume = feeInfo.marginRatios[MarginRatio_ShortByVolume];
-                long marginByMoney = (long)(shortByMoney*turnover);
-                margin = marginByMoney;
-                break;
-            }
-        }
-        margin = PriceUtil.round(margin);
-        turnover = PriceUtil.round(turnover);
-        return new long[] {margin, turnover};
+        long[] result = new long[2];
+        feeTable.compute(idx, volume, price, direction, result);
+        return result;
+    }
+
+    @Override
+    public int getFeeIndex(Exchangeable e) {
+        return feeTable.indexOf(e);
+    }
+
+    @Override
+    public void compute(int feeIndex, int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag, long[] result) {
+        feeTable.compute(feeIndex, volume, price, direction, offsetFlag, result);
+    }
+
+    @Override
+    public void compute(int feeIndex, int volume, long price, PosDirection direction, long[] result) {
+        feeTable.compute(feeIndex, volume, price, direction, result);
     }
 
     @Override
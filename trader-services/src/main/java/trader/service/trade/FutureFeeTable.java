@@ -0,0 +1,185 @@
+package trader.service.trade;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.PriceUtil;
+import trader.service.trade.FutureFeeEvaluator.FutureFeeInfo;
+
+/**
+ * 预先编译的期货费率表, 品种按顺序分配连续的位置, 费率保存在按位置索引的数组中.
+ * <BR>计算结果与原有的FutureFeeInfo逐项计算完全相同:
+ * <LI>按金额的费率: (long)(ratio*合约价值), 必须使用double计算才能保持相同的截断结果
+ * <LI>按手数的手续费: PriceUtil.price2long(volume*ratio), 编译时验证1..MAX_EXACT_VOLUME手数范围内等于volume*每手手续费,
+ * 这个范围内使用预先计算的整数系数
+ * <BR>计算过程不分配内存, 线程安全
+ */
+public class FutureFeeTable implements TradeConstants {
+
+    /**
+     * 按手数手续费使用整数系数的最大手数
+     */
+    public static final int MAX_EXACT_VOLUME = 1000;
+
+    private static final int COMMISSION_OPEN = 0;
+    private static final int COMMISSION_CLOSE = 1;
+    private static final int COMMISSION_CLOSE_TODAY = 2;
+    private static final int COMMISSION_COUNT = 3;
+
+    private Map<Exchangeable, Integer> indexes = new HashMap<>();
+    private Exchangeable[] exchangeables;
+    private long[] priceTicks;
+    private long[] volumeMultiples;
+    private double[] longMarginRatios;
+    private double[] shortMarginRatios;
+    /**
+     * [开仓/平仓/平今][品种位置]
+     */
+    private double[][] commissionByMoneyRatios = new double[COMMISSION_COUNT][];
+    private double[][] commissionByVolumeRatios = new double[COMMISSION_COUNT][];
+    /**
+     * 每手手续费, 只在commissionPerVolumeExact为true时使用
+     */
+    private long[][] commissionPerVolumes = new long[COMMISSION_COUNT][];
+    private boolean[][] commissionPerVolumeExact = new boolean[COMMISSION_COUNT][];
+
+    public FutureFeeTable(Map<Exchangeable, FutureFeeInfo> feeInfos) {
+        int count = feeInfos.size();
+        exchangeables = (new TreeSet<>(feeInfos.keySet())).toArray(new Exchangeable[count]);
+        priceTicks = new long[count];
+        volumeMultiples = new long[count];
+        longMarginRatios = new double[count];
+        shortMarginRatios = new double[count];
+        for(int i=0;i<COMMISSION_COUNT;i++) {
+            commissionByMoneyRatios[i] = new double[count];
+            commissionByVolumeRatios[i] = new double[count];
+            commissionPerVolumes[i] = new long[count];
+            commissionPerVolumeExact[i] = new boolean[count];
+        }
+        for(int idx=0;idx<count;idx++) {
+            Exchangeable e = exchangeables[idx];
+            FutureFeeInfo feeInfo = feeInfos.get(e);
+            indexes.put(e, idx);
+            priceTicks[idx] = feeInfo.getPriceTick();
+            volumeMultiples[idx] = feeInfo.getVolumeMultiple();
+            longMarginRatios[idx] = feeInfo.getMarginRatio(MarginRatio_LongByMoney);
+            shortMarginRatios[idx] = feeInfo.getMarginRatio(MarginRatio_ShortByMoney);
+            compileCommission(idx, COMMISSION_OPEN, feeInfo.getCommissionRatio(CommissionRatio_OpenByMoney), feeInfo.getCommissionRatio(CommissionRatio_OpenByVolume));
+            compileCommission(idx, COMMISSION_CLOSE, feeInfo.getCommissionRatio(CommissionRatio_CloseByMoney), feeInfo.getCommissionRatio(CommissionRatio_CloseByVolume));
+            compileCommission(idx, COMMISSION_CLOSE_TODAY, feeInfo.getCommissionRatio(CommissionRatio_CloseTodayByMoney), feeInfo.getCommissionRatio(CommissionRatio_CloseTodayByVolume));
+        }
+    }
+
+    private void compileCommission(int idx, int kind, double byMoney, double byVolume) {
+        commissionByMoneyRatios[kind][idx] = byMoney;
+        commissionByVolumeRatios[kind][idx] = byVolume;
+        long perVolume = PriceUtil.price2long(byVolume);
+        boolean exact = true;
+        for(int volume=1;volume<=MAX_EXACT_VOLUME;volume++) {
+            if ( PriceUtil.price2long(volume*byVolume)!=volume*perVolume ) {
+                exact = false;
+                break;
+            }
+        }
+        commissionPerVolumes[kind][idx] = perVolume;
+        commissionPerVolumeExact[kind][idx] = exact;
+    }
+
+    public int size() {
+        return exchangeables.length;
+    }
+
+    /**
+     * 品种在费率表中的位置
+     *
+     * @return -1 如果没有费率信息
+     */
+    public int indexOf(Exchangeable e) {
+        Integer idx = indexes.get(e);
+        if ( idx==null ) {
+            return -1;
+        }
+        return idx;
+    }
+
+    public Exchangeable getExchangeable(int idx) {
+        return exchangeables[idx];
+    }
+
+    public long getPriceTick(int idx) {
+        return priceTicks[idx];
+    }
+
+    public long getVolumeMultiple(int idx) {
+        return volumeMultiples[idx];
+    }
+
+    /**
+     * 合约价值
+     */
+    public long value(int idx, int volume, long price) {
+        return PriceUtil.round(volume*price*volumeMultiples[idx]);
+    }
+
+    /**
+     * 保证金
+     *
+     * @param isLong true 多仓/买入开仓保证金, false 空仓/卖出开仓保证金
+     */
+    public long margin(int idx, int volume, long price, boolean isLong) {
+        long turnover = volume*price*volumeMultiples[idx];
+        double ratio = isLong?longMarginRatios[idx]:shortMarginRatios[idx];
+        return PriceUtil.round((long)(ratio*turnover));
+    }
+
+    /**
+     * 手续费
+     */
+    public long commission(int idx, int volume, long price, OrderOffsetFlag offsetFlag) {
+        int kind = COMMISSION_OPEN;
+        switch(offsetFlag) {
+        case OPEN:
+            kind = COMMISSION_OPEN;
+            break;
+        case CLOSE:
+        case CLOSE_YESTERDAY:
+        case FORCE_CLOSE:
+            kind = COMMISSION_CLOSE;
+            break;
+        case CLOSE_TODAY:
+            kind = COMMISSION_CLOSE_TODAY;
+            break;
+        default:
+            return 0;
+        }
+        long turnover = volume*price*volumeMultiples[idx];
+        long byMoney = (long)( turnover*commissionByMoneyRatios[kind][idx] );
+        long byVolume = 0;
+        if ( volume>=1 && volume<=MAX_EXACT_VOLUME && commissionPerVolumeExact[kind][idx] ) {
+            byVolume = volume*commissionPerVolumes[kind][idx];
+        } else {
+            byVolume = PriceUtil.price2long( volume*commissionByVolumeRatios[kind][idx] );
+        }
+        return PriceUtil.round(byMoney+byVolume);
+    }
+
+    /**
+     * 计算报单/成交的保证金, 手续费和合约价值, 结果写入result: 0 保证金, 1 手续费, 2 合约价值
+     */
+    public void compute(int idx, int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag, long[] result) {
+        result[0] = margin(idx, volume, price, direction==OrderDirection.Buy);
+        result[1] = commission(idx, volume, price, offsetFlag);
+        result[2] = value(idx, volume, price);
+    }
+
+    /**
+     * 计算持仓的保证金和合约价值, 结果写入result: 0 保证金, 1 合约价值
+     */
+    public void compute(int idx, int volume, long price, PosDirection direction, long[] result) {
+        result[0] = margin(idx, volume, price, direction==PosDirection.Long);
+        result[1] = value(idx, volume, price);
+    }
+
+}
@@ -0,0 +1,62 @@
+package trader.service.trade;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.event.AsyncEventProcessor;
+import trader.service.event.AsyncEventService;
+import trader.service.md.MarketData;
+
+/**
+ * 行情线程到交易事件线程的行情交接.
+ * <BR>行情线程不直接更新账户, 持仓盈亏只在交易事件线程(AsyncEventService.FILTER_CHAIN_TXN)中更新;
+ * 下单冻结等报单路径的修改可能在调用线程中执行, 与交易事件线程之间使用AccountImpl.positionLock互斥.
+ * <LI>行情线程把合约的最新行情放入该合约的交接槽, 槽从空变为非空时发布一个交易事件
+ * <LI>交易事件线程取出并清空交接槽, 使用取到的最新行情更新账户
+ * <BR>行情突发时每个合约最多只有一个排队的交易事件, 中间的行情被合并, 成交回报不会排在大量行情之后
+ */
+class MarketDataHandoff implements AsyncEventProcessor {
+
+    static final int DATA_TYPE_MARKETDATA = 0XFFFF;
+
+    private AsyncEventService asyncEventService;
+    private Consumer<MarketData> consumer;
+    private ConcurrentHashMap<Exchangeable, AtomicReference<MarketData>> slots = new ConcurrentHashMap<>();
+
+    /**
+     * @param consumer 在交易事件线程中更新账户
+     */
+    MarketDataHandoff(AsyncEventService asyncEventService, Consumer<MarketData> consumer){
+        this.asyncEventService = asyncEventService;
+        this.consumer = consumer;
+    }
+
+    /**
+     * 在行情线程中调用
+     */
+    public void onMarketData(MarketData md) {
+        AtomicReference<MarketData> slot = slots.get(md.instrumentId);
+        if ( slot==null ) {
+            slot = slots.computeIfAbsent(md.instrumentId, (Exchangeable e)->{
+                return new AtomicReference<>();
+            });
+        }
+        if ( slot.getAndSet(md)==null ) {
+            asyncEventService.publishTxnEvent(this, DATA_TYPE_MARKETDATA, slot, null);
+        }
+    }
+
+    /**
+     * 在交易事件线程中调用
+     */
+    @Override
+    public void process(int dataType, Object data, Object data2) {
+        MarketData md = ((AtomicReference<MarketData>)data).getAndSet(null);
+        if ( md!=null ) {
+            consumer.accept(md);
+        }
+    }
+
+}
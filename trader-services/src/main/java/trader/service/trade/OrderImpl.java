@@ -9,10 +9,11 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import trader.common.exchangeable.Exchangeable;
-import trader.common.util.JsonEnabled;
+import trader.common.util.JsonStreamEnabled;
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.JsonUtil;
 
-public class OrderImpl implements Order, JsonEnabled {
+public class OrderImpl implements Order, JsonStreamEnabled {
 
     protected Exchangeable exchangeable;
     protected String ref;
@@ -191,6 +192,39 @@ public class OrderImpl implements Order, JsonEnabled {
         return json;
     }
 
+    @Override
+    public void toJson(JsonStreamWriter writer) {
+        writer.beginObject()
+            .name("exchangeable").value(exchangeable.id())
+            .name("ref").value(ref)
+            .name("direction").value(direction.name())
+            .name("limitPrice").value(limitPrice)
+            .name("priceType").value(priceType.name())
+            .name("offsetFlag").value(offsetFlag.name())
+            .name("volumeCondition").value(volumeCondition.name())
+            .name("lastState").value(lastState)
+            .name("stateTuples").beginArray();
+        for(int i=0;i<stateTuples.size();i++) {
+            writer.value(stateTuples.get(i));
+        }
+        writer.endArray();
+        if ( !attrs.isEmpty() ) {
+            writer.name("attrs").value(attrs);
+        }
+        writer.name("money");
+        TradeConstants.odrMoney2json(writer, money);
+        writer.name("volumes");
+        TradeConstants.odrVolume2json(writer, volumes);
+        if( !transactions.isEmpty()) {
+            writer.name("txnIds").beginArray();
+            for(int i=0;i<transactions.size();i++) {
+                writer.value(transactions.get(i).getId());
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
     @Override
     public String toString() {
         return toJson().toString();
@@ -25,7 +25,7 @@ public class OrderRefGenImpl implements OrderRefGen {
     public OrderRefGenImpl(BeansContainer beansContainer) {
         KVStoreService kvStoreService = beansContainer.getBean(KVStoreService.class);
         key = "orderRef";
-        kvStore = kvStoreService.getStore(null);
+        kvStore = kvStoreService.getBatchedStore(null);
         String savedRefId = kvStore.getAsString(key);
         if ( !StringUtil.isEmpty(savedRefId) ) {
             refId.set(ConversionUtil.toInt(savedRefId, true));
@@ -0,0 +1,300 @@
+package trader.service.trade;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.config.ConfigUtil;
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.JsonEnabled;
+import trader.common.util.JsonUtil;
+import trader.service.ServiceErrorConstants;
+import trader.service.tradlet.Playbook;
+
+/**
+ * 账户的报单流控和风控检查.
+ * <BR>报单和撤单分别使用账户级和合约级的令牌桶限速, 合约每日撤单次数有上限;
+ * 开仓报单还检查是否与账户自己的挂单自成交, 以及同一交易剧本在时间窗口内是否重复;
+ * 平仓报单只做限速, 避免止损和强平被拦截. 改单按撤单计算.
+ * <BR>时间使用MarketTimeService, 回测时与模拟时间一致
+ */
+public class OrderThrottle implements TradeConstants, ServiceErrorConstants, JsonEnabled {
+
+    public static final String ITEM_THROTTLE = "/TradeService/throttle";
+    /**
+     * 账户每秒报单数, 0表示不限制
+     */
+    public static final String ITEM_INSERT_RATE = ITEM_THROTTLE+"/insertRate";
+    public static final String ITEM_INSERT_BURST = ITEM_THROTTLE+"/insertBurst";
+    /**
+     * 单个合约每秒报单数
+     */
+    public static final String ITEM_INSTRUMENT_INSERT_RATE = ITEM_THROTTLE+"/instrumentInsertRate";
+    public static final String ITEM_INSTRUMENT_INSERT_BURST = ITEM_THROTTLE+"/instrumentInsertBurst";
+    /**
+     * 账户每秒撤单数
+     */
+    public static final String ITEM_CANCEL_RATE = ITEM_THROTTLE+"/cancelRate";
+    public static final String ITEM_CANCEL_BURST = ITEM_THROTTLE+"/cancelBurst";
+    /**
+     * 单个合约每秒撤单数
+     */
+    public static final String ITEM_INSTRUMENT_CANCEL_RATE = ITEM_THROTTLE+"/instrumentCancelRate";
+    public static final String ITEM_INSTRUMENT_CANCEL_BURST = ITEM_THROTTLE+"/instrumentCancelBurst";
+    /**
+     * 单个合约每个交易日撤单次数上限
+     */
+    public static final String ITEM_DAILY_CANCEL_LIMIT = ITEM_THROTTLE+"/dailyCancelLimit";
+    /**
+     * 重复报单检查时间窗口, 毫秒
+     */
+    public static final String ITEM_DUPLICATE_WINDOW = ITEM_THROTTLE+"/duplicateWindow";
+    /**
+     * 是否检查自成交
+     */
+    public static final String ITEM_SELF_CROSS_CHECK = ITEM_THROTTLE+"/selfCrossCheck";
+
+    /**
+     * 拒绝原因
+     */
+    public static enum Reject{
+        InsertRate
+        ,InstrumentInsertRate
+        ,CancelRate
+        ,InstrumentCancelRate
+        ,DailyCancelLimit
+        ,SelfCross
+        ,Duplicate
+    }
+
+    /**
+     * 所有账户的累计拒绝次数, 供统计使用
+     */
+    private static final AtomicLong[] totalRejects = new AtomicLong[Reject.values().length];
+    static {
+        for(int i=0;i<totalRejects.length;i++) {
+            totalRejects[i] = new AtomicLong();
+        }
+    }
+
+    public static long getTotalRejects(Reject reject) {
+        return totalRejects[reject.ordinal()].get();
+    }
+
+    /**
+     * 令牌桶, 按时间补充令牌
+     */
+    static class TokenBucket {
+        private final double ratePerMillis;
+        private final double capacity;
+        private double tokens;
+        private long lastMillis;
+
+        TokenBucket(double ratePerSecond, int burst, long currMillis){
+            this.ratePerMillis = ratePerSecond/1000;
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+            this.lastMillis = currMillis;
+        }
+
+        boolean isEnabled() {
+            return ratePerMillis>0;
+        }
+
+        boolean hasToken(long currMillis) {
+            if ( !isEnabled() ) {
+                return true;
+            }
+            if ( currMillis>lastMillis ) {
+                tokens = Math.min(capacity, tokens+(currMillis-lastMillis)*ratePerMillis);
+                lastMillis = currMillis;
+            }
+            return tokens>=1;
+        }
+
+        void take() {
+            if ( isEnabled() ) {
+                tokens -= 1;
+            }
+        }
+    }
+
+    private String accountId;
+    private MarketTimeService mtService;
+    private double instrumentInsertRate;
+    private int instrumentInsertBurst;
+    private double instrumentCancelRate;
+    private int instrumentCancelBurst;
+    private int dailyCancelLimit;
+    private long duplicateWindow;
+    private boolean selfCrossCheck;
+
+    private TokenBucket insertBucket;
+    private TokenBucket cancelBucket;
+    private Map<Exchangeable, TokenBucket> instrumentInsertBuckets = new HashMap<>();
+    private Map<Exchangeable, TokenBucket> instrumentCancelBuckets = new HashMap<>();
+    private LocalDate tradingDay;
+    private Map<Exchangeable, Integer> dailyCancels = new HashMap<>();
+    /**
+     * 最近报单: 报单特征 -> 报单时间
+     */
+    private Map<String, Long> recentOrders = new HashMap<>();
+    private long[] rejects = new long[Reject.values().length];
+
+    public OrderThrottle(String accountId, MarketTimeService mtService) {
+        this.accountId = accountId;
+        this.mtService = mtService;
+        long currMillis = mtService.currentTimeMillis();
+        insertBucket = new TokenBucket(ConfigUtil.getDouble(ITEM_INSERT_RATE, 20), ConfigUtil.getInt(ITEM_INSERT_BURST, 20), currMillis);
+        cancelBucket = new TokenBucket(ConfigUtil.getDouble(ITEM_CANCEL_RATE, 20), ConfigUtil.getInt(ITEM_CANCEL_BURST, 20), currMillis);
+        instrumentInsertRate = ConfigUtil.getDouble(ITEM_INSTRUMENT_INSERT_RATE, 5);
+        instrumentInsertBurst = ConfigUtil.getInt(ITEM_INSTRUMENT_INSERT_BURST, 10);
+        instrumentCancelRate = ConfigUtil.getDouble(ITEM_INSTRUMENT_CANCEL_RATE, 5);
+        instrumentCancelBurst = ConfigUtil.getInt(ITEM_INSTRUMENT_CANCEL_BURST, 10);
+        dailyCancelLimit = ConfigUtil.getInt(ITEM_DAILY_CANCEL_LIMIT, 400);
+        duplicateWindow = ConfigUtil.getLong(ITEM_DUPLICATE_WINDOW, 500);
+        selfCrossCheck = ConfigUtil.getBoolean(ITEM_SELF_CROSS_CHECK, true);
+    }
+
+    public long getRejects(Reject reject) {
+        return rejects[reject.ordinal()];
+    }
+
+    /**
+     * 报单前检查, 通过后占用令牌
+     *
+     * @param orders 账户当前的报单
+     */
+    public synchronized void checkInsert(OrderBuilder builder, Collection<? extends Order> orders) throws AppException
+    {
+        long currMillis = mtService.currentTimeMillis();
+        Exchangeable e = builder.getExchangeable();
+        //平仓报单不检查重复和自成交
+        boolean open = builder.getOffsetFlag()==OrderOffsetFlag.OPEN;
+        String orderKey = null;
+        if ( open && duplicateWindow>0 ) {
+            //报单特征包含所属的交易剧本, 不同剧本的相同报单不算重复
+            orderKey = builder.getAttrs().getProperty(Playbook.ATTR_PLAYBOOK_ID, "")+"|"+e+"|"+builder.getDirection()+"|"+builder.getPriceType()+"|"+builder.getLimitPrice()+"|"+builder.getVolume();
+            pruneRecentOrders(currMillis);
+            if ( recentOrders.containsKey(orderKey) ) {
+                reject(Reject.Duplicate, ERRCODE_TRADE_DUPLICATE_ORDER, builder.toString());
+            }
+        }
+        if ( open && selfCrossCheck ) {
+            Order crossOrder = findCrossOrder(builder, orders);
+            if ( crossOrder!=null ) {
+                reject(Reject.SelfCross, ERRCODE_TRADE_SELF_CROSS, builder+" crosses pending order "+crossOrder.getRef());
+            }
+        }
+        TokenBucket instrumentBucket = instrumentInsertBuckets.get(e);
+        if ( instrumentBucket==null ) {
+            instrumentBucket = new TokenBucket(instrumentInsertRate, instrumentInsertBurst, currMillis);
+            instrumentInsertBuckets.put(e, instrumentBucket);
+        }
+        if ( !insertBucket.hasToken(currMillis) ) {
+            reject(Reject.InsertRate, ERRCODE_TRADE_THROTTLED, builder.toString());
+        }
+        if ( !instrumentBucket.hasToken(currMillis) ) {
+            reject(Reject.InstrumentInsertRate, ERRCODE_TRADE_THROTTLED, builder.toString());
+        }
+        insertBucket.take();
+        instrumentBucket.take();
+        if ( orderKey!=null ) {
+            recentOrders.put(orderKey, currMillis);
+        }
+    }
+
+    /**
+     * 撤单或改单前检查, 通过后占用令牌和当日撤单次数
+     */
+    public synchronized void checkCancel(Order order) throws AppException
+    {
+        long currMillis = mtService.currentTimeMillis();
+        Exchangeable e = order.getExchangeable();
+        LocalDate currTradingDay = mtService.getTradingDay();
+        if ( currTradingDay!=null && !currTradingDay.equals(tradingDay) ) {
+            tradingDay = currTradingDay;
+            dailyCancels.clear();
+        }
+        Integer cancels = dailyCancels.get(e);
+        if ( cancels==null ) {
+            cancels = 0;
+        }
+        if ( dailyCancelLimit>0 && cancels>=dailyCancelLimit ) {
+            reject(Reject.DailyCancelLimit, ERRCODE_TRADE_THROTTLED, "order "+order.getRef()+" cancel count "+cancels);
+        }
+        TokenBucket instrumentBucket = instrumentCancelBuckets.get(e);
+        if ( instrumentBucket==null ) {
+            instrumentBucket = new TokenBucket(instrumentCancelRate, instrumentCancelBurst, currMillis);
+            instrumentCancelBuckets.put(e, instrumentBucket);
+        }
+        if ( !cancelBucket.hasToken(currMillis) ) {
+            reject(Reject.CancelRate, ERRCODE_TRADE_THROTTLED, "order "+order.getRef());
+        }
+        if ( !instrumentBucket.hasToken(currMillis) ) {
+            reject(Reject.InstrumentCancelRate, ERRCODE_TRADE_THROTTLED, "order "+order.getRef());
+        }
+        cancelBucket.take();
+        instrumentBucket.take();
+        dailyCancels.put(e, cancels+1);
+    }
+
+    @Override
+    public synchronized JsonElement toJson() {
+        JsonObject json = new JsonObject();
+        JsonObject rejectsJson = new JsonObject();
+        for(Reject reject:Reject.values()) {
+            rejectsJson.addProperty(reject.name(), rejects[reject.ordinal()]);
+        }
+        json.add("rejects", rejectsJson);
+        json.add("dailyCancels", JsonUtil.object2json(dailyCancels));
+        return json;
+    }
+
+    /**
+     * 查找与报单价格交叉的反方向挂单
+     */
+    private static Order findCrossOrder(OrderBuilder builder, Collection<? extends Order> orders) {
+        Exchangeable e = builder.getExchangeable();
+        for(Order order:orders) {
+            if ( !order.getExchangeable().equals(e)
+                    || order.getDirection()==builder.getDirection()
+                    || !order.getStateTuple().getState().isRevocable() )
+            {
+                continue;
+            }
+            if ( builder.getPriceType()!=OrderPriceType.LimitPrice || order.getPriceType()!=OrderPriceType.LimitPrice ) {
+                return order;
+            }
+            if ( builder.getDirection()==OrderDirection.Buy && builder.getLimitPrice()>=order.getLimitPrice() ) {
+                return order;
+            }
+            if ( builder.getDirection()==OrderDirection.Sell && builder.getLimitPrice()<=order.getLimitPrice() ) {
+                return order;
+            }
+        }
+        return null;
+    }
+
+    private void pruneRecentOrders(long currMillis) {
+        for(Iterator<Long> it=recentOrders.values().iterator(); it.hasNext();) {
+            if ( currMillis-it.next()>=duplicateWindow ) {
+                it.remove();
+            }
+        }
+    }
+
+    private void reject(Reject reject, int errorCode, String message) throws AppException {
+        rejects[reject.ordinal()]++;
+        totalRejects[reject.ordinal()].incrementAndGet();
+        throw new AppException(errorCode, "Account "+accountId+" order rejected by "+reject+" : "+message);
+    }
+
+}
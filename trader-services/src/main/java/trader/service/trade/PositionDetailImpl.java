@@ -6,11 +6,12 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import trader.common.util.DateUtil;
-import trader.common.util.JsonEnabled;
+import trader.common.util.JsonStreamEnabled;
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.PriceUtil;
 import trader.service.trade.TradeConstants.PosDirection;
 
-public class PositionDetailImpl implements PositionDetail, Comparable<PositionDetailImpl>, JsonEnabled {
+public class PositionDetailImpl implements PositionDetail, Comparable<PositionDetailImpl>, JsonStreamEnabled {
 
     private PosDirection direction;
     private int volume;
@@ -81,4 +82,22 @@ public class PositionDetailImpl implements PositionDetail, Comparable<PositionDe
         return json;
     }
 
+    @Override
+    public void toJson(JsonStreamWriter writer) {
+        toJson(writer, direction, volume, price, openTime, today);
+    }
+
+    /**
+     * 持仓明细按列保存时, 不创建对象直接输出
+     */
+    static void toJson(JsonStreamWriter writer, PosDirection direction, int volume, long price, LocalDateTime openTime, boolean today) {
+        writer.beginObject()
+            .name("direciton").value(direction.name())
+            .name("volume").value(volume)
+            .name("price").priceValue(price)
+            .name("openTime").value(openTime)
+            .name("today").value(today)
+            .endObject();
+    }
+
 }
@@ -0,0 +1,162 @@
+package trader.service.trade;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import trader.service.trade.TradeConstants.PosDirection;
+
+/**
+ * 持仓明细列表, 按开仓时间顺序使用基本类型数组保存, 并增量维护多/空方向的持仓量和开仓成本.
+ * <BR>非线程安全
+ */
+class PositionDetailList {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final PosDirection[] DIRECTIONS = PosDirection.values();
+
+    private static final int DIR_LONG = 0;
+    private static final int DIR_SHORT = 1;
+
+    private int size;
+    private byte[] directions = new byte[INITIAL_CAPACITY];
+    private int[] volumes = new int[INITIAL_CAPACITY];
+    private long[] prices = new long[INITIAL_CAPACITY];
+    /**
+     * 开仓时间, LocalDateTime按UTC转换的epoch millis
+     */
+    private long[] openTimes = new long[INITIAL_CAPACITY];
+    private boolean[] todays = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * 按方向汇总: 持仓量, 今仓量, 开仓成本(价格*数量)
+     */
+    private int[] volumeSums = new int[2];
+    private int[] todayVolumeSums = new int[2];
+    private long[] costSums = new long[2];
+
+    public int size() {
+        return size;
+    }
+
+    public PosDirection getDirection(int idx) {
+        return DIRECTIONS[directions[idx]];
+    }
+
+    public int getVolume(int idx) {
+        return volumes[idx];
+    }
+
+    public long getPrice(int idx) {
+        return prices[idx];
+    }
+
+    public boolean isToday(int idx) {
+        return todays[idx];
+    }
+
+    public LocalDateTime getOpenTime(int idx) {
+        long millis = openTimes[idx];
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), Math.floorMod(millis, 1000)*1000000, ZoneOffset.UTC);
+    }
+
+    /**
+     * 方向汇总的持仓量
+     */
+    public int getVolume(PosDirection direction) {
+        return volumeSums[dirIndex(direction)];
+    }
+
+    public int getTodayVolume(PosDirection direction) {
+        return todayVolumeSums[dirIndex(direction)];
+    }
+
+    public int getYdVolume(PosDirection direction) {
+        int dirIdx = dirIndex(direction);
+        return volumeSums[dirIdx]-todayVolumeSums[dirIdx];
+    }
+
+    /**
+     * 方向汇总的开仓成本: sum(价格*数量)
+     */
+    public long getCost(PosDirection direction) {
+        return costSums[dirIndex(direction)];
+    }
+
+    /**
+     * 在最后增加持仓明细
+     */
+    public void add(PosDirection direction, int volume, long price, LocalDateTime openTime, boolean today) {
+        if ( size==volumes.length ) {
+            int capacity = size*2;
+            directions = Arrays.copyOf(directions, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            openTimes = Arrays.copyOf(openTimes, capacity);
+            todays = Arrays.copyOf(todays, capacity);
+        }
+        directions[size] = (byte)direction.ordinal();
+        volumes[size] = volume;
+        prices[size] = price;
+        openTimes[size] = openTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        todays[size] = today;
+        size++;
+        updateSums(size-1, volume);
+    }
+
+    public void add(PositionDetailImpl detail) {
+        add(detail.getDirection(), detail.getVolume(), detail.getPrice(), detail.getOpenTime(), detail.isToday());
+    }
+
+    /**
+     * 修改持仓明细的数量
+     */
+    public void addVolume(int idx, int toadd) {
+        volumes[idx] += toadd;
+        updateSums(idx, toadd);
+    }
+
+    public void remove(int idx) {
+        updateSums(idx, -1*volumes[idx]);
+        int toMove = size-idx-1;
+        if ( toMove>0 ) {
+            System.arraycopy(directions, idx+1, directions, idx, toMove);
+            System.arraycopy(volumes, idx+1, volumes, idx, toMove);
+            System.arraycopy(prices, idx+1, prices, idx, toMove);
+            System.arraycopy(openTimes, idx+1, openTimes, idx, toMove);
+            System.arraycopy(todays, idx+1, todays, idx, toMove);
+        }
+        size--;
+    }
+
+    public PositionDetailImpl get(int idx) {
+        return new PositionDetailImpl(getDirection(idx), volumes[idx], prices[idx], getOpenTime(idx), todays[idx]);
+    }
+
+    public List<PositionDetailImpl> toList(){
+        List<PositionDetailImpl> result = new ArrayList<>(size);
+        for(int i=0;i<size;i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    private void updateSums(int idx, int volume) {
+        int dirIdx = dirIndex(directions[idx]);
+        volumeSums[dirIdx] += volume;
+        if ( todays[idx] ) {
+            todayVolumeSums[dirIdx] += volume;
+        }
+        costSums[dirIdx] += prices[idx]*volume;
+    }
+
+    private static int dirIndex(PosDirection direction) {
+        return direction==PosDirection.Long?DIR_LONG:DIR_SHORT;
+    }
+
+    private static int dirIndex(byte direction) {
+        return dirIndex(DIRECTIONS[direction]);
+    }
+
+}
@@ -4,9 +4,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -17,20 +15,22 @@ import com.google.gson.JsonObject;
 
 import trader.common.exchangeable.Exchangeable;
 import trader.common.util.DateUtil;
+import trader.common.util.JsonStreamEnabled;
+import trader.common.util.JsonStreamWriter;
 import trader.common.util.JsonUtil;
 import trader.service.md.MarketData;
 
 /**
  * 持仓的本地实现, 负责计算持仓盈亏等数据
  */
-public class PositionImpl implements Position, TradeConstants {
+public class PositionImpl implements Position, JsonStreamEnabled, TradeConstants {
     private Logger logger;
-    private AccountImpl account;
+    private Account account;
     private Exchangeable exchangeable;
     private PosDirection direction;
     private long[] money = new long[PosMoney_Count];
     private int[] volumes = new int[PosVolume_Count];
-    private LinkedList<PositionDetailImpl> details = new LinkedList<>();
+    private PositionDetailList details = new PositionDetailList();
 
     /**
      * 当前在途报单
@@ -39,16 +39,33 @@ public class PositionImpl implements Position, TradeConstants {
 
     private long lastPrice;
 
-    public PositionImpl(AccountImpl account, Exchangeable e, PosDirection direction, long[] money, int[] volumes, List<PositionDetailImpl> details) {
+    /**
+     * 多/空持仓按开仓价格计算的合约价值, 持仓明细变化后重新计算
+     */
+    private long longOpenValue;
+    private long shortOpenValue;
+    private boolean openValueValid;
+
+    /**
+     * 缓存的费率位置, 账户重新加载费率后更新
+     */
+    private TxnFeeEvaluator feeEvaluator;
+    private int feeIndex = -1;
+    private long[] marginValue = new long[2];
+
+    public PositionImpl(Account account, Exchangeable e, PosDirection direction, long[] money, int[] volumes, List<PositionDetailImpl> details) {
         this(account, e);
         this.direction = direction;
         this.money = money;
         this.volumes = volumes;
-        this.details.addAll(details);
-        Collections.sort(this.details);
+        List<PositionDetailImpl> sortedDetails = new ArrayList<>(details);
+        Collections.sort(sortedDetails);
+        for(PositionDetailImpl detail:sortedDetails) {
+            this.details.add(detail);
+        }
     }
 
-    public PositionImpl(AccountImpl account, Exchangeable e) {
+    public PositionImpl(Account account, Exchangeable e) {
         this.account = account;
         this.exchangeable = e;
         direction = PosDirection.Net;
@@ -93,13 +110,37 @@ public class PositionImpl implements Position, TradeConstants {
 
         json.add("money", TradeConstants.posMoney2json(money));
         json.add("volumes", TradeConstants.posVolume2json(volumes));
-        json.add("details", JsonUtil.object2json(details));
+        json.add("details", JsonUtil.object2json(details.toList()));
         if (!activeOrders.isEmpty()) {
             json.add("activeOrders", JsonUtil.object2json(activeOrders.keySet()));
         }
         return json;
     }
 
+    @Override
+    public void toJson(JsonStreamWriter writer) {
+        writer.beginObject()
+            .name("exchangeable").value(exchangeable.toString())
+            .name("direction").value(direction.name())
+            .name("money");
+        TradeConstants.posMoney2json(writer, money);
+        writer.name("volumes");
+        TradeConstants.posVolume2json(writer, volumes);
+        writer.name("details").beginArray();
+        for(int i=0;i<details.size();i++) {
+            PositionDetailImpl.toJson(writer, details.getDirection(i), details.getVolume(i), details.getPrice(i), details.getOpenTime(i), details.isToday(i));
+        }
+        writer.endArray();
+        if (!activeOrders.isEmpty()) {
+            writer.name("activeOrders").beginArray();
+            for(String orderRef:activeOrders.keySet()) {
+                writer.value(orderRef);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
     @Override
     public String toString() {
         return toJson().toString();
@@ -140,6 +181,17 @@ public class PositionImpl implements Position, TradeConstants {
         return result;
     }
 
+    List<PositionDetailImpl> getDetails(){
+        return details.toList();
+    }
+
+    /**
+     * 加入在途报单, 不重新计算冻结的资金和仓位
+     */
+    void restoreActiveOrder(OrderImpl order) {
+        activeOrders.put(order.getRef(), order);
+    }
+
     /**
      * 本地计算和冻结仓位. 非线程安全
      */
@@ -214,6 +266,7 @@ public class PositionImpl implements Position, TradeConstants {
             addVolume(PosVolume_OpenVolume, txnVolume);
             //增加持仓明细
             details.add( txn2detail(txn) );
+            openValueValid = false;
             //解除保证金冻结, 增加保证金占用
             if ( txn.getDirection()==OrderDirection.Buy ) {
                 addMoney(PosMoney_LongFrozenAmount, -1*txnUnfrozenMargin);
@@ -233,6 +286,7 @@ public class PositionImpl implements Position, TradeConstants {
             }
             //删除持仓明细
             List<PositionDetailImpl> closedDetails = removeDetails(txn);
+            openValueValid = false;
             txn.setClosedDetails((List)closedDetails);
             //降低保证金占用, 计算仓位实现盈利
             computeTxnProfit(txn, txnFees, closedDetails);
@@ -261,6 +315,7 @@ public class PositionImpl implements Position, TradeConstants {
             break;
         case CLOSE_YESTERDAY:
             detailToRemove = 2;
+            break;
         case FORCE_CLOSE:
         case CLOSE:
             detailToRemove = 0;
@@ -269,32 +324,35 @@ public class PositionImpl implements Position, TradeConstants {
         //卖--删除多仓
         int volumeLeft = txn.getVolume();
         PosDirection posDir = txn.getDirection().toPosDirection().oppose();
-        for(Iterator<PositionDetailImpl> it = details.iterator(); it.hasNext();) {
-            PositionDetailImpl detail = it.next();
+        for(int i=0;i<details.size();) {
             boolean accepted = false;
             switch(detailToRemove) {
             case 0:
                 accepted = true;
                 break;
             case 1:
-                accepted = detail.isToday();
+                accepted = details.isToday(i);
                 break;
             case 2:
-                accepted = !detail.isToday();
+                accepted = !details.isToday(i);
                 break;
             }
-            if ( posDir==detail.getDirection() && accepted ) {
-                if ( volumeLeft >= detail.getVolume() ) {
+            if ( posDir==details.getDirection(i) && accepted ) {
+                int detailVolume = details.getVolume(i);
+                if ( volumeLeft >= detailVolume ) {
                     //可以完整删除一个持仓
-                    volumeLeft -= detail.getVolume();
-                    result.add(detail);
-                    it.remove();
+                    volumeLeft -= detailVolume;
+                    result.add(details.get(i));
+                    details.remove(i);
                 } else {
                     //需要部分删除
-                    detail.addVolume(-1*volumeLeft);
-                    result.add(new PositionDetailImpl(detail, volumeLeft));
+                    result.add(new PositionDetailImpl(details.get(i), volumeLeft));
+                    details.addVolume(i, -1*volumeLeft);
                     volumeLeft = 0;
+                    i++;
                 }
+            } else {
+                i++;
             }
             if ( volumeLeft<=0 ) {
                 break;
@@ -311,13 +369,13 @@ public class PositionImpl implements Position, TradeConstants {
      */
     private void computeTxnProfit(Transaction txn, long txnFees[], List<PositionDetailImpl> closedDetails)
     {
-        TxnFeeEvaluator feeEval = account.getFeeEvaluator();
+        TxnFeeEvaluator feeEval = getFeeEvaluator();
 
         long closeAmount = txnFees[2];
         long openAmount = 0;
         for(PositionDetailImpl detail:closedDetails) {
-            long detailFees[] = feeEval.compute(exchangeable, detail.getVolume(), detail.getPrice(), detail.getDirection());
-            openAmount += detailFees[1];
+            feeEval.compute(feeIndex, detail.getVolume(), detail.getPrice(), detail.getDirection(), marginValue);
+            openAmount += marginValue[1];
         }
         long txnProfit = 0;
         if ( txn.getDirection()==OrderDirection.Sell) {
@@ -331,52 +389,39 @@ public class PositionImpl implements Position, TradeConstants {
     }
 
     /**
-     * 计算持仓盈亏
+     * 计算持仓盈亏.
+     * <BR>合约价值和价格*数量成正比, 持仓盈亏按多/空方向汇总的持仓量和开仓成本计算, 不需要遍历持仓明细
      */
     private void computePositionProfit(boolean updateVolumes) {
-        TxnFeeEvaluator feeEval = account.getFeeEvaluator();
-        int longPos = 0, shortPos = 0;
-        int longTodayPos = 0, shortTodayPos=0;
-        int longYdPos = 0, shortYdPos = 0;
+        TxnFeeEvaluator feeEval = getFeeEvaluator();
+        long[] marginValue = this.marginValue;
+        int longPos = details.getVolume(PosDirection.Long);
+        int shortPos = details.getVolume(PosDirection.Short);
+        if ( !openValueValid ) {
+            longOpenValue = 0;
+            if ( longPos!=0 ) {
+                feeEval.compute(feeIndex, 1, details.getCost(PosDirection.Long), PosDirection.Long, marginValue);
+                longOpenValue = marginValue[1];
+            }
+            shortOpenValue = 0;
+            if ( shortPos!=0 ) {
+                feeEval.compute(feeIndex, 1, details.getCost(PosDirection.Short), PosDirection.Short, marginValue);
+                shortOpenValue = marginValue[1];
+            }
+            openValueValid = true;
+        }
         long posProfit = 0;
-        long openCost= 0;
         long longUseMargin=0;
         long shortUseMargin=0;
-        for(int i=0;i<details.size();i++) {
-            PositionDetail detail = details.get(i);
-            PosDirection detailDirection = detail.getDirection();
-            int detailVolume = detail.getVolume();
-            long[] lastMarginValue = feeEval.compute(exchangeable, detailVolume, lastPrice, detailDirection);
-            long posValue = feeEval.compute(exchangeable, detailVolume, detail.getPrice(), detailDirection)[1];
-
-            long valueDiff = lastMarginValue[1]-posValue;
-            long valueDiffUnit = 1;
-            if ( detailDirection==PosDirection.Short ) {
-                valueDiffUnit = -1;
-                shortUseMargin += lastMarginValue[0];;
-            }else{
-                longUseMargin += lastMarginValue[0];
-            }
-            posProfit += valueDiff*valueDiffUnit;
-            if ( updateVolumes ) {
-                openCost += detail.getPrice()*detail.getVolume();;
-                if ( detail.getDirection()==PosDirection.Long ) {
-                    //多仓
-                    longPos += detailVolume;
-                    if ( detail.isToday() ) {
-                        longTodayPos += detailVolume;
-                    }else {
-                        longYdPos += detailVolume;
-                    }
-                }else {
-                    shortPos += detail.getVolume();
-                    if ( detail.isToday() ) {
-                        shortTodayPos += detailVolume;
-                    }else {
-                        shortYdPos += detailVolume;
-                    }
-                }
-            }
+        if ( longPos!=0 ) {
+            feeEval.compute(feeIndex, longPos, lastPrice, PosDirection.Long, marginValue);
+            longUseMargin = marginValue[0];
+            posProfit += marginValue[1]-longOpenValue;
+        }
+        if ( shortPos!=0 ) {
+            feeEval.compute(feeIndex, shortPos, lastPrice, PosDirection.Short, marginValue);
+            shortUseMargin = marginValue[0];
+            posProfit += shortOpenValue-marginValue[1];
         }
 
         setMoney(PosMoney_PositionProfit, posProfit);
@@ -384,11 +429,16 @@ public class PositionImpl implements Position, TradeConstants {
         setMoney(PosMoney_ShortUseMargin, shortUseMargin);
         setMoney(PosMoney_UseMargin, Math.max(longUseMargin, shortUseMargin));
         if( updateVolumes ) {
+            long openCost = details.getCost(PosDirection.Long)+details.getCost(PosDirection.Short);
             if ( (longPos+shortPos)!=0) {
                 openCost /= (longPos+shortPos);
             }
             setMoney(PosMoney_OpenCost, openCost);
 
+            int longTodayPos = details.getTodayVolume(PosDirection.Long);
+            int longYdPos = details.getYdVolume(PosDirection.Long);
+            int shortTodayPos = details.getTodayVolume(PosDirection.Short);
+            int shortYdPos = details.getYdVolume(PosDirection.Short);
             setVolume(PosVolume_LongPosition, longPos);
             setVolume(PosVolume_LongTodayPosition, longTodayPos);
             setVolume(PosVolume_LongYdPosition, longYdPos);
@@ -401,6 +451,19 @@ public class PositionImpl implements Position, TradeConstants {
         }
     }
 
+    /**
+     * 返回账户当前的费率计算, 同时更新缓存的费率位置
+     */
+    private TxnFeeEvaluator getFeeEvaluator() {
+        TxnFeeEvaluator result = account.getFeeEvaluator();
+        if ( result!=feeEvaluator ) {
+            feeEvaluator = result;
+            feeIndex = result.getFeeIndex(exchangeable);
+            openValueValid = false;
+        }
+        return result;
+    }
+
     /**
      * 重新计算方向
      */
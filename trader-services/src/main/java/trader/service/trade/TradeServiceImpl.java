@@ -37,6 +37,10 @@ import trader.service.trade.spi.AbsTxnSession;
 /**
  * 交易事件服务代码, 并发送通知给相应的的AccountView.
  * <BR>所有与交易相关事件: 报单, 报单回报, 成交回报等等, 统一使用异步消息机制, 在独立的事件处理线程中执行.
+ * <BR>行情通过MarketDataHandoff交给交易事件线程(AsyncEventService.FILTER_CHAIN_TXN), 与报单/成交回报按顺序串行处理,
+ * 成交回报不需要排在行情事件之后.
+ * <BR>账户和持仓的修改规则: 行情和回报在交易事件线程中处理; 下单/改单的本地冻结在调用线程中执行,
+ * 报单路径上的资金和仓位修改(冻结, 解冻, 成交)都需要持有AccountImpl.positionLock.
  */
 @Service
 public class TradeServiceImpl implements TradeService, AsyncEventFilter {
@@ -70,15 +74,22 @@ public class TradeServiceImpl implements TradeService, AsyncEventFilter {
 
     private AccountImpl primaryAccount = null;
 
+    private MarketDataHandoff mdHandoff;
+
     @Override
     public void init(BeansContainer beansContainer) {
         state = ServiceState.Starting;
         orderRefGen = new OrderRefGenImpl(beansContainer);
-        //接收行情, 异步更新账户的持仓盈亏
-        mdService.addListener((MarketData md)->{
+        //接收行情, 交给交易事件线程异步更新账户的持仓盈亏
+        mdHandoff = new MarketDataHandoff(asyncEventService, (MarketData md)->{
             accountOnMarketData(md);
         });
+        mdService.addListener((MarketData md)->{
+            mdHandoff.onMarketData(md);
+        });
         //接收交易事件, 在单一线程中处理
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_TXN, this, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
+        //其它通过publishProcessorEvent发布的事件
         asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MAIN, this, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
 
         //自动发现交易接口API
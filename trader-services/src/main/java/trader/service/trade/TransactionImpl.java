@@ -3,13 +3,18 @@ package trader.service.trade;
 import java.util.Collections;
 import java.util.List;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.util.JsonStreamEnabled;
+import trader.common.util.JsonStreamWriter;
 import trader.service.trade.TradeConstants.OrderDirection;
 import trader.service.trade.TradeConstants.OrderOffsetFlag;
 
 /**
  * 记载一条成交的明细
  */
-public class TransactionImpl implements Transaction {
+public class TransactionImpl implements Transaction, JsonStreamEnabled {
     private String id;
     private OrderImpl order;
     private OrderDirection direction;
@@ -82,4 +87,32 @@ public class TransactionImpl implements Transaction {
     public void setClosedDetails(List<PositionDetail> closedDetails) {
         this.closedDetails = closedDetails;
     }
+
+    @Override
+    public JsonElement toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("orderRef", order.getRef());
+        json.addProperty("exchangeable", order.getExchangeable().id());
+        json.addProperty("direction", direction.name());
+        json.addProperty("offsetFlag", offsetFlag.name());
+        json.addProperty("price", price);
+        json.addProperty("volume", volume);
+        json.addProperty("time", time);
+        return json;
+    }
+
+    @Override
+    public void toJson(JsonStreamWriter writer) {
+        writer.beginObject()
+            .name("id").value(id)
+            .name("orderRef").value(order.getRef())
+            .name("exchangeable").value(order.getExchangeable().id())
+            .name("direction").value(direction.name())
+            .name("offsetFlag").value(offsetFlag.name())
+            .name("price").value(price)
+            .name("volume").value(volume)
+            .name("time").value(time)
+            .endObject();
+    }
 }
@@ -22,6 +22,7 @@ import trader.common.util.DateUtil;
 import trader.common.util.PriceUtil;
 import trader.common.util.StringUtil;
 import trader.service.event.AsyncEventProcessor;
+import trader.service.log.AsyncLog;
 import trader.service.trade.Account;
 import trader.service.trade.Order;
 import trader.service.trade.OrderStateTuple;
@@ -29,7 +30,7 @@ import trader.service.trade.TradeConstants;
 import trader.service.trade.spi.TxnSessionListener;
 
 /**
- * Ctp回调事件处理代码, 会在AsyncEvent的 Main Event Chain 线程中执行
+ * Ctp回调事件处理代码, 会在AsyncEvent的 Txn Event Chain 线程中执行
  */
 public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants, TradeConstants{
 
@@ -125,9 +126,7 @@ public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants,
         } catch (Throwable t) {
             logger.error("报单回报处理错误", t);
         }
-        if ( logger.isInfoEnabled() ) {
-            logger.info("OnRtnOrder: "+pOrder);
-        }
+        AsyncLog.info(logger, "OnRtnOrder: {}", pOrder);
     }
 
     /**
@@ -145,9 +144,7 @@ public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants,
                 DateUtil.localdatetime2long(CTP_ZONE, tradeTime),
                 pTrade
                 );
-        if ( logger.isInfoEnabled() ) {
-            logger.info("OnRtnTrade: "+pTrade);
-        }
+        AsyncLog.info(logger, "OnRtnTrade: {}", pTrade);
     }
 
     /**
@@ -171,9 +168,7 @@ public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants,
             orderInfo.addProperty("stateMessage", failReason);
             listener.createOrderFromResponse(orderInfo);
         }
-        if ( logger.isInfoEnabled() ) {
-            logger.info("OnErrRtnOrderInsert: "+pInputOrder+" "+pRspInfo);
-        }
+        AsyncLog.info(logger, "OnErrRtnOrderInsert: {} {}", pInputOrder, pRspInfo);
     }
 
     /**
@@ -196,9 +191,7 @@ public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants,
             orderInfo.addProperty("stateMessage", failReason);
             listener.createOrderFromResponse(orderInfo);
         }
-        if ( logger.isInfoEnabled() ) {
-            logger.info("OnRspOrderInsert: "+pInputOrder+" "+pRspInfo);
-        }
+        AsyncLog.info(logger, "OnRspOrderInsert: {} {}", pInputOrder, pRspInfo);
     }
 
     /**
@@ -230,9 +223,7 @@ public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants,
         }
         listener.changeOrderState(orderRef, new OrderStateTuple(odrState, submitState, System.currentTimeMillis(), failReason), null);
 
-        if ( logger.isInfoEnabled() ) {
-            logger.info("OnRspOrderAction: "+pInputOrderAction+" "+pRspInfo);
-        }
+        AsyncLog.info(logger, "OnRspOrderAction: {} {}", pInputOrderAction, pRspInfo);
     }
 
     /**
@@ -262,9 +253,7 @@ public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants,
         }
         listener.changeOrderState(orderRef, new OrderStateTuple(odrState, submitState, System.currentTimeMillis(), failReason), null);
 
-        if ( logger.isInfoEnabled() ) {
-            logger.info("OnErrRtnOrderAction: "+pOrderAction+" "+pRspInfo);
-        }
+        AsyncLog.info(logger, "OnErrRtnOrderAction: {} {}", pOrderAction, pRspInfo);
     }
 
     /**
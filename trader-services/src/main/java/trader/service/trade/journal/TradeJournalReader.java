@@ -0,0 +1,71 @@
+package trader.service.trade.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 顺序读取交易日志, 遇到文件结束或者不完整的记录时结束
+ */
+public class TradeJournalReader implements AutoCloseable {
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int position;
+
+    public TradeJournalReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    /**
+     * 返回下一条记录, null代表结束
+     */
+    public TradeJournalRecord next() {
+        int recordEnd = nextRecordEnd(mapped, position);
+        if ( recordEnd<0 ) {
+            return null;
+        }
+        ByteBuffer buf = mapped.duplicate();
+        buf.position(position+TradeJournalWriter.HEADER_SIZE);
+        buf.limit(recordEnd);
+        position = recordEnd;
+        return TradeJournalRecord.decode(buf.slice());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 检查从position开始的记录是否完整
+     *
+     * @return 记录结束位置, -1代表没有完整记录
+     */
+    static int nextRecordEnd(ByteBuffer buf, int position) {
+        if ( position+TradeJournalWriter.HEADER_SIZE>buf.capacity() ) {
+            return -1;
+        }
+        int length = buf.getInt(position);
+        int end = position+TradeJournalWriter.HEADER_SIZE+length;
+        if ( length<=0 || end>buf.capacity() ) {
+            return -1;
+        }
+        int expectedCrc = buf.getInt(position+4);
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buf.duplicate();
+        data.limit(end);
+        data.position(position+TradeJournalWriter.HEADER_SIZE);
+        crc.update(data);
+        if ( (int)crc.getValue()!=expectedCrc ) {
+            return -1;
+        }
+        return end;
+    }
+
+}
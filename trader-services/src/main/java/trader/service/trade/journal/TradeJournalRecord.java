@@ -0,0 +1,281 @@
+package trader.service.trade.journal;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import trader.common.util.StringUtil;
+import trader.service.trade.TradeConstants.OrderDirection;
+import trader.service.trade.TradeConstants.OrderOffsetFlag;
+import trader.service.trade.TradeConstants.OrderPriceType;
+import trader.service.trade.TradeConstants.OrderState;
+import trader.service.trade.TradeConstants.OrderSubmitState;
+import trader.service.trade.TradeConstants.OrderVolumeCondition;
+import trader.service.trade.TradeConstants.PosDirection;
+
+/**
+ * 交易日志的一条记录.
+ * <BR>每条记录包含事件本身(报单/成交)以及事件处理后账户和相关持仓的资金/数量数组, 回放时不需要重新计算.
+ * <BR>枚举按ordinal保存, 枚举只能在末尾增加.
+ */
+public class TradeJournalRecord {
+
+    /**
+     * 账户初始状态, 从交易通道查询得到
+     */
+    public static final byte TYPE_ACCOUNT = 1;
+    /**
+     * 持仓初始状态, 从交易通道查询得到
+     */
+    public static final byte TYPE_POSITION = 2;
+    /**
+     * 报单状态变化
+     */
+    public static final byte TYPE_ORDER_STATE = 3;
+    /**
+     * 成交
+     */
+    public static final byte TYPE_TRANSACTION = 4;
+    /**
+     * 报单本地冻结资金和仓位
+     */
+    public static final byte TYPE_FREEZE = 5;
+    /**
+     * 报单本地解冻资金和仓位
+     */
+    public static final byte TYPE_UNFREEZE = 6;
+
+    private static final int HAS_ORDER = 1;
+    private static final int HAS_TXN = 2;
+    private static final int HAS_ACCOUNT = 4;
+    private static final int HAS_POSITION = 8;
+
+    /**
+     * 持仓明细
+     */
+    public static class DetailInfo {
+        public PosDirection direction;
+        public int volume;
+        public long price;
+        /**
+         * LocalDateTime 按UTC转换的epoch seconds
+         */
+        public long openTime;
+        public boolean today;
+    }
+
+    public byte type;
+    public long timestamp;
+
+    public String orderRef;
+    public String orderExchangeable;
+    public OrderDirection orderDirection;
+    public OrderPriceType orderPriceType;
+    public OrderOffsetFlag orderOffsetFlag;
+    public OrderVolumeCondition orderVolumeCondition;
+    public long orderLimitPrice;
+    public OrderState orderState;
+    public OrderSubmitState orderSubmitState;
+    public long orderStateTime;
+    public long[] orderMoney;
+    public int[] orderVolumes;
+
+    public String txnId;
+    public OrderDirection txnDirection;
+    public OrderOffsetFlag txnOffsetFlag;
+    public long txnPrice;
+    public int txnVolume;
+    public long txnTime;
+
+    public long[] accountMoney;
+
+    public String posExchangeable;
+    public PosDirection posDirection;
+    public long[] posMoney;
+    public int[] posVolumes;
+    public List<DetailInfo> posDetails;
+
+    public boolean hasOrder() {
+        return orderRef!=null;
+    }
+
+    public boolean hasTransaction() {
+        return txnId!=null;
+    }
+
+    public boolean hasPosition() {
+        return posExchangeable!=null;
+    }
+
+    public void clear() {
+        type = 0;
+        timestamp = 0;
+        orderRef = null;
+        orderExchangeable = null;
+        orderMoney = null;
+        orderVolumes = null;
+        txnId = null;
+        accountMoney = null;
+        posExchangeable = null;
+        posMoney = null;
+        posVolumes = null;
+        posDetails = null;
+    }
+
+    /**
+     * 编码到buffer, buffer空间不够时抛出BufferOverflowException
+     */
+    public void encode(ByteBuffer buf) {
+        buf.put(type);
+        buf.putLong(timestamp);
+        int flags = 0;
+        if ( hasOrder() ) {
+            flags |= HAS_ORDER;
+        }
+        if ( hasTransaction() ) {
+            flags |= HAS_TXN;
+        }
+        if ( accountMoney!=null ) {
+            flags |= HAS_ACCOUNT;
+        }
+        if ( hasPosition() ) {
+            flags |= HAS_POSITION;
+        }
+        buf.put((byte)flags);
+        if ( hasOrder() ) {
+            putString(buf, orderRef);
+            putString(buf, orderExchangeable);
+            buf.put((byte)orderDirection.ordinal());
+            buf.put((byte)orderPriceType.ordinal());
+            buf.put((byte)orderOffsetFlag.ordinal());
+            buf.put((byte)orderVolumeCondition.ordinal());
+            buf.putLong(orderLimitPrice);
+            buf.put((byte)orderState.ordinal());
+            buf.put((byte)orderSubmitState.ordinal());
+            buf.putLong(orderStateTime);
+            putLongs(buf, orderMoney);
+            putInts(buf, orderVolumes);
+        }
+        if ( hasTransaction() ) {
+            putString(buf, txnId);
+            buf.put((byte)txnDirection.ordinal());
+            buf.put((byte)txnOffsetFlag.ordinal());
+            buf.putLong(txnPrice);
+            buf.putInt(txnVolume);
+            buf.putLong(txnTime);
+        }
+        if ( accountMoney!=null ) {
+            putLongs(buf, accountMoney);
+        }
+        if ( hasPosition() ) {
+            putString(buf, posExchangeable);
+            buf.put((byte)posDirection.ordinal());
+            putLongs(buf, posMoney);
+            putInts(buf, posVolumes);
+            int detailCount = posDetails!=null?posDetails.size():0;
+            buf.putShort((short)detailCount);
+            for(int i=0;i<detailCount;i++) {
+                DetailInfo detail = posDetails.get(i);
+                buf.put((byte)detail.direction.ordinal());
+                buf.putInt(detail.volume);
+                buf.putLong(detail.price);
+                buf.putLong(detail.openTime);
+                buf.put((byte)(detail.today?1:0));
+            }
+        }
+    }
+
+    public static TradeJournalRecord decode(ByteBuffer buf) {
+        TradeJournalRecord r = new TradeJournalRecord();
+        r.type = buf.get();
+        r.timestamp = buf.getLong();
+        int flags = buf.get();
+        if ( (flags&HAS_ORDER)!=0 ) {
+            r.orderRef = getString(buf);
+            r.orderExchangeable = getString(buf);
+            r.orderDirection = OrderDirection.values()[buf.get()];
+            r.orderPriceType = OrderPriceType.values()[buf.get()];
+            r.orderOffsetFlag = OrderOffsetFlag.values()[buf.get()];
+            r.orderVolumeCondition = OrderVolumeCondition.values()[buf.get()];
+            r.orderLimitPrice = buf.getLong();
+            r.orderState = OrderState.values()[buf.get()];
+            r.orderSubmitState = OrderSubmitState.values()[buf.get()];
+            r.orderStateTime = buf.getLong();
+            r.orderMoney = getLongs(buf);
+            r.orderVolumes = getInts(buf);
+        }
+        if ( (flags&HAS_TXN)!=0 ) {
+            r.txnId = getString(buf);
+            r.txnDirection = OrderDirection.values()[buf.get()];
+            r.txnOffsetFlag = OrderOffsetFlag.values()[buf.get()];
+            r.txnPrice = buf.getLong();
+            r.txnVolume = buf.getInt();
+            r.txnTime = buf.getLong();
+        }
+        if ( (flags&HAS_ACCOUNT)!=0 ) {
+            r.accountMoney = getLongs(buf);
+        }
+        if ( (flags&HAS_POSITION)!=0 ) {
+            r.posExchangeable = getString(buf);
+            r.posDirection = PosDirection.values()[buf.get()];
+            r.posMoney = getLongs(buf);
+            r.posVolumes = getInts(buf);
+            int detailCount = buf.getShort();
+            r.posDetails = new ArrayList<>(detailCount);
+            for(int i=0;i<detailCount;i++) {
+                DetailInfo detail = new DetailInfo();
+                detail.direction = PosDirection.values()[buf.get()];
+                detail.volume = buf.getInt();
+                detail.price = buf.getLong();
+                detail.openTime = buf.getLong();
+                detail.today = buf.get()!=0;
+                r.posDetails.add(detail);
+            }
+        }
+        return r;
+    }
+
+    private static void putString(ByteBuffer buf, String str) {
+        byte[] data = str.getBytes(StringUtil.UTF8);
+        buf.putShort((short)data.length);
+        buf.put(data);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getShort();
+        byte[] data = new byte[len];
+        buf.get(data);
+        return new String(data, StringUtil.UTF8);
+    }
+
+    private static void putLongs(ByteBuffer buf, long[] values) {
+        buf.putShort((short)values.length);
+        for(int i=0;i<values.length;i++) {
+            buf.putLong(values[i]);
+        }
+    }
+
+    private static long[] getLongs(ByteBuffer buf) {
+        long[] result = new long[buf.getShort()];
+        for(int i=0;i<result.length;i++) {
+            result[i] = buf.getLong();
+        }
+        return result;
+    }
+
+    private static void putInts(ByteBuffer buf, int[] values) {
+        buf.putShort((short)values.length);
+        for(int i=0;i<values.length;i++) {
+            buf.putInt(values[i]);
+        }
+    }
+
+    private static int[] getInts(ByteBuffer buf) {
+        int[] result = new int[buf.getShort()];
+        for(int i=0;i<result.length;i++) {
+            result[i] = buf.getInt();
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,56 @@
+package trader.service.trade.journal;
+
+import java.io.File;
+import java.io.IOException;
+
+import trader.service.trade.journal.TradeJournalSnapshot.PositionState;
+
+/**
+ * 回放交易日志, 重建账户/持仓的资金和数量数组, 不需要访问交易通道
+ */
+public class TradeJournalReplayer {
+
+    public static TradeJournalSnapshot replay(File file) throws IOException {
+        TradeJournalSnapshot snapshot = new TradeJournalSnapshot();
+        if ( !file.exists() || file.length()==0 ) {
+            return snapshot;
+        }
+        try(TradeJournalReader reader = new TradeJournalReader(file);){
+            TradeJournalRecord record = null;
+            while( (record=reader.next())!=null ) {
+                apply(snapshot, record);
+            }
+        }
+        return snapshot;
+    }
+
+    public static void apply(TradeJournalSnapshot snapshot, TradeJournalRecord record) {
+        snapshot.recordCount++;
+        snapshot.lastTimestamp = record.timestamp;
+        if ( record.type==TradeJournalRecord.TYPE_ACCOUNT ) {
+            //新的初始状态, 之前的数据作废
+            snapshot.positions.clear();
+            snapshot.orders.clear();
+            snapshot.transactions.clear();
+        }
+        if ( record.accountMoney!=null ) {
+            snapshot.accountMoney = record.accountMoney;
+        }
+        if ( record.hasPosition() ) {
+            PositionState pos = new PositionState();
+            pos.exchangeable = record.posExchangeable;
+            pos.direction = record.posDirection;
+            pos.money = record.posMoney;
+            pos.volumes = record.posVolumes;
+            pos.details = record.posDetails;
+            snapshot.positions.put(pos.exchangeable, pos);
+        }
+        if ( record.hasOrder() ) {
+            snapshot.orders.put(record.orderRef, record);
+        }
+        if ( record.hasTransaction() ) {
+            snapshot.transactions.put(record.txnId, record);
+        }
+    }
+
+}
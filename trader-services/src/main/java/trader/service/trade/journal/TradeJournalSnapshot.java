@@ -0,0 +1,50 @@
+package trader.service.trade.journal;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import trader.service.trade.TradeConstants.PosDirection;
+import trader.service.trade.journal.TradeJournalRecord.DetailInfo;
+
+/**
+ * 交易日志回放得到的账户状态
+ */
+public class TradeJournalSnapshot {
+
+    /**
+     * 持仓状态
+     */
+    public static class PositionState {
+        public String exchangeable;
+        public PosDirection direction;
+        public long[] money;
+        public int[] volumes;
+        public List<DetailInfo> details;
+    }
+
+    /**
+     * 账户资金, null代表没有账户初始记录, 不能用于恢复
+     */
+    public long[] accountMoney;
+
+    /**
+     * Key: exchangeable
+     */
+    public Map<String, PositionState> positions = new LinkedHashMap<>();
+
+    /**
+     * 每个报单的最后一条记录, Key: orderRef
+     */
+    public Map<String, TradeJournalRecord> orders = new LinkedHashMap<>();
+
+    /**
+     * 成交记录, Key: txnId
+     */
+    public Map<String, TradeJournalRecord> transactions = new LinkedHashMap<>();
+
+    public int recordCount;
+
+    public long lastTimestamp;
+
+}
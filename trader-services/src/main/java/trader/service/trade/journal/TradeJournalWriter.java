@@ -0,0 +1,139 @@
+package trader.service.trade.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 内存映射的追加写交易日志, 每个交易日一个文件.
+ * <BR>记录格式: int 长度, int CRC32, 记录内容. 长度为0代表文件结束; CRC不一致代表写入未完成, 之后的数据被忽略.
+ * <BR>映射空间不够时自动扩展. 进程崩溃时已写入的数据在操作系统缓存中, 不会丢失; 调用sync()后可以保证操作系统崩溃时不丢失.
+ */
+public class TradeJournalWriter implements AutoCloseable {
+
+    static final int HEADER_SIZE = 8;
+    public static final int DEFAULT_MAP_SIZE = 4*1024*1024;
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private ByteBuffer recordBuf = ByteBuffer.allocate(64*1024);
+    private CRC32 crc = new CRC32();
+    private int recordCount;
+
+    public TradeJournalWriter(File file) throws IOException {
+        this(file, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * 打开或创建日志文件, 已有的日志从最后一条完整记录之后追加
+     */
+    public TradeJournalWriter(File file, int mapSize) throws IOException {
+        this.file = file;
+        file.getParentFile().mkdirs();
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        long size = Math.max(mapSize, channel.size());
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        int position = 0;
+        ByteBuffer view = mapped.duplicate();
+        while(true) {
+            int recordEnd = TradeJournalReader.nextRecordEnd(view, position);
+            if ( recordEnd<0 ) {
+                break;
+            }
+            position = recordEnd;
+            recordCount++;
+        }
+        mapped.position(position);
+        //清除未完成的记录
+        if ( position+HEADER_SIZE<=mapped.capacity() ) {
+            mapped.putInt(position, 0);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 当前写入位置
+     */
+    public synchronized long getPosition() {
+        return mapped.position();
+    }
+
+    public synchronized void append(TradeJournalRecord record) throws IOException {
+        ByteBuffer buf = recordBuf;
+        while(true) {
+            try{
+                buf.clear();
+                record.encode(buf);
+                break;
+            }catch(BufferOverflowException e) {
+                buf = recordBuf = ByteBuffer.allocate(buf.capacity()*2);
+            }
+        }
+        buf.flip();
+        int length = buf.remaining();
+        crc.reset();
+        crc.update(buf.array(), 0, length);
+        int position = mapped.position();
+        //保留下一条记录的长度字段为0
+        ensureCapacity(position+HEADER_SIZE+length+4);
+        mapped.position(position+4);
+        mapped.putInt((int)crc.getValue());
+        mapped.put(buf.array(), 0, length);
+        if ( mapped.position()+4<=mapped.capacity() ) {
+            mapped.putInt(mapped.position(), 0);
+        }
+        //最后写长度, 读取时长度不为0的记录内容一定已经写入
+        mapped.putInt(position, length);
+        recordCount++;
+    }
+
+    /**
+     * 强制写入磁盘
+     */
+    public synchronized void sync() {
+        mapped.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if ( channel!=null ) {
+            mapped.force();
+            channel.close();
+            raf.close();
+            channel = null;
+        }
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if ( required<=mapped.capacity() ) {
+            return;
+        }
+        int position = mapped.position();
+        long newSize = mapped.capacity();
+        while(newSize<required) {
+            newSize *= 2;
+        }
+        if ( newSize>Integer.MAX_VALUE ) {
+            throw new IOException("Trade journal "+file+" is too large");
+        }
+        mapped.force();
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        mapped.position(position);
+    }
+
+}
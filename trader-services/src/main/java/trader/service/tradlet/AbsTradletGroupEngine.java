@@ -7,8 +7,12 @@ import org.slf4j.LoggerFactory;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Lifecycle;
+import trader.common.config.ConfigUtil;
 import trader.service.ServiceConstants.AccountState;
+import trader.service.log.AsyncLog;
 import trader.service.md.MarketData;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
 import trader.service.ta.LeveledTimeSeries;
 import trader.service.trade.Account;
 import trader.service.trade.AccountListener;
@@ -23,11 +27,23 @@ import trader.service.trade.Transaction;
 public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecycle, AccountListener {
     private static final Logger logger = LoggerFactory.getLogger(AbsTradletGroupEngine.class);
 
+    /**
+     * 缺省保留的最近行情事件数
+     */
+    public static final int DEFAULT_WARMUP_EVENTS = 2000;
+
     protected TradletService tradletService;
     protected BeansContainer beansContainer;
     protected MarketTimeService mtService;
     protected TradletGroupImpl group;
     protected long lastEventTime;
+    /**
+     * 最近的行情事件环形缓冲, 用于热替换时预热影子实例
+     */
+    private int[] historyTypes;
+    private Object[] historyDatas;
+    private int historyNext;
+    private int historyCount;
 
     public TradletGroupImpl getGroup() {
         return group;
@@ -42,6 +58,9 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
         this.beansContainer = beansContainer;
         this.tradletService = beansContainer.getBean(TradletServiceImpl.class);
         mtService = beansContainer.getBean(MarketTimeService.class);
+        int warmupEvents = ConfigUtil.getInt(TradletServiceImpl.ITEM_GLOBAL_WARMUP_EVENTS, DEFAULT_WARMUP_EVENTS);
+        historyTypes = new int[warmupEvents];
+        historyDatas = new Object[warmupEvents];
         //关联TradletGroup到Account
         group.setState(TradletGroupState.Enabled);
         group.getAccount().addAccountListener(this);
@@ -83,9 +102,7 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
 
     protected void processEvent(int eventType, Object data) throws Exception {
         lastEventTime = mtService.currentTimeMillis();
-        if ( logger.isDebugEnabled() ) {
-            logger.debug("Tradlet group "+group.getId()+" process event: "+ String.format("%08X", eventType)+" data "+data);
-        }
+        AsyncLog.debug(logger, "Tradlet group {} process data {} event: {x}", group.getId(), data, eventType);
         switch(eventType) {
         case TradletEvent.EVENT_TYPE_MD_TICK:
             processTick((MarketData)data);
@@ -111,6 +128,17 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
     }
 
     protected void processTick(MarketData md) {
+        long beginNanoTime = System.nanoTime();
+        LatencyRecorder.setCurrentTickTime(md.receiveNanoTime);
+        try {
+            processTick0(md);
+        } finally {
+            LatencyRecorder.setCurrentTickTime(0);
+            LatencyRecorder.recordSince(Stage.TradletProcessTick, beginNanoTime);
+        }
+    }
+
+    private void processTick0(MarketData md) {
         List<TradletHolder> tradletHolders = group.getTradletHolders();
 
         for(int i=0;i<tradletHolders.size();i++) {
@@ -123,6 +151,8 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
                 }
             }
         }
+        recordHistory(TradletEvent.EVENT_TYPE_MD_TICK, md);
+        processShadows(TradletEvent.EVENT_TYPE_MD_TICK, md);
     }
 
     protected void processBar(LeveledTimeSeries series) {
@@ -138,6 +168,8 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
                 }
             }
         }
+        recordHistory(TradletEvent.EVENT_TYPE_MD_BAR, series);
+        processShadows(TradletEvent.EVENT_TYPE_MD_BAR, series);
     }
 
     /**
@@ -168,6 +200,7 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
             }
         }
         group.onNoopSecond();
+        processShadows(TradletEvent.EVENT_TYPE_MISC_NOOP, null);
     }
 
     /**
@@ -178,6 +211,80 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
             group.update(template);
         }catch(Throwable t) {
             logger.error("策略组 "+group.getId()+" 更新配置失败: "+t.toString(), t);
+            return;
+        }
+        warmupShadows();
+    }
+
+    /**
+     * 保存最近的行情事件
+     */
+    private void recordHistory(int eventType, Object data) {
+        if ( historyTypes==null || historyTypes.length==0 ) {
+            return;
+        }
+        historyTypes[historyNext] = eventType;
+        historyDatas[historyNext] = data;
+        historyNext = (historyNext+1)%historyTypes.length;
+        if ( historyCount<historyTypes.length ) {
+            historyCount++;
+        }
+    }
+
+    /**
+     * 按顺序回放最近的行情事件给新的影子实例, 回放后预热完成的实例立即替换
+     * <BR>KBar事件回放的是当前的LeveledTimeSeries
+     */
+    private void warmupShadows() {
+        List<TradletHolder> shadowHolders = group.getShadowHolders();
+        if ( shadowHolders.isEmpty() ) {
+            return;
+        }
+        int first = 0;
+        if ( historyCount>0 ) {
+            first = (historyNext-historyCount+historyTypes.length)%historyTypes.length;
+        }
+        for(int i=0;i<historyCount;i++) {
+            int idx = (first+i)%historyTypes.length;
+            for(int j=0;j<shadowHolders.size();j++) {
+                processShadow(shadowHolders.get(j), historyTypes[idx], historyDatas[idx]);
+            }
+        }
+        logger.info("策略组 "+group.getId()+" 影子策略 "+shadowHolders.size()+" 个, 回放最近 "+historyCount+" 个行情事件");
+        group.swapReadyShadows();
+    }
+
+    /**
+     * 影子实例接收与正式实例相同的事件, 之后替换预热完成的实例
+     */
+    private void processShadows(int eventType, Object data) {
+        List<TradletHolder> shadowHolders = group.getShadowHolders();
+        if ( shadowHolders.isEmpty() ) {
+            return;
+        }
+        for(int i=0;i<shadowHolders.size();i++) {
+            processShadow(shadowHolders.get(i), eventType, data);
+        }
+        group.swapReadyShadows();
+    }
+
+    private void processShadow(TradletHolder holder, int eventType, Object data) {
+        try{
+            switch(eventType) {
+            case TradletEvent.EVENT_TYPE_MD_TICK:
+                holder.getTradlet().onTick((MarketData)data);
+                break;
+            case TradletEvent.EVENT_TYPE_MD_BAR:
+                holder.getTradlet().onNewBar((LeveledTimeSeries)data);
+                break;
+            case TradletEvent.EVENT_TYPE_MISC_NOOP:
+                holder.getTradlet().onNoopSecond();
+                break;
+            }
+        }catch(Throwable t) {
+            if ( holder.setThrowable(t) ) {
+                logger.error("策略组 "+group.getId()+" 运行影子策略 "+holder.getId()+" 失败: "+t.toString(), t);
+            }
         }
     }
 
@@ -19,6 +19,7 @@ import trader.common.util.ConversionUtil;
 import trader.common.util.JsonEnabled;
 import trader.common.util.JsonUtil;
 import trader.common.util.StringUtil;
+import trader.service.ServiceErrorConstants;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataService;
 import trader.service.trade.Account;
@@ -55,6 +56,10 @@ public class PlaybookImpl implements Playbook, JsonEnabled {
      * 当前活动报单
      */
     private Order pendingOrder;
+    /**
+     * 撤单/平仓报单被流控拒绝, 等待NOOP时重试
+     */
+    private boolean actionThrottled;
 
     private List<PlaybookStateTuple> stateTuples = new ArrayList<>();
     private PlaybookStateTuple stateTuple;
@@ -282,6 +287,11 @@ public class PlaybookImpl implements Playbook, JsonEnabled {
      * 定期检查是否需要取消当前报单或强制平仓
      */
     public PlaybookStateTuple updateStateOnNoop() {
+        if ( actionThrottled ) {
+            //重试被流控拒绝的报单动作
+            actionThrottled = false;
+            return changeStateTuple(stateTuple.getState(), stateTuple.getOrder());
+        }
         PlaybookState newState = null;
         Order newStateOrder = null;
         long currTime = System.currentTimeMillis();
@@ -350,8 +360,8 @@ public class PlaybookImpl implements Playbook, JsonEnabled {
                 orderAction = OrderAction.Cancel;
                 account.cancelOrder(stateOrder.getRef());
             } catch (AppException e) {
-                newState = PlaybookState.Failed;
-                logger.error("Playbook "+getId()+" cancel failed: "+e.getMessage(), e);
+                orderAction = null;
+                newState = onActionFailed(newState, e, "cancel");
             }
         }
         break;
@@ -373,8 +383,8 @@ public class PlaybookImpl implements Playbook, JsonEnabled {
                 money[PBMny_Closing] = odrBuilder.getLimitPrice();
             }catch(AppException e) {
                 //平仓失败, 手工处理
-                newState = PlaybookState.Failed;
-                logger.error("Playbook "+getId()+" close failed: "+e.getMessage(), e);
+                orderAction = null;
+                newState = onActionFailed(newState, e, "close");
             }
         }
         break;
@@ -395,12 +405,16 @@ public class PlaybookImpl implements Playbook, JsonEnabled {
                 }
             }catch(AppException e) {
                 //强制平仓失败, 手工处理
-                newState = PlaybookState.Failed;
-                logger.error("Playbook "+getId()+" force close "+orderRef+" failed: "+e.getMessage(), e);
+                orderAction = null;
+                newState = onActionFailed(newState, e, "force close "+orderRef);
             }
         }
             break;
         }
+        if ( actionThrottled && newState==oldStateTuple.getState() ) {
+            //重试仍然被流控, 状态不变
+            return null;
+        }
         PlaybookStateTupleImpl result = new PlaybookStateTupleImpl(newState, stateOrder, orderAction);
         this.stateTuples.add(result);
         this.stateTuple = result;
@@ -410,6 +424,19 @@ public class PlaybookImpl implements Playbook, JsonEnabled {
         return result;
     }
 
+    /**
+     * 报单动作失败: 被流控拒绝时保持状态稍后重试, 其它错误转为Failed
+     */
+    private PlaybookState onActionFailed(PlaybookState newState, AppException e, String action) {
+        if ( e.getCode()==ServiceErrorConstants.ERRCODE_TRADE_THROTTLED ) {
+            actionThrottled = true;
+            logger.warn("Playbook "+getId()+" "+action+" is throttled, will retry: "+e.getMessage());
+            return newState;
+        }
+        logger.error("Playbook "+getId()+" "+action+" failed: "+e.getMessage(), e);
+        return PlaybookState.Failed;
+    }
+
     /**
      * 创建平仓报单
      * <BR>暂时不考虑滑点
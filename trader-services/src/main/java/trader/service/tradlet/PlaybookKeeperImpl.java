@@ -1,9 +1,13 @@
 package trader.service.tradlet;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -29,16 +33,38 @@ import trader.service.trade.Transaction;
 
 /**
  * 管理某个交易分组的报单和成交计划
+ * <BR>活动Playbook按照合约, 状态分别索引, 删除为O(1). 查询返回的List是只读缓存视图, 只在Playbook集合变化后重建.
  */
 public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, TradletConstants, ServiceErrorConstants, JsonEnabled {
     private static final Logger logger = LoggerFactory.getLogger(PlaybookKeeperImpl.class);
 
+    /**
+     * 缓存的只读查询结果
+     */
+    private static class CachedView<T> {
+        int version = -1;
+        List<T> list = Collections.emptyList();
+    }
+
     private TradletGroupImpl group;
     private MarketDataService mdService;
     private List<Order> allOrders = new ArrayList<>();
-    private LinkedList<Order> pendingOrders = new LinkedList<>();
+    private LinkedHashMap<String, Order> pendingOrders = new LinkedHashMap<>();
+    private int pendingOrdersVersion;
+    private CachedView<Order> pendingOrdersView = new CachedView<>();
     private LinkedHashMap<String, PlaybookImpl> allPlaybooks = new LinkedHashMap<>();
-    private LinkedList<PlaybookImpl> activePlaybooks = new LinkedList<>();
+    private LinkedHashMap<String, PlaybookImpl> activePlaybooks = new LinkedHashMap<>();
+    private Map<Exchangeable, LinkedHashMap<String, PlaybookImpl>> activePlaybooksByInstrument = new HashMap<>();
+    private EnumMap<PlaybookState, LinkedHashMap<String, PlaybookImpl>> activePlaybooksByState = new EnumMap<>(PlaybookState.class);
+    private int activePlaybooksVersion;
+    private CachedView<Playbook> activePlaybooksView = new CachedView<>();
+    private Map<String, CachedView<Playbook>> activePlaybooksByOpenActionViews = new HashMap<>();
+    private Map<Exchangeable, CachedView<Playbook>> activePlaybooksByInstrumentViews = new HashMap<>();
+    private EnumMap<PlaybookState, CachedView<Playbook>> activePlaybooksByStateViews = new EnumMap<>(PlaybookState.class);
+    /**
+     * onNoopSecond 时复用的数组, 避免遍历时修改索引
+     */
+    private PlaybookImpl[] noopPlaybooks = new PlaybookImpl[16];
 
     public PlaybookKeeperImpl(TradletGroupImpl group) {
         this.group = group;
@@ -52,7 +78,12 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
 
     @Override
     public List<Order> getPendingOrders() {
-        return pendingOrders;
+        CachedView<Order> view = pendingOrdersView;
+        if ( view.version!=pendingOrdersVersion ) {
+            view.list = Collections.unmodifiableList(new ArrayList<>(pendingOrders.values()));
+            view.version = pendingOrdersVersion;
+        }
+        return view.list;
     }
 
     @Override
@@ -65,15 +96,16 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
 
     @Override
     public Order getLastPendingOrder() {
+        List<Order> pendingOrders = getPendingOrders();
         if ( pendingOrders.isEmpty() ) {
             return null;
         }
-        return pendingOrders.getLast();
+        return pendingOrders.get(pendingOrders.size()-1);
     }
 
     @Override
     public void cancelAllPendingOrders() {
-        for(Order order:pendingOrders) {
+        for(Order order:getPendingOrders()) {
             if ( order.getStateTuple().getState().isRevocable() ) {
                 try {
                     group.getAccount().cancelOrder(order.getRef());
@@ -86,21 +118,48 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
 
     @Override
     public List<Playbook> getAllPlaybooks() {
-        return (List)allPlaybooks.values();
+        return new ArrayList<>(allPlaybooks.values());
     }
 
     @Override
     public List<Playbook> getActivePlaybooks(String openActionIdExpr) {
         if ( StringUtil.isEmpty(openActionIdExpr)) {
-            return (List)activePlaybooks;
+            return getView(activePlaybooksView, activePlaybooks.values(), null);
         }
-        List<Playbook> result = new ArrayList<>(activePlaybooks.size());
-        for(Playbook pb:activePlaybooks) {
-            if ( pb.getActionId(PBAction_Open).startsWith(openActionIdExpr) ) {
-                result.add(pb);
-            }
+        CachedView<Playbook> view = activePlaybooksByOpenActionViews.get(openActionIdExpr);
+        if ( view==null ) {
+            view = new CachedView<>();
+            activePlaybooksByOpenActionViews.put(openActionIdExpr, view);
         }
-        return result;
+        return getView(view, activePlaybooks.values(), openActionIdExpr);
+    }
+
+    @Override
+    public List<Playbook> getActivePlaybooksByInstrument(Exchangeable e) {
+        LinkedHashMap<String, PlaybookImpl> playbooks = activePlaybooksByInstrument.get(e);
+        if ( playbooks==null ) {
+            return Collections.emptyList();
+        }
+        CachedView<Playbook> view = activePlaybooksByInstrumentViews.get(e);
+        if ( view==null ) {
+            view = new CachedView<>();
+            activePlaybooksByInstrumentViews.put(e, view);
+        }
+        return getView(view, playbooks.values(), null);
+    }
+
+    @Override
+    public List<Playbook> getActivePlaybooksByState(PlaybookState state) {
+        LinkedHashMap<String, PlaybookImpl> playbooks = activePlaybooksByState.get(state);
+        if ( playbooks==null ) {
+            return Collections.emptyList();
+        }
+        CachedView<Playbook> view = activePlaybooksByStateViews.get(state);
+        if ( view==null ) {
+            view = new CachedView<>();
+            activePlaybooksByStateViews.put(state, view);
+        }
+        return getView(view, playbooks.values(), null);
     }
 
     @Override
@@ -154,7 +213,7 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
         PlaybookImpl playbook = new PlaybookImpl(group, playbookId, builder, new PlaybookStateTupleImpl(PlaybookState.Opening, order, OrderAction.Send));
         addOrder(order);
         allPlaybooks.put(playbookId, playbook);
-        activePlaybooks.add(playbook);
+        addActivePlaybook(playbook);
         if ( logger.isInfoEnabled()) {
             logger.info("Tradlet group "+group.getId()+" create playbook "+playbookId+" with openning order "+order.getRef()+" action id "+builder.getOpenActionId());
         }
@@ -214,7 +273,9 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
             return;
         }
         if ( order.getStateTuple().getState().isDone() ) {
-            pendingOrders.remove(order);
+            if ( pendingOrders.remove(order.getRef())!=null ) {
+                pendingOrdersVersion++;
+            }
         }
         PlaybookStateTuple newStateTuple = playbook.updateStateOnOrder(order);
         if ( newStateTuple!=null ) {
@@ -223,10 +284,47 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
     }
 
     /**
-     * 判断超时Playbook
+     * Playbook状态变化后, 更新状态索引
+     */
+    public void onPlaybookStateChanged(PlaybookImpl playbook, PlaybookStateTuple oldStateTuple) {
+        //新建Playbook在createPlaybook()中加入索引
+        if ( oldStateTuple==null || !activePlaybooks.containsKey(playbook.getId()) ) {
+            return;
+        }
+        PlaybookState newState = playbook.getStateTuple().getState();
+        if ( newState.isDone() ) {
+            removeActivePlaybook(playbook, oldStateTuple.getState());
+        } else if ( newState!=oldStateTuple.getState() ) {
+            removeFromIndex(activePlaybooksByState, oldStateTuple.getState(), playbook);
+            addToIndex(activePlaybooksByState, newState, playbook);
+            activePlaybooksVersion++;
+        }
+    }
+
+    /**
+     * 判断超时Playbook, 只有Opening/Closing状态有超时; 同时重试被流控拒绝的撤单和平仓
      */
     public void onNoopSecond() {
-        for(PlaybookImpl playbook:activePlaybooks) {
+        onNoopSecond(PlaybookState.Opening);
+        onNoopSecond(PlaybookState.Closing);
+        onNoopSecond(PlaybookState.Canceling);
+        onNoopSecond(PlaybookState.ForceClosing);
+    }
+
+    private void onNoopSecond(PlaybookState state) {
+        LinkedHashMap<String, PlaybookImpl> playbooks = activePlaybooksByState.get(state);
+        if ( playbooks==null || playbooks.isEmpty() ) {
+            return;
+        }
+        //状态变化会修改索引, 先复制
+        int count = playbooks.size();
+        if ( noopPlaybooks.length<count ) {
+            noopPlaybooks = new PlaybookImpl[count*2];
+        }
+        PlaybookImpl[] noopPlaybooks = playbooks.values().toArray(this.noopPlaybooks);
+        for(int i=0;i<count;i++) {
+            PlaybookImpl playbook = noopPlaybooks[i];
+            noopPlaybooks[i] = null;
             PlaybookStateTuple newStateTuple = playbook.updateStateOnNoop();
             if ( newStateTuple!=null ) {
                 playbookChangeStateTuple(playbook, newStateTuple, "noop");
@@ -240,7 +338,7 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
         json.addProperty("allOrderCount", allOrders.size());
         json.addProperty("pendingOrderCount", pendingOrders.size());
         json.addProperty("allPlaybookCount", allPlaybooks.size());
-        json.add("activePlaybooks", JsonUtil.object2json(activePlaybooks));
+        json.add("activePlaybooks", JsonUtil.object2json(activePlaybooks.values()));
         return json;
     }
 
@@ -256,14 +354,81 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
             }
             //检查Playbook状态
             if ( newStateTuple.getState().isDone() ) {
-                activePlaybooks.remove(playbook);
+                removeActivePlaybook(playbook, null);
             }
         }
     }
 
     private void addOrder(Order order) {
         allOrders.add(order);
-        pendingOrders.add(order);
+        pendingOrders.put(order.getRef(), order);
+        pendingOrdersVersion++;
+    }
+
+    private void addActivePlaybook(PlaybookImpl playbook) {
+        activePlaybooks.put(playbook.getId(), playbook);
+        addToIndex(activePlaybooksByInstrument, playbook.getExchangable(), playbook);
+        addToIndex(activePlaybooksByState, playbook.getStateTuple().getState(), playbook);
+        activePlaybooksVersion++;
+    }
+
+    /**
+     * 从活动Playbook和索引中删除
+     *
+     * @param indexedState 索引中的状态, null代表使用当前状态
+     */
+    private void removeActivePlaybook(PlaybookImpl playbook, PlaybookState indexedState) {
+        if ( activePlaybooks.remove(playbook.getId())==null ) {
+            return;
+        }
+        removeFromIndex(activePlaybooksByInstrument, playbook.getExchangable(), playbook);
+        if ( indexedState!=null ) {
+            removeFromIndex(activePlaybooksByState, indexedState, playbook);
+        }
+        //状态可能已经变化, 逐个检查
+        for(LinkedHashMap<String, PlaybookImpl> playbooks:activePlaybooksByState.values()) {
+            playbooks.remove(playbook.getId());
+        }
+        activePlaybooksVersion++;
+    }
+
+    private static <K> void addToIndex(Map<K, LinkedHashMap<String, PlaybookImpl>> index, K key, PlaybookImpl playbook) {
+        LinkedHashMap<String, PlaybookImpl> playbooks = index.get(key);
+        if ( playbooks==null ) {
+            playbooks = new LinkedHashMap<>();
+            index.put(key, playbooks);
+        }
+        playbooks.put(playbook.getId(), playbook);
+    }
+
+    private static <K> void removeFromIndex(Map<K, LinkedHashMap<String, PlaybookImpl>> index, K key, PlaybookImpl playbook) {
+        LinkedHashMap<String, PlaybookImpl> playbooks = index.get(key);
+        if ( playbooks!=null ) {
+            playbooks.remove(playbook.getId());
+        }
+    }
+
+    /**
+     * 返回缓存的只读视图, 活动Playbook变化后重建
+     *
+     * @param openActionIdExpr 开仓ActionId前缀, null代表不过滤
+     */
+    private List<Playbook> getView(CachedView<Playbook> view, Collection<PlaybookImpl> playbooks, String openActionIdExpr) {
+        if ( view.version!=activePlaybooksVersion ) {
+            List<Playbook> list = new ArrayList<>(playbooks.size());
+            for(PlaybookImpl pb:playbooks) {
+                if ( openActionIdExpr!=null ) {
+                    String openActionId = pb.getActionId(PBAction_Open);
+                    if ( openActionId==null || !openActionId.startsWith(openActionIdExpr) ) {
+                        continue;
+                    }
+                }
+                list.add(pb);
+            }
+            view.list = Collections.unmodifiableList(list);
+            view.version = activePlaybooksVersion;
+        }
+        return view.list;
     }
 
 }
@@ -0,0 +1,191 @@
+package trader.service.tradlet;
+
+import java.util.List;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.service.data.KVStore;
+import trader.service.trade.Account;
+import trader.service.trade.Order;
+
+/**
+ * 热替换时新Tradlet实例看到的策略组视图.
+ * <BR>影子模式下查询直接转发到实际的策略组, 创建/关闭Playbook, 取消报单和修改状态被忽略; 替换完成后全部转发.
+ * <BR>只在策略组线程中访问
+ */
+class ShadowTradletGroup implements TradletGroup {
+
+    private TradletGroupImpl group;
+    private ShadowPlaybookKeeper playbookKeeper = new ShadowPlaybookKeeper();
+    private boolean shadow = true;
+    private int suppressedActions;
+
+    ShadowTradletGroup(TradletGroupImpl group){
+        this.group = group;
+    }
+
+    public boolean isShadow() {
+        return shadow;
+    }
+
+    /**
+     * 结束影子模式, 之后的交易动作直接生效
+     */
+    public void goLive() {
+        shadow = false;
+    }
+
+    /**
+     * 影子模式下被忽略的交易动作数
+     */
+    public int getSuppressedActions() {
+        return suppressedActions;
+    }
+
+    @Override
+    public String getId() {
+        return group.getId();
+    }
+
+    @Override
+    public Account getAccount() {
+        return group.getAccount();
+    }
+
+    @Override
+    public Exchangeable getExchangeable() {
+        return group.getExchangeable();
+    }
+
+    @Override
+    public List<Tradlet> getTradlets() {
+        return group.getTradlets();
+    }
+
+    @Override
+    public TradletGroupState getConfigState() {
+        return group.getConfigState();
+    }
+
+    @Override
+    public TradletGroupState getState() {
+        return group.getState();
+    }
+
+    @Override
+    public void setState(TradletGroupState newState) {
+        if ( shadow ) {
+            suppressedActions++;
+            return;
+        }
+        group.setState(newState);
+    }
+
+    @Override
+    public KVStore getKVStore() {
+        return group.getKVStore();
+    }
+
+    @Override
+    public PlaybookKeeper getPlaybookKeeper() {
+        return playbookKeeper;
+    }
+
+    @Override
+    public JsonElement toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", getId());
+        json.addProperty("shadow", shadow);
+        json.addProperty("suppressedActions", suppressedActions);
+        return json;
+    }
+
+    private class ShadowPlaybookKeeper implements PlaybookKeeper {
+
+        private PlaybookKeeper keeper() {
+            return group.getPlaybookKeeper();
+        }
+
+        @Override
+        public List<Order> getAllOrders() {
+            return keeper().getAllOrders();
+        }
+
+        @Override
+        public List<Order> getPendingOrders() {
+            return keeper().getPendingOrders();
+        }
+
+        @Override
+        public Order getLastOrder() {
+            return keeper().getLastOrder();
+        }
+
+        @Override
+        public Order getLastPendingOrder() {
+            return keeper().getLastPendingOrder();
+        }
+
+        @Override
+        public void cancelAllPendingOrders() {
+            if ( shadow ) {
+                suppressedActions++;
+                return;
+            }
+            keeper().cancelAllPendingOrders();
+        }
+
+        @Override
+        public List<Playbook> getAllPlaybooks() {
+            return keeper().getAllPlaybooks();
+        }
+
+        @Override
+        public List<Playbook> getActivePlaybooks(String openActionId) {
+            return keeper().getActivePlaybooks(openActionId);
+        }
+
+        @Override
+        public List<Playbook> getActivePlaybooksByInstrument(Exchangeable e) {
+            return keeper().getActivePlaybooksByInstrument(e);
+        }
+
+        @Override
+        public List<Playbook> getActivePlaybooksByState(PlaybookState state) {
+            return keeper().getActivePlaybooksByState(state);
+        }
+
+        @Override
+        public Playbook getPlaybook(String playbookId) {
+            return keeper().getPlaybook(playbookId);
+        }
+
+        /**
+         * 影子模式返回null
+         */
+        @Override
+        public Playbook createPlaybook(PlaybookBuilder builder) throws AppException {
+            if ( shadow ) {
+                suppressedActions++;
+                return null;
+            }
+            return keeper().createPlaybook(builder);
+        }
+
+        /**
+         * 影子模式返回false
+         */
+        @Override
+        public boolean closePlaybook(Playbook playbook, PlaybookCloseReq closeReq) {
+            if ( shadow ) {
+                suppressedActions++;
+                return false;
+            }
+            return keeper().closePlaybook(playbook, closeReq);
+        }
+    }
+
+}
@@ -10,13 +10,22 @@ public class TradletContextImpl implements TradletContext {
     private String configText;
     private Properties config;
     private TradletGroupImpl group;
+    private TradletGroup contextGroup;
 
     TradletContextImpl(TradletGroupImpl group, String configText)
     {
         this.group = group;
+        this.contextGroup = group;
         this.configText = configText;
     }
 
+    /**
+     * 热替换时使用影子策略组视图
+     */
+    void setContextGroup(TradletGroup contextGroup) {
+        this.contextGroup = contextGroup;
+    }
+
     @Override
     public BeansContainer getBeansContainer() {
         return group.getBeansContainer();
@@ -24,7 +33,7 @@ public class TradletContextImpl implements TradletContext {
 
     @Override
     public TradletGroup getGroup() {
-        return group;
+        return contextGroup;
     }
 
     @Override
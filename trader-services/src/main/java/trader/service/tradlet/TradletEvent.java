@@ -51,16 +51,23 @@ public class TradletEvent {
 
     public Object data;
 
+    /**
+     * 排队的System.nanoTime(), 用于延迟统计
+     */
+    public long queueNanoTime;
+
     public TradletEvent() {
     }
 
     public void setEvent(int eventType, Object data) {
         this.eventType = eventType;
         this.data = data;
+        this.queueNanoTime = System.nanoTime();
     }
 
     public void clear() {
         eventType=0;
         data = null;
+        queueNanoTime = 0;
     }
 }
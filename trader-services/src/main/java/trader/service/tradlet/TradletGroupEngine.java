@@ -15,6 +15,8 @@ import trader.common.beans.Lifecycle;
 import trader.common.config.ConfigUtil;
 import trader.common.util.ConversionUtil;
 import trader.common.util.StringUtil;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
 import trader.service.trade.AccountListener;
 import trader.service.util.ConcurrentUtil;
 
@@ -47,7 +49,7 @@ public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecyc
         //读取Group特有配置, 如果不存在, 读取通用配置
         String disruptorRingBufferSize = ConfigUtil.getString(TradletServiceImpl.ITEM_TRADLETGROUP+"#"+group.getId()+TradletServiceImpl.ITEM_SUFFIX_DISRUPTOR_RINGBUFFER_SIZE);
         if ( StringUtil.isEmpty(disruptorRingBufferSize)) {
-            disruptorRingBufferSize = ConfigUtil.getString(TradletServiceImpl.ITEM_GLOBAL_DISRUPTOR_RINGBUFFER_SIZE);
+            disruptorRingBufferSize = ConfigUtil.getString0(TradletServiceImpl.ITEM_GLOBAL_DISRUPTOR_RINGBUFFER_SIZE, "65536");
         }
         String disruptorWaitStrategy = ConfigUtil.getString(TradletServiceImpl.ITEM_TRADLETGROUP+"#"+group.getId()+TradletServiceImpl.ITEM_SUFFIX_DISRUPTOR_WAIT_STRATEGY);
         if ( StringUtil.isEmpty(disruptorWaitStrategy)) {
@@ -88,6 +90,7 @@ public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecyc
 
     @Override
     public void onEvent(TradletEvent event, long sequence, boolean endOfBatch) throws Exception {
+        LatencyRecorder.recordSince(Stage.TradletEventQueue, event.queueNanoTime);
         processEvent(event.eventType, event.data);
     }
 
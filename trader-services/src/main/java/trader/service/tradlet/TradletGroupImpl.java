@@ -1,7 +1,11 @@
 package trader.service.tradlet;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,7 +18,9 @@ import trader.common.exception.AppException;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.util.JsonUtil;
 import trader.service.ServiceErrorCodes;
+import trader.service.data.BatchedKVStore;
 import trader.service.data.KVStore;
+import trader.service.data.KVStoreService;
 import trader.service.trade.Account;
 import trader.service.trade.Order;
 import trader.service.trade.Transaction;
@@ -35,8 +41,9 @@ public class TradletGroupImpl implements TradletGroup, ServiceErrorCodes {
     private TradletGroupState state = TradletGroupState.Suspended;
     private Exchangeable exchangeable;
     private Account account;
-    private KVStore kvStore;
+    private BatchedKVStore kvStore;
     private List<TradletHolder> tradletHolders = new ArrayList<>();
+    private List<TradletHolder> shadowHolders = Collections.emptyList();
     private PlaybookKeeperImpl playbookKeeper;
     private long createTime;
     private long updateTime;
@@ -48,6 +55,10 @@ public class TradletGroupImpl implements TradletGroup, ServiceErrorCodes {
         this.beansContainer = beansContainer;
         createTime = System.currentTimeMillis();
         playbookKeeper = new PlaybookKeeperImpl(this);
+        KVStoreService kvStoreService = beansContainer.getBean(KVStoreService.class);
+        if ( kvStoreService!=null ) {
+            kvStore = kvStoreService.getBatchedStore("tradletGroup."+id+".");
+        }
     }
 
     @Override
@@ -79,6 +90,13 @@ public class TradletGroupImpl implements TradletGroup, ServiceErrorCodes {
         return tradletHolders;
     }
 
+    /**
+     * 热替换中, 以影子模式运行的新实例
+     */
+    public List<TradletHolder> getShadowHolders() {
+        return shadowHolders;
+    }
+
     @Override
     public List<Tradlet> getTradlets(){
         List<Tradlet> result = new ArrayList<>(tradletHolders.size());
@@ -117,7 +135,9 @@ public class TradletGroupImpl implements TradletGroup, ServiceErrorCodes {
     }
 
     /**
-     * 当配置有变化时, 实现动态更新
+     * 当配置有变化时, 实现动态更新.
+     * <BR>已经在运行的SwappableTradlet, 新实例以影子模式初始化, 预热完成后由swapReadyShadows()替换;
+     * 其它Tradlet和新增的Tradlet直接初始化, 被替换和删除的Tradlet销毁
      */
     public void update(TradletGroupTemplate template) throws AppException
     {
@@ -125,18 +145,97 @@ public class TradletGroupImpl implements TradletGroup, ServiceErrorCodes {
         this.configState = template.state;
         this.exchangeable = template.exchangeable;
         this.account = template.account;
-        this.tradletHolders = template.tradletHolders;
         updateTime = System.currentTimeMillis();
+        //尚未完成替换的影子实例直接丢弃
+        destroyHolders(shadowHolders);
+        shadowHolders = Collections.emptyList();
+        Map<String, TradletHolder> currHolders = new HashMap<>();
+        for(TradletHolder holder:tradletHolders) {
+            currHolders.put(holder.getId(), holder);
+        }
+        List<TradletHolder> holders = new ArrayList<>();
+        List<TradletHolder> shadows = new ArrayList<>();
+        List<TradletHolder> replacedHolders = new ArrayList<>();
         try {
             for(TradletHolder tradletHolder: template.tradletHolders) {
-                tradletHolder.init();
+                TradletHolder currHolder = currHolders.remove(tradletHolder.getId());
+                if ( currHolder!=null && tradletHolder.getTradlet() instanceof SwappableTradlet ) {
+                    tradletHolder.initShadow(this);
+                    holders.add(currHolder);
+                    shadows.add(tradletHolder);
+                } else {
+                    //不支持热替换, init()从策略组中恢复运行状态
+                    tradletHolder.init();
+                    holders.add(tradletHolder);
+                    if ( currHolder!=null ) {
+                        replacedHolders.add(currHolder);
+                    }
+                }
             }
         }catch(Throwable t) {
             throw new AppException(t, ERR_TRADLET_TRADLETGROUP_UPDATE_FAILED, "Tradlet group "+id+" update failed: "+t.toString());
         }
+        destroyHolders(replacedHolders);
+        destroyHolders(currHolders.values());
+        this.tradletHolders = holders;
+        this.shadowHolders = shadows;
         changeState();
     }
 
+    /**
+     * 用预热完成的影子实例替换旧实例, 只在策略组线程中调用, 替换过程不会有事件插入.
+     */
+    public void swapReadyShadows() {
+        List<TradletHolder> holders = null;
+        List<TradletHolder> remainShadows = new ArrayList<>();
+        for(TradletHolder shadow:shadowHolders) {
+            boolean ready = false;
+            try{
+                ready = shadow.isReady();
+            }catch(Throwable t) {
+                if ( shadow.setThrowable(t) ) {
+                    logger.error("策略组 "+getId()+" 策略 "+shadow.getId()+" 预热失败: "+t.toString(), t);
+                }
+            }
+            if ( !ready ) {
+                remainShadows.add(shadow);
+                continue;
+            }
+            if ( holders==null ) {
+                holders = new ArrayList<>(tradletHolders);
+            }
+            int index = 0;
+            while( !holders.get(index).getId().equals(shadow.getId()) ) {
+                index++;
+            }
+            TradletHolder oldHolder = holders.get(index);
+            try{
+                shadow.takeOver(oldHolder);
+            }catch(Throwable t) {
+                logger.error("策略组 "+getId()+" 策略 "+shadow.getId()+" 替换失败, 继续使用旧实例: "+t.toString(), t);
+                destroyHolders(Collections.singletonList(shadow));
+                continue;
+            }
+            holders.set(index, shadow);
+            destroyHolders(Collections.singletonList(oldHolder));
+            logger.info("策略组 "+getId()+" 策略 "+shadow.getId()+" 热替换完成");
+        }
+        if ( holders!=null ) {
+            tradletHolders = holders;
+            shadowHolders = remainShadows;
+        }
+    }
+
+    private void destroyHolders(Collection<TradletHolder> holders) {
+        for(TradletHolder holder:holders) {
+            try{
+                holder.destroy();
+            }catch(Throwable t) {
+                logger.error("策略组 "+getId()+" 销毁策略 "+holder.getId()+" 失败: "+t.toString(), t);
+            }
+        }
+    }
+
     /**
      * 找engineTradletGroupState, configTradletGroupState最小值
      */
@@ -161,6 +260,9 @@ public class TradletGroupImpl implements TradletGroup, ServiceErrorCodes {
         }
         json.addProperty("account", getAccount().getId());
         json.add("tradlets", JsonUtil.object2json(tradletHolders));
+        if ( !shadowHolders.isEmpty() ) {
+            json.add("shadowTradlets", JsonUtil.object2json(shadowHolders));
+        }
         json.add("playbookKeeper", playbookKeeper.toJson());
         return json;
     }
@@ -180,9 +282,30 @@ public class TradletGroupImpl implements TradletGroup, ServiceErrorCodes {
         playbookKeeper.onNoopSecond();
     }
 
+    /**
+     * 保存Playbook状态, 批量异步写入KVStore
+     */
+    private void savePlaybook(PlaybookImpl playbook) {
+        if ( kvStore!=null ) {
+            try{
+                kvStore.put("playbook."+playbook.getId(), playbook.toJson().toString());
+            }catch(Throwable t) {
+                logger.error("策略组 "+getId()+" 保存Playbook "+playbook.getId()+" 失败", t);
+            }
+        }
+    }
+
     public void onPlaybookStateChanged(Playbook playbook, PlaybookStateTuple oldStateTuple) {
-        for(int i=0;i<tradletHolders.size();i++) {
-            TradletHolder holder = tradletHolders.get(i);
+        playbookKeeper.onPlaybookStateChanged((PlaybookImpl)playbook, oldStateTuple);
+        savePlaybook((PlaybookImpl)playbook);
+        notifyPlaybookStateChanged(tradletHolders, playbook, oldStateTuple);
+        //影子实例同样需要跟踪Playbook, 替换后才能接管
+        notifyPlaybookStateChanged(shadowHolders, playbook, oldStateTuple);
+    }
+
+    private void notifyPlaybookStateChanged(List<TradletHolder> holders, Playbook playbook, PlaybookStateTuple oldStateTuple) {
+        for(int i=0;i<holders.size();i++) {
+            TradletHolder holder = holders.get(i);
             try{
                 holder.getTradlet().onPlaybookStateChanged(playbook, oldStateTuple);
             }catch(Throwable t) {
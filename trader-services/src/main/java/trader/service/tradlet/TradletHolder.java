@@ -16,6 +16,7 @@ class TradletHolder implements JsonEnabled, ServiceErrorCodes {
     private TradletContext context;
     private Throwable lastThrowable;
     private long lastThrowableTime;
+    private ShadowTradletGroup shadowGroup;
 
     public TradletHolder(String id, Tradlet tradlet, TradletContext context)
     {
@@ -40,11 +41,53 @@ class TradletHolder implements JsonEnabled, ServiceErrorCodes {
         tradlet.init(context);
     }
 
+    /**
+     * 热替换时以影子模式初始化, 在替换前交易动作被忽略
+     */
+    public void initShadow(TradletGroupImpl group) throws Exception
+    {
+        shadowGroup = new ShadowTradletGroup(group);
+        ((TradletContextImpl)context).setContextGroup(shadowGroup);
+        tradlet.init(context);
+    }
+
+    public boolean isShadow() {
+        return shadowGroup!=null && shadowGroup.isShadow();
+    }
+
+    /**
+     * 影子实例是否预热完成, 只有SwappableTradlet以影子模式运行
+     */
+    public boolean isReady() {
+        return ((SwappableTradlet)tradlet).isReady();
+    }
+
+    /**
+     * 接管旧实例: 导入旧实例状态后结束影子模式
+     */
+    public void takeOver(TradletHolder oldHolder)
+    {
+        JsonElement state = null;
+        if ( oldHolder.tradlet instanceof SwappableTradlet ) {
+            state = ((SwappableTradlet)oldHolder.tradlet).exportState();
+        }
+        ((SwappableTradlet)tradlet).importState(state);
+        shadowGroup.goLive();
+    }
+
+    public void destroy() {
+        tradlet.destroy();
+    }
+
     @Override
     public JsonElement toJson() {
         JsonObject json = new JsonObject();
         json.addProperty("id", id);
         json.addProperty("lastThrowableTime", lastThrowableTime);
+        if ( shadowGroup!=null ) {
+            json.addProperty("shadow", shadowGroup.isShadow());
+            json.addProperty("suppressedActions", shadowGroup.getSuppressedActions());
+        }
         if ( lastThrowable!=null ) {
             json.addProperty("lastThrowable", StringUtil.throwable2string(lastThrowable));
         }
@@ -56,6 +56,8 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
 
     static final String ITEM_GLOBAL_DISRUPTOR_WAIT_STRATEGY = "/TradletService"+ITEM_SUFFIX_DISRUPTOR_WAIT_STRATEGY;
     static final String ITEM_GLOBAL_DISRUPTOR_RINGBUFFER_SIZE = "/TradletService"+ITEM_SUFFIX_DISRUPTOR_RINGBUFFER_SIZE;
+    //热替换时用于预热新实例的最近行情事件数
+    static final String ITEM_GLOBAL_WARMUP_EVENTS = "/TradletService/warmupEvents";
 
     public static final String ITEM_TRADLETS = "/TradletService/tradlets";
 
@@ -92,15 +94,26 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
     @Override
     public void init(BeansContainer beansContainer)
     {
+        if ( mdService==null ) {
+            //不在Spring中运行时, 从BeansContainer获取
+            this.beansContainer = beansContainer;
+            mdService = beansContainer.getBean(MarketDataService.class);
+            taService = beansContainer.getBean(TAService.class);
+            pluginService = beansContainer.getBean(PluginService.class);
+            executorService = beansContainer.getBean(ExecutorService.class);
+            scheduledExecutorService = beansContainer.getBean(ScheduledExecutorService.class);
+        }
         mdService.addListener((MarketData md)->{
             queueMarketDataEvent(md);
         });
         taService.addListener((Exchangeable e, LeveledTimeSeries series)->{
             queueBarEvent(e, series);
         });
-        pluginService.registerListener(this);
         tradletInfos = loadStandardTradlets();
-        tradletInfos = reloadTradletInfos(tradletInfos, filterTradletPlugins(pluginService.getAllPlugins()), new TreeSet<>());
+        if ( pluginService!=null ) {
+            pluginService.registerListener(this);
+            tradletInfos = reloadTradletInfos(tradletInfos, filterTradletPlugins(pluginService.getAllPlugins()), new TreeSet<>());
+        }
         reloadGroups();
         scheduledExecutorService.scheduleAtFixedRate(()->{
             queueNoopSecondEvent();
@@ -110,7 +123,9 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
     @Override
     @PreDestroy
     public void destroy() {
-
+        for(TradletGroupEngine groupEngine:groupEngines) {
+            groupEngine.destroy();
+        }
     }
 
     @Override
@@ -356,9 +371,14 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
                 }
             }
             if ( tradletId!=null ) {
-                String groupConfig = ConfigUtil.getString(ITEM_TRADLETGROUP+"#"+group.getId()+".text");
-                groupEngine.queueEvent(TradletEvent.EVENT_TYPE_MISC_GROUP_UPDATE, groupConfig);
-                logger.info("策略组 "+group.getId()+" 重新加载, 因 tradlet 更新: "+tradletId);
+                //使用更新后的Tradlet实现类创建新实例, 在策略组线程中以影子模式预热后替换
+                try{
+                    TradletGroupTemplate template = TradletGroupTemplate.parse(beansContainer, group, group.getConfig());
+                    groupEngine.queueEvent(TradletEvent.EVENT_TYPE_MISC_GROUP_UPDATE, template);
+                    logger.info("策略组 "+group.getId()+" 重新加载, 因 tradlet 更新: "+tradletId);
+                }catch(Throwable t) {
+                    logger.error("策略组 "+group.getId()+" 重新加载失败, tradlet 更新: "+tradletId, t);
+                }
             }
         }
     }
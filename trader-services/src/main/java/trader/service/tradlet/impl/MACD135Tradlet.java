@@ -4,9 +4,9 @@ import java.util.Properties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.ta4j.core.TimeSeries;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
-import org.ta4j.core.num.Num;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Discoverable;
@@ -15,16 +15,16 @@ import trader.common.tick.PriceLevel;
 import trader.common.util.DateUtil;
 import trader.service.md.MarketData;
 import trader.service.ta.LeveledTimeSeries;
-import trader.service.ta.LongNum;
 import trader.service.ta.TAItem;
 import trader.service.ta.TAService;
-import trader.service.ta.indicators.MACDIndicator;
+import trader.service.ta.indicators.IncrementalMACD;
 import trader.service.trade.TradeConstants.PosDirection;
 import trader.service.tradlet.Playbook;
 import trader.service.tradlet.PlaybookBuilder;
 import trader.service.tradlet.PlaybookCloseReq;
 import trader.service.tradlet.PlaybookKeeper;
 import trader.service.tradlet.PlaybookStateTuple;
+import trader.service.tradlet.SwappableTradlet;
 import trader.service.tradlet.Tradlet;
 import trader.service.tradlet.TradletContext;
 import trader.service.tradlet.TradletGroup;
@@ -33,7 +33,7 @@ import trader.service.tradlet.TradletGroup;
  * MACD 1-3-5 策略
  */
 @Discoverable(interfaceClass = Tradlet.class, purpose = "MACD135")
-public class MACD135Tradlet implements Tradlet {
+public class MACD135Tradlet implements SwappableTradlet {
     private final static Logger logger = LoggerFactory.getLogger(MACD135Tradlet.class);
 
     public static final String OPEN_LONG_ACTION = "MACD135-Open-Long";
@@ -48,16 +48,12 @@ public class MACD135Tradlet implements Tradlet {
     private PlaybookKeeper playbookKeeper;
     private Playbook activePlaybook;
 
-    private TimeSeries min1Series;
-    private TimeSeries min3Series;
-    private TimeSeries min5Series;
-
-    private MACDIndicator min1MACD;
-    private org.ta4j.core.indicators.MACDIndicator min1DIFF;
-    private MACDIndicator min3MACD;
-    private org.ta4j.core.indicators.MACDIndicator min3DIFF;
-    private MACDIndicator min5MACD;
-    private org.ta4j.core.indicators.MACDIndicator min5DIFF;
+    /**
+     * TAEntry中增量计算的MACD, 与其它策略共享
+     */
+    private IncrementalMACD min1MACD;
+    private IncrementalMACD min3MACD;
+    private IncrementalMACD min5MACD;
 
     private Properties props = new Properties();
 
@@ -71,26 +67,45 @@ public class MACD135Tradlet implements Tradlet {
         taService = beansContainer.getBean(TAService.class);
 
         TAItem item = taService.getItem(instrument);
-        min1Series = item.getSeries(PriceLevel.MIN1);
-        min3Series = item.getSeries(PriceLevel.MIN3);
-        min5Series = item.getSeries(PriceLevel.MIN5);
+        min1MACD = item.getMACD(PriceLevel.MIN1);
+        min3MACD = item.getMACD(PriceLevel.MIN3);
+        min5MACD = item.getMACD(PriceLevel.MIN5);
+    }
 
-        ClosePriceIndicator min1ClosePrice = new ClosePriceIndicator(min1Series);
-        ClosePriceIndicator min3ClosePrice = new ClosePriceIndicator(min3Series);
-        ClosePriceIndicator min5ClosePrice = new ClosePriceIndicator(min5Series);
+    @Override
+    public void destroy() {
 
-        min1MACD = new MACDIndicator(min1ClosePrice);
-        min3MACD = new MACDIndicator(min3ClosePrice);
-        min5MACD = new MACDIndicator(min5ClosePrice);
+    }
 
-        min1DIFF = new org.ta4j.core.indicators.MACDIndicator(min1ClosePrice, 12, 26);
-        min3DIFF = new org.ta4j.core.indicators.MACDIndicator(min3ClosePrice, 12, 26);
-        min5DIFF = new org.ta4j.core.indicators.MACDIndicator(min5ClosePrice, 12, 26);
+    /**
+     * MACD由TAEntry增量计算, 新实例不需要额外预热
+     */
+    @Override
+    public boolean isReady() {
+        return min1MACD!=null && min3MACD!=null && min5MACD!=null;
     }
 
+    /**
+     * 导出当前活动的Playbook
+     */
     @Override
-    public void destroy() {
+    public JsonElement exportState() {
+        JsonObject json = new JsonObject();
+        if ( activePlaybook!=null ) {
+            json.addProperty("activePlaybook", activePlaybook.getId());
+        }
+        return json;
+    }
 
+    @Override
+    public void importState(JsonElement state) {
+        if ( state==null || !state.isJsonObject() || !state.getAsJsonObject().has("activePlaybook") ) {
+            return;
+        }
+        Playbook playbook = playbookKeeper.getPlaybook(state.getAsJsonObject().get("activePlaybook").getAsString());
+        if ( playbook!=null && !playbook.getStateTuple().getState().isDone() ) {
+            activePlaybook = playbook;
+        }
     }
 
     @Override
@@ -191,9 +206,9 @@ public class MACD135Tradlet implements Tradlet {
 
         result =
                 //MACD(MIN3)<=MACD(MIN3,1)
-                levelLongCloseCriteria(min3Series, min3MACD, min3DIFF)
+                levelLongCloseCriteria(min3MACD)
                 //MACD(MIN1)<=MACD(MIN1,1)
-                && levelLongCloseCriteria(min1Series, min1MACD, min1DIFF);
+                && levelLongCloseCriteria(min1MACD);
 
         return result;
     }
@@ -206,9 +221,9 @@ public class MACD135Tradlet implements Tradlet {
 
         result =
                 //MACD(MIN3)<=MACD(MIN3,1)
-                levelShortCloseCriteria(min3Series, min3MACD, min3DIFF)
+                levelShortCloseCriteria(min3MACD)
                 //MACD(MIN1)<=MACD(MIN1,1)
-                && levelShortCloseCriteria(min1Series, min1MACD, min1DIFF);
+                && levelShortCloseCriteria(min1MACD);
 
         return result;
 
@@ -222,11 +237,11 @@ public class MACD135Tradlet implements Tradlet {
 
         result =
                 //DIFF(MIN5)>=0 && MACD(MIN5)>=MACD(MIN5,1)
-                levelLongCriteria(min5Series, min5MACD, min5DIFF)
+                levelLongCriteria(min5MACD)
                 //DIFF(MIN3)>=0 && MACD(MIN3)>=MACD(MIN3,1)
-                && levelLongCriteria(min3Series, min3MACD, min3DIFF)
+                && levelLongCriteria(min3MACD)
                 //DIFF(MIN1) > DIFF(MIN1,1)
-                && levelDIFF_G_THAN_DIFF1(min1Series, min1DIFF);
+                && levelDIFF_G_THAN_DIFF1(min1MACD);
         return result;
     }
 
@@ -238,26 +253,26 @@ public class MACD135Tradlet implements Tradlet {
 
         result =
                 //DIFF(MIN5)<=0 && MACD(MIN5)<=MACD(MIN5,1)
-                levelShortCriteria(min5Series, min5MACD, min5DIFF)
+                levelShortCriteria(min5MACD)
                 //DIFF(MIN3)<=0 && MACD(MIN3)<=MACD(MIN3,1)
-                && levelShortCriteria(min3Series, min3MACD, min3DIFF)
+                && levelShortCriteria(min3MACD)
                 //DIFF(MIN1)<DIFF(MIN1,1)
-                && levelDIFF_L_THAN_DIFF1(min1Series, min1DIFF);
+                && levelDIFF_L_THAN_DIFF1(min1MACD);
         return result;
     }
 
     /**
      * DIFF()<=0 && MACD<=MACD(1)
      */
-    private boolean levelLongCloseCriteria(TimeSeries levelSeries, MACDIndicator levelMACD, org.ta4j.core.indicators.MACDIndicator levelDIFF)
+    private boolean levelLongCloseCriteria(IncrementalMACD levelMACD)
     {
         boolean result = false;
-        int levelLastIndex = levelSeries.getEndIndex();
+        int levelLastIndex = levelMACD.getEndIndex();
         if ( levelLastIndex>=1 ) {
-            Num levelDIFFValue = levelDIFF.getValue(levelLastIndex);
-            Num levelMACD0 = levelMACD.getValue(levelLastIndex);
-            Num levelMACD1 = levelMACD.getValue(levelLastIndex-1);
-            result = levelDIFFValue.isLessThanOrEqual(LongNum.ZERO) && levelMACD0.isLessThanOrEqual(levelMACD1);
+            double levelDIFFValue = levelMACD.getDIFF(levelLastIndex);
+            double levelMACD0 = levelMACD.getMACD(levelLastIndex);
+            double levelMACD1 = levelMACD.getMACD(levelLastIndex-1);
+            result = levelDIFFValue<=0 && levelMACD0<=levelMACD1;
         }
         return result;
     }
@@ -265,15 +280,15 @@ public class MACD135Tradlet implements Tradlet {
     /**
      * DIFF()>=0 && MACD>=MACD(1)
      */
-    private boolean levelShortCloseCriteria(TimeSeries levelSeries, MACDIndicator levelMACD, org.ta4j.core.indicators.MACDIndicator levelDIFF)
+    private boolean levelShortCloseCriteria(IncrementalMACD levelMACD)
     {
         boolean result = false;
-        int levelLastIndex = levelSeries.getEndIndex();
+        int levelLastIndex = levelMACD.getEndIndex();
         if ( levelLastIndex>=1 ) {
-            Num levelDIFFValue = levelDIFF.getValue(levelLastIndex);
-            Num levelMACD0 = levelMACD.getValue(levelLastIndex);
-            Num levelMACD1 = levelMACD.getValue(levelLastIndex-1);
-            result = levelDIFFValue.isGreaterThanOrEqual(LongNum.ZERO) && levelMACD0.isGreaterThanOrEqual(levelMACD1);
+            double levelDIFFValue = levelMACD.getDIFF(levelLastIndex);
+            double levelMACD0 = levelMACD.getMACD(levelLastIndex);
+            double levelMACD1 = levelMACD.getMACD(levelLastIndex-1);
+            result = levelDIFFValue>=0 && levelMACD0>=levelMACD1;
         }
         return result;
     }
@@ -281,13 +296,13 @@ public class MACD135Tradlet implements Tradlet {
     /**
      * 判断 DIFF>DIFF(1)
      */
-    private static boolean levelDIFF_G_THAN_DIFF1(TimeSeries levelSeries, org.ta4j.core.indicators.MACDIndicator levelDIFF) {
+    private static boolean levelDIFF_G_THAN_DIFF1(IncrementalMACD levelMACD) {
         boolean result = false;
-        int levelLastIndex = levelSeries.getEndIndex();
+        int levelLastIndex = levelMACD.getEndIndex();
         if ( levelLastIndex>=1 ) {
-            Num levelDIFFValue = levelDIFF.getValue(levelLastIndex);
-            Num levelDIFFValue0 = levelDIFF.getValue(levelLastIndex-1);
-            result = levelDIFFValue.isGreaterThan(levelDIFFValue0);
+            double levelDIFFValue = levelMACD.getDIFF(levelLastIndex);
+            double levelDIFFValue0 = levelMACD.getDIFF(levelLastIndex-1);
+            result = levelDIFFValue>levelDIFFValue0;
         }
         return result;
     }
@@ -295,39 +310,39 @@ public class MACD135Tradlet implements Tradlet {
     /**
      * 判断 DIFF<DIFF(1)
      */
-    private static boolean levelDIFF_L_THAN_DIFF1(TimeSeries levelSeries, org.ta4j.core.indicators.MACDIndicator levelDIFF) {
+    private static boolean levelDIFF_L_THAN_DIFF1(IncrementalMACD levelMACD) {
         boolean result = false;
-        int levelLastIndex = levelSeries.getEndIndex();
+        int levelLastIndex = levelMACD.getEndIndex();
         if ( levelLastIndex>=1 ) {
-            Num levelDIFFValue = levelDIFF.getValue(levelLastIndex);
-            Num levelDIFFValue0 = levelDIFF.getValue(levelLastIndex-1);
-            result = levelDIFFValue.isLessThan(levelDIFFValue0);
+            double levelDIFFValue = levelMACD.getDIFF(levelLastIndex);
+            double levelDIFFValue0 = levelMACD.getDIFF(levelLastIndex-1);
+            result = levelDIFFValue<levelDIFFValue0;
         }
         return result;
     }
 
-    private static boolean levelLongCriteria(TimeSeries levelSeries, MACDIndicator levelMACD, org.ta4j.core.indicators.MACDIndicator levelDIFF)
+    private static boolean levelLongCriteria(IncrementalMACD levelMACD)
     {
         boolean result = false;
-        int levelLastIndex = levelSeries.getEndIndex();
+        int levelLastIndex = levelMACD.getEndIndex();
         if ( levelLastIndex>=1 ) {
-            Num levelDIFFValue = levelDIFF.getValue(levelLastIndex);
-            Num levelMACD0 = levelMACD.getValue(levelLastIndex);
-            Num levelMACD1 = levelMACD.getValue(levelLastIndex-1);
-            result = levelDIFFValue.isGreaterThanOrEqual(LongNum.ZERO) && levelMACD0.isGreaterThanOrEqual(levelMACD1);
+            double levelDIFFValue = levelMACD.getDIFF(levelLastIndex);
+            double levelMACD0 = levelMACD.getMACD(levelLastIndex);
+            double levelMACD1 = levelMACD.getMACD(levelLastIndex-1);
+            result = levelDIFFValue>=0 && levelMACD0>=levelMACD1;
         }
         return result;
     }
 
-    private static boolean levelShortCriteria(TimeSeries levelSeries, MACDIndicator levelMACD, org.ta4j.core.indicators.MACDIndicator levelDIFF)
+    private static boolean levelShortCriteria(IncrementalMACD levelMACD)
     {
         boolean result = false;
-        int levelLastIndex = levelSeries.getEndIndex();
+        int levelLastIndex = levelMACD.getEndIndex();
         if ( levelLastIndex>=1 ) {
-            Num levelDIFFValue = levelDIFF.getValue(levelLastIndex);
-            Num levelMACD0 = levelMACD.getValue(levelLastIndex);
-            Num levelMACD1 = levelMACD.getValue(levelLastIndex-1);
-            result = levelDIFFValue.isLessThanOrEqual(LongNum.ZERO) && levelMACD0.isLessThanOrEqual(levelMACD1);
+            double levelDIFFValue = levelMACD.getDIFF(levelLastIndex);
+            double levelMACD0 = levelMACD.getMACD(levelLastIndex);
+            double levelMACD1 = levelMACD.getMACD(levelLastIndex-1);
+            result = levelDIFFValue<=0 && levelMACD0<=levelMACD1;
         }
         return result;
     }
@@ -14,6 +14,15 @@ public abstract class AbsStopPolicy implements JsonEnabled {
 
     protected MarketTimeService mtService;
     protected ExchangeableTradingTimes tradingTimes;
+    /**
+     * 上次检查后, 价格在(priceLow, priceHigh)区间内变化不会改变检查结果, 由StopTriggerBook使用
+     */
+    protected long priceLow = Long.MAX_VALUE;
+    protected long priceHigh = Long.MIN_VALUE;
+    /**
+     * 上次检查后, 下次需要检查的时间(epoch millis)
+     */
+    protected long deadline = Long.MIN_VALUE;
 
     AbsStopPolicy(BeansContainer beansContainer){
         mtService = beansContainer.getBean(MarketTimeService.class);
@@ -26,6 +35,15 @@ public abstract class AbsStopPolicy implements JsonEnabled {
      */
     public abstract String needStop(Playbook playbook, long newPrice);
 
+    /**
+     * 检查结果与价格无关, 只在deadline到达后再检查
+     */
+    protected void setPriceIndependent(long deadline) {
+        this.priceLow = Long.MIN_VALUE;
+        this.priceHigh = Long.MAX_VALUE;
+        this.deadline = deadline;
+    }
+
 
     /**
      * 检查两个时间戳之间的市场时间是否大于某个数值
@@ -43,7 +61,8 @@ public abstract class AbsStopPolicy implements JsonEnabled {
             int beginMarketTime = tradingTimes.getTradingTime(DateUtil.long2datetime(e.exchange().getZoneId(), beginTime));
             int endMarketTime = tradingTimes.getTradingTime(DateUtil.long2datetime(e.exchange().getZoneId(), endTime));
 
-            if ( (endMarketTime-beginMarketTime)>=marketSeconds ) {
+            //getTradingTime返回毫秒
+            if ( (endMarketTime-beginMarketTime)>=marketSeconds*1000L ) {
                 return true;
             }
         }
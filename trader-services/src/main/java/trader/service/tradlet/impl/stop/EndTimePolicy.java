@@ -44,6 +44,7 @@ public class EndTimePolicy extends AbsStopPolicy {
         }
         Instant endInstant = this.endTime.atZone(playbook.getExchangable().exchange().getZoneId()).toInstant();
         this.endEpochMillis = endInstant.toEpochMilli();
+        setPriceIndependent(endEpochMillis);
     }
 
     @Override
@@ -28,6 +28,8 @@ public class MaxLifeTimePolicy extends AbsStopPolicy implements JsonEnabled {
         if ( marketTimeGreateThan(playbook.getExchangable(), beginTime, currTime, maxLifeSeconds) ){
             return StopLossPolicy.MaxLifeTime.name();
         }
+        //市场时间不会快于自然时间, 之前不需要检查; 之后逐秒检查
+        setPriceIndependent(Math.max(beginTime+maxLifeSeconds*1000L, currTime+1000));
         return null;
     }
 
@@ -93,7 +93,8 @@ public class PriceStepPolicy extends AbsStopPolicy implements JsonEnabled {
     @Override
     public String needStop(Playbook playbook, long newPrice) {
         long currTimeMillis = mtService.currentTimeMillis();
-        int clearIndex = -1;
+        int clearIndex = priceSteps.length;
+        long nextDeadline = Long.MAX_VALUE;
         for(int i=0;i<priceSteps.length;i++) {
             PriceStep priceStep = priceSteps[i];
             if ( priceStep.priceRange ) { //价格>=priceBase
@@ -115,14 +116,16 @@ public class PriceStepPolicy extends AbsStopPolicy implements JsonEnabled {
             if ( marketTimeGreateThan(playbook.getExchangable(), priceStep.beginMillis, priceStep.lastMillis, priceStep.seconds) ){
                 return StopLossPolicy.PriceStep.name()+" "+PriceUtil.long2str(priceStep.priceBase);
             }
+            //市场时间不会快于自然时间, 之前不需要检查; 之后逐秒检查
+            nextDeadline = Math.min(nextDeadline, Math.max(priceStep.beginMillis+priceStep.seconds*1000L, currTimeMillis+1000));
         }
         //后面的价格统统清除
-        if ( clearIndex>0 ) {
-            for(int i=clearIndex; i<priceSteps.length;i++) {
-                priceSteps[i].beginMillis = 0;
-                priceSteps[i].lastMillis = 0;
-            }
+        for(int i=clearIndex; i<priceSteps.length;i++) {
+            priceSteps[i].beginMillis = 0;
+            priceSteps[i].lastMillis = 0;
         }
+        updatePriceRange(newPrice);
+        deadline = nextDeadline;
         return null;
     }
 
@@ -134,7 +137,7 @@ public class PriceStepPolicy extends AbsStopPolicy implements JsonEnabled {
             JsonObject json = new JsonObject();
             json.addProperty("priceRange", step.priceRange);
             json.addProperty("priceBase", step.priceBase);
-            json.addProperty("seconds", step.priceBase);
+            json.addProperty("seconds", step.seconds);
             json.addProperty("beginMillis", step.beginMillis);
             json.addProperty("lastMillis", step.lastMillis);
             array.add(json);
@@ -152,6 +155,24 @@ public class PriceStepPolicy extends AbsStopPolicy implements JsonEnabled {
         return result;
     }
 
+    /**
+     * 价格在相邻两个priceBase之间变化时, 各价格阶梯的状态不变
+     */
+    private void updatePriceRange(long newPrice) {
+        long low = Long.MIN_VALUE, high = Long.MAX_VALUE;
+        for(int i=0;i<priceSteps.length;i++) {
+            long priceBase = priceSteps[i].priceBase;
+            if ( priceBase<=newPrice && priceBase>low ) {
+                low = priceBase;
+            }
+            if ( priceBase>=newPrice && priceBase<high ) {
+                high = priceBase;
+            }
+        }
+        priceLow = low;
+        priceHigh = high;
+    }
+
     /**
      * 延续PriceStep时间
      */
@@ -34,22 +34,26 @@ public class PriceTrendPolicy extends AbsStopPolicy implements JsonEnabled{
             maxReverseStrokeLength = str2price(playbook.getExchangable(), json.get("maxReverseStrokeLength").getAsString());
         }
         if ( json.has("maxReverseSectionLength")) {
-            maxReverseStrokeLength = str2price(playbook.getExchangable(), json.get("maxReverseSectionLength").getAsString());
+            maxReverseSectionLength = str2price(playbook.getExchangable(), json.get("maxReverseSectionLength").getAsString());
         }
         if ( json.has("maxProfitPriceLoss")) {
-            maxReverseStrokeLength = str2price(playbook.getExchangable(), json.get("maxProfitPriceLoss").getAsString());
+            maxProfitPriceLoss = str2price(playbook.getExchangable(), json.get("maxProfitPriceLoss").getAsString());
         }
     }
 
     @Override
     public JsonElement toJson() {
         JsonObject json = new JsonObject();
-
+        json.addProperty("maxReverseStrokeLength", maxReverseStrokeLength);
+        json.addProperty("maxReverseSectionLength", maxReverseSectionLength);
+        json.addProperty("maxProfitPriceLoss", maxProfitPriceLoss);
         return json;
     }
 
     @Override
     public String needStop(Playbook playbook, long newPrice) {
+        //尚未实现, 不需要再次检查
+        setPriceIndependent(Long.MAX_VALUE);
         return null;
     }
 
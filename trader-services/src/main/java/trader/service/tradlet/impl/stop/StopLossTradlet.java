@@ -1,5 +1,10 @@
 package trader.service.tradlet.impl.stop;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,6 +14,7 @@ import com.google.gson.JsonParser;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Discoverable;
+import trader.common.exchangeable.Exchangeable;
 import trader.common.util.JsonEnabled;
 import trader.common.util.StringUtil;
 import trader.service.md.MarketData;
@@ -19,6 +25,7 @@ import trader.service.tradlet.Playbook;
 import trader.service.tradlet.PlaybookCloseReq;
 import trader.service.tradlet.PlaybookKeeper;
 import trader.service.tradlet.PlaybookStateTuple;
+import trader.service.tradlet.SwappableTradlet;
 import trader.service.tradlet.Tradlet;
 import trader.service.tradlet.TradletConstants;
 import trader.service.tradlet.TradletContext;
@@ -31,10 +38,11 @@ import trader.service.tradlet.TradletGroup;
  * <LI>最长持仓时间: 到达最大持仓时间后, 即平仓
  * <LI>最后持仓时间: 到达某绝对市场时间, 即平仓
  *
- * 需要为每个playbook实例构建运行时数据, 保证tradlet重新加载后可用.
+ * 需要为每个playbook实例构建运行时数据, 保存在Playbook属性中, 保证tradlet重新加载或热替换后可用.
+ * <BR>止损条件按品种放在StopTriggerBook中, 每个TICK只检查价格穿越的条件, 每秒只检查到期的条件.
  */
 @Discoverable(interfaceClass = Tradlet.class, purpose = "StopLoss")
-public class StopLossTradlet implements Tradlet, TradletConstants {
+public class StopLossTradlet implements SwappableTradlet, TradletConstants {
     private final static Logger logger = LoggerFactory.getLogger(StopLossTradlet.class);
 
     public static class PriceTrend implements JsonEnabled{
@@ -62,6 +70,12 @@ public class StopLossTradlet implements Tradlet, TradletConstants {
     private TradletGroup group;
     private PlaybookKeeper playbookKeeper;
     private JsonObject templates;
+    /**
+     * 每个品种的止损触发簿
+     */
+    private Map<Exchangeable, StopTriggerBook> triggerBooks = new HashMap<>();
+    private Map<String, List<StopTrigger>> playbookTriggers = new HashMap<>();
+    private List<StopTrigger> firedTriggers = new ArrayList<>();
 
     @Override
     public void init(TradletContext context) throws Exception
@@ -74,6 +88,10 @@ public class StopLossTradlet implements Tradlet, TradletConstants {
         if ( !StringUtil.isEmpty(context.getConfigText())) {
             templates = (JsonObject)(new JsonParser()).parse(context.getConfigText());
         }
+        //重新加载后为已有的Playbook恢复触发条件
+        for(Playbook playbook:playbookKeeper.getActivePlaybooks(null)) {
+            restoreTriggers(playbook);
+        }
     }
 
     @Override
@@ -81,17 +99,47 @@ public class StopLossTradlet implements Tradlet, TradletConstants {
 
     }
 
+    /**
+     * 运行时数据保存在Playbook属性中, 不需要预热
+     */
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public JsonElement exportState() {
+        return null;
+    }
+
+    /**
+     * 影子模式期间Playbook状态变化已经通过onPlaybookStateChanged()跟踪, 这里按当前活动Playbook重建一次触发条件
+     */
+    @Override
+    public void importState(JsonElement state) {
+        triggerBooks.clear();
+        playbookTriggers.clear();
+        for(Playbook playbook:playbookKeeper.getActivePlaybooks(null)) {
+            restoreTriggers(playbook);
+        }
+    }
+
     @Override
     public void onPlaybookStateChanged(Playbook playbook, PlaybookStateTuple oldStateTuple) {
         if ( oldStateTuple==null ) {
-            //从Playbook 属性构建运行时数据.
-            playbook.setAttr(PBATTR_STOPLOSS_RUNTIME, buildRuntime(playbook));
+            //从Playbook 属性构建运行时数据, 热替换时新旧实例共用同一份
+            restoreTriggers(playbook);
+        } else if ( playbook.getStateTuple().getState().isDone() ) {
+            removeTriggers(playbook);
         }
     }
 
     @Override
     public void onTick(MarketData marketData) {
-        checkActivePlaybooks(marketData);
+        StopTriggerBook book = triggerBooks.get(marketData.instrumentId);
+        if ( book!=null ) {
+            checkTriggers(book, marketData.lastPrice);
+        }
     }
 
     @Override
@@ -100,46 +148,110 @@ public class StopLossTradlet implements Tradlet, TradletConstants {
 
     @Override
     public void onNoopSecond() {
-        checkActivePlaybooks(null);
+        if ( triggerBooks.isEmpty() ) {
+            return;
+        }
+        for(Map.Entry<Exchangeable, StopTriggerBook> entry:triggerBooks.entrySet()) {
+            MarketData md = mdService.getLastData(entry.getKey());
+            checkTriggers(entry.getValue(), md!=null?md.lastPrice:0);
+        }
     }
 
-    private void checkActivePlaybooks(MarketData md) {
-        for(Playbook playbook:playbookKeeper.getActivePlaybooks(null)) {
-            long newPrice = 0;
-            if ( md!=null && playbook.getExchangable().equals(md.instrumentId) ) {
-                newPrice = md.lastPrice;
+    /**
+     * 只检查价格穿越或到期的止损条件
+     *
+     * @param newPrice 最新价格, 0代表没有行情, 只检查时间
+     */
+    private void checkTriggers(StopTriggerBook book, long newPrice) {
+        if ( book.size()==0 ) {
+            return;
+        }
+        long currTimeMillis = mtService.currentTimeMillis();
+        book.collect(newPrice, currTimeMillis, firedTriggers);
+        for(int i=0;i<firedTriggers.size();i++) {
+            StopTrigger trigger = firedTriggers.get(i);
+            if ( trigger.removed ) {
+                continue;
+            }
+            if ( newPrice==0 ) {
+                //没有行情价格, 下一秒再检查
+                retryLater(book, trigger, currTimeMillis);
+                continue;
             }
-            String closeReason = needStopLoss(playbook, newPrice);
-            if ( closeReason!=null ) {
-                PlaybookCloseReq closeReq = new PlaybookCloseReq();
-                closeReq.setActionId(closeReason);
-                playbookKeeper.closePlaybook(playbook, closeReq);
+            String closeReason = trigger.policy.needStop(trigger.playbook, newPrice);
+            if ( closeReason==null ) {
+                trigger.updateFromPolicy();
+                book.rearm(trigger);
+                continue;
+            }
+            PlaybookCloseReq closeReq = new PlaybookCloseReq();
+            closeReq.setActionId(closeReason);
+            if ( playbookKeeper.closePlaybook(trigger.playbook, closeReq) ) {
+                removeTriggers(trigger.playbook);
+            } else {
+                retryLater(book, trigger, currTimeMillis);
             }
         }
+        firedTriggers.clear();
+    }
+
+    private void retryLater(StopTriggerBook book, StopTrigger trigger, long currTimeMillis) {
+        trigger.priceLow = Long.MIN_VALUE;
+        trigger.priceHigh = Long.MAX_VALUE;
+        trigger.deadline = currTimeMillis+1000;
+        book.rearm(trigger);
     }
 
     /**
-     * 检查是否需要立刻止损
+     * 使用Playbook已有的运行时数据, 没有时新建
      */
-    private String needStopLoss(Playbook playbook, long newPrice) {
+    private void restoreTriggers(Playbook playbook) {
         AbsStopPolicy[] runtime = (AbsStopPolicy[])playbook.getAttr(PBATTR_STOPLOSS_RUNTIME);
         if ( runtime==null ) {
-            return null;
+            runtime = buildRuntime(playbook);
+            playbook.setAttr(PBATTR_STOPLOSS_RUNTIME, runtime);
+        }
+        addTriggers(playbook, runtime);
+    }
+
+    private void addTriggers(Playbook playbook, AbsStopPolicy[] runtime) {
+        if ( runtime==null ) {
+            return;
         }
+        Exchangeable e = playbook.getExchangable();
+        StopTriggerBook book = triggerBooks.get(e);
+        if ( book==null ) {
+            book = new StopTriggerBook();
+            triggerBooks.put(e, book);
+        }
+        List<StopTrigger> triggers = new ArrayList<>(runtime.length);
         for(int i=0;i<runtime.length;i++) {
             if ( runtime[i]!=null ) {
-                String closeAction = runtime[i].needStop(playbook, newPrice);
-                if ( closeAction!=null) {
-                    return closeAction;
-                }
+                StopTrigger trigger = new StopTrigger(playbook, runtime[i]);
+                book.add(trigger);
+                triggers.add(trigger);
             }
         }
-        return null;
+        playbookTriggers.put(playbook.getId(), triggers);
+    }
+
+    private void removeTriggers(Playbook playbook) {
+        List<StopTrigger> triggers = playbookTriggers.remove(playbook.getId());
+        if ( triggers==null ) {
+            return;
+        }
+        StopTriggerBook book = triggerBooks.get(playbook.getExchangable());
+        for(StopTrigger trigger:triggers) {
+            book.remove(trigger);
+        }
     }
 
     private AbsStopPolicy[] buildRuntime(Playbook playbook)
     {
         AbsStopPolicy[] result = null;
+        if ( templates==null ) {
+            return null;
+        }
         JsonObject template = (JsonObject)templates.get(playbook.getTemplateId());
         if (template==null) {
             template = (JsonObject)templates.get("default");
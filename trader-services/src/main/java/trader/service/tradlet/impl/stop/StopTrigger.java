@@ -0,0 +1,42 @@
+package trader.service.tradlet.impl.stop;
+
+import trader.service.tradlet.Playbook;
+
+/**
+ * 某个Playbook的某个止损策略在StopTriggerBook中的触发条件.
+ * <BR>价格在(priceLow, priceHigh)区间内且时间早于deadline时不需要检查.
+ */
+class StopTrigger {
+
+    final Playbook playbook;
+    final AbsStopPolicy policy;
+
+    long priceLow = Long.MIN_VALUE;
+    long priceHigh = Long.MAX_VALUE;
+    long deadline = Long.MAX_VALUE;
+
+    /**
+     * 触发条件的版本号, 对应的堆/时间轮节点版本号不一致时作废
+     */
+    int lowGen, highGen, timerGen;
+    boolean removed;
+    /**
+     * 避免同一次collect重复返回
+     */
+    int collectSeq;
+
+    StopTrigger(Playbook playbook, AbsStopPolicy policy) {
+        this.playbook = playbook;
+        this.policy = policy;
+    }
+
+    /**
+     * 从止损策略复制最新的检查区间和检查时间
+     */
+    void updateFromPolicy() {
+        priceLow = policy.priceLow;
+        priceHigh = policy.priceHigh;
+        deadline = policy.deadline;
+    }
+
+}
@@ -0,0 +1,320 @@
+package trader.service.tradlet.impl.stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 单个品种的止损触发簿.
+ * <BR>价格触发条件按照价格排序(priceHigh最小堆, priceLow最大堆), 时间触发条件放在按秒划分的时间轮中.
+ * 每次行情只返回被价格穿越的触发条件, 每秒只返回到期的触发条件.
+ * <BR>触发条件修改时不从堆/时间轮删除原有节点, 而是通过版本号作废, 返回前检查.
+ * <BR>非线程安全, 只在策略组线程中使用.
+ */
+class StopTriggerBook {
+
+    /**
+     * 按long值排序的堆, 节点带有版本号
+     */
+    private static class TriggerHeap {
+        private final boolean minHeap;
+        private long[] keys = new long[16];
+        private int[] gens = new int[16];
+        private StopTrigger[] triggers = new StopTrigger[16];
+        private int size;
+
+        TriggerHeap(boolean minHeap){
+            this.minHeap = minHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size==0;
+        }
+
+        long peekKey() {
+            return keys[0];
+        }
+
+        int peekGen() {
+            return gens[0];
+        }
+
+        StopTrigger peekTrigger() {
+            return triggers[0];
+        }
+
+        void push(long key, int gen, StopTrigger trigger) {
+            if ( size==keys.length ) {
+                int newLen = size*2;
+                keys = Arrays.copyOf(keys, newLen);
+                gens = Arrays.copyOf(gens, newLen);
+                triggers = Arrays.copyOf(triggers, newLen);
+            }
+            int i = size++;
+            while(i>0) {
+                int parent = (i-1)>>>1;
+                if ( !before(key, keys[parent]) ) {
+                    break;
+                }
+                set(i, keys[parent], gens[parent], triggers[parent]);
+                i = parent;
+            }
+            set(i, key, gen, trigger);
+        }
+
+        void pop() {
+            int last = --size;
+            long key = keys[last];
+            int gen = gens[last];
+            StopTrigger trigger = triggers[last];
+            triggers[last] = null;
+            if ( last>0 ) {
+                siftDown(0, key, gen, trigger);
+            }
+        }
+
+        /**
+         * 删除作废节点后重建堆
+         */
+        void compact(TriggerValidator validator) {
+            int newSize = 0;
+            for(int i=0;i<size;i++) {
+                if ( validator.isValid(triggers[i], gens[i]) ) {
+                    set(newSize++, keys[i], gens[i], triggers[i]);
+                }
+            }
+            Arrays.fill(triggers, newSize, size, null);
+            size = newSize;
+            for(int i=(size>>>1)-1;i>=0;i--) {
+                siftDown(i, keys[i], gens[i], triggers[i]);
+            }
+        }
+
+        private void siftDown(int i, long key, int gen, StopTrigger trigger) {
+            int half = size>>>1;
+            while(i<half) {
+                int child = 2*i+1;
+                int right = child+1;
+                if ( right<size && before(keys[right], keys[child]) ) {
+                    child = right;
+                }
+                if ( !before(keys[child], key) ) {
+                    break;
+                }
+                set(i, keys[child], gens[child], triggers[child]);
+                i = child;
+            }
+            set(i, key, gen, trigger);
+        }
+
+        private boolean before(long k1, long k2) {
+            return minHeap ? k1<k2 : k1>k2;
+        }
+
+        private void set(int i, long key, int gen, StopTrigger trigger) {
+            keys[i] = key;
+            gens[i] = gen;
+            triggers[i] = trigger;
+        }
+    }
+
+    private static interface TriggerValidator{
+        boolean isValid(StopTrigger trigger, int gen);
+    }
+
+    /**
+     * 时间轮的槽位数量, 每个槽位1秒
+     */
+    static final int WHEEL_SLOTS = 512;
+    private static final int WHEEL_MASK = WHEEL_SLOTS-1;
+
+    private TriggerHeap highHeap = new TriggerHeap(true);
+    private TriggerHeap lowHeap = new TriggerHeap(false);
+    private StopTrigger[][] wheelTriggers = new StopTrigger[WHEEL_SLOTS][];
+    private long[][] wheelDeadlines = new long[WHEEL_SLOTS][];
+    private int[][] wheelGens = new int[WHEEL_SLOTS][];
+    private int[] wheelSizes = new int[WHEEL_SLOTS];
+    /**
+     * 时间轮已经处理到的秒
+     */
+    private long wheelSecond = Long.MIN_VALUE;
+    /**
+     * 新加入, 需要立刻检查的触发条件
+     */
+    private List<StopTrigger> pendingTriggers = new ArrayList<>();
+    private int triggerCount;
+    private int collectSeq;
+
+    private final TriggerValidator highValidator = (StopTrigger t, int gen)->!t.removed && t.highGen==gen;
+    private final TriggerValidator lowValidator = (StopTrigger t, int gen)->!t.removed && t.lowGen==gen;
+
+    /**
+     * 当前有效的触发条件数量
+     */
+    public int size() {
+        return triggerCount;
+    }
+
+    /**
+     * 加入新的触发条件, 在下一次collect时无条件返回
+     */
+    public void add(StopTrigger trigger) {
+        triggerCount++;
+        pendingTriggers.add(trigger);
+    }
+
+    /**
+     * 删除触发条件, 堆和时间轮中的节点延迟删除
+     */
+    public void remove(StopTrigger trigger) {
+        if ( !trigger.removed ) {
+            trigger.removed = true;
+            triggerCount--;
+        }
+    }
+
+    /**
+     * 按照trigger当前的priceLow/priceHigh/deadline重新加入触发簿
+     */
+    public void rearm(StopTrigger trigger) {
+        if ( trigger.removed ) {
+            return;
+        }
+        if ( trigger.priceHigh!=Long.MAX_VALUE ) {
+            highHeap.push(trigger.priceHigh, ++trigger.highGen, trigger);
+        } else {
+            trigger.highGen++;
+        }
+        if ( trigger.priceLow!=Long.MIN_VALUE ) {
+            lowHeap.push(trigger.priceLow, ++trigger.lowGen, trigger);
+        } else {
+            trigger.lowGen++;
+        }
+        trigger.timerGen++;
+        if ( trigger.deadline!=Long.MAX_VALUE ) {
+            if ( wheelSecond!=Long.MIN_VALUE && trigger.deadline/1000<=wheelSecond ) {
+                //已经到期, 下次collect时返回
+                pendingTriggers.add(trigger);
+            } else {
+                addToWheel(trigger);
+            }
+        }
+        if ( highHeap.size()>2*triggerCount+64 ) {
+            highHeap.compact(highValidator);
+        }
+        if ( lowHeap.size()>2*triggerCount+64 ) {
+            lowHeap.compact(lowValidator);
+        }
+    }
+
+    /**
+     * 返回价格穿越或到期的触发条件, 返回的触发条件需要调用rearm才会再次被检查.
+     *
+     * @param price 最新价格, 0代表只检查时间
+     * @param currTimeMillis 当前时间 epoch millis
+     */
+    public void collect(long price, long currTimeMillis, List<StopTrigger> result) {
+        int seq = ++collectSeq;
+        if ( !pendingTriggers.isEmpty() ) {
+            for(int i=0;i<pendingTriggers.size();i++) {
+                addResult(pendingTriggers.get(i), seq, result);
+            }
+            pendingTriggers.clear();
+        }
+        if ( price!=0 ) {
+            while(!highHeap.isEmpty() && highHeap.peekKey()<=price) {
+                StopTrigger trigger = highHeap.peekTrigger();
+                if ( highValidator.isValid(trigger, highHeap.peekGen()) ) {
+                    addResult(trigger, seq, result);
+                }
+                highHeap.pop();
+            }
+            while(!lowHeap.isEmpty() && lowHeap.peekKey()>=price) {
+                StopTrigger trigger = lowHeap.peekTrigger();
+                if ( lowValidator.isValid(trigger, lowHeap.peekGen()) ) {
+                    addResult(trigger, seq, result);
+                }
+                lowHeap.pop();
+            }
+        }
+        advanceWheel(currTimeMillis, seq, result);
+    }
+
+    private void addResult(StopTrigger trigger, int seq, List<StopTrigger> result) {
+        if ( !trigger.removed && trigger.collectSeq!=seq ) {
+            trigger.collectSeq = seq;
+            //返回后原有触发条件全部作废
+            trigger.highGen++;
+            trigger.lowGen++;
+            trigger.timerGen++;
+            result.add(trigger);
+        }
+    }
+
+    private void addToWheel(StopTrigger trigger) {
+        int slot = (int)((trigger.deadline/1000)&WHEEL_MASK);
+        int size = wheelSizes[slot];
+        StopTrigger[] triggers = wheelTriggers[slot];
+        if ( triggers==null || size==triggers.length ) {
+            int newLen = triggers==null?4:size*2;
+            wheelTriggers[slot] = triggers = triggers==null?new StopTrigger[newLen]:Arrays.copyOf(triggers, newLen);
+            wheelDeadlines[slot] = wheelDeadlines[slot]==null?new long[newLen]:Arrays.copyOf(wheelDeadlines[slot], newLen);
+            wheelGens[slot] = wheelGens[slot]==null?new int[newLen]:Arrays.copyOf(wheelGens[slot], newLen);
+        }
+        triggers[size] = trigger;
+        wheelDeadlines[slot][size] = trigger.deadline;
+        wheelGens[slot][size] = trigger.timerGen;
+        wheelSizes[slot] = size+1;
+    }
+
+    /**
+     * 时间轮推进到当前秒, 返回到期的触发条件, 同时删除作废节点
+     */
+    private void advanceWheel(long currTimeMillis, int seq, List<StopTrigger> result) {
+        long currSecond = currTimeMillis/1000;
+        if ( wheelSecond==Long.MIN_VALUE ) {
+            wheelSecond = currSecond-1;
+        }
+        if ( currSecond<=wheelSecond ) {
+            return;
+        }
+        long beginSecond = wheelSecond+1;
+        if ( currSecond-beginSecond>=WHEEL_SLOTS ) {
+            beginSecond = currSecond-WHEEL_SLOTS+1;
+        }
+        for(long second=beginSecond; second<=currSecond; second++) {
+            int slot = (int)(second&WHEEL_MASK);
+            int size = wheelSizes[slot];
+            if ( size==0 ) {
+                continue;
+            }
+            StopTrigger[] triggers = wheelTriggers[slot];
+            long[] deadlines = wheelDeadlines[slot];
+            int[] gens = wheelGens[slot];
+            int newSize = 0;
+            for(int i=0;i<size;i++) {
+                StopTrigger trigger = triggers[i];
+                if ( trigger.removed || trigger.timerGen!=gens[i] ) {
+                    continue;
+                }
+                if ( deadlines[i]/1000<=currSecond ) {
+                    addResult(trigger, seq, result);
+                    continue;
+                }
+                //超过一圈的节点保留
+                triggers[newSize] = trigger;
+                deadlines[newSize] = deadlines[i];
+                gens[newSize] = gens[i];
+                newSize++;
+            }
+            Arrays.fill(triggers, newSize, size, null);
+            wheelSizes[slot] = newSize;
+        }
+        wheelSecond = currSecond;
+    }
+
+}
@@ -4,6 +4,8 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import trader.common.util.StringUtil;
+import trader.service.data.BatchedKVStore;
+import trader.service.data.BatchedKVStoreWrapper;
 import trader.service.data.KVStore;
 import trader.service.data.KVStoreIterator;
 import trader.service.data.KVStoreService;
@@ -60,4 +62,9 @@ public class SimKVStoreService implements KVStoreService {
         return new MemoryKVStore(prefix);
     }
 
+    @Override
+    public BatchedKVStore getBatchedStore(String prefix) {
+        return new BatchedKVStoreWrapper(getStore(prefix));
+    }
+
 }
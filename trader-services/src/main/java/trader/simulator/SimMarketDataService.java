@@ -20,6 +20,7 @@ import trader.common.config.ConfigUtil;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableData.DataInfo;
+import trader.common.exchangeable.Future;
 import trader.common.util.CSVDataSet;
 import trader.common.util.CSVMarshallHelper;
 import trader.common.util.CSVUtil;
@@ -27,11 +28,13 @@ import trader.common.util.StringUtil;
 import trader.common.util.TraderHomeUtil;
 import trader.service.log.LogServiceImpl;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataCSVDecoder;
 import trader.service.md.MarketDataListener;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
 import trader.service.md.MarketDataServiceImpl;
+import trader.service.ta.ContinuousSeriesLoader;
 
 /**
  * 模拟市场行情驱动服务
@@ -188,6 +191,7 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
             if ( md==null ) {
                 continue;
             }
+            md.receiveNanoTime = System.nanoTime();
             for(MarketDataListener listener:genericListeners) {
                 listener.onMarketData(md);
             }
@@ -206,6 +210,21 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
         for(Exchangeable e:subscriptions) {
             SimMDInfo mdInfo  =new SimMDInfo();
             DataInfo tickInfo = ExchangeableData.TICK_CTP;
+            if ( Future.isContinuous(e) ) {
+                //主力连续合约: 加载当天主力合约的数据
+                try{
+                    mdInfo.marketDatas.addAll(new ContinuousSeriesLoader(beansContainer, data)
+                            .setExchangeable(e)
+                            .setStartTradingDay(tradingDay)
+                            .setEndTradingDay(tradingDay)
+                            .loadMarketDataTicks(tradingDay, tickInfo));
+                }catch(Throwable t) {
+                    logger.error("加载 "+e+" 交易日 "+tradingDay+" TICK行情数据失败", t);
+                    throw new RuntimeException(t);
+                }
+                mdInfos.put(e, mdInfo);
+                continue;
+            }
             String tickCsv = null;
             try{
                 tickCsv = data.load(e, tickInfo, tradingDay);
@@ -218,8 +237,18 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
             MarketDataProducer mdProducer = createMarketDataProducer(tickInfo);
 
             CSVDataSet csvDataSet = CSVUtil.parse(tickCsv);
+            MarketDataCSVDecoder csvDecoder = createCSVDecoder(tickInfo, mdProducer.getId());
+            if ( csvDecoder!=null && !csvDecoder.accept(csvDataSet.getColumns()) ) {
+                csvDecoder = null;
+            }
             while(csvDataSet.next()) {
-                MarketData marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+                MarketData marketData = null;
+                if ( csvDecoder!=null ) {
+                    marketData = csvDecoder.decode(csvDataSet.getLine(), tradingDay);
+                }
+                if ( marketData==null ) {
+                    marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+                }
                mdInfo.marketDatas.add(marketData);
             }
             mdInfos.put(e, mdInfo);
@@ -237,6 +266,17 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
         return null;
     }
 
+    private MarketDataCSVDecoder createCSVDecoder(DataInfo tickInfo, String producerId) {
+        String provider = tickInfo.provider();
+        if (!StringUtil.isEmpty(provider)) {
+            MarketDataProducerFactory factory = producerFactories.get(provider);
+            if ( factory!=null ) {
+                return factory.createCSVDecoder(producerId);
+            }
+        }
+        return null;
+    }
+
     private MarketDataProducer createMarketDataProducer(DataInfo tickInfo) {
         String provider = tickInfo.provider();
         if (!StringUtil.isEmpty(provider)) {
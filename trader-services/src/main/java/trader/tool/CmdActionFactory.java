@@ -42,6 +42,7 @@ public class CmdActionFactory {
         result.add(new RepositoryArchiveAction());
         result.add(new ServiceAction());
         result.add(new BacktestAction());
+        result.add(new MarketDataLoadTestAction());
         //加载Cmd Action
         try{
             PluginService pluginService = beansContainer.getBean(PluginService.class);
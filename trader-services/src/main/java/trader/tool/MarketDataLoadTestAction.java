@@ -0,0 +1,61 @@
+package trader.tool;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Properties;
+
+import trader.common.beans.BeansContainer;
+import trader.common.util.ConversionUtil;
+import trader.common.util.StringUtil.KVPair;
+import trader.service.md.synthetic.MarketDataLoadTester;
+import trader.service.util.CmdAction;
+
+/**
+ * 行情压力测试命令
+ */
+public class MarketDataLoadTestAction implements CmdAction {
+
+    @Override
+    public String getCommand() {
+        return "marketData.loadtest";
+    }
+
+    @Override
+    public void usage(PrintWriter writer) {
+        writer.println("marketData loadtest [--mode=random|replay] [--pacing=wallClock|maxSpeed] [--rate=TICKS_PER_SEC] [--burst=N] [--instruments=I1,I2] [--tradingDay=YYYYMMDD] [--maxTicks=N] [--duration=MILLIS] [--lateThresholdMicros=MICROS]");
+        writer.println("\t使用随机或回放行情测试行情, TA和策略组(模拟账户)各阶段的吞吐量, RingBuffer占用和丢弃/延迟的事件数量");
+    }
+
+    @Override
+    public int execute(BeansContainer beansContainer, PrintWriter writer, List<KVPair> options) throws Exception
+    {
+        Properties props = new Properties();
+        long durationMillis = 10000;
+        for(KVPair kv:options) {
+            switch(kv.k) {
+            case "duration":
+                durationMillis = ConversionUtil.toLong(kv.v);
+                break;
+            default:
+                if ( kv.v!=null ) {
+                    props.setProperty(kv.k, kv.v);
+                }
+                break;
+            }
+        }
+        writer.println("开始行情压力测试: "+props+", duration "+durationMillis+" ms");
+        writer.flush();
+        MarketDataLoadTester.Result result = new MarketDataLoadTester(props).run(durationMillis);
+        writer.println("产生行情: "+result.produced+", "+(long)result.producedPerSecond+" ticks/sec");
+        writer.println("处理行情: "+result.delivered+", "+(long)result.deliveredPerSecond+" ticks/sec, 丢弃: "+result.dropped);
+        writer.println("延迟发送: "+result.late+", 最大延迟: "+result.maxLagMicros+" us");
+        writer.println("RingBuffer: size "+result.ringBufferSize+", max used "+result.ringBufferMaxUsed+", avg used "+String.format("%.1f", result.ringBufferAvgUsed));
+        writer.println("排队延迟(us): P50 "+result.queueP50Micros+", P99 "+result.queueP99Micros+", max "+result.queueMaxMicros);
+        writer.println("TA处理行情: "+result.taTicks+", "+(long)result.taPerSecond+" ticks/sec, 无TA数据: "+result.taDropped+", 新KBar: "+result.taBars);
+        writer.println("TA延迟(us): P50 "+result.taP50Micros+", P99 "+result.taP99Micros+", max "+result.taMaxMicros+", 超过"+result.lateThresholdMicros+"us: "+result.taLate);
+        writer.println("策略组: "+result.tradletGroups+", 排队事件: "+result.tradletQueued+", 处理: "+result.tradletEvents+", "+(long)result.tradletPerSecond+" events/sec, 未处理: "+result.tradletDropped);
+        writer.println("策略排队延迟(us): P50 "+result.tradletP50Micros+", P99 "+result.tradletP99Micros+", max "+result.tradletMaxMicros+", 超过"+result.lateThresholdMicros+"us: "+result.tradletLate);
+        return 0;
+    }
+
+}
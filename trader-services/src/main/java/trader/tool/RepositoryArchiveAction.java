@@ -2,19 +2,24 @@ package trader.tool;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import trader.common.beans.BeansContainer;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableDataArchiveListener;
+import trader.common.util.DateUtil;
 import trader.common.util.StringUtil.KVPair;
 import trader.common.util.TraderHomeUtil;
+import trader.service.ta.DayBarAggregator;
 import trader.service.util.CmdAction;
 
 public class RepositoryArchiveAction implements CmdAction, ExchangeableDataArchiveListener {
 
     PrintWriter writer;
+    ExchangeableData exchangeableData;
 
     @Override
     public String getCommand() {
@@ -29,7 +34,7 @@ public class RepositoryArchiveAction implements CmdAction, ExchangeableDataArchi
 
     @Override
     public int execute(BeansContainer beansContainer, PrintWriter writer, List<KVPair> options) throws Exception {
-        ExchangeableData exchangeableData = new ExchangeableData(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_REPOSITORY), false);
+        exchangeableData = new ExchangeableData(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_REPOSITORY), false);
         this.writer = writer;
         exchangeableData.archive(this);
         return 0;
@@ -38,6 +43,29 @@ public class RepositoryArchiveAction implements CmdAction, ExchangeableDataArchi
     @Override
     public void onArchiveBegin(Exchangeable e, File edir) {
         writer.print("归档 "+e+" 目录: "+edir+" ... "); writer.flush();
+        updateDayBars(e, edir);
+    }
+
+    /**
+     * 归档前从新导入的MIN1数据增量更新日线
+     */
+    private void updateDayBars(Exchangeable e, File edir) {
+        String suffix = "."+ExchangeableData.MIN1.name()+".csv";
+        List<LocalDate> tradingDays = new ArrayList<>();
+        for(String f:edir.list()) {
+            if ( f.endsWith(suffix) ) {
+                tradingDays.add(DateUtil.str2localdate(f.substring(0, f.length()-suffix.length())));
+            }
+        }
+        if ( tradingDays.isEmpty() ) {
+            return;
+        }
+        try{
+            int count = DayBarAggregator.update(exchangeableData, e, tradingDays);
+            writer.print("日线 "+count+" ... "); writer.flush();
+        }catch(Throwable t) {
+            writer.print("日线更新失败: "+t+" ... "); writer.flush();
+        }
     }
 
     @Override
@@ -0,0 +1,249 @@
+package trader.api.ta;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ta4j.core.Bar;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.tick.PriceLevel;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.service.ta.BaseLeveledTimeSeries;
+import trader.service.ta.Bar2;
+import trader.service.ta.FutureBar;
+import trader.service.ta.LeveledTimeSeries;
+import trader.service.ta.LongNum;
+import trader.service.ta.TAItem;
+import trader.service.ta.TAService;
+
+/**
+ * KBar接口的范围参数(start/limit/since), 空KBar和二进制按列格式
+ */
+public class TAControllerTest {
+
+    private static final int BAR_COUNT = 5;
+
+    /**
+     * 记录响应状态, 响应头和输出内容
+     */
+    static class Response {
+        int status = HttpServletResponse.SC_OK;
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse create() {
+            ServletOutputStream os = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+            return (HttpServletResponse)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {HttpServletResponse.class}, (proxy, method, args)->{
+                switch(method.getName()) {
+                case "getOutputStream":
+                    return os;
+                case "setHeader":
+                    headers.put((String)args[0], (String)args[1]);
+                    return null;
+                case "sendError":
+                    status = (Integer)args[0];
+                    return null;
+                }
+                return null;
+            });
+        }
+    }
+
+    private Exchangeable au1906 = Exchangeable.fromString("au1906");
+    private LeveledTimeSeries min1Series;
+    private LeveledTimeSeries min3Series;
+    private TAController controller;
+
+    @Before
+    public void setup() throws Exception {
+        min1Series = createSeries(PriceLevel.MIN1, BAR_COUNT);
+        min3Series = createSeries(PriceLevel.MIN3, 0);
+        TAItem item = (TAItem)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {TAItem.class}, (proxy, method, args)->{
+            if ( method.getName().equals("getSeries") ) {
+                return args[0]==PriceLevel.MIN1?min1Series:(args[0]==PriceLevel.MIN3?min3Series:null);
+            }
+            return null;
+        });
+        TAService taService = (TAService)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {TAService.class}, (proxy, method, args)->{
+            if ( method.getName().equals("getItem") ) {
+                return au1906.equals(args[0])?item:null;
+            }
+            return null;
+        });
+        controller = new TAController();
+        Field field = TAController.class.getDeclaredField("taService");
+        field.setAccessible(true);
+        field.set(controller, taService);
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        JsonArray bars = getJson("min1", -1, 0, 0);
+        assertEquals(BAR_COUNT, bars.size());
+        assertBar(0, bars.get(0).getAsJsonObject());
+        assertBar(4, bars.get(4).getAsJsonObject());
+
+        bars = getJson("min1", 2, 0, 0);
+        assertEquals(3, bars.size());
+        assertBar(2, bars.get(0).getAsJsonObject());
+
+        bars = getJson("min1", 1, 2, 0);
+        assertEquals(2, bars.size());
+        assertBar(1, bars.get(0).getAsJsonObject());
+        assertBar(2, bars.get(1).getAsJsonObject());
+
+        //since: 结束时间>=since的KBar
+        long since = min1Series.getBar(3).getEndTime().toInstant().toEpochMilli();
+        bars = getJson("min1", -1, 0, since);
+        assertEquals(2, bars.size());
+        assertBar(3, bars.get(0).getAsJsonObject());
+        bars = getJson("min1", -1, 1, since-1);
+        assertEquals(1, bars.size());
+        assertBar(3, bars.get(0).getAsJsonObject());
+        assertEquals(0, getJson("min1", -1, 0, since+3600*1000).size());
+        //start超过最后一根KBar
+        assertEquals(0, getJson("min1", BAR_COUNT, 0, 0).size());
+    }
+
+    @Test
+    public void testEmptySeries() throws Exception {
+        assertEquals(0, getJson("min3", -1, 0, 0).size());
+        assertEquals(0, getJson("min3", -1, 10, 0).size());
+        assertEquals(0, getJson("min3", -1, 0, System.currentTimeMillis()).size());
+
+        Response response = new Response();
+        controller.getBars(au1906.toString(), "min3", -1, 0, 1, "binary", response.create());
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(response.body.toByteArray()));
+        assertEquals(0, dis.readInt());
+        assertEquals(0, dis.readInt());
+        assertEquals(0, dis.available());
+
+        response = new Response();
+        controller.getBars("ru1901", "min1", -1, 0, 0, "json", response.create());
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, response.status);
+    }
+
+    /**
+     * 二进制格式: int barCount, int beginIndex, 之后9列, 每列barCount个long
+     */
+    @Test
+    public void testBinary() throws Exception {
+        Response response = new Response();
+        controller.getBars(au1906.toString(), "min1", 1, 3, 0, "binary", response.create());
+        assertEquals(""+(BAR_COUNT-1), response.headers.get("X-Bar-EndIndex"));
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(response.body.toByteArray()));
+        int barCount = dis.readInt();
+        assertEquals(3, barCount);
+        assertEquals(1, dis.readInt());
+        long[][] columns = new long[9][barCount];
+        for(int col=0;col<columns.length;col++) {
+            for(int i=0;i<barCount;i++) {
+                columns[col][i] = dis.readLong();
+            }
+        }
+        assertEquals(0, dis.available());
+        for(int i=0;i<barCount;i++) {
+            Bar bar = min1Series.getBar(1+i);
+            assertEquals(bar.getBeginTime().toInstant().toEpochMilli(), columns[0][i]);
+            assertEquals(bar.getEndTime().toInstant().toEpochMilli(), columns[1][i]);
+            assertEquals(bar.getOpenPrice().longValue(), columns[2][i]);
+            assertEquals(bar.getMaxPrice().longValue(), columns[3][i]);
+            assertEquals(bar.getMinPrice().longValue(), columns[4][i]);
+            assertEquals(bar.getClosePrice().longValue(), columns[5][i]);
+            assertEquals(bar.getAmount().longValue(), columns[6][i]);
+            assertEquals(bar.getVolume().longValue(), columns[7][i]);
+            assertEquals(1000+1+i, columns[8][i]);
+        }
+        assertEquals(PriceUtil.price2long(101), ((LongNum)min1Series.getBar(1).getClosePrice()).rawValue());
+    }
+
+    private JsonArray getJson(String level, int start, int limit, long since) throws Exception {
+        Response response = new Response();
+        controller.getBars(au1906.toString(), level, start, limit, since, "json", response.create());
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        return (JsonArray)(new JsonParser()).parse(new String(response.body.toByteArray(), "UTF-8"));
+    }
+
+    private void assertBar(int index, JsonObject json) {
+        Bar bar = min1Series.getBar(index);
+        assertEquals(bar.getBeginTime().toInstant().toEpochMilli(), json.get("beginTimestamp").getAsLong());
+        assertEquals(bar.getEndTime().toInstant().toEpochMilli(), json.get("endTimestamp").getAsLong());
+        assertEquals(PriceUtil.long2str(bar.getClosePrice().longValue()), json.get("close").getAsString());
+        assertEquals(((Bar2)bar).getOpenInterest(), json.get("openInt").getAsLong());
+    }
+
+    /**
+     * 每根KBar 1分钟, 收盘价依次为 100, 101, ..., 持仓量 1000, 1001, ...
+     */
+    private LeveledTimeSeries createSeries(PriceLevel level, int barCount) {
+        BaseLeveledTimeSeries result = new BaseLeveledTimeSeries(au1906.name()+"-"+level, level, LongNum::valueOf);
+        if ( barCount==0 ) {
+            return result;
+        }
+        CSVWriter csvWriter = new CSVWriter(ExchangeableData.COLUMN_INDEX, ExchangeableData.COLUMN_BEGIN_TIME, ExchangeableData.COLUMN_END_TIME,
+                ExchangeableData.COLUMN_OPEN, ExchangeableData.COLUMN_HIGH, ExchangeableData.COLUMN_LOW, ExchangeableData.COLUMN_CLOSE,
+                ExchangeableData.COLUMN_AVG, ExchangeableData.COLUMN_MKTAVG, ExchangeableData.COLUMN_VOLUME, ExchangeableData.COLUMN_TURNOVER, ExchangeableData.COLUMN_OPENINT);
+        LocalDate tradingDay = LocalDate.of(2019, 1, 2);
+        for(int i=0;i<barCount;i++) {
+            LocalDateTime beginTime = tradingDay.atTime(9, i);
+            String price = PriceUtil.price2str(100+i);
+            csvWriter.next();
+            csvWriter.set(ExchangeableData.COLUMN_INDEX, ""+i);
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_TIME, DateUtil.date2str(beginTime));
+            csvWriter.set(ExchangeableData.COLUMN_END_TIME, DateUtil.date2str(beginTime.plusMinutes(1)));
+            csvWriter.set(ExchangeableData.COLUMN_OPEN, price);
+            csvWriter.set(ExchangeableData.COLUMN_HIGH, price);
+            csvWriter.set(ExchangeableData.COLUMN_LOW, price);
+            csvWriter.set(ExchangeableData.COLUMN_CLOSE, price);
+            csvWriter.set(ExchangeableData.COLUMN_AVG, price);
+            csvWriter.set(ExchangeableData.COLUMN_MKTAVG, price);
+            csvWriter.set(ExchangeableData.COLUMN_VOLUME, "10");
+            csvWriter.set(ExchangeableData.COLUMN_TURNOVER, "1000");
+            csvWriter.set(ExchangeableData.COLUMN_OPENINT, ""+(1000+i));
+        }
+        CSVDataSet csv = CSVUtil.parse(csvWriter.toString());
+        while(csv.next()) {
+            result.addBar(FutureBar.fromCSV(csv, au1906));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,164 @@
+package trader.service.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.util.FileUtil;
+import trader.service.data.BatchedKVStore.Durability;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class RocksDBBatchWriterTest {
+
+    private File tempDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("rocksdbbatch").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteDirectory(tempDir);
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        RocksDBStore store = open(tempDir, Durability.AsyncWAL);
+        BatchedKVStore orderStore = store.getBatchedStore("order", "acc1.");
+        assertEquals(Durability.AsyncWAL, orderStore.getDurability());
+        for(int i=0;i<1000;i++) {
+            orderStore.put("k"+(i%100), "v"+i);
+            //写入完成前也能读到最新值
+            assertEquals("v"+i, orderStore.getAsString("k"+(i%100)));
+        }
+        orderStore.flush().get(10, TimeUnit.SECONDS);
+        assertEquals("v999", store.getStore("order", "acc1.").getAsString("k99"));
+        assertEquals("v999", store.getAsString("order.acc1.k99"));
+        long[] stats = store.getBatchWriterStats();
+        assertEquals(1000, stats[1]);
+        store.destroy();
+
+        //关闭时写入所有数据
+        store = open(tempDir, Durability.NoWAL);
+        orderStore = store.getBatchedStore("order", "acc1.");
+        assertEquals(Durability.NoWAL, orderStore.getDurability());
+        orderStore.put("k0", "closed");
+        store.destroy();
+        store = open(tempDir, Durability.NoWAL);
+        assertEquals("closed", store.getStore("order", "acc1.").getAsString("k0"));
+        assertEquals("v999", store.getStore("order", "acc1.").getAsString("k99"));
+        store.destroy();
+    }
+
+    /**
+     * 单条同步写入和批量写入的性能对比
+     */
+    @Test
+    public void testThroughput() throws Exception {
+        final int threads = 4, count = 2000;
+        RocksDBStore store = open(tempDir, Durability.SyncWAL);
+        KVStore singleStore = store.getStore("order", "single.");
+        BatchedKVStore batchedStore = store.getBatchedStore("order", "batched.");
+
+        long t0 = System.nanoTime();
+        runPuts(singleStore, threads, count);
+        long t1 = System.nanoTime();
+        runPuts(batchedStore, threads, count);
+        batchedStore.flush().get(60, TimeUnit.SECONDS);
+        long t2 = System.nanoTime();
+
+        long singleRate = threads*count*1000_000_000L/(t1-t0);
+        long batchedRate = threads*count*1000_000_000L/(t2-t1);
+        long[] stats = store.getBatchWriterStats();
+        System.out.println("SyncWAL single puts/sec: "+singleRate+", batched puts/sec: "+batchedRate+", batches: "+stats[0]+" ops: "+stats[1]);
+        assertEquals(threads*count, stats[1]);
+        assertTrue(stats[0]<=stats[1]);
+        for(int i=0;i<threads;i++) {
+            assertEquals("v"+(count-1), singleStore.getAsString("t"+i+"."+(count-1)));
+            assertEquals("v"+(count-1), batchedStore.getAsString("t"+i+"."+(count-1)));
+        }
+        store.destroy();
+    }
+
+    /**
+     * 子进程写入并flush后直接halt, 模拟进程崩溃, flush之前的数据必须都在
+     */
+    @Test
+    public void testCrashAfterFlush() throws Exception {
+        String javaBin = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+        ProcessBuilder builder = new ProcessBuilder(javaBin, "-cp", System.getProperty("java.class.path"), RocksDBBatchWriterTest.class.getName(), tempDir.getAbsolutePath());
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        String output = new String(process.getInputStream().readAllBytes());
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(output, 0, process.exitValue());
+        assertTrue(output, output.contains("FLUSHED"));
+
+        RocksDBStore store = open(tempDir, Durability.SyncWAL);
+        KVStore orderStore = store.getStore("order", "crash.");
+        for(int i=0;i<CRASH_COUNT;i++) {
+            assertEquals("v"+i, orderStore.getAsString("k"+i));
+        }
+        store.destroy();
+    }
+
+    private static final int CRASH_COUNT = 5000;
+
+    public static void main(String[] args) throws Exception {
+        RocksDBStore store = open(new File(args[0]), Durability.SyncWAL);
+        BatchedKVStore orderStore = store.getBatchedStore("order", "crash.");
+        for(int i=0;i<CRASH_COUNT;i++) {
+            orderStore.put("k"+i, "v"+i);
+        }
+        orderStore.flush().get(60, TimeUnit.SECONDS);
+        System.out.println("FLUSHED");
+        System.out.flush();
+        //没有flush的数据可能丢失
+        for(int i=0;i<CRASH_COUNT;i++) {
+            orderStore.put("extra"+i, "v"+i);
+        }
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static void runPuts(KVStore kvStore, int threads, int count) throws Exception {
+        CountDownLatch latch = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for(int t=0;t<threads;t++) {
+            final String prefix = "t"+t+".";
+            Thread worker = new Thread(()->{
+                for(int i=0;i<count;i++) {
+                    kvStore.put(prefix+i, "v"+i);
+                }
+                latch.countDown();
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        latch.await();
+    }
+
+    private static RocksDBStore open(File dir, Durability durability) throws Exception {
+        Map config = new HashMap<>();
+        config.put(RocksDBStore.FAMILY_ATTR_ID, "order");
+        config.put(RocksDBStore.FAMILY_ATTR_DURABILITY, durability.name());
+        List<Map> configs = new ArrayList<>();
+        configs.add(config);
+        RocksDBStore store = new RocksDBStore(dir.getAbsolutePath(), 8*1024*1024, configs);
+        store.init(null);
+        return store;
+    }
+
+}
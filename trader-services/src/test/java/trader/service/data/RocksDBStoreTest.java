@@ -0,0 +1,179 @@
+package trader.service.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+
+import trader.common.util.FileUtil;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class RocksDBStoreTest {
+
+    private File tempDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("rocksdbstore").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteDirectory(tempDir);
+    }
+
+    @Test
+    public void testFamilies() throws Exception {
+        RocksDBStore store = open(null);
+        KVStore accountStore = store.getStore("account", "sim-account1.");
+        KVStore playbookStore = store.getStore("playbook", "");
+        accountStore.put("orders", "o1");
+        accountStore.put("positions", "p1");
+        playbookStore.put("pb1", "v1");
+        playbookStore.put("pb2", "v2");
+        store.put("orderRef", "100");
+        store.destroy();
+
+        store = open(null);
+        accountStore = store.getStore("account", "sim-account1.");
+        playbookStore = store.getStore("playbook", "");
+        assertEquals("o1", accountStore.getAsString("orders"));
+        assertEquals("v2", playbookStore.getAsString("pb2"));
+        assertEquals("100", store.getAsString("orderRef"));
+        //通过完整key访问
+        assertEquals("p1", store.getAsString("account.sim-account1.positions"));
+        store.put("account.sim-account1.trades", "t1");
+        assertEquals("t1", accountStore.getAsString("trades"));
+        assertNull(accountStore.get("notExists"));
+
+        assertEquals(keys("orders", "positions", "trades"), toMap(accountStore.iterator()).keySet().toString());
+        assertEquals(keys("pb1", "pb2"), toMap(playbookStore.iterator()).keySet().toString());
+        Map<String, String> all = toMap(store.iterator());
+        assertEquals(6, all.size());
+        assertEquals("o1", all.get("account.sim-account1.orders"));
+        assertEquals("v1", all.get("playbook.pb1"));
+        assertEquals("100", all.get("orderRef"));
+        store.destroy();
+    }
+
+    @Test
+    public void testMigration() throws Exception {
+        //旧版本所有数据在缺省ColumnFamily中
+        File rocksdbDir = new File(tempDir, "rocksdb");
+        rocksdbDir.mkdirs();
+        try(RocksDB db = RocksDB.open(rocksdbDir.getAbsolutePath());){
+            db.put("account.sim-account1.orders".getBytes(), "o1".getBytes());
+            db.put("account.sim-account2.orders".getBytes(), "o2".getBytes());
+            db.put("accountX".getBytes(), "x".getBytes());
+            db.put("orderRef".getBytes(), "100".getBytes());
+        }
+        Map config = new HashMap<>();
+        config.put(RocksDBStore.FAMILY_ATTR_ID, "account");
+        config.put(RocksDBStore.FAMILY_ATTR_COMPRESSION, "none");
+        List<Map> configs = new ArrayList<>();
+        configs.add(config);
+        RocksDBStore store = open(configs);
+        assertEquals("o1", store.getStore("account", "sim-account1.").getAsString("orders"));
+        assertEquals("o2", store.getStore("account", "sim-account2.").getAsString("orders"));
+        Map<String, String> all = toMap(store.iterator());
+        assertEquals(4, all.size());
+        assertEquals("x", all.get("accountX"));
+        store.destroy();
+
+        //再次打开不会重复迁移
+        store = open(configs);
+        assertEquals(keys("sim-account1.orders", "sim-account2.orders"), toMap(store.getStore("account", "").iterator()).keySet().toString());
+        assertEquals(4, toMap(store.iterator()).size());
+        store.destroy();
+    }
+
+    /**
+     * 创建ColumnFamily后迁移数据前进程退出, 下次启动时继续迁移
+     */
+    @Test
+    public void testInterruptedMigration() throws Exception {
+        File rocksdbDir = new File(tempDir, "rocksdb");
+        rocksdbDir.mkdirs();
+        try(RocksDB db = RocksDB.open(rocksdbDir.getAbsolutePath());){
+            db.put("account.sim-account1.orders".getBytes(), "o1".getBytes());
+            db.put("account.sim-account1.positions".getBytes(), "p0".getBytes());
+            db.put("orderRef".getBytes(), "100".getBytes());
+            try(ColumnFamilyHandle handle = db.createColumnFamily(new ColumnFamilyDescriptor("account".getBytes()));){
+                //迁移前已经写入ColumnFamily的新值
+                db.put(handle, "sim-account1.positions".getBytes(), "p1".getBytes());
+            }
+        }
+        RocksDBStore store = open(null);
+        KVStore accountStore = store.getStore("account", "sim-account1.");
+        assertEquals("o1", accountStore.getAsString("orders"));
+        assertEquals("p1", accountStore.getAsString("positions"));
+        assertEquals("o1", store.getAsString("account.sim-account1.orders"));
+        Map<String, String> all = toMap(store.iterator());
+        assertEquals(3, all.size());
+        assertEquals("100", all.get("orderRef"));
+        store.destroy();
+    }
+
+    @Test
+    public void testPrefixIterator() throws Exception {
+        Map config = new HashMap<>();
+        config.put(RocksDBStore.FAMILY_ATTR_ID, "order");
+        config.put(RocksDBStore.FAMILY_ATTR_PREFIX_LENGTH, "4");
+        config.put(RocksDBStore.FAMILY_ATTR_BLOOM_BITS, "16");
+        List<Map> configs = new ArrayList<>();
+        configs.add(config);
+        RocksDBStore store = open(configs);
+        KVStore orderStore = store.getStore("order", "");
+        for(int i=0;i<100;i++) {
+            String account = "acc"+(i%3);
+            orderStore.put(account+"."+String.format("%03d", i), ""+i);
+        }
+        store.destroy();
+
+        store = open(configs);
+        Map<String, String> acc1 = toMap(store.getStore("order", "acc1.").iterator());
+        assertEquals(33, acc1.size());
+        for(Map.Entry<String, String> entry:acc1.entrySet()) {
+            assertEquals(Integer.parseInt(entry.getKey()), Integer.parseInt(entry.getValue()));
+            assertTrue(Integer.parseInt(entry.getKey())%3==1);
+        }
+        assertEquals(100, toMap(store.getStore("order", "").iterator()).size());
+        assertEquals(0, toMap(store.getStore("order", "acc9.").iterator()).size());
+        store.destroy();
+    }
+
+    private RocksDBStore open(List<Map> familyConfigs) throws Exception {
+        RocksDBStore store = new RocksDBStore(tempDir.getAbsolutePath(), 8*1024*1024, familyConfigs);
+        store.init(null);
+        return store;
+    }
+
+    private static Map<String, String> toMap(KVStoreIterator it){
+        Map<String, String> result = new TreeMap<>();
+        while(it.hasNext()) {
+            String key = it.next();
+            result.put(key, new String(it.getValue()));
+        }
+        return result;
+    }
+
+    private static String keys(String... keys) {
+        return Arrays.asList(keys).toString();
+    }
+
+}
@@ -0,0 +1,132 @@
+package trader.service.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import trader.common.util.PriceUtil;
+
+/**
+ * 异步日志在突发写入时的顺序和完整性
+ */
+public class AsyncLogTest {
+
+    private static final String CATEGORY = "trader.service.log.AsyncLogTest.burst";
+    private static final int THREADS = 4;
+    private static final int COUNT = 20000;
+
+    private Logger categoryLogger;
+    private ListAppender<ILoggingEvent> listAppender;
+
+    @Before
+    public void setup() {
+        LoggerContext context = (LoggerContext)LoggerFactory.getILoggerFactory();
+        categoryLogger = context.getLogger(CATEGORY);
+        categoryLogger.setLevel(Level.INFO);
+        listAppender = new ListAppender<>();
+        listAppender.setContext(context);
+        listAppender.start();
+        categoryLogger.addAppender(listAppender);
+    }
+
+    @After
+    public void teardown() {
+        LogServiceImpl.setLogAsync(CATEGORY, false);
+        categoryLogger.detachAppender(listAppender);
+        categoryLogger.setAdditive(true);
+    }
+
+    @Test
+    public void testBurstOrdering() throws Exception
+    {
+        LogServiceImpl.setLogAsync(CATEGORY, true);
+        assertTrue(LogServiceImpl.getLogLevel(CATEGORY).isAsync());
+        assertFalse(categoryLogger.isAdditive());
+        org.slf4j.Logger logger = LoggerFactory.getLogger(CATEGORY+".child");
+
+        List<Thread> threads = new ArrayList<>();
+        for(int i=0;i<THREADS;i++) {
+            String name = "burst"+i;
+            Thread thread = new Thread(()->{
+                for(int j=0;j<COUNT;j++) {
+                    if ( j%10==0 ) {
+                        //通过appender进入RingBuffer的普通日志
+                        logger.info("{} seq {}", name, j);
+                    } else {
+                        AsyncLog.info(logger, "{} seq {}", name, j);
+                    }
+                }
+            }, name);
+            threads.add(thread);
+        }
+        for(Thread thread:threads) {
+            thread.start();
+        }
+        for(Thread thread:threads) {
+            thread.join();
+        }
+        assertTrue(AsyncLog.flush(10000));
+
+        assertEquals(THREADS*COUNT, listAppender.list.size());
+        Map<String, Integer> lastSeqs = new HashMap<>();
+        for(ILoggingEvent event:listAppender.list) {
+            String[] parts = event.getFormattedMessage().split(" seq ");
+            assertEquals(parts[0], event.getThreadName());
+            int seq = Integer.parseInt(parts[1]);
+            Integer lastSeq = lastSeqs.get(parts[0]);
+            assertEquals(lastSeq==null?0:lastSeq+1, seq);
+            lastSeqs.put(parts[0], seq);
+        }
+        for(int i=0;i<THREADS;i++) {
+            assertEquals(COUNT-1, lastSeqs.get("burst"+i).intValue());
+        }
+    }
+
+    @Test
+    public void testRouteAndRestore() throws Exception
+    {
+        LogServiceImpl.setLogAsync(CATEGORY, true);
+        assertFalse(categoryLogger.isAttached(listAppender));
+        AsyncLogAppender asyncAppender = AsyncLogAppender.resolve(categoryLogger);
+        assertTrue(asyncAppender.isAttached(listAppender));
+        assertSame(asyncAppender, AsyncLogAppender.resolve(LoggerFactory.getLogger(CATEGORY+".a.b")));
+
+        LogServiceImpl.setLogAsync(CATEGORY, false);
+        assertTrue(categoryLogger.isAttached(listAppender));
+        assertTrue(categoryLogger.isAdditive());
+        assertFalse(LogServiceImpl.getLogLevel(CATEGORY).isAsync());
+        //未切换时同步写出
+        AsyncLog.info(categoryLogger, "{}price {p} type {x}", "", 28605000, 0X20001);
+        assertEquals(1, listAppender.list.size());
+        assertEquals("price 2860.50 type 20001", listAppender.list.get(0).getFormattedMessage());
+        assertEquals(Thread.currentThread().getName(), listAppender.list.get(0).getThreadName());
+    }
+
+    @Test
+    public void testPriceFormat() {
+        long[] prices = {0, 1, 10, 100, 1000, 1234, 10000, 28605000, 28600000, 28600010, -5000, -28605001, Long.MAX_VALUE};
+        StringBuilder builder = new StringBuilder();
+        for(long price:prices) {
+            builder.setLength(0);
+            AsyncLogEvent.appendPrice(builder, price);
+            assertEquals(PriceUtil.long2str(price), builder.toString());
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package trader.service.md.ctp;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.common.util.CSVUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketDataProducer;
+
+/**
+ * CTP TICK CSV解析性能对比: CSVUtil.parseLine+CtpCSVMarshallHelper+CtpMarketData 与 CtpCSVMarketDataDecoder
+ * <BR>运行: gradle :trader-services:jmh
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class CtpCSVMarketDataDecoderBenchmark {
+
+    private LocalDate tradingDay = LocalDate.of(2018, 12, 28);
+    private List<String> lines;
+    private MarketDataProducer producer;
+    private CtpCSVMarshallHelper csvMarshallHelper;
+    private CtpCSVMarketDataDecoder decoder;
+
+    @Setup
+    public void setup() {
+        lines = CtpCSVMarketDataDecoderTest.createCsvLines("au1906", "SHFE", tradingDay, 0.05, 10000, 1);
+        producer = new CtpMarketDataProducerFactory().create(null, null);
+        csvMarshallHelper = new CtpCSVMarshallHelper();
+        decoder = new CtpCSVMarketDataDecoder(producer.getId());
+    }
+
+    @Benchmark
+    public void unmarshall(Blackhole bh) {
+        for(int i=0;i<lines.size();i++) {
+            String[] row = CSVUtil.parseLine(lines.get(i), ',');
+            bh.consume(producer.createMarketData(csvMarshallHelper.unmarshall(row), tradingDay));
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        for(int i=0;i<lines.size();i++) {
+            bh.consume(decoder.decode(lines.get(i), tradingDay));
+        }
+    }
+
+}
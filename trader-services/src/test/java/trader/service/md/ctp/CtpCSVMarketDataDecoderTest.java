@@ -0,0 +1,178 @@
+package trader.service.md.ctp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.util.CSVUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataProducer;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class CtpCSVMarketDataDecoderTest {
+
+    @Test
+    public void testHeader() {
+        CtpCSVMarketDataDecoder decoder = new CtpCSVMarketDataDecoder("test");
+        assertTrue(decoder.accept(new CtpCSVMarshallHelper().getHeader()));
+        assertTrue(!decoder.accept(new String[] {"TradingDay", "InstrumentID"}));
+    }
+
+    @Test
+    public void testSHFE() {
+        compare("au1906", "SHFE", LocalDate.of(2018, 12, 28), 0.05);
+    }
+
+    @Test
+    public void testDCE() {
+        compare("m1905", "DCE", LocalDate.of(2018, 12, 28), 1);
+    }
+
+    @Test
+    public void testCZCE() {
+        compare("AP905", "CZCE", LocalDate.of(2018, 12, 28), 1);
+    }
+
+    @Test
+    public void testInvalidLine() {
+        CtpCSVMarketDataDecoder decoder = new CtpCSVMarketDataDecoder("test");
+        assertNull(decoder.decode("20181228,au1906,SHFE", LocalDate.of(2018, 12, 28)));
+        String line = createCsvLines("au1906", "SHFE", LocalDate.of(2018, 12, 28), 0.05, 4, 1).get(0);
+        assertNull(decoder.decode(line.replaceFirst(",SHFE,", ",\"SHFE\","), LocalDate.of(2018, 12, 28)));
+    }
+
+    private static void compare(String instrumentId, String exchangeId, LocalDate tradingDay, double priceTick) {
+        MarketDataProducer producer = new CtpMarketDataProducerFactory().create(null, null);
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        CtpCSVMarketDataDecoder decoder = new CtpCSVMarketDataDecoder(producer.getId());
+        for(String line:createCsvLines(instrumentId, exchangeId, tradingDay, priceTick, 2000, 1)) {
+            MarketData md0 = producer.createMarketData(csvMarshallHelper.unmarshall(CSVUtil.parseLine(line, ',')), tradingDay);
+            MarketData md = decoder.decode(line, tradingDay);
+            assertNotNull(line, md);
+            assertMarketDataEquals(line, md0, md);
+
+            StringBuilder row = new StringBuilder();
+            md.toCsvRow(row);
+            assertEquals(line, row.toString());
+            assertMarketDataEquals(line, md, md.clone());
+        }
+    }
+
+    private static void assertMarketDataEquals(String line, MarketData md0, MarketData md) {
+        assertEquals(line, md0.producerId, md.producerId);
+        assertEquals(line, md0.tradingDay, md.tradingDay);
+        assertEquals(line, md0.instrumentId, md.instrumentId);
+        assertEquals(line, md0.volume, md.volume);
+        assertEquals(line, md0.turnover, md.turnover);
+        assertEquals(line, md0.openInterest, md.openInterest);
+        assertEquals(line, md0.lastPrice, md.lastPrice);
+        assertEquals(line, md0.updateTime, md.updateTime);
+        assertEquals(line, md0.updateTimestamp, md.updateTimestamp);
+        assertEquals(line, md0.preClosePrice, md.preClosePrice);
+        assertEquals(line, md0.openPrice, md.openPrice);
+        assertEquals(line, md0.highestPrice, md.highestPrice);
+        assertEquals(line, md0.lowestPrice, md.lowestPrice);
+        assertEquals(line, md0.averagePrice, md.averagePrice);
+        assertEquals(line, md0.upperLimitPrice, md.upperLimitPrice);
+        assertEquals(line, md0.lowerLimitPrice, md.lowerLimitPrice);
+        assertEquals(line, md0.depth, md.depth);
+        assertArrayEquals(line, md0.bidPrices, md.bidPrices);
+        assertArrayEquals(line, md0.bidVolumes, md.bidVolumes);
+        assertArrayEquals(line, md0.askPrices, md.askPrices);
+        assertArrayEquals(line, md0.askVolumes, md.askVolumes);
+    }
+
+    /**
+     * 生成CTP TICK CSV行, 包含夜市/日市, 1档/5档行情
+     */
+    static List<String> createCsvLines(String instrumentId, String exchangeId, LocalDate tradingDay, double priceTick, int count, long seed) {
+        Random random = new Random(seed);
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        List<String> result = new ArrayList<>(count);
+        String tradingDayStr = tradingDay.toString().replace("-", "");
+        String prevDayStr = tradingDay.minusDays(1).toString().replace("-", "");
+        double basePrice = 3000*priceTick;
+        int volume = 0;
+        double turnover = 0;
+        int[] times = new int[] {21*3600, 23*3600+30*60, 9*3600, 15*3600};
+        for(int i=0;i<count;i++) {
+            CThostFtdcDepthMarketDataField field = new CThostFtdcDepthMarketDataField();
+            int seconds = times[i*4/count] + (i%(count/4))/2;
+            int millisec = (i%2)*500;
+            field.TradingDay = tradingDayStr;
+            field.InstrumentID = instrumentId;
+            field.ExchangeID = exchangeId;
+            field.ExchangeInstID = instrumentId;
+            field.LastPrice = basePrice+random.nextInt(100)*priceTick;
+            field.PreSettlementPrice = basePrice;
+            field.PreClosePrice = basePrice;
+            field.PreOpenInterest = 100000;
+            field.OpenPrice = basePrice+priceTick;
+            field.HighestPrice = basePrice+100*priceTick;
+            field.LowestPrice = basePrice-priceTick;
+            volume += random.nextInt(50);
+            field.Volume = volume;
+            turnover += field.LastPrice*random.nextInt(50)*1000;
+            field.Turnover = turnover;
+            field.OpenInterest = 100000+random.nextInt(1000);
+            field.ClosePrice = Double.MAX_VALUE;
+            field.SettlementPrice = Double.MAX_VALUE;
+            field.UpperLimitPrice = basePrice*1.05;
+            field.LowerLimitPrice = basePrice*0.95;
+            field.PreDelta = 0;
+            field.CurrDelta = Double.MAX_VALUE;
+            field.UpdateTime = String.format("%02d:%02d:%02d", (seconds/3600)%24, (seconds/60)%60, seconds%60);
+            field.UpdateMillisec = millisec;
+            field.BidPrice1 = field.LastPrice-priceTick;
+            field.BidVolume1 = 1+random.nextInt(100);
+            field.AskPrice1 = field.LastPrice;
+            field.AskVolume1 = 1+random.nextInt(100);
+            if ( i%3==0 ) {
+                field.BidPrice2 = Double.MAX_VALUE;
+                field.AskPrice2 = Double.MAX_VALUE;
+                field.BidPrice3 = Double.MAX_VALUE;
+                field.AskPrice3 = Double.MAX_VALUE;
+                field.BidPrice4 = Double.MAX_VALUE;
+                field.AskPrice4 = Double.MAX_VALUE;
+                field.BidPrice5 = Double.MAX_VALUE;
+                field.AskPrice5 = Double.MAX_VALUE;
+            } else {
+                field.BidPrice2 = field.LastPrice-2*priceTick;
+                field.BidVolume2 = random.nextInt(100);
+                field.AskPrice2 = field.LastPrice+priceTick;
+                field.AskVolume2 = random.nextInt(100);
+                field.BidPrice3 = field.LastPrice-3*priceTick;
+                field.BidVolume3 = random.nextInt(100);
+                field.AskPrice3 = field.LastPrice+2*priceTick;
+                field.AskVolume3 = random.nextInt(100);
+                field.BidPrice4 = field.LastPrice-4*priceTick;
+                field.BidVolume4 = random.nextInt(100);
+                field.AskPrice4 = field.LastPrice+3*priceTick;
+                field.AskVolume4 = random.nextInt(100);
+                field.BidPrice5 = field.LastPrice-5*priceTick;
+                field.BidVolume5 = random.nextInt(100);
+                field.AskPrice5 = field.LastPrice+4*priceTick;
+                field.AskVolume5 = random.nextInt(100);
+            }
+            field.AveragePrice = volume==0?0:turnover/volume;
+            field.ActionDay = seconds>=21*3600?prevDayStr:tradingDayStr;
+            if ( seconds>=24*3600 ) {
+                field.ActionDay = tradingDayStr;
+            }
+            result.add(String.join(",", csvMarshallHelper.marshall(field)));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,98 @@
+package trader.service.md.synthetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.ServiceConstants.ConnState;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
+import trader.service.md.spi.AbsMarketDataProducer;
+import trader.service.md.spi.MarketDataProducerListener;
+
+public class MarketDataLoadTesterTest {
+    static {
+        TraderHomeHelper.init();
+    }
+
+    @Test
+    public void testRandomWalk() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put("id", "synthetic");
+        config.put("text", "pacing=maxSpeed\nmaxTicks=10000\nseed=1\ninstruments=shfe.ru1901,dce.m1905");
+        SyntheticMarketDataProducer producer = new SyntheticMarketDataProducer(null, config);
+        List<MarketData> ticks = new ArrayList<>();
+        producer.setListener(new MarketDataProducerListener() {
+            @Override
+            public void onStateChanged(AbsMarketDataProducer producer, ConnState oldStatus) {
+            }
+            @Override
+            public void onMarketData(MarketData md) {
+                ticks.add(md);
+            }
+        });
+        producer.connect();
+        assertTrue(producer.await(10000));
+        assertEquals(10000, ticks.size());
+        Map<Exchangeable, Long> lastTimestamps = new HashMap<>();
+        for(MarketData md:ticks) {
+            Long lastTimestamp = lastTimestamps.get(md.instrumentId);
+            assertTrue(lastTimestamp==null || md.updateTimestamp>lastTimestamp);
+            lastTimestamps.put(md.instrumentId, md.updateTimestamp);
+            assertTrue(md.lastPrice>0);
+            assertTrue(md.lastBidPrice()<md.lastPrice && md.lastPrice<md.lastAskPrice());
+        }
+        assertEquals(2, lastTimestamps.size());
+        producer.close();
+    }
+
+    /**
+     * 最快速度发送行情, 经过MarketDataServiceImpl, TAServiceImpl 到配置的策略组(group_au, au1906)
+     */
+    @Test
+    public void testMaxSpeed() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("pacing", "maxSpeed");
+        props.setProperty("maxTicks", "200000");
+        props.setProperty("tradingDay", "20181228");
+        MarketDataLoadTester.Result result = new MarketDataLoadTester(props).run(30000);
+        System.out.println("Max speed: "+result);
+        assertEquals(200000, result.produced);
+        assertEquals(result.produced, result.delivered);
+        assertEquals(0, result.dropped);
+        assertTrue(result.ringBufferSize>0);
+        assertEquals(result.delivered, result.taTicks+result.taDropped);
+        assertTrue(result.taTicks>0);
+        assertTrue(result.taBars>0);
+        assertEquals(1, result.tradletGroups);
+        assertTrue(result.tradletQueued>0);
+        assertEquals(result.tradletQueued, result.tradletEvents);
+        assertEquals(0, result.tradletDropped);
+    }
+
+    @Test
+    public void testWallClockRate() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("rate", "20000");
+        props.setProperty("burst", "10");
+        props.setProperty("maxTicks", "10000");
+        props.setProperty("tradingDay", "20181228");
+        MarketDataLoadTester.Result result = new MarketDataLoadTester(props).run(30000);
+        System.out.println("Wall clock: "+result);
+        assertEquals(10000, result.produced);
+        assertEquals(result.produced, result.delivered);
+        assertEquals(result.tradletQueued, result.tradletEvents);
+        //10000个tick, 每秒20000个, 大约需要500毫秒
+        assertTrue(result.elapsedMillis>=400);
+        assertTrue(result.producedPerSecond<25000);
+    }
+
+}
@@ -0,0 +1,176 @@
+package trader.service.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.beans.DiscoverableIndex;
+import trader.common.util.FileUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.beans.DiscoverableIndexLoader;
+
+/**
+ * 编译测试插件jar, 比较索引文件和扫描得到的Bean是否一致
+ */
+public class DiscoverableIndexTest {
+
+    private static final String[][] SOURCES = {
+            {"fixture/RunA.java", "package fixture; @trader.common.beans.Discoverable(interfaceClass=Runnable.class, purpose=\"runA\") public class RunA implements Runnable { public void run(){} }"},
+            {"fixture/RunB.java", "package fixture; @trader.common.beans.Discoverable(interfaceClass=Runnable.class, purpose=\"runB\") public class RunB implements Runnable { public void run(){} }"},
+            {"fixture/CallA.java", "package fixture; @trader.common.beans.Discoverable(interfaceClass=java.util.concurrent.Callable.class, purpose=\"callA\") public class CallA implements java.util.concurrent.Callable<String> { public String call(){ return \"A\"; } }"},
+            {"fixture/AbstractRun.java", "package fixture; @trader.common.beans.Discoverable(interfaceClass=Runnable.class, purpose=\"abstract\") public abstract class AbstractRun implements Runnable { }"},
+            {"fixture/Plain.java", "package fixture; public class Plain { }"},
+    };
+
+    private File workDir;
+    private File classesDir;
+
+    @Before
+    public void setup() throws Exception {
+        TraderHomeHelper.init();
+        workDir = Files.createTempDirectory("discoverable").toFile();
+        File srcDir = new File(workDir, "src");
+        classesDir = new File(workDir, "classes");
+        classesDir.mkdirs();
+        String[] args = new String[SOURCES.length+7];
+        args[0] = "-processor"; args[1] = "trader.common.beans.DiscoverableIndexProcessor";
+        args[2] = "-cp"; args[3] = System.getProperty("java.class.path");
+        args[4] = "-d"; args[5] = classesDir.getAbsolutePath();
+        args[6] = "-nowarn";
+        for(int i=0;i<SOURCES.length;i++) {
+            File file = new File(srcDir, SOURCES[i][0]);
+            file.getParentFile().mkdirs();
+            FileUtil.save(file, SOURCES[i][1]);
+            args[i+7] = file.getAbsolutePath();
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler);
+        assertEquals(0, compiler.run(null, null, null, args));
+    }
+
+    @After
+    public void cleanup() {
+        FileUtil.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void testIndexGenerated() throws Exception
+    {
+        File indexFile = new File(classesDir, DiscoverableIndex.INDEX_FILE);
+        assertTrue(indexFile.exists());
+        Map<String, String> entries = toMap(DiscoverableIndex.read(Files.newInputStream(indexFile.toPath())));
+        assertEquals(3, entries.size());
+        assertEquals("java.lang.Runnable\trunA", entries.get("fixture.RunA"));
+        assertEquals("java.util.concurrent.Callable\tcallA", entries.get("fixture.CallA"));
+        assertNull(entries.get("fixture.AbstractRun"));
+    }
+
+    @Test
+    public void testIndexAndScanSameBeans() throws Exception
+    {
+        File indexedPlugin = createPlugin("indexed", true);
+        File scannedPlugin = createPlugin("scanned", false);
+        try(JarFile jar = new JarFile(new File(scannedPlugin, "jars/fixture.jar"));){
+            assertNull(jar.getJarEntry(DiscoverableIndex.INDEX_FILE));
+        }
+
+        PluginImpl indexed = new PluginImpl(null, indexedPlugin);
+        PluginImpl scanned = new PluginImpl(null, scannedPlugin);
+        try{
+            for(Class intf:new Class[] {Runnable.class, Callable.class}) {
+                Map<String, String> indexedBeans = toClassNames(indexed.getBeanClasses(intf));
+                Map<String, String> scannedBeans = toClassNames(scanned.getBeanClasses(intf));
+                assertTrue(!indexedBeans.isEmpty());
+                assertEquals(indexedBeans, scannedBeans);
+            }
+            assertEquals("fixture.RunB", indexed.getBeanClasses(Runnable.class).get("runB").getName());
+            assertEquals(2, indexed.getBeanClasses(Runnable.class).size());
+        }finally {
+            indexed.close();
+            scanned.close();
+        }
+    }
+
+    @Test
+    public void testScanCache() throws Exception
+    {
+        File pluginDir = createPlugin("cached", false);
+        File jarFile = new File(pluginDir, "jars/fixture.jar");
+        File cacheDir = new File(workDir, "cache");
+        URL url = jarFile.toURI().toURL();
+        try(URLClassLoader cl = new URLClassLoader(new URL[] {url}, getClass().getClassLoader());){
+            List<DiscoverableIndex.Entry> scanned = DiscoverableIndexLoader.load(url, cl, cacheDir);
+            File cacheFile = new File(cacheDir, FileUtil.md5(jarFile)+".idx");
+            assertTrue(cacheFile.exists());
+            List<DiscoverableIndex.Entry> index = DiscoverableIndex.read(Files.newInputStream(new File(classesDir, DiscoverableIndex.INDEX_FILE).toPath()));
+            assertEquals(toMap(index), toMap(scanned));
+
+            //第二次读取缓存, 缓存内容被修改后应该读到修改的内容
+            FileUtil.save(cacheFile, "fixture.RunA\tjava.lang.Runnable\tcached\n");
+            List<DiscoverableIndex.Entry> cached = DiscoverableIndexLoader.load(url, cl, cacheDir);
+            assertEquals(1, cached.size());
+            assertEquals("cached", cached.get(0).getPurpose());
+        }
+    }
+
+    private File createPlugin(String id, boolean withIndex) throws Exception
+    {
+        File pluginDir = new File(workDir, id);
+        File jarsDir = new File(pluginDir, "jars");
+        jarsDir.mkdirs();
+        FileUtil.save(new File(pluginDir, Plugin.FILE_DESCRIPTOR), Plugin.PROP_ID+"="+id+"\n"+Plugin.PROP_EXPOSED_INTERFACES+"=java.lang.Runnable,java.util.concurrent.Callable\n");
+        try(JarOutputStream jos = new JarOutputStream(new FileOutputStream(new File(jarsDir, "fixture.jar")));){
+            for(File file:FileUtil.listAllFiles(classesDir, null)) {
+                String name = classesDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+                if ( !withIndex && name.equals(DiscoverableIndex.INDEX_FILE) ) {
+                    continue;
+                }
+                jos.putNextEntry(new JarEntry(name));
+                try(InputStream is = Files.newInputStream(file.toPath());){
+                    is.transferTo(jos);
+                }
+                jos.closeEntry();
+            }
+        }
+        return pluginDir;
+    }
+
+    private static Map<String, String> toMap(List<DiscoverableIndex.Entry> entries){
+        Map<String, String> result = new TreeMap<>();
+        for(DiscoverableIndex.Entry entry:entries) {
+            result.put(entry.getClassName(), entry.getInterfaceName()+"\t"+entry.getPurpose());
+        }
+        return result;
+    }
+
+    private static Map<String, String> toClassNames(Map<String, Class> beanClasses){
+        Map<String, String> result = new TreeMap<>();
+        for(String purpose:beanClasses.keySet()) {
+            result.put(purpose, beanClasses.get(purpose).getName());
+        }
+        return result;
+    }
+
+}
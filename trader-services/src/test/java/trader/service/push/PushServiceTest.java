@@ -0,0 +1,233 @@
+package trader.service.push;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.SuspendToken;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.api.push.PushWebSocketServlet;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.md.MarketData;
+import trader.service.md.synthetic.SyntheticMarketData;
+
+public class PushServiceTest {
+
+    private static final Exchangeable AU = Exchangeable.fromString("shfe.au1906");
+    private static final Exchangeable RU = Exchangeable.fromString("shfe.ru1901");
+
+    /**
+     * 客户端收到的消息, 可以在收到第一条消息后暂停读取模拟客户端卡住
+     */
+    public static class ClientSocket extends WebSocketAdapter {
+        LinkedBlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        volatile boolean stall;
+        volatile SuspendToken suspendToken;
+
+        @Override
+        public void onWebSocketText(String message) {
+            messages.add(message);
+            if ( stall && suspendToken==null ) {
+                suspendToken = getSession().suspend();
+            }
+        }
+    }
+
+    private PushService pushService;
+    private Server server;
+    private WebSocketClient client;
+    private long timestamp = 1545955200000L;
+
+    @Before
+    public void setup() throws Exception {
+        pushService = new PushService();
+        server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new PushWebSocketServlet(pushService)), PushWebSocketServlet.URL_PATH);
+        server.setHandler(context);
+        server.start();
+        client = new WebSocketClient();
+        client.start();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        client.stop();
+        pushService.destroy();
+        server.stop();
+    }
+
+    @Test
+    public void testSubscribe() throws Exception {
+        ClientSocket socket = new ClientSocket();
+        PushSession session = connect(socket, "md/au1906.shfe");
+        assertTrue(session.getTopics().contains("md/"+AU));
+
+        int count = 100;
+        MarketData lastAu = null;
+        for(int i=0;i<count;i++) {
+            lastAu = createTick(AU);
+            pushService.onMarketData(lastAu);
+            pushService.onMarketData(createTick(RU));
+        }
+        Map<String, Long> lastTimestamps = receiveUntil(socket, lastAu);
+        assertEquals(1, lastTimestamps.size());
+        //没有被合并的行情都应该被发送
+        assertEquals(count, session.getSentCount()+session.getConflatedCount());
+        assertEquals(0, session.getDroppedCount());
+
+        //取消订阅后不再收到行情
+        socket.getSession().getRemote().sendString("{\"action\":\"unsubscribe\", \"topics\":[\"md/shfe.au1906\"]}");
+        waitFor(()->session.getTopics().isEmpty());
+        pushService.onMarketData(createTick(AU));
+        assertNull(socket.messages.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConflationWhenClientStalls() throws Exception {
+        ClientSocket socket = new ClientSocket();
+        socket.stall = true;
+        PushSession session = connect(socket, "md/shfe.au1906", "md/shfe.ru1901");
+
+        //客户端暂停读取后, TCP缓冲区被填满, 后续行情在发送队列中合并
+        int published = 0;
+        MarketData lastAu = null, lastRu = null;
+        long beginTime = System.currentTimeMillis();
+        while( session.getConflatedCount()<1000 && (System.currentTimeMillis()-beginTime)<20000 ) {
+            lastAu = createTick(AU);
+            lastRu = createTick(RU);
+            pushService.onMarketData(lastAu);
+            pushService.onMarketData(lastRu);
+            published += 2;
+        }
+        assertTrue(session.getConflatedCount()>=1000);
+        assertNotNull(socket.suspendToken);
+        //每个主题最多一个待发送消息
+        assertTrue(session.getPendingCount()<=2);
+
+        socket.stall = false;
+        socket.suspendToken.resume();
+        //最新的行情总是会被发送
+        Map<String, Long> lastTimestamps = receiveUntil(socket, lastAu, lastRu);
+        assertEquals(lastAu.updateTimestamp, (long)lastTimestamps.get("md/"+AU));
+        assertEquals(lastRu.updateTimestamp, (long)lastTimestamps.get("md/"+RU));
+        waitFor(()->session.getPendingCount()==0);
+        assertEquals(0, session.getDroppedCount());
+        assertEquals(published, session.getSentCount()+session.getConflatedCount());
+        assertTrue(session.getSentCount()<published);
+    }
+
+    /**
+     * 报单/成交消息不丢弃: 队列满时先合并相同报单, 无法合并时关闭连接
+     */
+    @Test
+    public void testReliableOverflow() throws Exception {
+        //没有连接, 消息都留在队列中
+        PushSession session = new PushSession(pushService, 2);
+        session.offer("order/acc1/1", "{}", true);
+        session.offer("md/"+AU, "{}", false);
+        session.offer("order/acc1/1", "{}", true);
+        assertEquals(1, session.getConflatedCount());
+        session.offer("md/"+RU, "{}", false);
+        assertEquals(1, session.getDroppedCount());
+        assertFalse(session.isClosed());
+
+        session.offer("order/acc1/txn/1", "{}", true);
+        assertTrue(session.isOverflowed());
+        assertTrue(session.isClosed());
+        assertEquals(0, session.getPendingCount());
+    }
+
+    private PushSession connect(ClientSocket socket, String ...topics) throws Exception {
+        int port = ((ServerConnector)server.getConnectors()[0]).getLocalPort();
+        Session clientSession = client.connect(socket, new URI("ws://localhost:"+port+PushWebSocketServlet.URL_PATH)).get(5, TimeUnit.SECONDS);
+        StringBuilder text = new StringBuilder("{\"action\":\"subscribe\", \"topics\":[");
+        for(int i=0;i<topics.length;i++) {
+            if ( i>0 ) {
+                text.append(",");
+            }
+            text.append("\"").append(topics[i]).append("\"");
+        }
+        text.append("]}");
+        clientSession.getRemote().sendString(text.toString());
+        waitFor(()->pushService.getSessions().size()==1 && pushService.getSessions().iterator().next().getTopics().size()==topics.length);
+        return pushService.getSessions().iterator().next();
+    }
+
+    /**
+     * 接收消息直到收到所有指定的行情, 检查每个主题的行情时间戳递增
+     *
+     * @return 每个主题最后收到的时间戳
+     */
+    private Map<String, Long> receiveUntil(ClientSocket socket, MarketData ...lastTicks) throws Exception {
+        Map<String, Long> lastTimestamps = new HashMap<>();
+        int received = 0;
+        while(received<lastTicks.length) {
+            String message = socket.messages.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Timeout waiting for last ticks", message);
+            JsonObject json = (JsonObject)(new JsonParser()).parse(message);
+            String topic = json.get("topic").getAsString();
+            long updateTimestamp = json.get("data").getAsJsonObject().get("updateTimestamp").getAsLong();
+            Long lastTimestamp = lastTimestamps.get(topic);
+            assertTrue(lastTimestamp==null || updateTimestamp>lastTimestamp);
+            lastTimestamps.put(topic, updateTimestamp);
+            for(MarketData md:lastTicks) {
+                if ( topic.equals("md/"+md.instrumentId) && updateTimestamp==md.updateTimestamp ) {
+                    received++;
+                }
+            }
+        }
+        return lastTimestamps;
+    }
+
+    private MarketData createTick(Exchangeable e) {
+        timestamp += 500;
+        SyntheticMarketData md = new SyntheticMarketData("test", e);
+        md.tradingDay = "20181228";
+        md.updateTimestamp = timestamp;
+        md.updateTime = DateUtil.long2datetime(ZoneId.systemDefault(), timestamp);
+        md.lastPrice = 2860000;
+        md.volume = timestamp/500;
+        md.bidPrices = new long[] {2859500};
+        md.bidVolumes = new int[] {10};
+        md.askPrices = new long[] {2860500};
+        md.askVolumes = new int[] {10};
+        return md;
+    }
+
+    private static interface Condition {
+        boolean test();
+    }
+
+    private static void waitFor(Condition condition) throws Exception {
+        long beginTime = System.currentTimeMillis();
+        while( !condition.test() ) {
+            assertTrue("Timeout", (System.currentTimeMillis()-beginTime)<5000);
+            Thread.sleep(5);
+        }
+    }
+
+}
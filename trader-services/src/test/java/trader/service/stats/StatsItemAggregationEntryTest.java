@@ -0,0 +1,180 @@
+package trader.service.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * 与原有LinkedList+BigDecimal实现对比归并结果
+ */
+public class StatsItemAggregationEntryTest {
+
+    @Test
+    public void testInstant() {
+        StatsItem item = new StatsItem("test", "instant");
+        item.setType(StatsItemType.Instant);
+        Random random = new Random(1);
+        compare(item, (long t, double last)->random.nextInt(1000));
+    }
+
+    @Test
+    public void testInstantFraction() {
+        StatsItem item = new StatsItem("test", "instantFraction");
+        item.setType(StatsItemType.Instant);
+        Random random = new Random(2);
+        //1/4的倍数, 累加没有误差
+        compare(item, (long t, double last)->random.nextInt(4000)/4.0);
+    }
+
+    @Test
+    public void testCumulative() {
+        StatsItem item = new StatsItem("test", "cumulative");
+        item.setType(StatsItemType.Cumulative);
+        Random random = new Random(3);
+        compare(item, (long t, double last)->last+random.nextInt(100000));
+    }
+
+    @Test
+    public void testCumulativeOnRestart() {
+        StatsItem item = new StatsItem("test", "cumulativeOnRestart");
+        item.setType(StatsItemType.Cumulative);
+        item.setCumulativeOnRestart(true);
+        Random random = new Random(4);
+        //随机重启
+        compare(item, (long t, double last)->(random.nextInt(200)==0)?random.nextInt(10)+1:last+random.nextInt(100));
+    }
+
+    @Test
+    public void testDivide() {
+        MathContext mc = new MathContext(2, RoundingMode.HALF_UP);
+        long[] values = {0, 1, 9, 10, 99, 100, 105, 149, 150, 151, 994, 995, 996, 9949, 9950, 123456789, 999999999999L};
+        for(long v:values) {
+            for(long d=1;d<=70;d++) {
+                for(int sign=-1;sign<=1;sign+=2) {
+                    double value = sign*v;
+                    double expected = new BigDecimal(value, mc).divide(new BigDecimal(d), RoundingMode.HALF_UP).doubleValue();
+                    assertEquals(value+"/"+d, expected, StatsItemAggregationEntry.divide(value, d), 0);
+                }
+            }
+        }
+    }
+
+    private static interface SampleGenerator{
+        double next(long sampleTime, double lastValue);
+    }
+
+    /**
+     * 一小时以上的采样数据, 间隔1-15秒, 偶尔有相同时间的采样
+     */
+    private static void compare(StatsItem item, SampleGenerator generator) {
+        Random random = new Random(item.getKey().hashCode());
+        StatsItemAggregationEntry entry = new StatsItemAggregationEntry(item);
+        ReferenceEntry refEntry = new ReferenceEntry(item);
+        long sampleTime = 1546000000;
+        double value = 0;
+        for(int i=0;i<2000;i++) {
+            if ( random.nextInt(20)!=0 ) {
+                sampleTime += 1+random.nextInt(15);
+            }
+            value = generator.next(sampleTime, value);
+            entry.aggregate(sampleTime, value);
+            refEntry.aggregate(sampleTime, value);
+            assertEquals(refEntry.aggregatedValues, entry.getAggregatedValues());
+            assertEquals(sampleTime, entry.getLastSampleTime());
+        }
+    }
+
+    /**
+     * 原有实现
+     */
+    private static class ReferenceEntry {
+        private static final MathContext VALUE_CONTEXT = new MathContext(2, RoundingMode.HALF_UP);
+        private StatsItem item;
+        private long adjustFactor;
+        private LinkedList<long[]> sampleTimes = new LinkedList<>();
+        private LinkedList<Double> sampleValues = new LinkedList<>();
+        Map<String, Object> aggregatedValues = new HashMap<>();
+
+        ReferenceEntry(StatsItem item){
+            this.item = item;
+        }
+
+        void aggregate(long sampleTime, double sampleValue) {
+            if ( item.getType()==StatsItemType.Cumulative && item.isCumulativeOnRestart()) {
+                long sampleLong = (long)sampleValue;
+                if ( !sampleValues.isEmpty() && sampleLong>0 && sampleValues.getLast().longValue() > (sampleLong+adjustFactor) ) {
+                    adjustFactor += sampleLong;
+                }
+                sampleValue = adjustFactor+sampleValue;
+            }
+            sampleTimes.offer(new long[] {sampleTime});
+            sampleValues.offer(sampleValue);
+            while(!sampleTimes.isEmpty() && (sampleTime-sampleTimes.peek()[0])>3600) {
+                sampleTimes.poll();
+                sampleValues.poll();
+            }
+            int[] windows = {5, 15, 60};
+            String[] keys = {StatsItemAggregation.KEY_LAST_5_MINUTE_AVG_VALUE, StatsItemAggregation.KEY_LAST_15_MINUTE_AVG_VALUE, StatsItemAggregation.KEY_LAST_60_MINUTE_AVG_VALUE};
+            for(int w=0;w<windows.length;w++) {
+                if ( item.getType()==StatsItemType.Cumulative ) {
+                    aggregatedValues.put(keys[w], getCumulativeAvgValuePerMinute(windows[w]));
+                } else {
+                    aggregatedValues.put(keys[w], getInstantAvgValue(windows[w]));
+                }
+            }
+            aggregatedValues.put(StatsItemAggregation.KEY_LAST_VALUE, sampleValues.getLast());
+        }
+
+        private double getInstantAvgValue(int averageMinutes) {
+            double tv = 0;
+            int tc = 0;
+            long lastTime = sampleTimes.getLast()[0];
+            Iterator<long[]> timeIt = sampleTimes.descendingIterator();
+            Iterator<Double> valueIt = sampleValues.descendingIterator();
+            while(timeIt.hasNext()) {
+                long time = timeIt.next()[0];
+                double value = valueIt.next();
+                if ( (lastTime-time)>averageMinutes*60 ) {
+                    break;
+                }
+                tv += value; tc++;
+            }
+            BigDecimal v = new BigDecimal(tv, VALUE_CONTEXT);
+            BigDecimal av = v.divide(new BigDecimal(tc), RoundingMode.HALF_UP);
+            return av.doubleValue();
+        }
+
+        private double getCumulativeAvgValuePerMinute(int maxMinutes) {
+            long lastTime = sampleTimes.getLast()[0], firstTime = lastTime;
+            double lastValue = sampleValues.getLast(), firstValue = lastValue;
+            Iterator<long[]> timeIt = sampleTimes.descendingIterator();
+            Iterator<Double> valueIt = sampleValues.descendingIterator();
+            while(timeIt.hasNext()) {
+                long time = timeIt.next()[0];
+                double value = valueIt.next();
+                if ( (lastTime-time)>maxMinutes*60 ) {
+                    break;
+                }
+                firstTime = time;
+                firstValue = value;
+            }
+            BigDecimal v = new BigDecimal((lastValue-firstValue), VALUE_CONTEXT);
+            long minutes = ((lastTime-firstTime)+30) / 60;
+            if ( minutes<=0 ) {
+                minutes = 1;
+            }
+            BigDecimal av = v.divide(new BigDecimal(minutes), RoundingMode.HALF_UP);
+            return av.doubleValue();
+        }
+    }
+
+}
@@ -1,22 +1,35 @@
 package trader.service.ta;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.ta4j.core.TimeSeries;
 
+import net.jctp.CThostFtdcDepthMarketDataField;
+
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableTradingTimes;
 import trader.common.tick.PriceLevel;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+import trader.common.util.PriceUtil;
 import trader.common.util.TraderHomeUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
 import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
 import trader.service.md.MarketDataService;
+import trader.service.ta.ContinuousSeriesLoader.AdjustMode;
 import trader.simulator.SimBeansContainer;
 import trader.simulator.SimMarketDataService;
 
@@ -225,4 +238,106 @@ public class TimeSeriesLoaderTest {
         assertTrue((min1Series.getBarCount())/5==min5Series.getBarCount());
     }
 
+    /**
+     * 主力连续合约TICK复权: ru1905 在 20181206 换月到 ru1909, 价差 300.
+     * <BR>涨跌停时没有报价的一侧(Long.MAX_VALUE)和没有设置的价格(0)保持不变
+     */
+    @Test
+    public void testContinuousTicks() throws Exception {
+        File dataDir = Files.createTempDirectory("continuousTicks").toFile();
+        try {
+            ExchangeableData data = new ExchangeableData(dataDir, false);
+            Exchangeable ru1905 = Exchangeable.fromString("ru1905");
+            Exchangeable ru1909 = Exchangeable.fromString("ru1909");
+            LocalDate[] days = {LocalDate.of(2018, 12, 3), LocalDate.of(2018, 12, 4), LocalDate.of(2018, 12, 5), LocalDate.of(2018, 12, 6), LocalDate.of(2018, 12, 7)};
+            long[] ru1909OpenInts = {500, 800, 1200, 1500, 1600};
+            for(int i=0;i<days.length;i++) {
+                saveMin1(data, ru1905, days[i], 12000, 1000);
+                saveMin1(data, ru1909, days[i], 12300, ru1909OpenInts[i]);
+            }
+            saveTick(data, ru1905, days[0]);
+
+            SimBeansContainer beansContainer = new SimBeansContainer();
+            final SimMarketDataService mdService = new SimMarketDataService();
+            mdService.init(beansContainer);
+            beansContainer.addBean(MarketDataService.class, mdService);
+
+            TimeSeriesLoader loader = new TimeSeriesLoader(beansContainer, data)
+                    .setExchangeable(Exchangeable.fromString("ru888"))
+                    .setStartTradingDay(days[0])
+                    .setEndTradingDay(days[4])
+                    .setAdjustMode(AdjustMode.Difference);
+            List<MarketData> ticks = loader.loadMarketDataTicks(days[0], ExchangeableData.TICK_CTP);
+            assertEquals(1, ticks.size());
+            MarketData tick = ticks.get(0);
+            assertEquals(PriceUtil.price2long(12300), tick.lastPrice);
+            assertEquals(PriceUtil.price2long(12295), tick.bidPrices[0]);
+            assertEquals(Long.MAX_VALUE, tick.askPrices[0]);
+            assertEquals(PriceUtil.price2long(12900), tick.upperLimitPrice);
+            assertEquals(0, tick.lowerLimitPrice);
+
+            ticks = loader.setAdjustMode(AdjustMode.Ratio).loadMarketDataTicks(days[0], ExchangeableData.TICK_CTP);
+            tick = ticks.get(0);
+            assertTrue(tick.lastPrice>PriceUtil.price2long(12000));
+            assertEquals(Long.MAX_VALUE, tick.askPrices[0]);
+            assertEquals(0, tick.lowerLimitPrice);
+        } finally {
+            FileUtil.deleteDirectory(dataDir);
+        }
+    }
+
+    private static void saveMin1(ExchangeableData data, Exchangeable e, LocalDate tradingDay, double close, long openInt) throws Exception {
+        CSVWriter csvWriter = new CSVWriter(ExchangeableData.COLUMN_INDEX, ExchangeableData.COLUMN_BEGIN_TIME, ExchangeableData.COLUMN_END_TIME,
+                ExchangeableData.COLUMN_OPEN, ExchangeableData.COLUMN_HIGH, ExchangeableData.COLUMN_LOW, ExchangeableData.COLUMN_CLOSE,
+                ExchangeableData.COLUMN_AVG, ExchangeableData.COLUMN_MKTAVG, ExchangeableData.COLUMN_VOLUME, ExchangeableData.COLUMN_TURNOVER, ExchangeableData.COLUMN_OPENINT);
+        for(int i=0;i<3;i++) {
+            LocalDateTime beginTime = tradingDay.atTime(9, i);
+            String price = PriceUtil.price2str(close+(i-1)*0.5);
+            csvWriter.next();
+            csvWriter.set(ExchangeableData.COLUMN_INDEX, ""+i);
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_TIME, DateUtil.date2str(beginTime));
+            csvWriter.set(ExchangeableData.COLUMN_END_TIME, DateUtil.date2str(beginTime.plusMinutes(1)));
+            csvWriter.set(ExchangeableData.COLUMN_OPEN, price);
+            csvWriter.set(ExchangeableData.COLUMN_HIGH, price);
+            csvWriter.set(ExchangeableData.COLUMN_LOW, price);
+            csvWriter.set(ExchangeableData.COLUMN_CLOSE, price);
+            csvWriter.set(ExchangeableData.COLUMN_AVG, price);
+            csvWriter.set(ExchangeableData.COLUMN_MKTAVG, price);
+            csvWriter.set(ExchangeableData.COLUMN_VOLUME, "10");
+            csvWriter.set(ExchangeableData.COLUMN_TURNOVER, "0");
+            csvWriter.set(ExchangeableData.COLUMN_OPENINT, ""+openInt);
+        }
+        data.save(e, ExchangeableData.MIN1, tradingDay, csvWriter.toString());
+    }
+
+    /**
+     * 涨停TICK: 卖一没有报价, 只有一档买价
+     */
+    private static void saveTick(ExchangeableData data, Exchangeable e, LocalDate tradingDay) throws Exception {
+        CThostFtdcDepthMarketDataField field = new CThostFtdcDepthMarketDataField();
+        field.TradingDay = DateUtil.date2str(tradingDay);
+        field.ActionDay = field.TradingDay;
+        field.InstrumentID = e.id();
+        field.ExchangeID = e.exchange().name();
+        field.ExchangeInstID = e.id();
+        field.UpdateTime = "09:00:01";
+        field.LastPrice = 12000;
+        field.BidPrice1 = 11995;
+        field.BidVolume1 = 10;
+        field.AskPrice1 = Double.MAX_VALUE;
+        field.BidPrice2 = Double.MAX_VALUE;
+        field.AskPrice2 = Double.MAX_VALUE;
+        field.BidPrice3 = Double.MAX_VALUE;
+        field.AskPrice3 = Double.MAX_VALUE;
+        field.BidPrice4 = Double.MAX_VALUE;
+        field.AskPrice4 = Double.MAX_VALUE;
+        field.BidPrice5 = Double.MAX_VALUE;
+        field.AskPrice5 = Double.MAX_VALUE;
+        field.UpperLimitPrice = 12600;
+        field.LowerLimitPrice = 0;
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        String csv = String.join(",", csvMarshallHelper.getHeader())+"\n"+String.join(",", csvMarshallHelper.marshall(field))+"\n";
+        data.save(e, ExchangeableData.TICK_CTP, tradingDay, csv);
+    }
+
 }
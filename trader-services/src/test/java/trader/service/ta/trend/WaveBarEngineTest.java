@@ -0,0 +1,197 @@
+package trader.service.ta.trend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.Future;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.md.synthetic.SyntheticMarketData;
+import trader.service.ta.LongNum;
+import trader.service.ta.TimeSeriesLoader;
+import trader.service.ta.trend.WaveBar.WaveType;
+import trader.simulator.SimBeansContainer;
+import trader.simulator.SimMarketDataService;
+
+/**
+ * 比较WaveBarEngine和MarketDataWaveBarBuilder产生的笔划和线段
+ */
+@SuppressWarnings({"rawtypes"})
+public class WaveBarEngineTest {
+
+    @Before
+    public void setup() {
+        TraderHomeHelper.init();
+    }
+
+    /**
+     * 回放MarketDataWaveBarTest使用的行情数据
+     */
+    @Test
+    public void testCtpTicks() throws Exception {
+        replayCtpTicks(Future.fromInstrument("au1906"), PriceUtil.price2long(0.05)*3);
+        replayCtpTicks(Future.fromInstrument("ru1901"), PriceUtil.price2long(5)*3);
+    }
+
+    @Test
+    public void testRandomWalk() throws Exception {
+        for(int seed=1;seed<=10;seed++) {
+            compare(randomWalk(Future.fromInstrument("au1906"), seed, 20000), PriceUtil.price2long(0.05)*3, 4096);
+        }
+    }
+
+    /**
+     * 窗口很小时, 历史笔划和线段溢出到磁盘, 结果不变
+     */
+    @Test
+    public void testSpill() throws Exception {
+        List<MarketData> ticks = randomWalk(Future.fromInstrument("au1906"), 100, 20000);
+        WaveBarEngine engine = compare(ticks, PriceUtil.price2long(0.05)*3, 16);
+        try{
+            WaveBarColumns strokes = engine.getColumns(WaveType.Stroke);
+            assertTrue(strokes.getFirstRow()>0);
+            assertTrue(strokes.getSpillFile().length()>0);
+        }finally {
+            engine.close();
+        }
+    }
+
+    private void replayCtpTicks(Future future, long threshold) throws Exception {
+        SimBeansContainer beansContainer = new SimBeansContainer();
+        final SimMarketDataService mdService = new SimMarketDataService();
+        mdService.init(beansContainer);
+        beansContainer.addBean(MarketDataService.class, mdService);
+
+        ExchangeableData data = TraderHomeUtil.getExchangeableData();
+        TimeSeriesLoader loader= new TimeSeriesLoader(beansContainer, data);
+        loader
+            .setExchangeable(future)
+            .setStartTradingDay(LocalDate.of(2018, 12, 13))
+            .setEndTradingDay(LocalDate.of(2018, 12, 13))
+            .setLevel(PriceLevel.TICKET);
+        LocalDate date = LocalDate.of(2018, 12, 2);
+        while(date.getMonth()==Month.DECEMBER) {
+            if ( MarketDayUtil.isMarketDay(Exchange.SHFE, date) && data.exists(future, ExchangeableData.TICK_CTP, date) ) {
+                compare(loader.loadMarketDataTicks(date, ExchangeableData.TICK_CTP), threshold, 256).close();
+            }
+            date = date.plusDays(1);
+        }
+    }
+
+    private static WaveBarEngine compare(List<MarketData> ticks, long threshold, int windowSize) {
+        MarketDataWaveBarBuilder builder = new MarketDataWaveBarBuilder();
+        builder.setStrokeDirectionThreshold(new LongNum(threshold));
+        WaveBarEngine engine = new WaveBarEngine();
+        engine.setStrokeDirectionThreshold(threshold).setWindowSize(windowSize);
+        Map<MarketData, Long> tickIndexes = new IdentityHashMap<>();
+        for(MarketData md:ticks) {
+            tickIndexes.put(md, (long)tickIndexes.size());
+            builder.onMarketData(md);
+            engine.onMarketData(md);
+            //每个行情切片后比较最后的笔划和线段
+            for(WaveType waveType:new WaveType[] {WaveType.Stroke, WaveType.Section}) {
+                List<WaveBar> bars = builder.getBars(waveType);
+                assertEquals(bars.size(), engine.getBarCount(waveType));
+                if ( !bars.isEmpty() ) {
+                    assertBar(engine, waveType, bars.size()-1, bars.get(bars.size()-1));
+                }
+            }
+        }
+        List<WaveBar> strokeBars = builder.getBars(WaveType.Stroke);
+        Map<WaveBar, Long> strokeIndexes = new IdentityHashMap<>();
+        for(int i=0;i<strokeBars.size();i++) {
+            WaveBar stroke = strokeBars.get(i);
+            strokeIndexes.put(stroke, (long)i);
+            assertBar(engine, WaveType.Stroke, i, stroke);
+            assertEquals(tickIndexes.get(stroke.getOpenTick()).longValue(), engine.get(WaveType.Stroke, i, WaveBarEngine.COL_OPEN_TICK));
+            assertEquals(tickIndexes.get(stroke.getCloseTick()).longValue(), engine.get(WaveType.Stroke, i, WaveBarEngine.COL_CLOSE_TICK));
+            assertEquals(tickIndexes.get(stroke.getMaxTick()).longValue(), engine.get(WaveType.Stroke, i, WaveBarEngine.COL_MAX_TICK));
+            assertEquals(tickIndexes.get(stroke.getMinTick()).longValue(), engine.get(WaveType.Stroke, i, WaveBarEngine.COL_MIN_TICK));
+        }
+        List<WaveBar> sectionBars = builder.getBars(WaveType.Section);
+        for(int i=0;i<sectionBars.size();i++) {
+            WaveBar section = sectionBars.get(i);
+            assertBar(engine, WaveType.Section, i, section);
+            List<WaveBar> sectionStrokes = section.getBars();
+            assertEquals(strokeIndexes.get(sectionStrokes.get(0)).longValue(), engine.get(WaveType.Section, i, WaveBarEngine.COL_FIRST_STROKE));
+            assertEquals(strokeIndexes.get(sectionStrokes.get(sectionStrokes.size()-1)).longValue(), engine.get(WaveType.Section, i, WaveBarEngine.COL_LAST_STROKE));
+        }
+        return engine;
+    }
+
+    private static void assertBar(WaveBarEngine engine, WaveType waveType, long index, WaveBar bar) {
+        String message = waveType+" "+index+" "+bar;
+        assertEquals(message, bar.getDirection(), engine.getDirection(waveType, index));
+        assertEquals(message, raw(bar.getOpenPrice()), engine.get(waveType, index, WaveBarEngine.COL_OPEN));
+        assertEquals(message, raw(bar.getClosePrice()), engine.get(waveType, index, WaveBarEngine.COL_CLOSE));
+        assertEquals(message, raw(bar.getMaxPrice()), engine.get(waveType, index, WaveBarEngine.COL_MAX));
+        assertEquals(message, raw(bar.getMinPrice()), engine.get(waveType, index, WaveBarEngine.COL_MIN));
+        assertEquals(message, bar.getBeginTime().toInstant().toEpochMilli(), engine.get(waveType, index, WaveBarEngine.COL_BEGIN_TIME));
+        assertEquals(message, bar.getEndTime().toInstant().toEpochMilli(), engine.get(waveType, index, WaveBarEngine.COL_END_TIME));
+        assertEquals(message, raw(bar.getVolume()), PriceUtil.price2long(engine.get(waveType, index, WaveBarEngine.COL_VOLUME)));
+        assertEquals(message, raw(bar.getAmount()), engine.get(waveType, index, WaveBarEngine.COL_AMOUNT));
+        assertEquals(message, raw(bar.getAvgPrice()), engine.get(waveType, index, WaveBarEngine.COL_AVG_PRICE));
+        assertEquals(message, raw(bar.getMktAvgPrice()), engine.get(waveType, index, WaveBarEngine.COL_MKT_AVG_PRICE));
+        assertEquals(message, bar.getOpenInterest(), engine.get(waveType, index, WaveBarEngine.COL_OPEN_INTEREST));
+    }
+
+    private static long raw(org.ta4j.core.num.Num num) {
+        return ((LongNum)num).rawValue();
+    }
+
+    /**
+     * 带有趋势的随机游走行情, 趋势方向和强度随机变化, 成交量可能不变
+     */
+    static List<MarketData> randomWalk(Exchangeable e, long seed, int count) {
+        Random random = new Random(seed);
+        long priceTick = e.getPriceTick();
+        long price = 300*PriceUtil.price2long(1);
+        long volume = 1000, turnover = volume*price*e.getVolumeMutiplier(), openInterest = 100000;
+        long timestamp = DateUtil.localdatetime2long(e.exchange().getZoneId(), LocalDateTime.of(2018, 12, 3, 9, 0));
+        int trend = 0;
+        List<MarketData> result = new ArrayList<>(count);
+        for(int i=0;i<count;i++) {
+            if ( random.nextInt(200)==0 ) {
+                trend = random.nextInt(5)-2;
+            }
+            price += priceTick*(random.nextInt(7)-3+trend);
+            int vol = random.nextInt(4)==0?0:random.nextInt(20);
+            volume += vol;
+            turnover += price*vol*e.getVolumeMutiplier();
+            openInterest += random.nextInt(5)-2;
+            timestamp += 500;
+            SyntheticMarketData md = new SyntheticMarketData("test", e);
+            md.updateTimestamp = timestamp;
+            md.updateTime = DateUtil.long2datetime(e.exchange().getZoneId(), timestamp);
+            md.lastPrice = price;
+            md.volume = volume;
+            md.turnover = turnover;
+            md.openInterest = openInterest;
+            md.averagePrice = turnover/volume/e.getVolumeMutiplier();
+            result.add(md);
+        }
+        return result;
+    }
+
+}
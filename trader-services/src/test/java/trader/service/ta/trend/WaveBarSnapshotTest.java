@@ -0,0 +1,242 @@
+package trader.service.ta.trend;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ta4j.core.num.Num;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.Future;
+import trader.common.util.FileUtil;
+import trader.common.util.PriceUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
+import trader.service.ta.LongNum;
+import trader.service.ta.trend.WaveBar.WaveType;
+import trader.service.trade.TradeConstants.PosDirection;
+
+/**
+ * 多级波浪构建和快照恢复测试
+ */
+@SuppressWarnings({"rawtypes"})
+public class WaveBarSnapshotTest {
+
+    private static final Exchangeable AU1906 = Future.fromInstrument("au1906");
+    private static final long THRESHOLD = PriceUtil.price2long(0.05)*3;
+
+    @Before
+    public void setup() {
+        TraderHomeHelper.init();
+    }
+
+    /**
+     * 增加趋势级别不影响笔划和线段, 每一级都由下一级连续的Bar构成
+     */
+    @Test
+    public void testTrendLevels() {
+        int trendCount = 0;
+        for(int seed=1;seed<=5;seed++) {
+            List<MarketData> ticks = WaveBarEngineTest.randomWalk(AU1906, seed, 20000);
+            MarketDataWaveBarBuilder builder2 = build(2, ticks);
+            MarketDataWaveBarBuilder builder4 = build(4, ticks);
+            for(int level=0;level<2;level++) {
+                assertBarsEquals(builder2.getBars(level), builder4.getBars(level));
+            }
+            for(int level=1;level<builder4.getLevelCount();level++) {
+                assertLevel(builder4, level);
+            }
+            assertSame(builder4.getBars(2), builder4.getBars(WaveBar.WaveType.Trend));
+            trendCount += builder4.getBars(2).size();
+        }
+        assertTrue(trendCount>0);
+    }
+
+    /**
+     * 从中途的快照恢复后继续构建, 结果和从头构建完全相同
+     */
+    @Test
+    public void testResume() throws Exception {
+        for(int seed=1;seed<=5;seed++) {
+            List<MarketData> ticks = WaveBarEngineTest.randomWalk(AU1906, seed, 20000);
+            MarketDataWaveBarBuilder scratch = build(3, ticks);
+            byte[] expected = WaveBarSnapshot.toBytes(AU1906, scratch);
+            for(int split:new int[] {1, 100, 5000+seed*997, ticks.size()-1}) {
+                MarketDataWaveBarBuilder builder = build(3, ticks.subList(0, split));
+                MarketDataWaveBarBuilder resumed = newBuilder(3);
+                WaveBarSnapshot.fromBytes(WaveBarSnapshot.toBytes(AU1906, builder), resumed);
+                assertArrayEquals(WaveBarSnapshot.toBytes(AU1906, builder), WaveBarSnapshot.toBytes(AU1906, resumed));
+                for(MarketData md:ticks.subList(split, ticks.size())) {
+                    resumed.onMarketData(md);
+                }
+                for(int level=0;level<scratch.getLevelCount();level++) {
+                    assertBarsEquals(scratch.getBars(level), resumed.getBars(level));
+                }
+                assertArrayEquals("seed "+seed+" split "+split, expected, WaveBarSnapshot.toBytes(AU1906, resumed));
+            }
+        }
+    }
+
+    /**
+     * 只保留最近的Bar, 快照变小, 继续构建的结果和从头构建的最近Bar相同
+     */
+    @Test
+    public void testPrune() throws Exception {
+        for(int seed=1;seed<=5;seed++) {
+            List<MarketData> ticks = WaveBarEngineTest.randomWalk(AU1906, seed, 20000);
+            MarketDataWaveBarBuilder scratch = build(3, ticks);
+            int split = ticks.size()/2;
+            MarketDataWaveBarBuilder builder = build(3, ticks.subList(0, split));
+            int size = WaveBarSnapshot.toBytes(AU1906, builder).length;
+            builder.prune(50);
+            assertTrue(WaveBarSnapshot.toBytes(AU1906, builder).length<size);
+            MarketDataWaveBarBuilder resumed = newBuilder(3);
+            WaveBarSnapshot.fromBytes(WaveBarSnapshot.toBytes(AU1906, builder), resumed);
+            for(MarketData md:ticks.subList(split, ticks.size())) {
+                resumed.onMarketData(md);
+            }
+            for(int level=0;level<scratch.getLevelCount();level++) {
+                List<WaveBar> bars = resumed.getBars(level);
+                List<WaveBar> scratchBars = scratch.getBars(level);
+                assertTrue(bars.size()<=scratchBars.size());
+                assertBarsEquals(scratchBars.subList(scratchBars.size()-bars.size(), scratchBars.size()), bars);
+            }
+        }
+    }
+
+    /**
+     * 与TAEntry相同, 盘中超出后删除最早的Bar, 保留的Bar不变; WaveBarEngine保留全部笔划和线段
+     */
+    @Test
+    public void testLivePrune() throws Exception {
+        for(int seed=1;seed<=5;seed++) {
+            List<MarketData> ticks = WaveBarEngineTest.randomWalk(AU1906, seed, 20000);
+            MarketDataWaveBarBuilder scratch = build(3, ticks);
+            MarketDataWaveBarBuilder builder = newBuilder(3);
+            WaveBarEngine engine = new WaveBarEngine().setStrokeDirectionThreshold(THRESHOLD).setWindowSize(16);
+            try{
+                for(MarketData md:ticks) {
+                    builder.onMarketData(md);
+                    engine.onMarketData(md);
+                    if ( builder.getBars(WaveType.Stroke).size()>50+50/4 ) {
+                        builder.prune(50);
+                    }
+                }
+                for(int level=0;level<scratch.getLevelCount();level++) {
+                    List<WaveBar> bars = builder.getBars(level);
+                    List<WaveBar> scratchBars = scratch.getBars(level);
+                    assertTrue(bars.size()<=50+50/4);
+                    assertBarsEquals(scratchBars.subList(scratchBars.size()-bars.size(), scratchBars.size()), bars);
+                }
+                assertEquals(scratch.getBars(WaveType.Stroke).size(), engine.getBarCount(WaveType.Stroke));
+                assertEquals(scratch.getBars(WaveType.Section).size(), engine.getBarCount(WaveType.Section));
+            }finally {
+                engine.close();
+            }
+        }
+    }
+
+    /**
+     * 快照保存到ExchangeableData, 按交易日加载
+     */
+    @Test
+    public void testExchangeableData() throws Exception {
+        File dir = Files.createTempDirectory("wavesnapshot").toFile();
+        try{
+            ExchangeableData data = new ExchangeableData(dir, false);
+            LocalDate tradingDay = LocalDate.of(2018, 12, 3);
+            List<MarketData> ticks = WaveBarEngineTest.randomWalk(AU1906, 7, 20000);
+            MarketDataWaveBarBuilder builder = build(3, ticks);
+            MarketDataWaveBarBuilder resumed = newBuilder(3);
+            assertFalse(WaveBarSnapshot.load(data, AU1906, tradingDay, resumed));
+            WaveBarSnapshot.save(data, AU1906, tradingDay, builder);
+            assertTrue(data.exists(AU1906, ExchangeableData.WAVE_SNAPSHOT, tradingDay));
+            assertTrue(WaveBarSnapshot.load(data, AU1906, tradingDay, resumed));
+            assertArrayEquals(WaveBarSnapshot.toBytes(AU1906, builder), WaveBarSnapshot.toBytes(AU1906, resumed));
+
+            //快照级别少于构建级别时, 高级别从恢复的线段重新构建
+            MarketDataWaveBarBuilder builder4 = newBuilder(4);
+            assertTrue(WaveBarSnapshot.load(data, AU1906, tradingDay, builder4));
+            assertTrue(builder4.getBars(3).isEmpty());
+            assertBarsEquals(builder.getBars(2), builder4.getBars(2));
+        }finally {
+            FileUtil.deleteDirectory(dir);
+        }
+    }
+
+    private static MarketDataWaveBarBuilder newBuilder(int levelCount) {
+        MarketDataWaveBarBuilder builder = new MarketDataWaveBarBuilder(levelCount);
+        builder.setStrokeDirectionThreshold(new LongNum(THRESHOLD));
+        return builder;
+    }
+
+    private static MarketDataWaveBarBuilder build(int levelCount, List<MarketData> ticks) {
+        MarketDataWaveBarBuilder builder = newBuilder(levelCount);
+        for(MarketData md:ticks) {
+            builder.onMarketData(md);
+        }
+        return builder;
+    }
+
+    /**
+     * 每个Bar都由下一级连续的Bar构成, 不包含已被合并的Bar
+     */
+    private static void assertLevel(MarketDataWaveBarBuilder builder, int level) {
+        List<WaveBar> lowerBars = builder.getBars(level-1);
+        List<WaveBar> members = new ArrayList<>();
+        for(WaveBar bar:builder.getBars(level)) {
+            assertEquals(MarketDataWaveBarBuilder.level2waveType(level), bar.getWaveType());
+            assertNotEquals(PosDirection.Net, bar.getDirection());
+            assertFalse(bar.getBars().isEmpty());
+            members.addAll(bar.getBars());
+        }
+        if ( members.isEmpty() ) {
+            return;
+        }
+        int begin = lowerBars.indexOf(members.get(0));
+        assertTrue(begin>=0);
+        assertEquals(lowerBars.subList(begin, lowerBars.size()), members);
+    }
+
+    private static void assertBarsEquals(List<WaveBar> expected, List<WaveBar> actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i=0;i<expected.size();i++) {
+            WaveBar bar = expected.get(i), bar2 = actual.get(i);
+            String message = i+" "+bar;
+            assertEquals(message, bar.getWaveType(), bar2.getWaveType());
+            assertEquals(message, bar.getDirection(), bar2.getDirection());
+            assertEquals(message, raw(bar.getOpenPrice()), raw(bar2.getOpenPrice()));
+            assertEquals(message, raw(bar.getClosePrice()), raw(bar2.getClosePrice()));
+            assertEquals(message, raw(bar.getMaxPrice()), raw(bar2.getMaxPrice()));
+            assertEquals(message, raw(bar.getMinPrice()), raw(bar2.getMinPrice()));
+            assertEquals(message, raw(bar.getVolume()), raw(bar2.getVolume()));
+            assertEquals(message, raw(bar.getAmount()), raw(bar2.getAmount()));
+            assertEquals(message, raw(bar.getAvgPrice()), raw(bar2.getAvgPrice()));
+            assertEquals(message, raw(bar.getMktAvgPrice()), raw(bar2.getMktAvgPrice()));
+            assertEquals(message, bar.getOpenInterest(), bar2.getOpenInterest());
+            assertEquals(message, bar.getBeginTime(), bar2.getBeginTime());
+            assertEquals(message, bar.getEndTime(), bar2.getEndTime());
+            assertEquals(message, bar.getTimePeriod(), bar2.getTimePeriod());
+            assertEquals(message, bar.getBarCount(), bar2.getBarCount());
+            assertEquals(message, bar.getOpenTick().updateTimestamp, bar2.getOpenTick().updateTimestamp);
+            assertEquals(message, bar.getCloseTick().updateTimestamp, bar2.getCloseTick().updateTimestamp);
+        }
+    }
+
+    private static long raw(Num num) {
+        return ((LongNum)num).rawValue();
+    }
+
+}
@@ -0,0 +1,261 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.beans.BeansContainer;
+import trader.common.beans.ServiceState;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.ServiceConstants.AccountState;
+import trader.service.TraderHomeHelper;
+import trader.service.data.KVStoreService;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataListener;
+import trader.service.md.MarketDataProducer;
+import trader.service.md.MarketDataProducerFactory;
+import trader.service.md.MarketDataService;
+import trader.service.md.synthetic.SyntheticMarketData;
+import trader.service.trade.journal.TradeJournalReplayer;
+import trader.service.trade.journal.TradeJournalSnapshot;
+import trader.simulator.SimBeansContainer;
+import trader.simulator.SimKVStoreService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.SimScheduledExecutorService;
+import trader.simulator.trade.SimTxnSession;
+import trader.simulator.trade.SimTxnSessionFactory;
+
+/**
+ * 账户重启后从交易日志恢复报单, 资金和持仓以交易通道查询结果为准
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class AccountJournalTest implements TradeConstants {
+    static {
+        TraderHomeHelper.init();
+    }
+
+    /**
+     * 使用模拟交易通道, 但是不是模拟模式, 会写交易日志
+     */
+    private static final String PROVIDER = "sim-journal";
+    private static final String ACCOUNT_ID = "journal-account1";
+
+    LocalDateTime beginTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 8, 50);
+    LocalDateTime endTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 15, 04);
+    Exchangeable au1906 = Exchangeable.fromString("au1906");
+    LocalDate tradingDay = au1906.exchange().detectTradingTimes(au1906, beginTime).getTradingDay();
+
+    /**
+     * 只保存最新行情的行情服务, 不需要历史行情文件
+     */
+    static class LastDataService implements MarketDataService {
+        Map<Exchangeable, MarketData> lastDatas = new HashMap<>();
+        List<MarketDataListener> listeners = new ArrayList<>();
+
+        void publish(MarketData md) {
+            lastDatas.put(md.instrumentId, md);
+            for(MarketDataListener listener:listeners) {
+                listener.onMarketData(md);
+            }
+        }
+
+        @Override
+        public void init(BeansContainer beansContainer) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public ServiceState getState() {
+            return ServiceState.Ready;
+        }
+
+        @Override
+        public Map<String, MarketDataProducerFactory> getProducerFactories() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Collection<Exchangeable> getPrimaryContracts() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<MarketDataProducer> getProducers() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public MarketDataProducer getProducer(String producerId) {
+            return null;
+        }
+
+        @Override
+        public Collection<Exchangeable> getSubscriptions() {
+            return lastDatas.keySet();
+        }
+
+        @Override
+        public MarketData getLastData(Exchangeable e) {
+            return lastDatas.get(e);
+        }
+
+        @Override
+        public void addSubscriptions(List<Exchangeable> subscriptions) {
+        }
+
+        @Override
+        public void addListener(MarketDataListener listener, Exchangeable... exchangeables) {
+            listeners.add(listener);
+        }
+    }
+
+    SimBeansContainer beansContainer;
+    SimMarketTimeService mtService;
+    LastDataService mdService;
+    TradeServiceTest tradeService;
+    File workDir;
+
+    @Before
+    public void setup() throws Exception {
+        beansContainer = new SimBeansContainer();
+        mtService = new SimMarketTimeService();
+        mdService = new LastDataService();
+        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
+
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(KVStoreService.class, new SimKVStoreService());
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+        scheduledExecutorService.init(beansContainer);
+        mtService.setTimeRanges(tradingDay, new LocalDateTime[]{beginTime, endTime} );
+        mdService.publish(createTick(2860000));
+
+        tradeService = new TradeServiceTest(beansContainer);
+        tradeService.getTxnSessionFactories().put(PROVIDER, new SimTxnSessionFactory());
+        workDir = new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_WORK), DateUtil.date2str(tradingDay));
+        cleanup();
+    }
+
+    @After
+    public void cleanup() {
+        for(String suffix:new String[] {".journal", ".commissions.json", ".commissions-exchange.json"}) {
+            new File(workDir, ACCOUNT_ID+suffix).delete();
+        }
+    }
+
+    @Test
+    public void testRecover() throws Exception
+    {
+        AccountImpl account = createAccount();
+        assertEquals(AccountState.Ready, account.getState());
+        //到9:01:00开市
+        while(mtService.nextTimePiece()) {
+            LocalDateTime time = mtService.getMarketTime();
+            if ( time.getHour()==9 && time.getMinute()==1 ) {
+                break;
+            }
+        }
+        mdService.publish(createTick(2860000));
+        MarketData md = mdService.getLastData(au1906);
+        //一个成交, 一个挂单
+        Order completeOrder = account.createOrder(new OrderBuilder()
+                .setDirection(OrderDirection.Buy)
+                .setExchagneable(au1906)
+                .setLimitPrice(md.lastPrice+10000)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setOffsetFlag(OrderOffsetFlag.OPEN));
+        Order pendingOrder = account.createOrder(new OrderBuilder()
+                .setDirection(OrderDirection.Buy)
+                .setExchagneable(au1906)
+                .setLimitPrice(md.lastPrice-100000)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setOffsetFlag(OrderOffsetFlag.OPEN));
+        mtService.nextTimePiece();
+        mdService.publish(createTick(2860500));
+        assertEquals(OrderState.Complete, completeOrder.getStateTuple().getState());
+        assertEquals(OrderState.Accepted, pendingOrder.getStateTuple().getState());
+        assertEquals(1, account.getPosition(au1906).getVolume(PosVolume_Position));
+        account.destroy();
+
+        //重启后交易通道没有持仓(停机期间已平仓), 资金为初始值
+        AccountImpl account2 = createAccount();
+        assertEquals(AccountState.Ready, account2.getState());
+        assertEquals(PriceUtil.price2long(500000), account2.getMoney(AccMoney_Balance));
+        assertEquals(PriceUtil.price2long(500000), account2.getMoney(AccMoney_Available));
+        Position pos = account2.getPosition(au1906);
+        assertEquals(0, pos.getVolume(PosVolume_Position));
+        //未完成报单不再冻结持仓
+        assertTrue(pos.getActiveOrders().isEmpty());
+
+        Order completeOrder2 = account2.getOrder(completeOrder.getRef());
+        assertNotNull(completeOrder2);
+        assertEquals(OrderState.Complete, completeOrder2.getStateTuple().getState());
+        assertEquals(1, completeOrder2.getVolume(OdrVolume_TradeVolume));
+        Order pendingOrder2 = account2.getOrder(pendingOrder.getRef());
+        assertNotNull(pendingOrder2);
+        assertEquals(pendingOrder.getLimitPrice(), pendingOrder2.getLimitPrice());
+        account2.destroy();
+
+        //新的初始状态后仍然保留报单
+        TradeJournalSnapshot snapshot = TradeJournalReplayer.replay(new File(workDir, ACCOUNT_ID+".journal"));
+        assertEquals(PriceUtil.price2long(500000), snapshot.accountMoney[AccMoney_Balance]);
+        assertTrue(snapshot.orders.containsKey(completeOrder.getRef()));
+        assertTrue(snapshot.orders.containsKey(pendingOrder.getRef()));
+    }
+
+    private MarketData createTick(long price) {
+        SyntheticMarketData md = new SyntheticMarketData("test", au1906);
+        md.tradingDay = DateUtil.date2str(tradingDay);
+        md.updateTime = mtService.getMarketTime();
+        md.updateTimestamp = DateUtil.localdatetime2long(au1906.exchange().getZoneId(), md.updateTime);
+        md.lastPrice = price;
+        md.upperLimitPrice = price*11/10;
+        md.lowerLimitPrice = price*9/10;
+        md.bidPrices = new long[] {price-500};
+        md.bidVolumes = new int[] {10};
+        md.askPrices = new long[] {price+500};
+        md.askVolumes = new int[] {10};
+        return md;
+    }
+
+    private AccountImpl createAccount() {
+        Map config = new HashMap<>();
+        String text =
+                "[connectionProps]\n"+
+                "initMoney=500000.00\n" +
+                "commissionsFile="+TraderHomeUtil.getTraderHome()+"/etc/sim-account1.commissions.json";
+        config.put("id", ACCOUNT_ID);
+        config.put("provider", PROVIDER);
+        config.put("text", text);
+        AccountImpl account = new AccountImpl(tradeService, beansContainer, config);
+        mdService.addListener(account);
+        SimTxnSession txnSession = (SimTxnSession)account.getSession();
+        mtService.addListener(txnSession);
+        //连接后同步初始化账户
+        txnSession.connect(account.getConnectionProps());
+        return account;
+    }
+
+}
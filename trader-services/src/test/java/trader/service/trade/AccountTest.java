@@ -6,16 +6,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.junit.Before;
 import org.junit.Test;
 
-import trader.common.beans.BeansContainer;
 import trader.common.exception.AppException;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.util.PriceUtil;
@@ -30,7 +27,6 @@ import trader.simulator.SimMarketDataService;
 import trader.simulator.SimMarketTimeService;
 import trader.simulator.SimScheduledExecutorService;
 import trader.simulator.trade.SimTxnSession;
-import trader.simulator.trade.SimTxnSessionFactory;
 
 @SuppressWarnings({"unchecked", "unused", "rawtypes"})
 public class AccountTest implements TradeConstants {
@@ -510,50 +506,3 @@ public class AccountTest implements TradeConstants {
         }
     }
 }
-
-
-class TradeServiceTest implements TradeService{
-
-    OrderRefGenImpl orderRefGen;
-    Map<String, TxnSessionFactory> txnSessionFactories = new TreeMap<>();
-
-    TradeServiceTest(BeansContainer beansContainer){
-        orderRefGen = new OrderRefGenImpl(beansContainer);
-        txnSessionFactories.put(TxnSession.PROVIDER_SIM, new SimTxnSessionFactory());
-    }
-
-    @Override
-    public void init(BeansContainer beansContainer) throws Exception {
-    }
-
-    @Override
-    public void destroy() {
-
-    }
-
-    @Override
-    public OrderRefGen getOrderRefGen() {
-        return orderRefGen;
-    }
-
-    @Override
-    public Account getPrimaryAccount() {
-        return null;
-    }
-
-    @Override
-    public Account getAccount(String id) {
-        return null;
-    }
-
-    @Override
-    public Collection<Account> getAccounts() {
-        return null;
-    }
-
-    @Override
-    public Map<String, TxnSessionFactory> getTxnSessionFactories() {
-        return txnSessionFactories;
-    }
-
-}
\ No newline at end of file
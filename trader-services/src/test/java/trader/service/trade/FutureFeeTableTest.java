@@ -0,0 +1,175 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.PriceUtil;
+import trader.service.trade.FutureFeeEvaluator.FutureFeeInfo;
+
+/**
+ * 随机比较FutureFeeTable和原有逐项计算公式的结果, 要求完全相同
+ */
+public class FutureFeeTableTest implements TradeConstants {
+
+    private static final String[] INSTRUMENTS = {"shfe.au1906", "shfe.ru1905", "shfe.cu1905", "dce.m1905", "dce.i1905", "czce.SR905", "czce.CF905", "cffex.IF1901", "cffex.T1903"};
+
+    @Test
+    public void testCommissionsFile() throws Exception {
+        JsonObject json = null;
+        try(Reader reader = new InputStreamReader(getClass().getResourceAsStream("/etc/sim-account1.commissions.json"), StandardCharsets.UTF_8);){
+            json = (JsonObject)(new JsonParser()).parse(reader);
+        }
+        FutureFeeEvaluator feeEvaluator = FutureFeeEvaluator.fromJson(null, json);
+        assertTrue(feeEvaluator.getExchangeables().size()>0);
+        verify(feeEvaluator, new Random(20190301), 20000);
+    }
+
+    /**
+     * 随机生成按金额和按手数的费率, 包含不能精确转换为整数系数的按手数手续费
+     */
+    @Test
+    public void testRandomRatios() {
+        Random random = new Random(20190302);
+        for(int round=0;round<20;round++) {
+            Map<Exchangeable, FutureFeeInfo> feeInfos = new HashMap<>();
+            for(String instrument:INSTRUMENTS) {
+                Exchangeable e = Exchangeable.fromString(instrument);
+                FutureFeeInfo feeInfo = new FutureFeeInfo();
+                feeInfo.setPriceTick(e.getPriceTick());
+                feeInfo.setVolumeMultiple(e.getVolumeMutiplier());
+                feeInfo.setMarginRatio(MarginRatio_LongByMoney, randomMarginRatio(random));
+                feeInfo.setMarginRatio(MarginRatio_ShortByMoney, randomMarginRatio(random));
+                for(int i=0;i<CommissionRatio_Count;i+=2) {
+                    feeInfo.setCommissionRatio(i, randomByMoneyRatio(random));
+                    feeInfo.setCommissionRatio(i+1, randomByVolumeRatio(random));
+                }
+                feeInfos.put(e, feeInfo);
+            }
+            verify(new FutureFeeEvaluator(null, feeInfos), random, 5000);
+        }
+    }
+
+    private static void verify(FutureFeeEvaluator feeEvaluator, Random random, int count) {
+        FutureFeeTable feeTable = feeEvaluator.getFeeTable();
+        long[] orderResult = new long[3];
+        long[] posResult = new long[2];
+        for(Exchangeable e:feeEvaluator.getExchangeables()) {
+            int idx = feeEvaluator.getFeeIndex(e);
+            assertTrue(idx>=0);
+            assertEquals(e, feeTable.getExchangeable(idx));
+            FutureFeeInfo feeInfo = feeInfoOf(feeEvaluator, e);
+            for(int i=0;i<count;i++) {
+                //覆盖整数系数范围以外的手数
+                int volume = 1+random.nextInt(i%10==0?5000:FutureFeeTable.MAX_EXACT_VOLUME);
+                long price = feeInfo.getPriceTick()*(1+random.nextInt(200000));
+                for(OrderDirection direction:OrderDirection.values()) {
+                    for(OrderOffsetFlag offsetFlag:OrderOffsetFlag.values()) {
+                        long[] expected = computeOrder(feeInfo, volume, price, direction, offsetFlag);
+                        feeEvaluator.compute(idx, volume, price, direction, offsetFlag, orderResult);
+                        assertArrayEquals(e+" "+volume+" "+price+" "+direction+" "+offsetFlag, expected, orderResult);
+                        assertArrayEquals(expected, feeEvaluator.compute(e, volume, price, direction, offsetFlag));
+                    }
+                }
+                for(PosDirection direction:new PosDirection[] {PosDirection.Long, PosDirection.Short}) {
+                    long[] expected = computePosition(feeInfo, volume, price, direction);
+                    feeEvaluator.compute(idx, volume, price, direction, posResult);
+                    assertArrayEquals(e+" "+volume+" "+price+" "+direction, expected, posResult);
+                    assertArrayEquals(expected, feeEvaluator.compute(e, volume, price, direction));
+                }
+            }
+        }
+        assertEquals(-1, feeEvaluator.getFeeIndex(Exchangeable.fromString("shfe.zn1905")));
+    }
+
+    private static FutureFeeInfo feeInfoOf(FutureFeeEvaluator feeEvaluator, Exchangeable e) {
+        JsonObject json = (JsonObject)((JsonObject)feeEvaluator.toJson()).get("feeInfos");
+        return FutureFeeInfo.fromJson(0, (JsonObject)json.get(e.toString()));
+    }
+
+    private static double randomMarginRatio(Random random) {
+        return (5+random.nextInt(16))/100.0;
+    }
+
+    private static double randomByMoneyRatio(Random random) {
+        switch(random.nextInt(3)) {
+        case 0:
+            return 0;
+        case 1:
+            return random.nextInt(100)*0.000001;
+        default:
+            return random.nextDouble()*0.0001;
+        }
+    }
+
+    private static double randomByVolumeRatio(Random random) {
+        switch(random.nextInt(4)) {
+        case 0:
+            return 0;
+        case 1:
+            return random.nextInt(3000)/100.0;
+        case 2:
+            return 0.01+random.nextInt(30);
+        default:
+            return random.nextDouble()*20;
+        }
+    }
+
+    /**
+     * 原有的FutureFeeEvaluator报单计算公式
+     */
+    private static long[] computeOrder(FutureFeeInfo feeInfo, int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag) {
+        long turnover = volume*price*feeInfo.getVolumeMultiple();
+        long margin = 0, commission = 0;
+        if ( direction==OrderDirection.Buy ) {
+            margin = (long)(feeInfo.getMarginRatio(MarginRatio_LongByMoney)*turnover);
+        } else {
+            margin = (long)(feeInfo.getMarginRatio(MarginRatio_ShortByMoney)*turnover);
+        }
+        switch(offsetFlag) {
+        case OPEN:
+            commission = (long)( turnover*feeInfo.getCommissionRatio(CommissionRatio_OpenByMoney) )
+                +PriceUtil.price2long( volume*feeInfo.getCommissionRatio(CommissionRatio_OpenByVolume) );
+            break;
+        case CLOSE:
+        case CLOSE_YESTERDAY:
+        case FORCE_CLOSE:
+            commission = (long)( turnover*feeInfo.getCommissionRatio(CommissionRatio_CloseByMoney) )
+                +PriceUtil.price2long( volume*feeInfo.getCommissionRatio(CommissionRatio_CloseByVolume) );
+            break;
+        case CLOSE_TODAY:
+            commission = (long)( turnover*feeInfo.getCommissionRatio(CommissionRatio_CloseTodayByMoney) )
+                +PriceUtil.price2long( volume*feeInfo.getCommissionRatio(CommissionRatio_CloseTodayByVolume) );
+            break;
+        }
+        return new long[] {PriceUtil.round(margin), PriceUtil.round(commission), PriceUtil.round(turnover)};
+    }
+
+    /**
+     * 原有的FutureFeeEvaluator持仓计算公式
+     */
+    private static long[] computePosition(FutureFeeInfo feeInfo, int volume, long price, PosDirection direction) {
+        long turnover = volume*price*feeInfo.getVolumeMultiple();
+        long margin = 0;
+        if ( direction==PosDirection.Long ) {
+            margin = (long)(feeInfo.getMarginRatio(MarginRatio_LongByMoney)*turnover);
+        } else {
+            margin = (long)(feeInfo.getMarginRatio(MarginRatio_ShortByMoney)*turnover);
+        }
+        return new long[] {PriceUtil.round(margin), PriceUtil.round(turnover)};
+    }
+
+}
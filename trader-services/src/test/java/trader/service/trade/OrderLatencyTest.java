@@ -0,0 +1,127 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.LatencyHistogram;
+import trader.common.util.TraderHomeUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.data.KVStoreService;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.stats.LatencyRecorder;
+import trader.service.stats.LatencyRecorder.Stage;
+import trader.simulator.SimBeansContainer;
+import trader.simulator.SimKVStoreService;
+import trader.simulator.SimMarketDataService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.SimScheduledExecutorService;
+import trader.simulator.trade.SimTxnSession;
+
+/**
+ * 使用模拟行情和模拟交易, 检查报单路径上的延迟统计
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class OrderLatencyTest implements TradeConstants {
+    static {
+        TraderHomeHelper.init();
+    }
+
+    LocalDateTime beginTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 8, 50);
+    LocalDateTime endTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 15, 04);
+    Exchangeable au1906 = Exchangeable.fromString("au1906");
+    LocalDate tradingDay = au1906.exchange().detectTradingTimes(au1906, beginTime).getTradingDay();
+
+    SimMarketTimeService mtService;
+    SimMarketDataService mdService;
+    AccountImpl account;
+
+    @Before
+    public void testInit() throws Exception {
+        SimBeansContainer beansContainer = new SimBeansContainer();
+        mtService = new SimMarketTimeService();
+        mdService = new SimMarketDataService();
+        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
+
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(KVStoreService.class, new SimKVStoreService());
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+        scheduledExecutorService.init(beansContainer);
+        mtService.setTimeRanges(tradingDay, new LocalDateTime[]{beginTime, endTime} );
+        mdService.addSubscriptions(Arrays.asList(new Exchangeable[] {au1906}));
+        mdService.init(beansContainer);
+
+        Map config = new HashMap<>();
+        String text =
+                "[connectionProps]\n"+
+                "initMoney=500000.00\n" +
+                "commissionsFile="+TraderHomeUtil.getTraderHome()+"/etc/sim-account1.commissions.json";
+        config.put("id", "sim-account1");
+        config.put("provider", TxnSession.PROVIDER_SIM);
+        config.put("text", text);
+        account = new AccountImpl(new TradeServiceTest(beansContainer), beansContainer, config);
+        mdService.addListener(account);
+        SimTxnSession txnSession = (SimTxnSession)account.getSession();
+        txnSession.connect(account.getConnectionProps());
+        mtService.addListener(txnSession);
+        LatencyRecorder.resetAll();
+    }
+
+    @Test
+    public void testOrderLatency() throws Exception
+    {
+        //到9:01:00
+        while(mtService.nextTimePiece()) {
+            LocalDateTime time = mtService.getMarketTime();
+            if ( time.getHour()==9 && time.getMinute()==1 ) {
+                break;
+            }
+        }
+        int orderCount = 0;
+        for(int i=0;i<20;i++) {
+            MarketData md = mdService.getLastData(au1906);
+            assertTrue(md!=null && md.receiveNanoTime!=0);
+            //模拟策略线程处理行情时报单
+            LatencyRecorder.setCurrentTickTime(md.receiveNanoTime);
+            try {
+                OrderBuilder odrBuilder = new OrderBuilder()
+                        .setDirection(OrderDirection.Buy)
+                        .setExchagneable(au1906)
+                        .setLimitPrice(md.lastPrice-10000)
+                        .setPriceType(OrderPriceType.LimitPrice)
+                        .setOffsetFlag(OrderOffsetFlag.OPEN)
+                        ;
+                Order order = account.createOrder(odrBuilder);
+                orderCount++;
+                mtService.nextTimePiece();
+                account.cancelOrder(order.getRef());
+                mtService.nextTimePiece();
+            } finally {
+                LatencyRecorder.setCurrentTickTime(0);
+            }
+        }
+        for(Stage stage:new Stage[] {Stage.OrderCreate, Stage.OrderSend, Stage.TickToOrder}) {
+            LatencyHistogram histogram = LatencyRecorder.getHistogram(stage);
+            assertTrue(histogram.getCount()==orderCount);
+            long p50 = histogram.getValueAtPercentile(50);
+            long p90 = histogram.getValueAtPercentile(90);
+            long p99 = histogram.getValueAtPercentile(99);
+            assertTrue(p50>0 && p50<=p90 && p90<=p99 && p99<=histogram.getMax());
+        }
+        //报单在行情之后, TickToOrder包含报单创建和发送时间
+        assertTrue(LatencyRecorder.getHistogram(Stage.TickToOrder).getMax()>=LatencyRecorder.getHistogram(Stage.OrderSend).getMax());
+    }
+
+}
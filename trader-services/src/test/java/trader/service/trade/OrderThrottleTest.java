@@ -0,0 +1,219 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.service.ServiceErrorConstants;
+import trader.service.TraderHomeHelper;
+import trader.service.trade.OrderThrottle.Reject;
+import trader.service.tradlet.Playbook;
+import trader.simulator.SimMarketTimeService;
+
+/**
+ * 使用模拟时间检查报单流控的各项限制, 使用缺省配置
+ */
+public class OrderThrottleTest implements TradeConstants, ServiceErrorConstants {
+    static {
+        TraderHomeHelper.init();
+    }
+
+    private static final Exchangeable AU = Exchangeable.fromString("au1906");
+    private static final Exchangeable AG = Exchangeable.fromString("ag1906");
+    private static final Exchangeable CU = Exchangeable.fromString("cu1906");
+    private static final Exchangeable RU = Exchangeable.fromString("ru1906");
+
+    private SimMarketTimeService mtService;
+    private OrderThrottle throttle;
+    private List<Order> orders = new ArrayList<>();
+    private int orderRef;
+
+    @Before
+    public void setup() {
+        mtService = new SimMarketTimeService();
+        LocalDateTime beginTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 9, 0);
+        mtService.setTimeRanges(LocalDate.of(2018, Month.DECEMBER, 28), new LocalDateTime[] {beginTime, beginTime.plusHours(2)});
+        mtService.nextTimePiece();
+        throttle = new OrderThrottle("sim-account1", mtService);
+    }
+
+    @Test
+    public void testInstrumentInsertRate() throws Exception
+    {
+        for(int i=0;i<10;i++) {
+            insert(AU, OrderDirection.Buy, 2860000-i*500);
+        }
+        assertInsertRejected(AU, OrderDirection.Buy, 2850000, Reject.InstrumentInsertRate, ERRCODE_TRADE_THROTTLED);
+        //其它合约不受影响
+        insert(AG, OrderDirection.Buy, 3600000);
+        //每秒补充5个
+        advance(200);
+        insert(AU, OrderDirection.Buy, 2850000);
+        assertInsertRejected(AU, OrderDirection.Buy, 2849500, Reject.InstrumentInsertRate, ERRCODE_TRADE_THROTTLED);
+    }
+
+    @Test
+    public void testAccountInsertRate() throws Exception
+    {
+        Exchangeable[] instruments = {AU, AG, CU};
+        for(int i=0;i<20;i++) {
+            insert(instruments[i%3], OrderDirection.Buy, 2860000-i*500);
+        }
+        assertInsertRejected(RU, OrderDirection.Buy, 1200000, Reject.InsertRate, ERRCODE_TRADE_THROTTLED);
+        advance(100);
+        insert(RU, OrderDirection.Buy, 1200000);
+        assertEquals(0, throttle.getRejects(Reject.InstrumentInsertRate));
+    }
+
+    @Test
+    public void testCancelRate() throws Exception
+    {
+        Order auOrder = createOrder(AU, OrderDirection.Buy, 2860000);
+        for(int i=0;i<10;i++) {
+            throttle.checkCancel(auOrder);
+        }
+        assertCancelRejected(auOrder, Reject.InstrumentCancelRate);
+        Exchangeable[] instruments = {AG, CU};
+        for(int i=0;i<10;i++) {
+            throttle.checkCancel(createOrder(instruments[i%2], OrderDirection.Buy, 2860000));
+        }
+        assertCancelRejected(createOrder(RU, OrderDirection.Buy, 1200000), Reject.CancelRate);
+        advance(200);
+        throttle.checkCancel(auOrder);
+    }
+
+    @Test
+    public void testDailyCancelLimit() throws Exception
+    {
+        Order order = createOrder(AU, OrderDirection.Buy, 2860000);
+        for(int i=0;i<400;i++) {
+            throttle.checkCancel(order);
+            advance(200);
+        }
+        assertCancelRejected(order, Reject.DailyCancelLimit);
+        throttle.checkCancel(createOrder(AG, OrderDirection.Buy, 3600000));
+        assertEquals(0, throttle.getRejects(Reject.InstrumentCancelRate));
+    }
+
+    @Test
+    public void testSelfCross() throws Exception
+    {
+        Order sellOrder = createOrder(AU, OrderDirection.Sell, 2860000);
+        orders.add(sellOrder);
+        assertInsertRejected(AU, OrderDirection.Buy, 2860000, Reject.SelfCross, ERRCODE_TRADE_SELF_CROSS);
+        assertInsertRejected(AU, OrderDirection.Buy, 2861000, Reject.SelfCross, ERRCODE_TRADE_SELF_CROSS);
+        insert(AU, OrderDirection.Buy, 2859500);
+        insert(AG, OrderDirection.Buy, 2861000);
+        //挂单完成后不再检查
+        ((OrderImpl)sellOrder).changeState(new OrderStateTuple(OrderState.Complete, OrderSubmitState.Accepted, 0));
+        insert(AU, OrderDirection.Buy, 2861000);
+        assertEquals(2, throttle.getRejects(Reject.SelfCross));
+    }
+
+    @Test
+    public void testDuplicate() throws Exception
+    {
+        insert(AU, OrderDirection.Buy, 2860000);
+        assertInsertRejected(AU, OrderDirection.Buy, 2860000, Reject.Duplicate, ERRCODE_TRADE_DUPLICATE_ORDER);
+        insert(AU, OrderDirection.Buy, 2859500);
+        advance(500);
+        insert(AU, OrderDirection.Buy, 2860000);
+        assertEquals(1, throttle.getRejects(Reject.Duplicate));
+        assertTrue(OrderThrottle.getTotalRejects(Reject.Duplicate)>=1);
+    }
+
+    @Test
+    public void testDuplicateOwner() throws Exception
+    {
+        throttle.checkInsert(createBuilder(AU, OrderDirection.Buy, 2860000).setAttr(Playbook.ATTR_PLAYBOOK_ID, "pb1"), orders);
+        //不同交易剧本的相同报单
+        throttle.checkInsert(createBuilder(AU, OrderDirection.Buy, 2860000).setAttr(Playbook.ATTR_PLAYBOOK_ID, "pb2"), orders);
+        try{
+            throttle.checkInsert(createBuilder(AU, OrderDirection.Buy, 2860000).setAttr(Playbook.ATTR_PLAYBOOK_ID, "pb1"), orders);
+            fail("Order should be rejected by "+Reject.Duplicate);
+        }catch(AppException ex) {
+            assertEquals(ERRCODE_TRADE_DUPLICATE_ORDER, ex.getCode());
+        }
+    }
+
+    @Test
+    public void testCloseExempt() throws Exception
+    {
+        orders.add(createOrder(AU, OrderDirection.Buy, 2860000));
+        //平仓报单不检查自成交和重复
+        for(OrderOffsetFlag offsetFlag:new OrderOffsetFlag[] {OrderOffsetFlag.CLOSE, OrderOffsetFlag.FORCE_CLOSE, OrderOffsetFlag.FORCE_CLOSE}) {
+            throttle.checkInsert(createBuilder(AU, OrderDirection.Sell, 2859500).setOffsetFlag(offsetFlag), orders);
+        }
+        assertEquals(0, throttle.getRejects(Reject.SelfCross));
+        assertEquals(0, throttle.getRejects(Reject.Duplicate));
+        //但是仍然限速
+        for(int i=0;i<7;i++) {
+            throttle.checkInsert(createBuilder(AU, OrderDirection.Sell, 2859500).setOffsetFlag(OrderOffsetFlag.CLOSE), orders);
+        }
+        try{
+            throttle.checkInsert(createBuilder(AU, OrderDirection.Sell, 2859500).setOffsetFlag(OrderOffsetFlag.CLOSE), orders);
+            fail("Order should be rejected by "+Reject.InstrumentInsertRate);
+        }catch(AppException ex) {
+            assertEquals(ERRCODE_TRADE_THROTTLED, ex.getCode());
+        }
+    }
+
+    private void insert(Exchangeable e, OrderDirection direction, long price) throws AppException {
+        throttle.checkInsert(createBuilder(e, direction, price), Collections.unmodifiableList(orders));
+    }
+
+    private void assertInsertRejected(Exchangeable e, OrderDirection direction, long price, Reject reject, int errorCode) {
+        long rejects = throttle.getRejects(reject);
+        try{
+            insert(e, direction, price);
+            fail("Order should be rejected by "+reject);
+        }catch(AppException ex) {
+            assertEquals(errorCode, ex.getCode());
+        }
+        assertEquals(rejects+1, throttle.getRejects(reject));
+    }
+
+    private void assertCancelRejected(Order order, Reject reject) {
+        long rejects = throttle.getRejects(reject);
+        try{
+            throttle.checkCancel(order);
+            fail("Cancel should be rejected by "+reject);
+        }catch(AppException ex) {
+            assertEquals(ERRCODE_TRADE_THROTTLED, ex.getCode());
+        }
+        assertEquals(rejects+1, throttle.getRejects(reject));
+    }
+
+    private void advance(int millis) {
+        for(int i=0;i<millis/100;i++) {
+            mtService.nextTimePiece();
+        }
+    }
+
+    private Order createOrder(Exchangeable e, OrderDirection direction, long price) {
+        return new OrderImpl("odr"+(orderRef++), createBuilder(e, direction, price), new OrderStateTuple(OrderState.Submitted, OrderSubmitState.InsertSubmitted, 0));
+    }
+
+    private static OrderBuilder createBuilder(Exchangeable e, OrderDirection direction, long price) {
+        return new OrderBuilder()
+                .setExchagneable(e)
+                .setDirection(direction)
+                .setOffsetFlag(OrderOffsetFlag.OPEN)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setLimitPrice(price)
+                .setVolume(1);
+    }
+
+}
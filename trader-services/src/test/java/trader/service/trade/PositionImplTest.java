@@ -0,0 +1,285 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.md.synthetic.SyntheticMarketData;
+
+/**
+ * 比较PositionImpl增量计算的持仓数据和逐个持仓明细计算的结果
+ */
+public class PositionImplTest implements TradeConstants {
+
+    private static final String FEE_JSON = "{\"brokerMarginRatio\":{}, \"feeInfos\":{"
+            +"\"shfe.au1906\":{\"priceTick\":\"0.05\",\"volumeMultiple\":1000,\"marginRatios\":[0.09,0,0.08,0],\"commissionRatios\":[0,10,0,10,0,10]},"
+            +"\"cffex.IF1901\":{\"priceTick\":\"0.2\",\"volumeMultiple\":300,\"marginRatios\":[0.13,0,0.12,0],\"commissionRatios\":[0.000023,0,0.000023,0,0.0023,0]}"
+            +"}}";
+
+    private TxnFeeEvaluator feeEvaluator = FutureFeeEvaluator.fromJson(null, (JsonObject)(new JsonParser()).parse(FEE_JSON));
+
+    /**
+     * 原有的实现: 链表保存持仓明细, 每次逐个明细计算
+     */
+    private static class ReferencePosition {
+        Exchangeable e;
+        TxnFeeEvaluator feeEval;
+        LinkedList<PositionDetailImpl> details = new LinkedList<>();
+        long[] money = new long[PosMoney_Count];
+        int[] volumes = new int[PosVolume_Count];
+
+        ReferencePosition(Exchangeable e, TxnFeeEvaluator feeEval){
+            this.e = e;
+            this.feeEval = feeEval;
+        }
+
+        void removeDetails(Transaction txn) {
+            int detailToRemove = 0;
+            switch(txn.getOffsetFlags()) {
+            case CLOSE_TODAY:
+                detailToRemove = 1;
+                break;
+            case CLOSE_YESTERDAY:
+                detailToRemove = 2;
+                break;
+            case FORCE_CLOSE:
+            case CLOSE:
+                detailToRemove = 0;
+                break;
+            }
+            int volumeLeft = txn.getVolume();
+            PosDirection posDir = txn.getDirection().toPosDirection().oppose();
+            for(Iterator<PositionDetailImpl> it = details.iterator(); it.hasNext();) {
+                PositionDetailImpl detail = it.next();
+                boolean accepted = detailToRemove==0 || (detailToRemove==1&&detail.isToday()) || (detailToRemove==2&&!detail.isToday());
+                if ( posDir==detail.getDirection() && accepted ) {
+                    if ( volumeLeft >= detail.getVolume() ) {
+                        volumeLeft -= detail.getVolume();
+                        it.remove();
+                    } else {
+                        detail.addVolume(-1*volumeLeft);
+                        volumeLeft = 0;
+                    }
+                }
+                if ( volumeLeft<=0 ) {
+                    break;
+                }
+            }
+        }
+
+        void computePositionProfit(long lastPrice) {
+            int longPos = 0, shortPos = 0;
+            int longTodayPos = 0, shortTodayPos=0;
+            long posProfit = 0, openCost= 0, longUseMargin=0, shortUseMargin=0;
+            for(int i=0;i<details.size();i++) {
+                PositionDetail detail = details.get(i);
+                PosDirection detailDirection = detail.getDirection();
+                int detailVolume = detail.getVolume();
+                long[] lastMarginValue = feeEval.compute(e, detailVolume, lastPrice, detailDirection);
+                long posValue = feeEval.compute(e, detailVolume, detail.getPrice(), detailDirection)[1];
+                long valueDiff = lastMarginValue[1]-posValue;
+                if ( detailDirection==PosDirection.Short ) {
+                    valueDiff = -1*valueDiff;
+                    shortUseMargin += lastMarginValue[0];
+                    shortPos += detailVolume;
+                    if ( detail.isToday() ) {
+                        shortTodayPos += detailVolume;
+                    }
+                }else{
+                    longUseMargin += lastMarginValue[0];
+                    longPos += detailVolume;
+                    if ( detail.isToday() ) {
+                        longTodayPos += detailVolume;
+                    }
+                }
+                posProfit += valueDiff;
+                openCost += detail.getPrice()*detailVolume;
+            }
+            money[PosMoney_PositionProfit] = posProfit;
+            money[PosMoney_LongUseMargin] = longUseMargin;
+            money[PosMoney_ShortUseMargin] = shortUseMargin;
+            money[PosMoney_OpenCost] = (longPos+shortPos)!=0?openCost/(longPos+shortPos):openCost;
+            volumes[PosVolume_LongPosition] = longPos;
+            volumes[PosVolume_LongTodayPosition] = longTodayPos;
+            volumes[PosVolume_LongYdPosition] = longPos-longTodayPos;
+            volumes[PosVolume_ShortPosition] = shortPos;
+            volumes[PosVolume_ShortTodayPosition] = shortTodayPos;
+            volumes[PosVolume_ShortYdPosition] = shortPos-shortTodayPos;
+        }
+    }
+
+    @Test
+    public void testRandomTransactions_au1906() {
+        randomTransactions(Exchangeable.fromString("shfe.au1906"), 2860000, 20181228L);
+    }
+
+    @Test
+    public void testRandomTransactions_IF1901() {
+        randomTransactions(Exchangeable.fromString("cffex.IF1901"), 30000000, 20190102L);
+    }
+
+    @Test
+    public void testRestoreYesterdayDetails() {
+        Exchangeable e = Exchangeable.fromString("shfe.au1906");
+        List<PositionDetailImpl> details = new ArrayList<>();
+        long openTime = 1545955200000L;
+        details.add(new PositionDetailImpl(PosDirection.Long, 3, 2855000, DateUtil.long2datetime(ZoneId.systemDefault(), openTime+1000), false));
+        details.add(new PositionDetailImpl(PosDirection.Long, 2, 2850000, DateUtil.long2datetime(ZoneId.systemDefault(), openTime), false));
+        details.add(new PositionDetailImpl(PosDirection.Short, 1, 2870000, DateUtil.long2datetime(ZoneId.systemDefault(), openTime+2000), false));
+        PositionImpl pos = new PositionImpl(createAccount(), e, PosDirection.Long, new long[PosMoney_Count], new int[PosVolume_Count], details);
+        //按开仓时间排序
+        assertEquals(2850000, pos.getDetails().get(0).getPrice());
+        assertEquals(details.get(1).getOpenTime(), pos.getDetails().get(0).getOpenTime());
+
+        ReferencePosition ref = new ReferencePosition(e, feeEvaluator);
+        ref.details.addAll(pos.getDetails());
+        pos.onMarketData(createTick(e, 2880000));
+        ref.computePositionProfit(2880000);
+        assertEquals(ref.money[PosMoney_PositionProfit], pos.getMoney(PosMoney_PositionProfit));
+        assertEquals(ref.money[PosMoney_LongUseMargin], pos.getMoney(PosMoney_LongUseMargin));
+        assertEquals(ref.money[PosMoney_ShortUseMargin], pos.getMoney(PosMoney_ShortUseMargin));
+    }
+
+    private void randomTransactions(Exchangeable e, long basePrice, long seed) {
+        Random random = new Random(seed);
+        long priceTick = feeEvaluator.getPriceTick(e);
+        PositionImpl pos = new PositionImpl(createAccount(), e);
+        ReferencePosition ref = new ReferencePosition(e, feeEvaluator);
+        long lastPrice = basePrice;
+        long time = 1545955200000L;
+        OrderOffsetFlag[] closeFlags = {OrderOffsetFlag.CLOSE, OrderOffsetFlag.CLOSE_TODAY, OrderOffsetFlag.CLOSE_YESTERDAY, OrderOffsetFlag.FORCE_CLOSE};
+        for(int i=0;i<3000;i++) {
+            time += 500;
+            lastPrice += (random.nextInt(21)-10)*priceTick;
+            boolean txnStep = random.nextInt(3)==0;
+            if ( txnStep && random.nextInt(10)==0 ) {
+                //从持仓明细恢复, 一半持仓明细变成昨仓
+                List<PositionDetailImpl> details = pos.getDetails();
+                for(int j=0;j<details.size()/2;j++) {
+                    PositionDetailImpl d = details.get(j);
+                    details.set(j, new PositionDetailImpl(d.getDirection(), d.getVolume(), d.getPrice(), d.getOpenTime(), false));
+                }
+                pos = new PositionImpl(createAccount(), e, PosDirection.Net, copyMoney(pos), copyVolumes(pos), details);
+                ref.details.clear();
+                ref.details.addAll(details);
+            }
+            pos.onMarketData(createTick(e, lastPrice));
+            if ( txnStep ) {
+                //开仓或平仓
+                PosDirection posDir = random.nextBoolean()?PosDirection.Long:PosDirection.Short;
+                int posVolume = ref.volumes[posDir==PosDirection.Long?PosVolume_LongPosition:PosVolume_ShortPosition];
+                int posTodayVolume = ref.volumes[posDir==PosDirection.Long?PosVolume_LongTodayPosition:PosVolume_ShortTodayPosition];
+                OrderOffsetFlag offsetFlag = OrderOffsetFlag.OPEN;
+                OrderDirection direction = posDir==PosDirection.Long?OrderDirection.Buy:OrderDirection.Sell;
+                int volume = 1+random.nextInt(5);
+                if ( posVolume>0 && random.nextInt(5)<2 ) {
+                    offsetFlag = closeFlags[random.nextInt(closeFlags.length)];
+                    direction = direction.inverse();
+                    volume = 1+random.nextInt(posVolume);
+                    if ( offsetFlag==OrderOffsetFlag.CLOSE_TODAY ) {
+                        if ( posTodayVolume==0 ) {
+                            offsetFlag = OrderOffsetFlag.CLOSE;
+                        } else {
+                            volume = Math.min(volume, posTodayVolume);
+                        }
+                    }
+                }
+                OrderBuilder builder = new OrderBuilder()
+                        .setExchagneable(e)
+                        .setDirection(direction)
+                        .setOffsetFlag(offsetFlag)
+                        .setPriceType(OrderPriceType.LimitPrice)
+                        .setLimitPrice(lastPrice)
+                        .setVolume(volume);
+                OrderImpl order = new OrderImpl("ref"+i, builder, OrderStateTuple.STATE_UNKNOWN);
+                TransactionImpl txn = new TransactionImpl("txn"+i, order, direction, offsetFlag, lastPrice, volume, time);
+                long[] txnFees = feeEvaluator.compute(txn);
+                long[] lastOrderMoney = new long[OdrMoney_Count];
+                lastOrderMoney[OdrMoney_LocalUnfrozenMargin] = -1*txnFees[0];
+                pos.onTransaction(order, txn, txnFees, lastOrderMoney);
+                if ( offsetFlag==OrderOffsetFlag.OPEN ) {
+                    ref.details.add((PositionDetailImpl)txn.getOpenDetail());
+                } else {
+                    ref.removeDetails(txn);
+                }
+            }
+            ref.computePositionProfit(lastPrice);
+            if ( txnStep ) {
+                assertPosition(ref, pos);
+            } else {
+                assertEquals(ref.money[PosMoney_PositionProfit], pos.getMoney(PosMoney_PositionProfit));
+            }
+        }
+    }
+
+    private void assertPosition(ReferencePosition ref, PositionImpl pos) {
+        List<PositionDetailImpl> details = pos.getDetails();
+        assertEquals(ref.details.size(), details.size());
+        for(int i=0;i<details.size();i++) {
+            PositionDetailImpl d1 = ref.details.get(i), d2 = details.get(i);
+            assertEquals(d1.getDirection(), d2.getDirection());
+            assertEquals(d1.getVolume(), d2.getVolume());
+            assertEquals(d1.getPrice(), d2.getPrice());
+            assertEquals(d1.isToday(), d2.isToday());
+        }
+        assertEquals(ref.money[PosMoney_PositionProfit], pos.getMoney(PosMoney_PositionProfit));
+        assertEquals(ref.money[PosMoney_OpenCost], pos.getMoney(PosMoney_OpenCost));
+        //保证金按汇总持仓量计算, 和逐个明细计算的取整误差不超过每个明细0.01
+        assertTrue(Math.abs(ref.money[PosMoney_LongUseMargin]-pos.getMoney(PosMoney_LongUseMargin))<=100*details.size());
+        assertTrue(Math.abs(ref.money[PosMoney_ShortUseMargin]-pos.getMoney(PosMoney_ShortUseMargin))<=100*details.size());
+        for(int idx:new int[] {PosVolume_LongPosition, PosVolume_LongTodayPosition, PosVolume_LongYdPosition, PosVolume_ShortPosition, PosVolume_ShortTodayPosition, PosVolume_ShortYdPosition}) {
+            assertEquals(ref.volumes[idx], pos.getVolume(idx));
+        }
+    }
+
+    private Account createAccount() {
+        return (Account)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Account.class}, (proxy, method, args)->{
+            switch(method.getName()) {
+            case "getFeeEvaluator":
+                return feeEvaluator;
+            case "getLoggerCategory":
+                return PositionImplTest.class.getName();
+            case "toString":
+                return "PositionImplTest";
+            }
+            return null;
+        });
+    }
+
+    private static long[] copyMoney(PositionImpl pos) {
+        long[] result = new long[PosMoney_Count];
+        for(int i=0;i<result.length;i++) {
+            result[i] = pos.getMoney(i);
+        }
+        return result;
+    }
+
+    private static int[] copyVolumes(PositionImpl pos) {
+        int[] result = new int[PosVolume_Count];
+        for(int i=0;i<result.length;i++) {
+            result[i] = pos.getVolume(i);
+        }
+        return result;
+    }
+
+    private static SyntheticMarketData createTick(Exchangeable e, long lastPrice) {
+        SyntheticMarketData md = new SyntheticMarketData("test", e);
+        md.lastPrice = lastPrice;
+        return md;
+    }
+
+}
@@ -0,0 +1,114 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.IOUtil;
+import trader.common.util.JsonStreamWriter;
+import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.StringUtil;
+
+/**
+ * 报单/持仓/成交的流式JSON输出与Gson输出(golden文件)逐字节相同
+ */
+public class TradeJsonTest implements TradeConstants {
+
+    private Exchangeable au1906 = Exchangeable.fromString("au1906");
+
+    @Test
+    public void testOrder() throws Exception {
+        OrderImpl order = createOrder();
+        String golden = loadGolden("/json/order.json");
+        assertEquals(golden, order.toJson().toString());
+        JsonStreamWriter writer = new JsonStreamWriter();
+        order.toJson(writer);
+        assertEquals(golden, writer.toString());
+        assertEquals(JsonUtil.object2json(Arrays.asList(order, order)).toString(), JsonStreamWriter.local().value(Arrays.asList(order, order)).toString());
+    }
+
+    @Test
+    public void testPosition() throws Exception {
+        PositionImpl pos = createPosition();
+        String golden = loadGolden("/json/position.json");
+        assertEquals(golden, pos.toJson().toString());
+        JsonStreamWriter writer = new JsonStreamWriter();
+        pos.toJson(writer);
+        assertEquals(golden, writer.toString());
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        TransactionImpl txn = new TransactionImpl("txn-1", createOrder(), OrderDirection.Buy, OrderOffsetFlag.OPEN, PriceUtil.price2long(283.75), 1, 1546392615600L);
+        JsonStreamWriter writer = new JsonStreamWriter();
+        txn.toJson(writer);
+        assertEquals(txn.toJson().toString(), writer.toString());
+        assertEquals(txn.toJson().toString(), JsonStreamWriter.local().value((Object)txn).toString());
+    }
+
+    private OrderImpl createOrder() {
+        OrderBuilder builder = new OrderBuilder()
+                .setExchagneable(au1906)
+                .setDirection(OrderDirection.Buy)
+                .setOffsetFlag(OrderOffsetFlag.OPEN)
+                .setVolume(3)
+                .setLimitPrice(PriceUtil.price2long(283.75))
+                .setAttr("tradlet", "stop\"loss");
+        OrderImpl order = new OrderImpl("000001", builder, new OrderStateTuple(OrderState.Submitted, OrderSubmitState.InsertSubmitted, 1546392615500L));
+        order.changeState(new OrderStateTuple(OrderState.Accepted, OrderSubmitState.Accepted, 1546392615600L, "已接受"));
+        order.addVolume(OdrVolume_TradeVolume, 1);
+        order.addMoney(OdrMoney_PriceCandidate, PriceUtil.price2long(283.75));
+        order.addMoney(OdrMoney_LocalFrozenMargin, PriceUtil.price2long(76612.5));
+        order.transactions.add((Transaction)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Transaction.class}, (proxy, method, args)->{
+            if ( method.getName().equals("getId") ) {
+                return "txn-1";
+            }
+            return null;
+        }));
+        return order;
+    }
+
+    private PositionImpl createPosition() {
+        long[] money = new long[PosMoney_Count];
+        money[PosMoney_OpenCost] = PriceUtil.price2long(567500);
+        money[PosMoney_UseMargin] = PriceUtil.price2long(51075.25);
+        money[PosMoney_PositionProfit] = PriceUtil.price2long(-150.5);
+        int[] volumes = new int[PosVolume_Count];
+        volumes[PosVolume_Position] = 2;
+        volumes[PosVolume_LongPosition] = 2;
+        volumes[PosVolume_LongTodayPosition] = 1;
+        volumes[PosVolume_LongYdPosition] = 1;
+        PositionImpl pos = new PositionImpl(createAccount(), au1906, PosDirection.Long, money, volumes, Arrays.asList(
+                new PositionDetailImpl(PosDirection.Long, 1, PriceUtil.price2long(283.5), LocalDateTime.of(2019, 1, 1, 21, 5, 3), false),
+                new PositionDetailImpl(PosDirection.Long, 1, PriceUtil.price2long(284), LocalDateTime.of(2019, 1, 2, 9, 30, 15), true)
+                ));
+        pos.restoreActiveOrder(createOrder());
+        return pos;
+    }
+
+    private Account createAccount() {
+        return (Account)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Account.class}, (proxy, method, args)->{
+            switch(method.getName()) {
+            case "getLoggerCategory":
+                return TradeJsonTest.class.getName();
+            case "toString":
+                return "TradeJsonTest";
+            }
+            return null;
+        });
+    }
+
+    private static String loadGolden(String name) throws Exception {
+        try(InputStream is = TradeJsonTest.class.getResourceAsStream(name);){
+            return IOUtil.read(is, StringUtil.UTF8).trim();
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package trader.service.trade;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import trader.common.beans.BeansContainer;
+import trader.simulator.trade.SimTxnSessionFactory;
+
+/**
+ * 测试用的交易服务, 只提供报单编号和模拟交易通道
+ */
+class TradeServiceTest implements TradeService{
+
+    OrderRefGenImpl orderRefGen;
+    Map<String, TxnSessionFactory> txnSessionFactories = new TreeMap<>();
+
+    TradeServiceTest(BeansContainer beansContainer){
+        orderRefGen = new OrderRefGenImpl(beansContainer);
+        txnSessionFactories.put(TxnSession.PROVIDER_SIM, new SimTxnSessionFactory());
+    }
+
+    @Override
+    public void init(BeansContainer beansContainer) throws Exception {
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+
+    @Override
+    public OrderRefGen getOrderRefGen() {
+        return orderRefGen;
+    }
+
+    @Override
+    public Account getPrimaryAccount() {
+        return null;
+    }
+
+    @Override
+    public Account getAccount(String id) {
+        return null;
+    }
+
+    @Override
+    public Collection<Account> getAccounts() {
+        return null;
+    }
+
+    @Override
+    public Map<String, TxnSessionFactory> getTxnSessionFactories() {
+        return txnSessionFactories;
+    }
+
+}
@@ -0,0 +1,178 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.TraderHomeHelper;
+import trader.service.event.AsyncEvent;
+import trader.service.event.AsyncEventProcessor;
+import trader.service.event.AsyncEventService;
+import trader.service.event.AsyncEventServiceImpl;
+import trader.service.md.MarketData;
+import trader.service.md.synthetic.SyntheticMarketData;
+import trader.simulator.SimBeansContainer;
+
+/**
+ * 大量行情积压时, 检查交易事件线程的成交回报处理延迟, 以及行情交接的单线程和合并
+ */
+public class TxnEventLaneTest {
+    static {
+        TraderHomeHelper.init();
+    }
+
+    private static final Exchangeable AU = Exchangeable.fromString("au1906");
+    private static final int TICK_COUNT = 20000;
+    private static final int FILL_COUNT = 100;
+
+    private ExecutorService executorService;
+    private AsyncEventServiceImpl asyncEventService;
+    private AtomicInteger mainTicks = new AtomicInteger();
+    private AtomicReference<Thread> txnThread = new AtomicReference<>();
+    private volatile boolean wrongThread;
+
+    @Before
+    public void setup() throws Exception {
+        executorService = Executors.newCachedThreadPool();
+        SimBeansContainer beansContainer = new SimBeansContainer();
+        beansContainer.addBean(ExecutorService.class, executorService);
+        asyncEventService = new AsyncEventServiceImpl();
+        asyncEventService.init(beansContainer);
+        //模拟处理较慢的行情事件
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MAIN, (AsyncEvent event)->{
+            long t = System.nanoTime();
+            while( System.nanoTime()-t<50000 );
+            mainTicks.incrementAndGet();
+            return true;
+        }, AsyncEvent.EVENT_TYPE_MARKETDATA);
+        //与TradeServiceImpl相同, 在交易事件线程中执行processor
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_TXN, (AsyncEvent event)->{
+            checkTxnThread();
+            event.processor.process(event.eventType&0XFFFF, event.data, event.data2);
+            return true;
+        }, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
+        asyncEventService.start();
+    }
+
+    @After
+    public void teardown() {
+        asyncEventService.destroy();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testFillLatencyUnderTickFlood() throws Exception
+    {
+        AtomicLong maxFillLatency = new AtomicLong();
+        CountDownLatch fillsDone = new CountDownLatch(FILL_COUNT);
+        AsyncEventProcessor fillProcessor = (int dataType, Object data, Object data2)->{
+            long latency = System.nanoTime()-((Long)data);
+            maxFillLatency.accumulateAndGet(latency, Math::max);
+            fillsDone.countDown();
+        };
+        AtomicInteger appliedTicks = new AtomicInteger();
+        AtomicReference<MarketData> lastApplied = new AtomicReference<>();
+        MarketDataHandoff handoff = new MarketDataHandoff(asyncEventService, (MarketData md)->{
+            checkTxnThread();
+            appliedTicks.incrementAndGet();
+            lastApplied.set(md);
+        });
+
+        MarketData lastTick = null;
+        Thread fillThread = new Thread(()->{
+            for(int i=0;i<FILL_COUNT;i++) {
+                asyncEventService.publishTxnEvent(fillProcessor, 1, System.nanoTime(), null);
+                try{
+                    Thread.sleep(2);
+                }catch(InterruptedException e) {}
+            }
+        });
+        fillThread.start();
+        for(int i=0;i<TICK_COUNT;i++) {
+            MarketData md = createTick(i);
+            asyncEventService.publishMarketData(md);
+            handoff.onMarketData(md);
+            lastTick = md;
+        }
+        assertTrue(fillsDone.await(10, TimeUnit.SECONDS));
+        //成交回报处理完时行情仍然积压
+        assertTrue(mainTicks.get()<TICK_COUNT);
+        assertTrue("Max fill latency "+maxFillLatency.get()/1000+" us", maxFillLatency.get()<TimeUnit.MILLISECONDS.toNanos(50));
+
+        fillThread.join();
+        long t = System.currentTimeMillis();
+        while( lastApplied.get()!=lastTick && System.currentTimeMillis()-t<5000 ) {
+            Thread.sleep(10);
+        }
+        //最后一个行情总会交给交易事件线程, 中间行情可以被合并
+        assertSame(lastTick, lastApplied.get());
+        assertTrue(appliedTicks.get()<=TICK_COUNT);
+        assertTrue(!wrongThread);
+    }
+
+    @Test
+    public void testHandoffCoalescing() throws Exception
+    {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        //阻塞交易事件线程
+        asyncEventService.publishTxnEvent((int dataType, Object data, Object data2)->{
+            blocked.countDown();
+            try{
+                release.await();
+            }catch(InterruptedException e) {}
+        }, 1, null, null);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger appliedTicks = new AtomicInteger();
+        AtomicReference<MarketData> lastApplied = new AtomicReference<>();
+        CountDownLatch applied = new CountDownLatch(1);
+        MarketDataHandoff handoff = new MarketDataHandoff(asyncEventService, (MarketData md)->{
+            appliedTicks.incrementAndGet();
+            lastApplied.set(md);
+            applied.countDown();
+        });
+        MarketData lastTick = null;
+        for(int i=0;i<1000;i++) {
+            lastTick = createTick(i);
+            handoff.onMarketData(lastTick);
+        }
+        release.countDown();
+        assertTrue(applied.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(1, appliedTicks.get());
+        assertSame(lastTick, lastApplied.get());
+    }
+
+    private void checkTxnThread() {
+        Thread curr = Thread.currentThread();
+        if ( !txnThread.compareAndSet(null, curr) && txnThread.get()!=curr ) {
+            wrongThread = true;
+        }
+    }
+
+    private static MarketData createTick(int seq) {
+        SyntheticMarketData md = new SyntheticMarketData("test", AU);
+        md.tradingDay = "20181228";
+        md.updateTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 9, 1).plusNanos(seq*500000L);
+        md.lastPrice = 2860000+seq*500;
+        md.volume = seq;
+        return md;
+    }
+
+}
@@ -0,0 +1,256 @@
+package trader.service.trade.journal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import trader.common.util.FileUtil;
+import trader.service.trade.TradeConstants;
+import trader.service.trade.journal.TradeJournalRecord.DetailInfo;
+import trader.service.trade.journal.TradeJournalSnapshot.PositionState;
+
+public class TradeJournalTest implements TradeConstants {
+
+    private static final String[] INSTRUMENTS = {"shfe.ru1901", "shfe.au1906", "dce.m1905", "czce.CF905", "cffex.IF1901"};
+
+    /**
+     * 随机生成的事件和期望的最终状态
+     */
+    private static class Model {
+        long[] accountMoney = new long[AccMoney_Count];
+        Map<String, TradeJournalRecord> positions = new HashMap<>();
+        Map<String, TradeJournalRecord> orders = new HashMap<>();
+        int txnCount;
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            File file = new File(dir, "acc.journal");
+            Model model = new Model();
+            Random random = new Random(20181220);
+            try(TradeJournalWriter writer = new TradeJournalWriter(file);){
+                writeEvents(writer, random, model, 5000);
+                assertEquals(5000+1+INSTRUMENTS.length, writer.getRecordCount());
+            }
+            TradeJournalSnapshot snapshot = TradeJournalReplayer.replay(file);
+            assertEquals(5000+1+INSTRUMENTS.length, snapshot.recordCount);
+            assertModel(model, snapshot);
+        }finally {
+            FileUtil.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testRemapAndReopen() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            File file = new File(dir, "acc.journal");
+            Model model = new Model();
+            Random random = new Random(1);
+            //很小的映射空间, 写入时需要多次扩展
+            try(TradeJournalWriter writer = new TradeJournalWriter(file, 4096);){
+                writeEvents(writer, random, model, 2000);
+                assertTrue(writer.getPosition()>4096);
+            }
+            //重新打开后追加
+            try(TradeJournalWriter writer = new TradeJournalWriter(file, 4096);){
+                assertEquals(2000+1+INSTRUMENTS.length, writer.getRecordCount());
+                for(int i=0;i<1000;i++) {
+                    writer.append(randomEvent(random, model, i+2000));
+                }
+            }
+            TradeJournalSnapshot snapshot = TradeJournalReplayer.replay(file);
+            assertEquals(3000+1+INSTRUMENTS.length, snapshot.recordCount);
+            assertModel(model, snapshot);
+        }finally {
+            FileUtil.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            File file = new File(dir, "acc.journal");
+            Model model = new Model();
+            Random random = new Random(2);
+            long lastPosition = 0;
+            try(TradeJournalWriter writer = new TradeJournalWriter(file);){
+                writeEvents(writer, random, model, 100);
+                lastPosition = writer.getPosition();
+                //最后一条记录写入后被破坏, 模拟写入一半时进程退出
+                writer.append(randomEvent(random, new Model(), 100));
+            }
+            try(RandomAccessFile raf = new RandomAccessFile(file, "rw");){
+                raf.seek(lastPosition+TradeJournalWriter.HEADER_SIZE+3);
+                raf.write(0xFF);
+            }
+            TradeJournalSnapshot snapshot = TradeJournalReplayer.replay(file);
+            assertEquals(100+1+INSTRUMENTS.length, snapshot.recordCount);
+            assertModel(model, snapshot);
+
+            //被破坏的记录被覆盖
+            try(TradeJournalWriter writer = new TradeJournalWriter(file);){
+                assertEquals(lastPosition, writer.getPosition());
+                writer.append(randomEvent(random, model, 101));
+            }
+            snapshot = TradeJournalReplayer.replay(file);
+            assertEquals(101+1+INSTRUMENTS.length, snapshot.recordCount);
+            assertModel(model, snapshot);
+        }finally {
+            FileUtil.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            TradeJournalSnapshot snapshot = TradeJournalReplayer.replay(new File(dir, "notexists.journal"));
+            assertNull(snapshot.accountMoney);
+            assertEquals(0, snapshot.recordCount);
+        }finally {
+            FileUtil.deleteDirectory(dir);
+        }
+    }
+
+    private static void writeEvents(TradeJournalWriter writer, Random random, Model model, int count) throws Exception {
+        //初始状态: 账户和持仓
+        TradeJournalRecord accRecord = new TradeJournalRecord();
+        accRecord.type = TradeJournalRecord.TYPE_ACCOUNT;
+        accRecord.timestamp = System.currentTimeMillis();
+        accRecord.accountMoney = randomLongs(random, AccMoney_Count);
+        model.accountMoney = accRecord.accountMoney.clone();
+        writer.append(accRecord);
+        for(String instrument:INSTRUMENTS) {
+            TradeJournalRecord posRecord = new TradeJournalRecord();
+            posRecord.type = TradeJournalRecord.TYPE_POSITION;
+            posRecord.accountMoney = model.accountMoney;
+            fillPosition(random, posRecord, instrument);
+            model.positions.put(instrument, posRecord);
+            writer.append(posRecord);
+        }
+        for(int i=0;i<count;i++) {
+            writer.append(randomEvent(random, model, i));
+        }
+    }
+
+    /**
+     * 随机报单/成交/冻结事件, 同时更新期望状态
+     */
+    private static TradeJournalRecord randomEvent(Random random, Model model, int seq) {
+        byte[] types = {TradeJournalRecord.TYPE_FREEZE, TradeJournalRecord.TYPE_UNFREEZE, TradeJournalRecord.TYPE_ORDER_STATE, TradeJournalRecord.TYPE_TRANSACTION};
+        TradeJournalRecord r = new TradeJournalRecord();
+        r.type = types[random.nextInt(types.length)];
+        r.timestamp = System.currentTimeMillis();
+        String instrument = INSTRUMENTS[random.nextInt(INSTRUMENTS.length)];
+        r.orderRef = "00000"+random.nextInt(500);
+        r.orderExchangeable = instrument;
+        r.orderDirection = OrderDirection.values()[random.nextInt(OrderDirection.values().length)];
+        r.orderPriceType = OrderPriceType.LimitPrice;
+        r.orderOffsetFlag = OrderOffsetFlag.values()[random.nextInt(OrderOffsetFlag.values().length)];
+        r.orderVolumeCondition = OrderVolumeCondition.Any;
+        r.orderLimitPrice = 10000L*random.nextInt(5000);
+        r.orderState = OrderState.values()[random.nextInt(OrderState.values().length)];
+        r.orderSubmitState = OrderSubmitState.values()[random.nextInt(OrderSubmitState.values().length)];
+        r.orderStateTime = r.timestamp;
+        r.orderMoney = randomLongs(random, OdrMoney_Count);
+        r.orderVolumes = randomInts(random, OdrVolume_Count);
+        if ( r.type==TradeJournalRecord.TYPE_TRANSACTION ) {
+            r.txnId = "txn-"+seq;
+            r.txnDirection = r.orderDirection;
+            r.txnOffsetFlag = r.orderOffsetFlag;
+            r.txnPrice = r.orderLimitPrice;
+            r.txnVolume = 1+random.nextInt(10);
+            r.txnTime = r.timestamp;
+            model.txnCount++;
+        }
+        r.accountMoney = randomLongs(random, AccMoney_Count);
+        fillPosition(random, r, instrument);
+        model.accountMoney = r.accountMoney.clone();
+        model.positions.put(instrument, r);
+        model.orders.put(r.orderRef, r);
+        return r;
+    }
+
+    private static void fillPosition(Random random, TradeJournalRecord r, String instrument) {
+        r.posExchangeable = instrument;
+        r.posDirection = PosDirection.values()[random.nextInt(PosDirection.values().length)];
+        r.posMoney = randomLongs(random, PosMoney_Count);
+        r.posVolumes = randomInts(random, PosVolume_Count);
+        int detailCount = random.nextInt(5);
+        r.posDetails = new ArrayList<>();
+        for(int i=0;i<detailCount;i++) {
+            DetailInfo detail = new DetailInfo();
+            detail.direction = PosDirection.Long;
+            detail.volume = 1+random.nextInt(100);
+            detail.price = 10000L*random.nextInt(5000);
+            detail.openTime = 1545000000L+random.nextInt(100000);
+            detail.today = random.nextBoolean();
+            r.posDetails.add(detail);
+        }
+    }
+
+    private static void assertModel(Model model, TradeJournalSnapshot snapshot) {
+        assertArrayEquals(model.accountMoney, snapshot.accountMoney);
+        assertEquals(model.positions.size(), snapshot.positions.size());
+        for(TradeJournalRecord expected:model.positions.values()) {
+            PositionState pos = snapshot.positions.get(expected.posExchangeable);
+            assertNotNull(pos);
+            assertEquals(expected.posDirection, pos.direction);
+            assertArrayEquals(expected.posMoney, pos.money);
+            assertArrayEquals(expected.posVolumes, pos.volumes);
+            assertEquals(expected.posDetails.size(), pos.details.size());
+            for(int i=0;i<expected.posDetails.size();i++) {
+                DetailInfo d1 = expected.posDetails.get(i), d2 = pos.details.get(i);
+                assertEquals(d1.volume, d2.volume);
+                assertEquals(d1.price, d2.price);
+                assertEquals(d1.openTime, d2.openTime);
+                assertEquals(d1.today, d2.today);
+            }
+        }
+        assertEquals(model.orders.size(), snapshot.orders.size());
+        for(TradeJournalRecord expected:model.orders.values()) {
+            TradeJournalRecord order = snapshot.orders.get(expected.orderRef);
+            assertNotNull(order);
+            assertEquals(expected.orderState, order.orderState);
+            assertEquals(expected.orderSubmitState, order.orderSubmitState);
+            assertEquals(expected.orderOffsetFlag, order.orderOffsetFlag);
+            assertEquals(expected.orderLimitPrice, order.orderLimitPrice);
+            assertArrayEquals(expected.orderMoney, order.orderMoney);
+            assertArrayEquals(expected.orderVolumes, order.orderVolumes);
+        }
+        assertEquals(model.txnCount, snapshot.transactions.size());
+    }
+
+    private static long[] randomLongs(Random random, int count) {
+        long[] result = new long[count];
+        for(int i=0;i<count;i++) {
+            result[i] = random.nextLong();
+        }
+        return result;
+    }
+
+    private static int[] randomInts(Random random, int count) {
+        int[] result = new int[count];
+        for(int i=0;i<count;i++) {
+            result[i] = random.nextInt(1000);
+        }
+        return result;
+    }
+
+}
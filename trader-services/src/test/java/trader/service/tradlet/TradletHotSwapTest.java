@@ -0,0 +1,456 @@
+package trader.service.tradlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.ServiceConstants.AccountState;
+import trader.service.ServiceErrorConstants;
+import trader.service.TraderHomeHelper;
+import trader.service.data.KVStore;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.md.synthetic.SyntheticMarketData;
+import trader.service.ta.LeveledTimeSeries;
+import trader.service.trade.Account;
+import trader.service.trade.AccountListener;
+import trader.service.trade.MarketTimeService;
+import trader.service.trade.Order;
+import trader.service.trade.OrderBuilder;
+import trader.service.trade.OrderImpl;
+import trader.service.trade.OrderStateTuple;
+import trader.service.trade.Position;
+import trader.service.trade.TradeConstants;
+import trader.service.trade.TxnFeeEvaluator;
+import trader.service.trade.TxnSession;
+import trader.service.tradlet.impl.stop.StopLossTradlet;
+import trader.simulator.SimBeansContainer;
+import trader.simulator.SimMarketDataService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.SimTradletGroupEngine;
+
+/**
+ * 使用模拟策略组引擎, 在交易过程中热替换Tradlet, 检查报单没有丢失或重复
+ */
+public class TradletHotSwapTest implements TradeConstants, TradletConstants {
+    static {
+        TraderHomeHelper.init();
+    }
+
+    private static final Exchangeable AU = Exchangeable.fromString("au1906");
+
+    /**
+     * 每10个TICK开仓一次, 开仓次数作为需要传递的状态
+     */
+    public static class CountingTradlet implements SwappableTradlet {
+        TradletContext context;
+        PlaybookKeeper playbookKeeper;
+        int warmupTicks;
+        int ticks;
+        int opens;
+        int playbookEvents;
+        boolean destroyed;
+
+        @Override
+        public void init(TradletContext context) throws Exception {
+            this.context = context;
+            playbookKeeper = context.getGroup().getPlaybookKeeper();
+            warmupTicks = Integer.parseInt(context.getConfig().getProperty("warmupTicks", "0"));
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+
+        @Override
+        public void onPlaybookStateChanged(Playbook playbook, PlaybookStateTuple oldStateTuple) {
+            playbookEvents++;
+        }
+
+        @Override
+        public void onTick(MarketData md) {
+            ticks++;
+            if ( md.volume%10!=0 ) {
+                return;
+            }
+            PlaybookBuilder builder = new PlaybookBuilder()
+                    .setOpenActionId("count")
+                    .setOpenDirection(PosDirection.Long)
+                    .setPriceType(OrderPriceType.LimitPrice)
+                    .setOpenPrice(md.lastPrice)
+                    .setAttr("tick", ""+md.volume);
+            try{
+                if ( playbookKeeper.createPlaybook(builder)!=null ) {
+                    opens++;
+                }
+            }catch(AppException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void onNewBar(LeveledTimeSeries series) {
+        }
+
+        @Override
+        public void onNoopSecond() {
+        }
+
+        @Override
+        public boolean isReady() {
+            return ticks>=warmupTicks;
+        }
+
+        @Override
+        public JsonElement exportState() {
+            JsonObject json = new JsonObject();
+            json.addProperty("opens", opens);
+            return json;
+        }
+
+        @Override
+        public void importState(JsonElement state) {
+            opens = state.getAsJsonObject().get("opens").getAsInt();
+        }
+    }
+
+    /**
+     * 只记录报单的账户
+     */
+    static class RecordingAccount implements Account {
+        List<Order> orders = new ArrayList<>();
+        List<String> canceledOrders = new ArrayList<>();
+        /**
+         * 被流控拒绝的撤单次数
+         */
+        int throttledCancels;
+
+        @Override
+        public String getId() {
+            return "sim-account1";
+        }
+
+        @Override
+        public String getLoggerCategory() {
+            return null;
+        }
+
+        @Override
+        public AccountState getState() {
+            return AccountState.Ready;
+        }
+
+        @Override
+        public KVStore getStore() {
+            return null;
+        }
+
+        @Override
+        public long getMoney(int moneyIndex) {
+            return 0;
+        }
+
+        @Override
+        public TxnFeeEvaluator getFeeEvaluator() {
+            return null;
+        }
+
+        @Override
+        public TxnSession getSession() {
+            return null;
+        }
+
+        @Override
+        public Collection<? extends Position> getPositions() {
+            return null;
+        }
+
+        @Override
+        public int getCancelCount(Exchangeable e) {
+            return 0;
+        }
+
+        @Override
+        public Position getPosition(Exchangeable e) {
+            return null;
+        }
+
+        @Override
+        public Collection<? extends Order> getOrders() {
+            return orders;
+        }
+
+        @Override
+        public Order getOrder(String orderRef) {
+            return null;
+        }
+
+        @Override
+        public void addAccountListener(AccountListener listener) {
+        }
+
+        @Override
+        public void removeAccountListener(AccountListener listener) {
+        }
+
+        @Override
+        public Order createOrder(OrderBuilder builder) throws AppException {
+            Order order = new OrderImpl("odr"+orders.size(), builder, new OrderStateTuple(OrderState.Submitted, OrderSubmitState.InsertSubmitted, 0));
+            orders.add(order);
+            return order;
+        }
+
+        @Override
+        public boolean cancelOrder(String orderRef) throws AppException {
+            if ( throttledCancels>0 ) {
+                throttledCancels--;
+                throw new AppException(ServiceErrorConstants.ERRCODE_TRADE_THROTTLED, "cancel "+orderRef+" throttled");
+            }
+            canceledOrders.add(orderRef);
+            return true;
+        }
+
+        @Override
+        public boolean modifyOrder(String orderRef, OrderBuilder builder) throws AppException {
+            return false;
+        }
+
+        @Override
+        public JsonElement toJson() {
+            return new JsonObject();
+        }
+    }
+
+    private SimBeansContainer beansContainer;
+    private SimMarketTimeService mtService;
+    private RecordingAccount account;
+    private TradletGroupImpl group;
+    private SimTradletGroupEngine engine;
+
+    @Before
+    public void setup() throws Exception {
+        beansContainer = new SimBeansContainer();
+        mtService = new SimMarketTimeService();
+        LocalDateTime beginTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 9, 0);
+        mtService.setTimeRanges(LocalDate.of(2018, Month.DECEMBER, 28), new LocalDateTime[] {beginTime, beginTime.plusHours(1)});
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(MarketDataService.class, new SimMarketDataService());
+        account = new RecordingAccount();
+        group = new TradletGroupImpl(null, beansContainer, "group_swap");
+        group.update(createTemplate("warmupTicks=0"));
+        engine = new SimTradletGroupEngine(group);
+        engine.init(beansContainer);
+    }
+
+    @Test
+    public void testSwapAfterShadowWarmup() throws Exception
+    {
+        CountingTradlet oldTradlet = (CountingTradlet)group.getTradlets().get(0);
+        for(int i=0;i<46;i++) {
+            engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, createTick(i));
+        }
+        //回放46个历史行情后没有预热完成, 以影子模式运行
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MISC_GROUP_UPDATE, createTemplate("warmupTicks=60"));
+        assertEquals(1, group.getShadowHolders().size());
+        CountingTradlet newTradlet = (CountingTradlet)group.getShadowHolders().get(0).getTradlet();
+        assertNotSame(oldTradlet, newTradlet);
+        assertSame(oldTradlet, group.getTradlets().get(0));
+        assertEquals(46, newTradlet.ticks);
+
+        for(int i=46;i<100;i++) {
+            engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, createTick(i));
+            if ( i<59 ) {
+                assertSame(oldTradlet, group.getTradlets().get(0));
+            } else {
+                assertSame(newTradlet, group.getTradlets().get(0));
+                assertTrue(group.getShadowHolders().isEmpty());
+            }
+        }
+        assertTrue(oldTradlet.destroyed);
+        assertEquals(6, oldTradlet.opens);
+        //影子模式时 0-50 的开仓被忽略
+        assertEquals(6, ((ShadowTradletGroup)newTradlet.context.getGroup()).getSuppressedActions());
+        //导入旧实例的开仓次数
+        assertEquals(10, newTradlet.opens);
+        //影子模式时收到第50个TICK的Playbook, 替换后收到4个
+        assertEquals(5, newTradlet.playbookEvents);
+        assertOrders(10);
+    }
+
+    @Test
+    public void testSwapAfterReplay() throws Exception
+    {
+        CountingTradlet oldTradlet = (CountingTradlet)group.getTradlets().get(0);
+        for(int i=0;i<25;i++) {
+            engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, createTick(i));
+        }
+        //回放历史行情后立即替换
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MISC_GROUP_UPDATE, createTemplate("warmupTicks=20"));
+        assertTrue(group.getShadowHolders().isEmpty());
+        CountingTradlet newTradlet = (CountingTradlet)group.getTradlets().get(0);
+        assertNotSame(oldTradlet, newTradlet);
+        assertTrue(oldTradlet.destroyed);
+        assertEquals(25, newTradlet.ticks);
+        assertEquals(3, newTradlet.opens);
+
+        for(int i=25;i<50;i++) {
+            engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, createTick(i));
+        }
+        assertEquals(3, oldTradlet.opens);
+        assertEquals(5, newTradlet.opens);
+        assertOrders(5);
+    }
+
+    @Test
+    public void testStopLossReinit() throws Exception
+    {
+        group.update(createStopLossTemplate("0s"));
+        StopLossTradlet oldTradlet = (StopLossTradlet)group.getTradlets().get(0);
+        Playbook playbook = openPlaybook(2860000);
+        //重新加载后, 新实例接管已开仓Playbook的止损
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MISC_GROUP_UPDATE, createStopLossTemplate("0s"));
+        assertTrue(group.getShadowHolders().isEmpty());
+        assertNotSame(oldTradlet, group.getTradlets().get(0));
+
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, createTick(0));
+        assertEquals(PlaybookState.Opening, playbook.getStateTuple().getState());
+        //低于止损价位, 立即止损
+        MarketData md = createTick(1);
+        md.lastPrice = 2855000;
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md);
+        assertEquals(PlaybookState.Canceling, playbook.getStateTuple().getState());
+        assertEquals(Arrays.asList(account.orders.get(0).getRef()), account.canceledOrders);
+    }
+
+    @Test
+    public void testSwapStopLoss() throws Exception
+    {
+        setMarketTime(LocalDateTime.of(2018, Month.DECEMBER, 28, 9, 0, 0));
+        group.update(createStopLossTemplate("5s"));
+        Playbook playbook = openPlaybook(2860000);
+        //旧实例开始计算价格阶梯时间
+        MarketData md = createTick(0);
+        md.lastPrice = 2855000;
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md);
+
+        StopLossTradlet oldTradlet = (StopLossTradlet)group.getTradlets().get(0);
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MISC_GROUP_UPDATE, createStopLossTemplate("5s"));
+        assertTrue(group.getShadowHolders().isEmpty());
+        assertNotSame(oldTradlet, group.getTradlets().get(0));
+        assertEquals(PlaybookState.Opening, playbook.getStateTuple().getState());
+
+        //新实例延续旧实例的价格阶梯时间, 5秒后止损
+        setMarketTime(LocalDateTime.of(2018, Month.DECEMBER, 28, 9, 0, 6));
+        md = createTick(6);
+        md.lastPrice = 2855000;
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md);
+        assertEquals(PlaybookState.Canceling, playbook.getStateTuple().getState());
+        assertEquals(Arrays.asList(account.orders.get(0).getRef()), account.canceledOrders);
+    }
+
+    @Test
+    public void testThrottledCancelRetry() throws Exception
+    {
+        group.update(createStopLossTemplate("0s"));
+        Playbook playbook = openPlaybook(2860000);
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, createTick(0));
+        //止损撤单被流控两次, 保持Canceling状态不进入Failed
+        account.throttledCancels = 2;
+        MarketData md = createTick(1);
+        md.lastPrice = 2855000;
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md);
+        assertEquals(PlaybookState.Canceling, playbook.getStateTuple().getState());
+        assertTrue(account.canceledOrders.isEmpty());
+        int stateCount = playbook.getStateTuples().size();
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MISC_NOOP, null);
+        assertEquals(stateCount, playbook.getStateTuples().size());
+        assertTrue(account.canceledOrders.isEmpty());
+        //NOOP时重试成功
+        engine.queueEvent(TradletEvent.EVENT_TYPE_MISC_NOOP, null);
+        assertEquals(PlaybookState.Canceling, playbook.getStateTuple().getState());
+        assertEquals(Arrays.asList(account.orders.get(0).getRef()), account.canceledOrders);
+    }
+
+    /**
+     * 止损按交易所时区计算市场时间, 模拟时间使用本地时区
+     */
+    private void setMarketTime(LocalDateTime exchangeTime) {
+        LocalDateTime time = exchangeTime.atZone(AU.exchange().getZoneId()).withZoneSameInstant(DateUtil.getDefaultZoneId()).toLocalDateTime();
+        mtService.setTimeRanges(LocalDate.of(2018, Month.DECEMBER, 28), new LocalDateTime[] {time, time.plusHours(1)});
+    }
+
+    private Playbook openPlaybook(long openPrice) throws AppException {
+        PlaybookBuilder builder = new PlaybookBuilder()
+                .setOpenActionId("open")
+                .setOpenDirection(PosDirection.Long)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setOpenPrice(openPrice);
+        return group.getPlaybookKeeper().createPlaybook(builder);
+    }
+
+    /**
+     * 每10个TICK正好一个报单和一个Playbook
+     */
+    private void assertOrders(int count) {
+        assertEquals(count, account.orders.size());
+        List<Playbook> playbooks = group.getPlaybookKeeper().getAllPlaybooks();
+        assertEquals(count, playbooks.size());
+        TreeSet<Integer> ticks = new TreeSet<>();
+        for(Playbook playbook:playbooks) {
+            ticks.add(Integer.parseInt(playbook.getAttr("tick").toString()));
+        }
+        assertEquals(count, ticks.size());
+        for(int i=0;i<count;i++) {
+            assertTrue(ticks.contains(i*10));
+        }
+    }
+
+    private TradletGroupTemplate createTemplate(String tradletConfig) {
+        TradletGroupTemplate template = new TradletGroupTemplate();
+        template.config = "[common]\nexchangeable="+AU+"\n\n[Counting]\n"+tradletConfig;
+        template.exchangeable = AU;
+        template.account = account;
+        template.tradletHolders.add(new TradletHolder("Counting", new CountingTradlet(), new TradletContextImpl(group, tradletConfig)));
+        return template;
+    }
+
+    private TradletGroupTemplate createStopLossTemplate(String duration) {
+        String tradletConfig = "{\"default\":{\"priceSteps\":{\"0.3\":\""+duration+"\"}}}";
+        TradletGroupTemplate template = new TradletGroupTemplate();
+        template.config = "[common]\nexchangeable="+AU+"\n\n[StopLoss]\n"+tradletConfig;
+        template.exchangeable = AU;
+        template.account = account;
+        template.tradletHolders.add(new TradletHolder("StopLoss", new StopLossTradlet(), new TradletContextImpl(group, tradletConfig)));
+        return template;
+    }
+
+    private static MarketData createTick(int seq) {
+        SyntheticMarketData md = new SyntheticMarketData("test", AU);
+        md.tradingDay = "20181228";
+        md.updateTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 9, 1).plusSeconds(seq);
+        md.lastPrice = 2860000+seq*500;
+        md.volume = seq;
+        return md;
+    }
+
+}
@@ -0,0 +1,132 @@
+package trader.service.tradlet.impl.stop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StopTriggerBookTest {
+
+    private static final long T0 = 1546000000000L;
+
+    @Test
+    public void testPendingTriggers() {
+        StopTriggerBook book = new StopTriggerBook();
+        StopTrigger t1 = new StopTrigger(null, null);
+        book.add(t1);
+        List<StopTrigger> fired = new ArrayList<>();
+        book.collect(100, T0, fired);
+        assertEquals(1, fired.size());
+        fired.clear();
+        //没有rearm, 不会再次返回
+        book.collect(10000, T0+10000, fired);
+        assertEquals(0, fired.size());
+    }
+
+    @Test
+    public void testPriceTriggers() {
+        StopTriggerBook book = new StopTriggerBook();
+        List<StopTrigger> fired = new ArrayList<>();
+        StopTrigger t1 = arm(book, 90, 110, Long.MAX_VALUE);
+        StopTrigger t2 = arm(book, 95, 105, Long.MAX_VALUE);
+        StopTrigger t3 = arm(book, Long.MIN_VALUE, 120, Long.MAX_VALUE);
+
+        book.collect(100, T0, fired);
+        assertEquals(0, fired.size());
+        book.collect(105, T0, fired);
+        assertEquals(1, fired.size());
+        assertTrue(fired.get(0)==t2);
+        fired.clear();
+        book.collect(125, T0, fired);
+        assertEquals(2, fired.size());
+        assertTrue(fired.contains(t1) && fired.contains(t3));
+        fired.clear();
+
+        //修改区间后, 原有的区间作废
+        t1.priceLow = 50; t1.priceHigh = 200;
+        book.rearm(t1);
+        t2.priceLow = 60; t2.priceHigh = 130;
+        book.rearm(t2);
+        t2.priceLow = 40; t2.priceHigh = 300;
+        book.rearm(t2);
+        book.collect(150, T0, fired);
+        assertEquals(0, fired.size());
+        book.collect(55, T0, fired);
+        assertEquals(0, fired.size());
+        book.collect(45, T0, fired);
+        assertEquals(1, fired.size());
+        assertTrue(fired.get(0)==t1);
+        fired.clear();
+
+        book.remove(t2);
+        book.collect(10, T0, fired);
+        assertEquals(0, fired.size());
+        assertEquals(2, book.size());
+    }
+
+    @Test
+    public void testTimerTriggers() {
+        StopTriggerBook book = new StopTriggerBook();
+        List<StopTrigger> fired = new ArrayList<>();
+        book.collect(0, T0, fired);
+        StopTrigger t1 = arm(book, Long.MIN_VALUE, Long.MAX_VALUE, T0+3000);
+        StopTrigger t2 = arm(book, Long.MIN_VALUE, Long.MAX_VALUE, T0+(StopTriggerBook.WHEEL_SLOTS+3)*1000L);
+        arm(book, Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        book.collect(0, T0+2000, fired);
+        assertEquals(0, fired.size());
+        book.collect(0, T0+3000, fired);
+        assertEquals(1, fired.size());
+        assertTrue(fired.get(0)==t1);
+        fired.clear();
+        //同一槽位, 但是还没有到期
+        book.collect(0, T0+StopTriggerBook.WHEEL_SLOTS*1000L+2000, fired);
+        assertEquals(0, fired.size());
+        //跳过多个槽位
+        book.collect(0, T0+(StopTriggerBook.WHEEL_SLOTS+10)*1000L, fired);
+        assertEquals(1, fired.size());
+        assertTrue(fired.get(0)==t2);
+        fired.clear();
+
+        //已经到期的条件, 下次立刻返回
+        t1.deadline = T0;
+        book.rearm(t1);
+        book.collect(0, T0+(StopTriggerBook.WHEEL_SLOTS+10)*1000L, fired);
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void testManyTriggers() {
+        StopTriggerBook book = new StopTriggerBook();
+        List<StopTrigger> fired = new ArrayList<>();
+        List<StopTrigger> triggers = new ArrayList<>();
+        for(int i=0;i<5000;i++) {
+            triggers.add(arm(book, 10000-i, 10000+i+1, Long.MAX_VALUE));
+        }
+        //反复修改区间, 作废节点需要被清理
+        for(int j=0;j<10;j++) {
+            for(StopTrigger t:triggers) {
+                t.priceHigh++;
+                book.rearm(t);
+            }
+        }
+        book.collect(10000+100, T0, fired);
+        assertEquals(100-10, fired.size());
+    }
+
+    private static StopTrigger arm(StopTriggerBook book, long priceLow, long priceHigh, long deadline) {
+        StopTrigger trigger = new StopTrigger(null, null);
+        book.add(trigger);
+        List<StopTrigger> fired = new ArrayList<>();
+        book.collect(0, T0, fired);
+        trigger.priceLow = priceLow;
+        trigger.priceHigh = priceHigh;
+        trigger.deadline = deadline;
+        book.rearm(trigger);
+        return trigger;
+    }
+
+}